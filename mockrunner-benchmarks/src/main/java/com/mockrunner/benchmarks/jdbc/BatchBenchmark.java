@@ -0,0 +1,72 @@
+package com.mockrunner.benchmarks.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
+import com.mockrunner.jdbc.RecordingPolicy;
+import com.mockrunner.mock.jdbc.MockConnection;
+
+/**
+ * Measures <code>executeBatch</code> of a prepared statement whose
+ * update counts are prepared for specific parameters. The score is
+ * the time per batch entry. The handler uses
+ * {@link RecordingPolicy#AGGREGATE}, so the executed parameter sets
+ * are counted, but not recorded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchBenchmark
+{
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"10", "1000"})
+    private int parameterSets;
+
+    private PreparedStatement statement;
+
+    @Setup
+    public void setUp() throws SQLException
+    {
+        MockConnection connection = new MockConnection();
+        PreparedStatementResultSetHandler handler = connection.getPreparedStatementResultSetHandler();
+        handler.setRecordingPolicy(RecordingPolicy.AGGREGATE);
+        for(int ii = 0; ii < parameterSets; ii++)
+        {
+            handler.prepareUpdateCount("insert into table", 1, new Object[] {ii, "value" + ii});
+        }
+        statement = connection.prepareStatement("insert into table values (?, ?)");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int[] executeBatch() throws SQLException
+    {
+        for(int ii = 0; ii < BATCH_SIZE; ii++)
+        {
+            int value = ii % parameterSets;
+            statement.setInt(1, value);
+            statement.setString(2, "value" + value);
+            statement.addBatch();
+        }
+        return statement.executeBatch();
+    }
+}
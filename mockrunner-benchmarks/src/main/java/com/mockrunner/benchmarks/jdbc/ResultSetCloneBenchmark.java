@@ -0,0 +1,70 @@
+package com.mockrunner.benchmarks.jdbc;
+
+import java.sql.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+/**
+ * Measures <code>MockResultSet.clone()</code> of large result sets,
+ * which statements call for every execution of an updatable result set.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultSetCloneBenchmark
+{
+    @Param({"1000", "100000"})
+    private int rows;
+
+    @Param({"false", "true"})
+    private boolean copyOnWrite;
+
+    private MockResultSet resultSet;
+
+    @Setup
+    public void setUp()
+    {
+        resultSet = new MockResultSet("benchmark");
+        resultSet.setCopyOnWrite(copyOnWrite);
+        Object[] ints = new Object[rows];
+        Object[] longs = new Object[rows];
+        Object[] doubles = new Object[rows];
+        Object[] strings = new Object[rows];
+        Object[] dates = new Object[rows];
+        for(int ii = 0; ii < rows; ii++)
+        {
+            ints[ii] = ii;
+            longs[ii] = (long)ii;
+            doubles[ii] = ii / 3.0;
+            strings[ii] = "value" + ii;
+            dates[ii] = new Date(ii);
+        }
+        resultSet.addColumn("int", ints);
+        resultSet.addColumn("long", longs);
+        resultSet.addColumn("double", doubles);
+        resultSet.addColumn("string", strings);
+        resultSet.addColumn("date", dates);
+    }
+
+    @Benchmark
+    public Object cloneResultSet()
+    {
+        return resultSet.clone();
+    }
+}
@@ -0,0 +1,119 @@
+package com.mockrunner.benchmarks.jdbc;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+/**
+ * Measures the cursor and getter loop of <code>MockResultSet</code>,
+ * i.e. the cost of reading every cell of a result set once, by
+ * column index and by column name.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultSetGetterBenchmark
+{
+    private static final int COLUMNS = 8;
+
+    @Param({"100", "10000"})
+    private int rows;
+
+    @Param({"false", "true"})
+    private boolean columnsCaseSensitive;
+
+    private MockResultSet resultSet;
+    private String[] columnNames;
+
+    @Setup
+    public void setUp()
+    {
+        resultSet = new MockResultSet("benchmark");
+        resultSet.setColumnsCaseSensitive(columnsCaseSensitive);
+        Object[][] columns = new Object[COLUMNS][rows];
+        for(int ii = 0; ii < rows; ii++)
+        {
+            for(int yy = 0; yy < COLUMNS; yy += 4)
+            {
+                columns[yy][ii] = ii;
+                columns[yy + 1][ii] = (long)ii * yy;
+                columns[yy + 2][ii] = ii / 3.0;
+                columns[yy + 3][ii] = "value" + ii;
+            }
+        }
+        columnNames = new String[COLUMNS];
+        for(int ii = 0; ii < COLUMNS; ii++)
+        {
+            columnNames[ii] = "column" + ii;
+            resultSet.addColumn(columnNames[ii], columns[ii]);
+        }
+    }
+
+    @Benchmark
+    public void getObjectByIndex(Blackhole blackhole) throws SQLException
+    {
+        resultSet.beforeFirst();
+        while(resultSet.next())
+        {
+            for(int ii = 1; ii <= COLUMNS; ii++)
+            {
+                blackhole.consume(resultSet.getObject(ii));
+            }
+        }
+    }
+
+    @Benchmark
+    public void getObjectByName(Blackhole blackhole) throws SQLException
+    {
+        resultSet.beforeFirst();
+        while(resultSet.next())
+        {
+            for(int ii = 0; ii < COLUMNS; ii++)
+            {
+                blackhole.consume(resultSet.getObject(columnNames[ii]));
+            }
+        }
+    }
+
+    @Benchmark
+    public void getPrimitivesByIndex(Blackhole blackhole) throws SQLException
+    {
+        resultSet.beforeFirst();
+        while(resultSet.next())
+        {
+            for(int ii = 1; ii <= COLUMNS; ii += 4)
+            {
+                blackhole.consume(resultSet.getInt(ii));
+                blackhole.consume(resultSet.getLong(ii + 1));
+                blackhole.consume(resultSet.getDouble(ii + 2));
+                blackhole.consume(resultSet.getString(ii + 3));
+            }
+        }
+    }
+
+    @Benchmark
+    public void findColumn(Blackhole blackhole) throws SQLException
+    {
+        for(int ii = 0; ii < COLUMNS; ii++)
+        {
+            blackhole.consume(resultSet.findColumn(columnNames[ii]));
+        }
+    }
+}
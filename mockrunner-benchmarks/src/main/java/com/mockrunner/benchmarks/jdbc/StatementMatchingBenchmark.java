@@ -0,0 +1,125 @@
+package com.mockrunner.benchmarks.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
+import com.mockrunner.jdbc.RecordingPolicy;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.util.regexp.StartsEndsPatternMatcher;
+
+/**
+ * Measures <code>MockConnection.prepareStatement</code> followed by
+ * <code>executeQuery</code> against a handler with a varying number
+ * of prepared SQL strings in each matching mode.
+ * <ul>
+ * <li><i>exact</i>: exact match, i.e. <code>setExactMatch(true)</code></li>
+ * <li><i>contains</i>: the default, the SQL string contains the prepared string</li>
+ * <li><i>prefix</i>: <code>StartsEndsPatternMatcher</code> with patterns like <i>select * from x.*</i></li>
+ * <li><i>regex</i>: regular expressions, i.e. <code>setUseRegularExpressions(true)</code></li>
+ * </ul>
+ * The handler uses {@link RecordingPolicy#AGGREGATE}, so the executions
+ * are counted, but not recorded, and the measured time does not grow
+ * with the number of executions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatementMatchingBenchmark
+{
+    private static final int QUERIES = 1024;
+
+    @Param({"10", "1000", "10000"})
+    private int statements;
+
+    @Param({"exact", "contains", "prefix", "regex"})
+    private String mode;
+
+    private MockConnection connection;
+    private PreparedStatementResultSetHandler handler;
+    private String[] queries;
+    private int next;
+
+    @Setup
+    public void setUp()
+    {
+        connection = new MockConnection();
+        handler = connection.getPreparedStatementResultSetHandler();
+        handler.setRecordingPolicy(RecordingPolicy.AGGREGATE);
+        if("exact".equals(mode))
+        {
+            handler.setExactMatch(true);
+        }
+        else if("prefix".equals(mode))
+        {
+            handler.setPatternMatcherFactory(new StartsEndsPatternMatcher.Factory());
+        }
+        else if("regex".equals(mode))
+        {
+            handler.setUseRegularExpressions(true);
+        }
+        for(int ii = 0; ii < statements; ii++)
+        {
+            MockResultSet resultSet = handler.createResultSet(String.valueOf(ii));
+            resultSet.addColumn("id", new Object[] {ii});
+            handler.prepareResultSet(createPattern(ii), resultSet);
+        }
+        Random random = new Random(42);
+        queries = new String[QUERIES];
+        for(int ii = 0; ii < QUERIES; ii++)
+        {
+            queries[ii] = createQuery(random.nextInt(statements));
+        }
+    }
+
+    private String createPattern(int table)
+    {
+        if("exact".equals(mode))
+        {
+            return createQuery(table);
+        }
+        if("prefix".equals(mode))
+        {
+            return "select * from table" + table + " where.*";
+        }
+        if("regex".equals(mode))
+        {
+            return "select .* from table" + table + " where .*";
+        }
+        return "from table" + table + " where";
+    }
+
+    private String createQuery(int table)
+    {
+        return "select * from table" + table + " where id = ?";
+    }
+
+    @Benchmark
+    public ResultSet prepareAndExecuteQuery() throws SQLException
+    {
+        String sql = queries[next++ & (QUERIES - 1)];
+        PreparedStatement statement = connection.prepareStatement(sql);
+        ResultSet resultSet = statement.executeQuery();
+        handler.clearPreparedStatements();
+        return resultSet;
+    }
+}
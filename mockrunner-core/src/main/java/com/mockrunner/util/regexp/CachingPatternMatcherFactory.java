@@ -0,0 +1,72 @@
+package com.mockrunner.util.regexp;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link PatternMatcher.Factory} that keeps the most recently used
+ * {@link PatternMatcher} instances of another factory, so the same pattern
+ * is not compiled again and again. The number of cached instances is
+ * bounded, the least recently used instance is discarded first.
+ * An instance can be shared by several users of the delegate factory
+ * and is thread-safe, as long as the created matchers are (which is the
+ * case for the matchers in this package).
+ */
+public class CachingPatternMatcherFactory implements PatternMatcher.Factory {
+   public static final int DEFAULT_MAX_SIZE = 1024;
+
+   private final PatternMatcher.Factory delegate;
+   private final Map<String, PatternMatcher> cache;
+
+   public CachingPatternMatcherFactory(PatternMatcher.Factory delegate) {
+      this(delegate, DEFAULT_MAX_SIZE);
+   }
+
+   public CachingPatternMatcherFactory(PatternMatcher.Factory delegate, final int maxSize) {
+      if (maxSize < 1) throw new IllegalArgumentException("maxSize must be positive");
+      this.delegate = delegate;
+      this.cache = new LinkedHashMap<String, PatternMatcher>(16, 0.75f, true) {
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<String, PatternMatcher> eldest) {
+            return size() > maxSize;
+         }
+      };
+   }
+
+   /**
+    * @return The factory creating the cached instances.
+    */
+   public PatternMatcher.Factory getDelegate() {
+      return delegate;
+   }
+
+   public PatternMatcher create(String pattern) {
+      synchronized (cache) {
+         PatternMatcher matcher = cache.get(pattern);
+         if (null != matcher) return matcher;
+      }
+      PatternMatcher matcher = delegate.create(pattern);
+      synchronized (cache) {
+         cache.put(pattern, matcher);
+      }
+      return matcher;
+   }
+
+   /**
+    * @return The number of cached instances.
+    */
+   public int size() {
+      synchronized (cache) {
+         return cache.size();
+      }
+   }
+
+   /**
+    * Removes all cached instances.
+    */
+   public void clear() {
+      synchronized (cache) {
+         cache.clear();
+      }
+   }
+}
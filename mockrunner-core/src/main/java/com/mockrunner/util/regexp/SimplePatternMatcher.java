@@ -36,6 +36,14 @@ public class SimplePatternMatcher extends PatternMatcher.Base {
       }
    }
 
+   public boolean isCaseSensitive() {
+      return caseSensitive;
+   }
+
+   public boolean isExactMatch() {
+      return exactMatch;
+   }
+
    public static class Factory implements PatternMatcher.Factory {
       private final boolean caseSensitive;
       private final boolean exactMatch;
@@ -28,6 +28,20 @@ public class StartsEndsPatternMatcher extends PatternMatcher.Base {
        return !(end != null && !string.endsWith(end));
    }
 
+   /**
+    * @return The literal prefix a matching string must start with, or <code>null</code>.
+    */
+   public String getStart() {
+      return start;
+   }
+
+   /**
+    * @return The literal suffix a matching string must end with, or <code>null</code>.
+    */
+   public String getEnd() {
+      return end;
+   }
+
    public static class Factory implements PatternMatcher.Factory {
       public PatternMatcher create(final String pattern) {
          String p = pattern;
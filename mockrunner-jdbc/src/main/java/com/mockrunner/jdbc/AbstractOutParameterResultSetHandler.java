@@ -5,9 +5,9 @@ import com.mockrunner.util.regexp.PatternMatcher;
 
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 
 /**
  * Abstract base class for all statement types
@@ -16,18 +16,41 @@ import java.util.TreeMap;
 public abstract class AbstractOutParameterResultSetHandler extends AbstractParameterResultSetHandler
 {
     private boolean mustRegisterOutParameters = false;
-    private MockParameterMap globalOutParameter = null;
-    private final Map<String, MockParameterMap> outParameterForStatement = new TreeMap<String, MockParameterMap>();
-    private final Map<PatternMatcher, MockParameterMap> outParameterForStatementCompiled = new TreeMap<PatternMatcher, MockParameterMap>();
-    private final Map<String, List<ParameterWrapper<MockParameterMap>>> outParameterForStatementParameters = new TreeMap<String, List<ParameterWrapper<MockParameterMap>>>();
+    private volatile MockParameterMap globalOutParameter = null;
+    private final Map<String, MockParameterMap> outParameterForStatement = new LinkedHashMap<String, MockParameterMap>();
+    private final Map<PatternMatcher, MockParameterMap> outParameterForStatementCompiled = createCompiledMap(new HashMap<PatternMatcher, MockParameterMap>());
+    private final Map<String, List<ParameterWrapper<MockParameterMap>>> outParameterForStatementParameters = new LinkedHashMap<String, List<ParameterWrapper<MockParameterMap>>>();
     private final Map<PatternMatcher, List<ParameterWrapper<MockParameterMap>>> outParameterForStatementParametersCompiled
-          = new HashMap<PatternMatcher, List<ParameterWrapper<MockParameterMap>>>();
+          = createCompiledMap(new HashMap<PatternMatcher, List<ParameterWrapper<MockParameterMap>>>());
+
+    public AbstractOutParameterResultSetHandler()
+    {
+        this(false);
+    }
+
+    /**
+     * Creates a new handler.
+     * @param threadSafe <code>true</code> if the handler can be used
+     *        by more than one thread at the same time
+     */
+    public AbstractOutParameterResultSetHandler(boolean threadSafe)
+    {
+        super(threadSafe);
+    }
 
     @Override
     protected void onPatternMatcherFactoryChanged() {
-        super.onPatternMatcherFactoryChanged();
-        recompile(outParameterForStatement, outParameterForStatementCompiled);
-        recompile(outParameterForStatementParameters, outParameterForStatementParametersCompiled);
+        getWriteLock().lock();
+        try
+        {
+            super.onPatternMatcherFactoryChanged();
+            recompile(outParameterForStatement, outParameterForStatementCompiled);
+            recompile(outParameterForStatementParameters, outParameterForStatementParametersCompiled);
+        }
+        finally
+        {
+            getWriteLock().unlock();
+        }
     }
 
     /**
@@ -64,12 +87,7 @@ public abstract class AbstractOutParameterResultSetHandler extends AbstractParam
      */
     public MockParameterMap getOutParameter(String sql)
     {
-        List<MockParameterMap> list = getMatchingObjects(outParameterForStatementCompiled, sql);
-        if(null != list && list.size() > 0)
-        {
-            return list.get(0);
-        }
-        return null;
+        return getFirstMatchingObject(outParameterForStatementCompiled, sql);
     }
     
     /**
@@ -98,10 +116,18 @@ public abstract class AbstractOutParameterResultSetHandler extends AbstractParam
      */
     public void clearOutParameter()
     {
-        outParameterForStatement.clear();
-        outParameterForStatementCompiled.clear();
-        outParameterForStatementParameters.clear();
-        outParameterForStatementParametersCompiled.clear();
+        getWriteLock().lock();
+        try
+        {
+            outParameterForStatement.clear();
+            outParameterForStatementCompiled.clear();
+            outParameterForStatementParameters.clear();
+            outParameterForStatementParametersCompiled.clear();
+        }
+        finally
+        {
+            getWriteLock().unlock();
+        }
     }
     
     /**
@@ -133,9 +159,17 @@ public abstract class AbstractOutParameterResultSetHandler extends AbstractParam
      */
     public void prepareOutParameter(String sql, MockParameterMap outParameters)
     {
-        MockParameterMap mockParameterMap = new MockParameterMap(outParameters);
-        outParameterForStatement.put(sql, mockParameterMap);
-        outParameterForStatementCompiled.put(getPatternMatcherFactory().create(sql), mockParameterMap);
+        getWriteLock().lock();
+        try
+        {
+            MockParameterMap mockParameterMap = new MockParameterMap(outParameters);
+            outParameterForStatement.put(sql, mockParameterMap);
+            outParameterForStatementCompiled.put(getPatternMatcherFactory().create(sql), mockParameterMap);
+        }
+        finally
+        {
+            getWriteLock().unlock();
+        }
     }
     
     /**
@@ -202,18 +236,42 @@ public abstract class AbstractOutParameterResultSetHandler extends AbstractParam
      */
     public void prepareOutParameter(String sql, MockParameterMap outParameters, MockParameterMap parameters)
     {
-        List<ParameterWrapper<MockParameterMap>> list = getListFromMapForSQLStatement(sql, outParameterForStatementParameters);
-        list.add(new ParameterWrapper<MockParameterMap>(new MockParameterMap(outParameters), new MockParameterMap(parameters)));
-        outParameterForStatementParametersCompiled.put(getPatternMatcherFactory().create(sql), list);
+        getWriteLock().lock();
+        try
+        {
+            List<ParameterWrapper<MockParameterMap>> list = getListFromMapForSQLStatement(sql, outParameterForStatementParameters);
+            list.add(new ParameterWrapper<MockParameterMap>(new MockParameterMap(outParameters), new MockParameterMap(parameters)));
+            outParameterForStatementParametersCompiled.put(getPatternMatcherFactory().create(sql), list);
+        }
+        finally
+        {
+            getWriteLock().unlock();
+        }
     }
     
     public void removeOutParameter(String sql){
-        outParameterForStatement.remove(sql);
-        outParameterForStatementCompiled.remove(getPatternMatcherFactory().create(sql));
+        getWriteLock().lock();
+        try
+        {
+            outParameterForStatement.remove(sql);
+            outParameterForStatementCompiled.remove(getPatternMatcherFactory().create(sql));
+        }
+        finally
+        {
+            getWriteLock().unlock();
+        }
     }
 
     public void removeOutParameter(String sql, MockParameterMap parameters){
-        removeMatchingParameterWrapper(sql, parameters, outParameterForStatementParameters, exactMatchParameter);
+        getWriteLock().lock();
+        try
+        {
+            removeMatchingParameterWrapper(sql, parameters, outParameterForStatementParameters, exactMatchParameter);
+        }
+        finally
+        {
+            getWriteLock().unlock();
+        }
     }
     
 }
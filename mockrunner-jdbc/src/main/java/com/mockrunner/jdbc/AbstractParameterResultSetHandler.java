@@ -7,6 +7,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import com.mockrunner.mock.jdbc.MockResultSet;
 
@@ -22,7 +24,30 @@ public abstract class AbstractParameterResultSetHandler extends AbstractResultSe
 //    private final Map<String, List<ParameterWrapper<Integer[]>>> updateCountForStatement = new TreeMap<String, List<ParameterWrapper<Integer[]>>>();
 //    private final Map<String, List<ParameterWrapper<SQLException>>> throwsSQLException = new TreeMap<String, List<ParameterWrapper<SQLException>>>();
 //    private final Map<String, List<ParameterWrapper<MockResultSet>>> generatedKeysForStatement = new TreeMap<String, List<ParameterWrapper<MockResultSet>>>();
-	private final Map<String, ParameterSets> executedStatementParameters = new TreeMap<String, ParameterSets>();
+	private final Map<String, ParameterSets> executedStatementParameters;
+
+    public AbstractParameterResultSetHandler()
+    {
+        this(false);
+    }
+
+    /**
+     * Creates a new handler.
+     * @param threadSafe <code>true</code> if the handler can be used
+     *        by more than one thread at the same time
+     */
+    public AbstractParameterResultSetHandler(boolean threadSafe)
+    {
+        super(threadSafe);
+        if(threadSafe)
+        {
+            executedStatementParameters = new ConcurrentSkipListMap<String, ParameterSets>();
+        }
+        else
+        {
+            executedStatementParameters = new TreeMap<String, ParameterSets>();
+        }
+    }
     
 	/**
 	 * Collects all SQL strings that were executed.
@@ -33,15 +58,37 @@ public abstract class AbstractParameterResultSetHandler extends AbstractResultSe
 	{
 		if(null != parameters)
 		{
-			if(null == executedStatementParameters.get(sql))
+			ParameterSets sets = executedStatementParameters.get(sql);
+			if(null == sets)
 			{
-				executedStatementParameters.put(sql, new ParameterSets(sql));
+				sets = new ParameterSets(sql, getRecordingPolicy());
+				if(isThreadSafe())
+				{
+					ParameterSets existingSets = ((ConcurrentMap<String, ParameterSets>)executedStatementParameters).putIfAbsent(sql, sets);
+					if(null != existingSets) sets = existingSets;
+				}
+				else
+				{
+					executedStatementParameters.put(sql, sets);
+				}
 			}
-			ParameterSets sets = executedStatementParameters.get(sql);
 			sets.addParameterSet(parameters);
 		}
 	}
 	
+	/**
+	 * Sets the {@link RecordingPolicy}. Clears the recorded parameter
+	 * sets, too. Depending on the policy, the {@link ParameterSets}
+	 * keep only the last parameter sets or just count them.
+	 * @param recordingPolicy the recording policy
+	 */
+	@Override
+	public void setRecordingPolicy(RecordingPolicy recordingPolicy)
+	{
+		super.setRecordingPolicy(recordingPolicy);
+		executedStatementParameters.clear();
+	}
+	
 	/**
 	 * Returns the <code>ParameterSets</code> for a specified
 	 * SQL string.
@@ -61,6 +108,10 @@ public abstract class AbstractParameterResultSetHandler extends AbstractResultSe
 	 */
 	public Map<String, ParameterSets> getExecutedStatementParameterMap()
 	{
+		if(isThreadSafe())
+		{
+			return Collections.unmodifiableMap(new TreeMap<String, ParameterSets>(executedStatementParameters));
+		}
 		return Collections.unmodifiableMap(executedStatementParameters);
 	}
     
@@ -87,6 +138,19 @@ public abstract class AbstractParameterResultSetHandler extends AbstractResultSe
         this.exactMatchParameter = exactMatchParameter;
     }
 
+    /**
+     * Returns a short description of the SQL statement matching,
+     * followed by <i>exact parameters</i>, if the parameters
+     * must match exactly.
+     * @return the description of the SQL statement matching
+     */
+    @Override
+    public String getMatchMode()
+    {
+        String matchMode = super.getMatchMode();
+        return exactMatchParameter ? matchMode + ", exact parameters" : matchMode;
+    }
+
     /**
      * Returns the first update count that matches the
      * specified SQL string and the specified parameters.
@@ -223,6 +287,19 @@ public abstract class AbstractParameterResultSetHandler extends AbstractResultSe
     {
         return getSQLException(sql, parameters, exactMatchParameter);
     }
+
+    /**
+     * Returns the exceptions and update counts that were prepared for
+     * the specified SQL string. The parameters of the batch entries are
+     * matched according to {@link #setExactMatchParameter}.
+     * @param sql the SQL string
+     * @return the {@link BatchMatch}
+     */
+    @Override
+    public BatchMatch getBatchMatch(String sql)
+    {
+        return createBatchMatch(sql, exactMatchParameter);
+    }
     
     /**
      * Returns the first generated keys <code>ResultSet</code> that 
@@ -493,7 +570,7 @@ public abstract class AbstractParameterResultSetHandler extends AbstractResultSe
      */
     @Override
     public void prepareThrowsSQLException(String sql, SQLException exc) {
-        prepareThrowsSQLException(sql, new MockParameterMap());
+        prepareThrowsSQLException(sql, exc, new MockParameterMap());
     }
 
     /**
@@ -2,12 +2,22 @@ package com.mockrunner.jdbc;
 
 import com.mockrunner.mock.jdbc.MockParameterMap;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.mockrunner.mock.jdbc.MockResultSet;
 import com.mockrunner.util.regexp.PatternMatcher;
@@ -26,6 +36,17 @@ import com.mockrunner.util.regexp.PatternMatcher;
  * of the <code>ResultSet</code> to identify it.
  * The <code>ResultSet</code> objects returned by {@link #getReturnedResultSets}
  * are actually the instances the executed statements returned.
+ * <br>
+ * By default, handlers must not be used by more than one thread at
+ * the same time. Handlers created with <code>threadSafe</code> set to
+ * <code>true</code> can be shared by the threads of a parallel test
+ * suite or a multi-threaded application under test. The prepared
+ * data is copied on write in this case, so statements executed by
+ * different threads read it without any lock and record executed
+ * statements in a log that is striped by thread. Only the methods
+ * that prepare or remove data are serialized. The lists and maps
+ * returned by the handler are copies in this case, that do not
+ * reflect later changes.
  */
 public abstract class AbstractResultSetHandler
 {
@@ -34,23 +55,128 @@ public abstract class AbstractResultSetHandler
     private boolean exactMatch = false;
     private boolean useRegularExpressions = false;
     private PatternMatcher.Factory patternMatcherFactory = PatternMatcher.Factories.from(caseSensitive, exactMatch, useRegularExpressions);
+    private boolean customPatternMatcherFactory = false;
+    private PatternMatcherIndex.Factory patternMatcherIndexFactory = PatternMatcherIndex.Default.FACTORY;
+    private MatchPriority matchPriority = MatchPriority.INSERTION_ORDER;
     private boolean continueProcessingOnBatchFailure = false;
-    private MockResultSet[] globalResultSets;
-    private Integer[] globalUpdateCounts;
-    private final Map<String, Boolean> returnsResultSetMap = new TreeMap<String, Boolean>();
-    private final Map<PatternMatcher, Boolean> returnsResultSetMapCompiled = new HashMap<PatternMatcher, Boolean>();
-    private MockResultSet globalGeneratedKeys;
-    private final List<String> executedStatements = new ArrayList<String>();
-    private final List<MockResultSet[]> returnedResultSets = new ArrayList<MockResultSet[]>();
-    
-    private final Map<String, List<ParameterWrapper<MockResultSet[]>>> resultSetsForStatement = new TreeMap<String, List<ParameterWrapper<MockResultSet[]>>>();
-    private final Map<PatternMatcher, List<ParameterWrapper<MockResultSet[]>>> resultSetsForStatementCompiled = new HashMap<PatternMatcher, List<ParameterWrapper<MockResultSet[]>>>();
-    private final Map<String, List<ParameterWrapper<Integer[]>>> updateCountForStatement = new TreeMap<String, List<ParameterWrapper<Integer[]>>>();
-    private final Map<PatternMatcher, List<ParameterWrapper<Integer[]>>> updateCountForStatementCompiled = new HashMap<PatternMatcher, List<ParameterWrapper<Integer[]>>>();
-    private final Map<String, List<ParameterWrapper<SQLException>>> throwsSQLException = new TreeMap<String, List<ParameterWrapper<SQLException>>>();
-    private final Map<PatternMatcher, List<ParameterWrapper<SQLException>>> throwsSQLExceptionCompiled = new HashMap<PatternMatcher, List<ParameterWrapper<SQLException>>>();
-    private final Map<String, List<ParameterWrapper<MockResultSet>>> generatedKeysForStatement = new TreeMap<String, List<ParameterWrapper<MockResultSet>>>();
-    private final Map<PatternMatcher, List<ParameterWrapper<MockResultSet>>> generatedKeysForStatementCompiled = new HashMap<PatternMatcher, List<ParameterWrapper<MockResultSet>>>();
+    private final boolean threadSafe;
+    private final Lock writeLock;
+    private final List<PatternMatcherMap<?>> compiledMaps = new ArrayList<PatternMatcherMap<?>>();
+    private volatile MockResultSet[] globalResultSets;
+    private volatile Integer[] globalUpdateCounts;
+    private final Map<String, Boolean> returnsResultSetMap = new LinkedHashMap<String, Boolean>();
+    private final Map<PatternMatcher, Boolean> returnsResultSetMapCompiled;
+    private volatile MockResultSet globalGeneratedKeys;
+    private volatile RecordingPolicy recordingPolicy = RecordingPolicy.FULL;
+    private volatile ExecutionLog<String> executedStatements;
+    private volatile ExecutionLog<MockResultSet[]> returnedResultSets;
+    private final Map<String, StatementStatistics> statementStatistics;
+    private volatile LatencyModel latencyModel = LatencyModel.NONE;
+    private volatile boolean pagedCursors = false;
+    private volatile Semaphore executionPermits;
+    private volatile int maxConcurrentExecutions = 0;
+    
+    private final Map<String, List<ParameterWrapper<MockResultSet[]>>> resultSetsForStatement = new LinkedHashMap<String, List<ParameterWrapper<MockResultSet[]>>>();
+    private final Map<PatternMatcher, List<ParameterWrapper<MockResultSet[]>>> resultSetsForStatementCompiled;
+    private final Map<String, List<ParameterWrapper<Integer[]>>> updateCountForStatement = new LinkedHashMap<String, List<ParameterWrapper<Integer[]>>>();
+    private final Map<PatternMatcher, List<ParameterWrapper<Integer[]>>> updateCountForStatementCompiled;
+    private final Map<String, List<ParameterWrapper<SQLException>>> throwsSQLException = new LinkedHashMap<String, List<ParameterWrapper<SQLException>>>();
+    private final Map<PatternMatcher, List<ParameterWrapper<SQLException>>> throwsSQLExceptionCompiled;
+    private final Map<String, List<ParameterWrapper<MockResultSet>>> generatedKeysForStatement = new LinkedHashMap<String, List<ParameterWrapper<MockResultSet>>>();
+    private final Map<PatternMatcher, List<ParameterWrapper<MockResultSet>>> generatedKeysForStatementCompiled;
+
+    public AbstractResultSetHandler()
+    {
+        this(false);
+    }
+
+    /**
+     * Creates a new handler.
+     * @param threadSafe <code>true</code> if the handler can be used
+     *        by more than one thread at the same time
+     */
+    public AbstractResultSetHandler(boolean threadSafe)
+    {
+        this.threadSafe = threadSafe;
+        if(threadSafe)
+        {
+            writeLock = new ReentrantLock();
+            statementStatistics = new ConcurrentHashMap<String, StatementStatistics>();
+        }
+        else
+        {
+            writeLock = NoLock.INSTANCE;
+            statementStatistics = new LinkedHashMap<String, StatementStatistics>();
+        }
+        returnsResultSetMapCompiled = createCompiledMap(new HashMap<PatternMatcher, Boolean>());
+        resultSetsForStatementCompiled = createCompiledMap(new HashMap<PatternMatcher, List<ParameterWrapper<MockResultSet[]>>>());
+        updateCountForStatementCompiled = createCompiledMap(new HashMap<PatternMatcher, List<ParameterWrapper<Integer[]>>>());
+        throwsSQLExceptionCompiled = createCompiledMap(new HashMap<PatternMatcher, List<ParameterWrapper<SQLException>>>());
+        generatedKeysForStatementCompiled = createCompiledMap(new HashMap<PatternMatcher, List<ParameterWrapper<MockResultSet>>>());
+        executedStatements = ExecutionLog.create(recordingPolicy, threadSafe);
+        returnedResultSets = ExecutionLog.create(recordingPolicy, threadSafe);
+    }
+
+    /**
+     * Returns if this handler can be used by more than one thread
+     * at the same time.
+     * @return <code>true</code> if the handler is thread-safe
+     */
+    public boolean isThreadSafe()
+    {
+        return threadSafe;
+    }
+
+    /**
+     * Returns the lock that serializes modifications of the prepared data.
+     * Reading the prepared data does not need a lock, because the
+     * data is copied on write.
+     * Does nothing, if the handler is not thread-safe.
+     * @return the write lock
+     */
+    protected Lock getWriteLock()
+    {
+        return writeLock;
+    }
+
+    /**
+     * Starts the preparation of many SQL strings at once. Every SQL
+     * string prepared in a thread-safe handler copies the prepared data,
+     * so preparing many of them one by one takes time quadratic to their
+     * number. Between this method and {@link #endBulkPreparation}, the
+     * data is copied only once and the prepared SQL strings are not
+     * visible to the executing statements before the bulk preparation
+     * ends. Other threads cannot modify the prepared data in the meantime.
+     * Always call {@link #endBulkPreparation} in a <code>finally</code>
+     * block of the same thread.
+     */
+    public void beginBulkPreparation()
+    {
+        writeLock.lock();
+        for(PatternMatcherMap<?> compiled : compiledMaps)
+        {
+            compiled.beginBatch();
+        }
+    }
+
+    /**
+     * Ends the bulk preparation started with {@link #beginBulkPreparation}
+     * and makes the prepared SQL strings visible to the executing statements.
+     */
+    public void endBulkPreparation()
+    {
+        try
+        {
+            for(PatternMatcherMap<?> compiled : compiledMaps)
+            {
+                compiled.endBatch();
+            }
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+    }
 
     /**
      * Creates a new <code>ResultSet</code> with a
@@ -182,6 +308,7 @@ public abstract class AbstractResultSetHandler
     */
     public void setPatternMatcherFactory(PatternMatcher.Factory factory) {
         this.patternMatcherFactory = factory;
+        this.customPatternMatcherFactory = true;
         onPatternMatcherFactoryChanged();
     }
 
@@ -192,17 +319,86 @@ public abstract class AbstractResultSetHandler
         return patternMatcherFactory;
     }
 
+   /**
+    * Sets the factory for the lookup index over the prepared SQL strings.
+    * The default index resolves exact and non-regular expression
+    * matches without trying every prepared SQL string. Use
+    * {@link PatternMatcherIndex.Scan#FACTORY} to disable indexing.
+    * @param factory The factory that creates the lookup indexes.
+    */
+    public void setPatternMatcherIndexFactory(PatternMatcherIndex.Factory factory) {
+        this.patternMatcherIndexFactory = factory;
+        onPatternMatcherFactoryChanged();
+    }
+
+   /**
+    * @return Factory used for creation of the lookup indexes.
+    */
+    public PatternMatcherIndex.Factory getPatternMatcherIndexFactory() {
+        return patternMatcherIndexFactory;
+    }
+
+   /**
+    * Sets the priority that decides which prepared SQL string wins
+    * if more than one of them matches the current SQL string. The
+    * default is {@link MatchPriority#INSERTION_ORDER}, i.e. the SQL string
+    * that was prepared first wins.
+    * @param matchPriority The priority.
+    */
+    public void setMatchPriority(MatchPriority matchPriority) {
+        this.matchPriority = matchPriority;
+        onPatternMatcherFactoryChanged();
+    }
+
+   /**
+    * @return Priority used if more than one prepared SQL string matches.
+    */
+    public MatchPriority getMatchPriority() {
+        return matchPriority;
+    }
+
+   /**
+    * Returns a short description of the SQL statement matching, i.e.
+    * <i>exact</i>, <i>regex</i>, <i>contains</i> or <i>custom</i>, if a
+    * custom pattern matcher factory is set, followed by
+    * <i>case sensitive</i>, if SQL strings are handled case sensitive.
+    * Used for the events of {@link FlightRecorderEvents}.
+    * @return the description of the SQL statement matching
+    */
+    public String getMatchMode() {
+        String matchMode;
+        if (customPatternMatcherFactory) {
+            return "custom";
+        } else if (exactMatch) {
+            matchMode = "exact";
+        } else if (useRegularExpressions) {
+            matchMode = "regex";
+        } else {
+            matchMode = "contains";
+        }
+        return caseSensitive ? matchMode + ", case sensitive" : matchMode;
+    }
+
     protected void resetPatternMatcherFactory() {
         this.patternMatcherFactory = PatternMatcher.Factories.from(caseSensitive, exactMatch, useRegularExpressions);
+        this.customPatternMatcherFactory = false;
         onPatternMatcherFactoryChanged();
     }
 
     protected void onPatternMatcherFactoryChanged() {
-        recompile(returnsResultSetMap, returnsResultSetMapCompiled);
-        recompile(resultSetsForStatement, resultSetsForStatementCompiled);
-        recompile(updateCountForStatement, updateCountForStatementCompiled);
-        recompile(throwsSQLException, throwsSQLExceptionCompiled);
-        recompile(generatedKeysForStatement, generatedKeysForStatementCompiled);
+        writeLock.lock();
+        try
+        {
+            recompile(returnsResultSetMap, returnsResultSetMapCompiled);
+            recompile(resultSetsForStatement, resultSetsForStatementCompiled);
+            recompile(updateCountForStatement, updateCountForStatementCompiled);
+            recompile(throwsSQLException, throwsSQLExceptionCompiled);
+            recompile(generatedKeysForStatement, generatedKeysForStatementCompiled);
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
     }
 
    /**
@@ -224,7 +420,63 @@ public abstract class AbstractResultSetHandler
      */
     public void addExecutedStatement(String sql)
     {
-		executedStatements.add(sql);
+        executedStatements.add(sql);
+        if(recordingPolicy.isAggregating())
+        {
+            getStatementStatistics(sql).addExecution();
+        }
+    }
+
+    /**
+     * Collects a SQL string that was executed several times in a row,
+     * e.g. by a batch. Equivalent to calling {@link #addExecutedStatement}
+     * <code>numberExecutions</code> times.
+     * @param sql the SQL string
+     * @param numberExecutions the number of executions
+     */
+    public void addExecutedStatements(String sql, int numberExecutions)
+    {
+        if(numberExecutions <= 0) return;
+        executedStatements.add(sql, numberExecutions);
+        if(recordingPolicy.isAggregating())
+        {
+            getStatementStatistics(sql).addExecutions(numberExecutions);
+        }
+    }
+
+    /**
+     * Adds the time an execution of the specified SQL string took
+     * to the {@link StatementStatistics}. Called by the statements
+     * after the execution. Does nothing, if the {@link RecordingPolicy}
+     * records all executions.
+     * @param sql the SQL string
+     * @param nanos the execution time in nanoseconds
+     */
+    public void addExecutionTime(String sql, long nanos)
+    {
+        if(recordingPolicy.isAggregating())
+        {
+            getStatementStatistics(sql).addExecutionTime(nanos);
+        }
+    }
+
+    private StatementStatistics getStatementStatistics(String sql)
+    {
+        StatementStatistics statistics = statementStatistics.get(sql);
+        if(null == statistics)
+        {
+            statistics = new StatementStatistics(sql);
+            if(threadSafe)
+            {
+                StatementStatistics existingStatistics = ((ConcurrentMap<String, StatementStatistics>)statementStatistics).putIfAbsent(sql, statistics);
+                if(null != existingStatistics) statistics = existingStatistics;
+            }
+            else
+            {
+                statementStatistics.put(sql, statistics);
+            }
+        }
+        return statistics;
     }
     
     /**
@@ -236,7 +488,7 @@ public abstract class AbstractResultSetHandler
     public void addReturnedResultSet(MockResultSet resultSet)
     {
         if(null == resultSet) return;
-        returnedResultSets.add(new MockResultSet[]{resultSet});
+        addReturnedResultSets(new MockResultSet[]{resultSet});
     }
     
     /**
@@ -254,11 +506,204 @@ public abstract class AbstractResultSetHandler
     
     /**
      * Returns the <code>List</code> of all executed SQL strings.
+     * Depending on the {@link RecordingPolicy}, the list contains
+     * only the last executions or is empty.
      * @return the <code>List</code> of executed SQL strings
      */
     public List<String> getExecutedStatements()
     {
-        return Collections.unmodifiableList(executedStatements);
+        return executedStatements.toList();
+    }
+
+    /**
+     * Returns the {@link StatementStatistics} for all executed SQL strings.
+     * If the {@link RecordingPolicy} records all executions, the statistics
+     * are created from the executed SQL strings, i.e. they only contain
+     * the number of executions, but no execution times.
+     * @return the <code>Map</code> of statistics, the keys are the
+     *         SQL strings
+     */
+    public Map<String, StatementStatistics> getExecutedStatementStatistics()
+    {
+        if(recordingPolicy.isAggregating())
+        {
+            return Collections.unmodifiableMap(new LinkedHashMap<String, StatementStatistics>(statementStatistics));
+        }
+        Map<String, StatementStatistics> result = new LinkedHashMap<String, StatementStatistics>();
+        for(String sql : getExecutedStatements())
+        {
+            StatementStatistics statistics = result.get(sql);
+            if(null == statistics)
+            {
+                statistics = new StatementStatistics(sql);
+                result.put(sql, statistics);
+            }
+            statistics.addExecution();
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Sets the {@link RecordingPolicy}, i.e. how much this handler records
+     * about the executed statements. The default is
+     * {@link RecordingPolicy#FULL}. Setting the policy clears the recorded
+     * executed SQL strings, returned <code>ResultSet</code> objects,
+     * parameter sets and statistics, so it should be set before the
+     * statements are executed.
+     * @param recordingPolicy the recording policy
+     */
+    public void setRecordingPolicy(RecordingPolicy recordingPolicy)
+    {
+        writeLock.lock();
+        try
+        {
+            this.recordingPolicy = recordingPolicy;
+            executedStatements = ExecutionLog.create(recordingPolicy, threadSafe);
+            returnedResultSets = ExecutionLog.create(recordingPolicy, threadSafe);
+            statementStatistics.clear();
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the {@link RecordingPolicy}.
+     * @return the recording policy
+     */
+    public RecordingPolicy getRecordingPolicy()
+    {
+        return recordingPolicy;
+    }
+
+    /**
+     * Sets the {@link LatencyModel} that simulates the latency of
+     * the database. The default is {@link LatencyModel#NONE}.
+     * @param latencyModel the latency model
+     */
+    public void setLatencyModel(LatencyModel latencyModel)
+    {
+        this.latencyModel = (null == latencyModel) ? LatencyModel.NONE : latencyModel;
+    }
+
+    /**
+     * Returns the {@link LatencyModel}.
+     * @return the latency model
+     */
+    public LatencyModel getLatencyModel()
+    {
+        return latencyModel;
+    }
+
+    /**
+     * Enables the paged cursor mode of the returned <code>ResultSet</code>
+     * objects, i.e. the statements call
+     * {@link MockResultSet#setPagedCursor} for each returned
+     * <code>ResultSet</code>. Use it with the fetch size of the statements
+     * to verify how many rows are resident and how many round trips
+     * are necessary. The default is <code>false</code>.
+     * @param pagedCursors <code>true</code> to enable paged cursors
+     */
+    public void setPagedCursors(boolean pagedCursors)
+    {
+        this.pagedCursors = pagedCursors;
+    }
+
+    /**
+     * Returns if the paged cursor mode of the returned <code>ResultSet</code>
+     * objects is enabled.
+     * @return <code>true</code> if paged cursors are enabled
+     */
+    public boolean getPagedCursors()
+    {
+        return pagedCursors;
+    }
+
+    /**
+     * Limits the number of statements that are executed at the same
+     * time, like a database with a limited number of worker threads.
+     * Further executions wait in the order of their arrival until
+     * an execution finished or the query timeout of the statement is
+     * over. An execution lasts as long as the execution latency of the
+     * {@link LatencyModel}. The default is 0, i.e. no limit.
+     * @param maxConcurrentExecutions the maximum number of concurrent
+     *        executions, 0 for no limit
+     */
+    public void setMaxConcurrentExecutions(int maxConcurrentExecutions)
+    {
+        if(maxConcurrentExecutions < 0) throw new IllegalArgumentException("maxConcurrentExecutions must not be negative");
+        this.maxConcurrentExecutions = maxConcurrentExecutions;
+        executionPermits = (0 == maxConcurrentExecutions) ? null : new Semaphore(maxConcurrentExecutions, true);
+    }
+
+    /**
+     * Returns the maximum number of concurrent executions.
+     * @return the maximum number of concurrent executions, 0 for no limit
+     */
+    public int getMaxConcurrentExecutions()
+    {
+        return maxConcurrentExecutions;
+    }
+
+    /**
+     * Returns the number of executions that are currently waiting,
+     * because the maximum number of concurrent executions is reached.
+     * @return the number of waiting executions
+     */
+    public int getNumberWaitingExecutions()
+    {
+        Semaphore permits = executionPermits;
+        return (null == permits) ? 0 : permits.getQueueLength();
+    }
+
+    /**
+     * Simulates the execution of the specified SQL string according to
+     * the {@link LatencyModel} and the maximum number of concurrent
+     * executions. This method is called by the mock statements before
+     * they execute a statement. It returns immediately, if there is
+     * no latency and no limit.
+     * @param sql the SQL string
+     * @param queryTimeout the query timeout of the statement in seconds,
+     *        0 for no timeout
+     * @throws SQLTimeoutException if the execution takes longer than
+     *         the query timeout
+     * @throws SQLException if the thread is interrupted
+     */
+    public void simulateExecution(String sql, int queryTimeout) throws SQLException
+    {
+        LatencyModel model = latencyModel;
+        Semaphore permits = executionPermits;
+        if(LatencyModel.NONE == model && null == permits) return;
+        long start = System.nanoTime();
+        long timeout = (queryTimeout > 0) ? TimeUnit.SECONDS.toNanos(queryTimeout) : Long.MAX_VALUE;
+        try
+        {
+            if(null != permits && !permits.tryAcquire(timeout, TimeUnit.NANOSECONDS))
+            {
+                throw new SQLTimeoutException("Query timeout of " + queryTimeout + " seconds exceeded while waiting for execution of " + sql);
+            }
+            try
+            {
+                long latency = model.getExecutionLatency(sql);
+                long remaining = timeout - (System.nanoTime() - start);
+                if(latency > remaining)
+                {
+                    TimeUnit.NANOSECONDS.sleep(remaining);
+                    throw new SQLTimeoutException("Query timeout of " + queryTimeout + " seconds exceeded during execution of " + sql);
+                }
+                TimeUnit.NANOSECONDS.sleep(latency);
+            }
+            finally
+            {
+                if(null != permits) permits.release();
+            }
+        }
+        catch(InterruptedException exc)
+        {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted during execution of " + sql, exc);
+        }
     }
     
     /**
@@ -269,11 +714,13 @@ public abstract class AbstractResultSetHandler
      * the full array of <code>ResultSet</code> objects that were prepared, even
      * if {@link com.mockrunner.mock.jdbc.MockStatement#getMoreResults()} was
      * not called for all the result sets.
+     * Depending on the {@link RecordingPolicy}, the list contains
+     * only the last executions or is empty.
      * @return the <code>List</code> of returned <code>ResultSet</code> or <code>ResultSet[]</code> objects
      */
     public List<MockResultSet[]> getReturnedResultSets()
     {
-        return Collections.unmodifiableList(returnedResultSets);
+        return returnedResultSets.toList();
     }
     
     /**
@@ -281,8 +728,16 @@ public abstract class AbstractResultSetHandler
      */
     public void clearResultSets()
     {
-        resultSetsForStatement.clear();
-        resultSetsForStatementCompiled.clear();
+        writeLock.lock();
+        try
+        {
+            resultSetsForStatement.clear();
+            resultSetsForStatementCompiled.clear();
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
     }
     
     /**
@@ -290,8 +745,16 @@ public abstract class AbstractResultSetHandler
      */
     public void clearUpdateCounts()
     {
-        updateCountForStatement.clear();
-        updateCountForStatementCompiled.clear();
+        writeLock.lock();
+        try
+        {
+            updateCountForStatement.clear();
+            updateCountForStatementCompiled.clear();
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
     }
     
     /**
@@ -300,8 +763,16 @@ public abstract class AbstractResultSetHandler
      */
     public void clearReturnsResultSet()
     {
-        returnsResultSetMap.clear();
-        returnsResultSetMapCompiled.clear();
+        writeLock.lock();
+        try
+        {
+            returnsResultSetMap.clear();
+            returnsResultSetMapCompiled.clear();
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
     }
     
     /**
@@ -309,8 +780,16 @@ public abstract class AbstractResultSetHandler
      */
     public void clearThrowsSQLException()
     {
-        throwsSQLException.clear();
-        throwsSQLExceptionCompiled.clear();
+        writeLock.lock();
+        try
+        {
+            throwsSQLException.clear();
+            throwsSQLExceptionCompiled.clear();
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
     }
     
     /**
@@ -318,8 +797,16 @@ public abstract class AbstractResultSetHandler
      */
     public void clearGeneratedKeys()
     {
-        generatedKeysForStatement.clear();
-        generatedKeysForStatementCompiled.clear();
+        writeLock.lock();
+        try
+        {
+            generatedKeysForStatement.clear();
+            generatedKeysForStatementCompiled.clear();
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
     }
     
     /**
@@ -650,12 +1137,7 @@ public abstract class AbstractResultSetHandler
      */
     public Boolean getReturnsResultSet(String sql)
     {
-        List<Boolean> list = getMatchingObjects(returnsResultSetMapCompiled, sql);
-        if(null == list || list.isEmpty())
-        {
-            return null;
-        }
-        return list.get(0);
+        return getFirstMatchingObject(returnsResultSetMapCompiled, sql);
     }
     
     /**
@@ -698,6 +1180,24 @@ public abstract class AbstractResultSetHandler
         }
         return null;
     }    
+
+    /**
+     * Returns the exceptions and update counts that were prepared for
+     * the specified SQL string. The statements use this method to
+     * match the SQL string of a batch only once, instead of once per
+     * batch entry.
+     * @param sql the SQL string
+     * @return the {@link BatchMatch}
+     */
+    public BatchMatch getBatchMatch(String sql)
+    {
+        return createBatchMatch(sql, true);
+    }
+
+    protected BatchMatch createBatchMatch(String sql, boolean exactMatchParameter)
+    {
+        return new BatchMatch(getMatchingParameterWrappers(sql, throwsSQLExceptionCompiled), getMatchingParameterWrappers(sql, updateCountForStatementCompiled), exactMatchParameter);
+    }
     
     /**
      * Prepare a <code>ResultSet</code> for a specified SQL string.
@@ -714,9 +1214,17 @@ public abstract class AbstractResultSetHandler
 
     protected void prepareResultSet(String sql, MockResultSet resultSet, MockParameterMap parameters)
     {
-        List<ParameterWrapper<MockResultSet[]>> list = getListFromMapForSQLStatement(sql, resultSetsForStatement);
-        list.add(new ParameterWrapper<MockResultSet[]>(new MockResultSet[]{resultSet}, new MockParameterMap(parameters)));
-        resultSetsForStatementCompiled.put(patternMatcherFactory.create(sql), list);
+        writeLock.lock();
+        try
+        {
+            List<ParameterWrapper<MockResultSet[]>> list = getListFromMapForSQLStatement(sql, resultSetsForStatement);
+            list.add(new ParameterWrapper<MockResultSet[]>(new MockResultSet[]{resultSet}, new MockParameterMap(parameters)));
+            resultSetsForStatementCompiled.put(patternMatcherFactory.create(sql), list);
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
     }
     
     /**
@@ -735,9 +1243,17 @@ public abstract class AbstractResultSetHandler
 
     protected void prepareResultSets(String sql, MockResultSet[] resultSets, MockParameterMap parameters)
     {
-        List<ParameterWrapper<MockResultSet[]>> list = getListFromMapForSQLStatement(sql, resultSetsForStatement);
-        list.add(new ParameterWrapper<MockResultSet[]>(resultSets.clone(), new MockParameterMap(parameters)));
-        resultSetsForStatementCompiled.put(patternMatcherFactory.create(sql), list);
+        writeLock.lock();
+        try
+        {
+            List<ParameterWrapper<MockResultSet[]>> list = getListFromMapForSQLStatement(sql, resultSetsForStatement);
+            list.add(new ParameterWrapper<MockResultSet[]>(resultSets.clone(), new MockParameterMap(parameters)));
+            resultSetsForStatementCompiled.put(patternMatcherFactory.create(sql), list);
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
     }    
     
     /**
@@ -773,9 +1289,17 @@ public abstract class AbstractResultSetHandler
     
     protected void prepareUpdateCount(String sql, int updateCount, MockParameterMap parameters)
     {
-        List<ParameterWrapper<Integer[]>> list = getListFromMapForSQLStatement(sql, updateCountForStatement);
-        list.add(new ParameterWrapper<Integer[]>(new Integer[]{updateCount}, new MockParameterMap(parameters)));
-        updateCountForStatementCompiled.put(patternMatcherFactory.create(sql), list);
+        writeLock.lock();
+        try
+        {
+            List<ParameterWrapper<Integer[]>> list = getListFromMapForSQLStatement(sql, updateCountForStatement);
+            list.add(new ParameterWrapper<Integer[]>(new Integer[]{updateCount}, new MockParameterMap(parameters)));
+            updateCountForStatementCompiled.put(patternMatcherFactory.create(sql), list);
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
     }    
     
     /**
@@ -794,9 +1318,17 @@ public abstract class AbstractResultSetHandler
     
     public void prepareUpdateCounts(String sql, Integer[] updateCounts, MockParameterMap parameters)
     {
-        List<ParameterWrapper<Integer[]>> list = getListFromMapForSQLStatement(sql, updateCountForStatement);
-        list.add(new ParameterWrapper<Integer[]>(updateCounts.clone(), new MockParameterMap(parameters)));
-        updateCountForStatementCompiled.put(patternMatcherFactory.create(sql), list);
+        writeLock.lock();
+        try
+        {
+            List<ParameterWrapper<Integer[]>> list = getListFromMapForSQLStatement(sql, updateCountForStatement);
+            list.add(new ParameterWrapper<Integer[]>(updateCounts.clone(), new MockParameterMap(parameters)));
+            updateCountForStatementCompiled.put(patternMatcherFactory.create(sql), list);
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
     }
     
     /**
@@ -832,9 +1364,17 @@ public abstract class AbstractResultSetHandler
 
     protected void prepareGeneratedKeys(String sql, MockResultSet generatedKeysResult, MockParameterMap parameters)
     {
-        List<ParameterWrapper<MockResultSet>> list = getListFromMapForSQLStatement(sql, generatedKeysForStatement);
-        list.add(new ParameterWrapper<MockResultSet>(generatedKeysResult, new MockParameterMap(parameters)));
-        generatedKeysForStatementCompiled.put(patternMatcherFactory.create(sql), list);
+        writeLock.lock();
+        try
+        {
+            List<ParameterWrapper<MockResultSet>> list = getListFromMapForSQLStatement(sql, generatedKeysForStatement);
+            list.add(new ParameterWrapper<MockResultSet>(generatedKeysResult, new MockParameterMap(parameters)));
+            generatedKeysForStatementCompiled.put(patternMatcherFactory.create(sql), list);
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
     }    
     
     /**
@@ -859,8 +1399,16 @@ public abstract class AbstractResultSetHandler
      */
     public void prepareReturnsResultSet(String sql, boolean returnsResultSet)
     {
-        returnsResultSetMap.put(sql, returnsResultSet);
-        returnsResultSetMapCompiled.put(patternMatcherFactory.create(sql), returnsResultSet);
+        writeLock.lock();
+        try
+        {
+            returnsResultSetMap.put(sql, returnsResultSet);
+            returnsResultSetMapCompiled.put(patternMatcherFactory.create(sql), returnsResultSet);
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
     }
     
     /**
@@ -901,9 +1449,17 @@ public abstract class AbstractResultSetHandler
     
     protected void prepareThrowsSQLException(String sql, SQLException exc, MockParameterMap parameters)
     {
-        List<ParameterWrapper<SQLException>> list = getListFromMapForSQLStatement(sql, throwsSQLException);
-        list.add(new ParameterWrapper<SQLException>(exc, new MockParameterMap(parameters)));
-        throwsSQLExceptionCompiled.put(patternMatcherFactory.create(sql), list);
+        writeLock.lock();
+        try
+        {
+            List<ParameterWrapper<SQLException>> list = getListFromMapForSQLStatement(sql, throwsSQLException);
+            list.add(new ParameterWrapper<SQLException>(exc, new MockParameterMap(parameters)));
+            throwsSQLExceptionCompiled.put(patternMatcherFactory.create(sql), list);
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
     }    
     /**
      * Returns if specified SQL strings should be handled case sensitive.
@@ -943,12 +1499,20 @@ public abstract class AbstractResultSetHandler
     }
 
     /**
-     * Given a SQL string, remove the associated entry from the resultSetsForStatement TreeMap
+     * Given a SQL string, remove the associated entry from the resultSetsForStatement Map
      * @param sql The SQL string associated with the resultset
      */
     public void removeAllResultSet(String sql) {
-    	  resultSetsForStatement.remove(sql);
-        resultSetsForStatementCompiled.remove(patternMatcherFactory.create(sql));
+        writeLock.lock();
+        try
+        {
+            resultSetsForStatement.remove(sql);
+            resultSetsForStatementCompiled.remove(patternMatcherFactory.create(sql));
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
     }
 
     /**
@@ -956,8 +1520,16 @@ public abstract class AbstractResultSetHandler
      * @param sql The SQL string which identifies the conditions under which to throw a SQLException
      */
     public void removeAllThrowsSqlException(String sql) {
-    	  throwsSQLException.remove(sql);
-        throwsSQLExceptionCompiled.remove(patternMatcherFactory.create(sql));
+        writeLock.lock();
+        try
+        {
+            throwsSQLException.remove(sql);
+            throwsSQLExceptionCompiled.remove(patternMatcherFactory.create(sql));
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
     }
 
 
@@ -966,8 +1538,16 @@ public abstract class AbstractResultSetHandler
      * @param sql The SQL string which identifies the conditions under which to return the specified update count
      */
     public void removeAllUpdateCount(String sql) {
-    	  updateCountForStatement.remove(sql);
-        updateCountForStatementCompiled.remove(patternMatcherFactory.create(sql));
+        writeLock.lock();
+        try
+        {
+            updateCountForStatement.remove(sql);
+            updateCountForStatementCompiled.remove(patternMatcherFactory.create(sql));
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
     }
 
 
@@ -976,12 +1556,20 @@ public abstract class AbstractResultSetHandler
      * @param sql The SQL string which identifies the conditions under which the generated keys result would be returned.
      */
     public void removeAllGeneratedKeys(String sql) {
-        generatedKeysForStatement.remove(sql);
-        generatedKeysForStatementCompiled.remove(patternMatcherFactory.create(sql));
+        writeLock.lock();
+        try
+        {
+            generatedKeysForStatement.remove(sql);
+            generatedKeysForStatementCompiled.remove(patternMatcherFactory.create(sql));
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
     }
 
     /**
-     * Given a SQL string, remove the associated entry from the resultSetsForStatement TreeMap
+     * Given a SQL string, remove the associated entry from the resultSetsForStatement Map
      * @param sql The SQL string associated with the resultset
      */
     public void removeResultSet(String sql) {
@@ -989,8 +1577,16 @@ public abstract class AbstractResultSetHandler
     }
 
     protected void removeResultSet(String sql, MockParameterMap parameters, boolean exactMatchParameter) {
-        removeMatchingParameterWrapper(sql, parameters, resultSetsForStatement, exactMatchParameter);
-        removeMatchingParameterWrapper(patternMatcherFactory.create(sql), parameters, resultSetsForStatementCompiled, exactMatchParameter);
+        writeLock.lock();
+        try
+        {
+            removeMatchingParameterWrapper(sql, parameters, resultSetsForStatement, exactMatchParameter);
+            removeMatchingParameterWrapper(patternMatcherFactory.create(sql), parameters, resultSetsForStatementCompiled, exactMatchParameter);
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
     }
 
     /**
@@ -1002,7 +1598,15 @@ public abstract class AbstractResultSetHandler
     }
     
     protected void removeThrowsSqlException(String sql, MockParameterMap parameters, boolean exactMatchParameter) {
-        removeMatchingParameterWrapper(sql, parameters, throwsSQLException, exactMatchParameter);
+        writeLock.lock();
+        try
+        {
+            removeMatchingParameterWrapper(sql, parameters, throwsSQLException, exactMatchParameter);
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
     }
 
     /**
@@ -1014,7 +1618,15 @@ public abstract class AbstractResultSetHandler
     }
     
     protected void removeUpdateCount(String sql, MockParameterMap parameters, boolean exactMatchParameter) {
-        removeMatchingParameterWrapper(sql, parameters, updateCountForStatement, exactMatchParameter);
+        writeLock.lock();
+        try
+        {
+            removeMatchingParameterWrapper(sql, parameters, updateCountForStatement, exactMatchParameter);
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
     }
 
     /**
@@ -1027,14 +1639,25 @@ public abstract class AbstractResultSetHandler
     
 
     protected void removeGeneratedKeys(String sql, MockParameterMap parameters, boolean exactMatchParameter) {
-        removeMatchingParameterWrapper(sql, parameters, generatedKeysForStatement, exactMatchParameter);
+        writeLock.lock();
+        try
+        {
+            removeMatchingParameterWrapper(sql, parameters, generatedKeysForStatement, exactMatchParameter);
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
     }
 
     protected <T> List<T> getMatchingObjects(Map<PatternMatcher, ? extends T> dataMap, String query)
     {
         if(null == query) query = "";
+        if(dataMap instanceof PatternMatcherMap)
+        {
+            return new ArrayList<T>(((PatternMatcherMap<? extends T>)dataMap).getMatchingObjects(query));
+        }
         List<T> resultList = new ArrayList<T>();
-
         for(Map.Entry<PatternMatcher, ? extends T> entry : dataMap.entrySet()){
             PatternMatcher matcher = entry.getKey();
             if (matcher.matches(query)) {
@@ -1045,11 +1668,32 @@ public abstract class AbstractResultSetHandler
         return resultList;
     }
     
+    protected <T> T getFirstMatchingObject(Map<PatternMatcher, ? extends T> dataMap, String query)
+    {
+        if(null == query) query = "";
+        if(dataMap instanceof PatternMatcherMap)
+        {
+            return ((PatternMatcherMap<? extends T>)dataMap).getFirstMatchingObject(query);
+        }
+        List<T> list = getMatchingObjects(dataMap, query);
+        return list.isEmpty() ? null : list.get(0);
+    }
+    
     protected <T> ParameterWrapper<T> getMatchingParameterWrapper(String sql, MockParameterMap parameters, Map<PatternMatcher, List<ParameterWrapper<T>>> statementMap, boolean exactMatchParameter)
     {
-        List<List<ParameterWrapper<T>>> list = getMatchingObjects(statementMap, sql);
-        for(List<ParameterWrapper<T>> wrapperList : list)
+        if(null == sql) sql = "";
+        Iterator<List<ParameterWrapper<T>>> iterator;
+        if(statementMap instanceof PatternMatcherMap)
+        {
+            iterator = ((PatternMatcherMap<List<ParameterWrapper<T>>>)statementMap).iterateMatchingObjects(sql);
+        }
+        else
+        {
+            iterator = getMatchingObjects(statementMap, sql).iterator();
+        }
+        while(iterator.hasNext())
         {
+            List<ParameterWrapper<T>> wrapperList = iterator.next();
             for(ParameterWrapper<T> wrapper : wrapperList)
             {
                 if(wrapper.getParameters().doParameterMatch(parameters, exactMatchParameter))
@@ -1061,6 +1705,26 @@ public abstract class AbstractResultSetHandler
         return null;
     }
     
+    private <T> List<ParameterWrapper<T>> getMatchingParameterWrappers(String sql, Map<PatternMatcher, List<ParameterWrapper<T>>> statementMap)
+    {
+        if(null == sql) sql = "";
+        Iterator<List<ParameterWrapper<T>>> iterator;
+        if(statementMap instanceof PatternMatcherMap)
+        {
+            iterator = ((PatternMatcherMap<List<ParameterWrapper<T>>>)statementMap).iterateMatchingObjects(sql);
+        }
+        else
+        {
+            iterator = getMatchingObjects(statementMap, sql).iterator();
+        }
+        List<ParameterWrapper<T>> wrappers = new ArrayList<ParameterWrapper<T>>();
+        while(iterator.hasNext())
+        {
+            wrappers.addAll(iterator.next());
+        }
+        return wrappers;
+    }
+    
     protected <S, T> ParameterWrapper<T> removeMatchingParameterWrapper(S sql, MockParameterMap parameters, Map<S, List<ParameterWrapper<T>>> map, boolean exactMatchParameter)
     {
         List<ParameterWrapper<T>> list = map.get(sql);
@@ -1080,18 +1744,79 @@ public abstract class AbstractResultSetHandler
         List<T> list = map.get(sql);
         if(null == list)
         {
-            list = new ArrayList<T>();
+            list = threadSafe ? new CopyOnWriteArrayList<T>() : new ArrayList<T>();
             map.put(sql, list);
         }
         return list;
     }
 
 
+    /**
+     * Creates a <code>Map</code> for compiled SQL patterns that is
+     * backed by the specified <code>Map</code> and indexed with
+     * the current {@link PatternMatcherIndex.Factory}. The
+     * <code>Map</code> is copied on write, if the handler is
+     * thread-safe.
+     * @param map the backing <code>Map</code>
+     * @return the indexed <code>Map</code>
+     */
+    protected <T> Map<PatternMatcher, T> createCompiledMap(Map<PatternMatcher, T> map)
+    {
+        PatternMatcherMap<T> compiled = new PatternMatcherMap<T>(map, patternMatcherIndexFactory, threadSafe);
+        compiled.setMatchPriority(matchPriority);
+        compiledMaps.add(compiled);
+        return compiled;
+    }
+
     protected <T> void recompile(Map<String, T> source, Map<PatternMatcher, T> compiled) {
-        compiled.clear();
+        Map<PatternMatcher, T> mappings = new LinkedHashMap<PatternMatcher, T>();
         for (Map.Entry<String, T> entry : source.entrySet()) {
             PatternMatcher patternMatcher = getPatternMatcherFactory().create(entry.getKey());
-            compiled.put(patternMatcher, entry.getValue());
+            mappings.put(patternMatcher, entry.getValue());
+        }
+        if (compiled instanceof PatternMatcherMap) {
+            ((PatternMatcherMap<T>) compiled).replaceAll(mappings, patternMatcherIndexFactory, matchPriority);
+            return;
+        }
+        compiled.clear();
+        compiled.putAll(mappings);
+    }
+
+    /**
+     * <code>Lock</code> used by handlers that are not thread-safe.
+     */
+    private static class NoLock implements Lock
+    {
+        private static final NoLock INSTANCE = new NoLock();
+
+        public void lock()
+        {
+
+        }
+
+        public void lockInterruptibly()
+        {
+
+        }
+
+        public boolean tryLock()
+        {
+            return true;
+        }
+
+        public boolean tryLock(long time, TimeUnit unit)
+        {
+            return true;
+        }
+
+        public void unlock()
+        {
+
+        }
+
+        public Condition newCondition()
+        {
+            throw new UnsupportedOperationException();
         }
     }
 }
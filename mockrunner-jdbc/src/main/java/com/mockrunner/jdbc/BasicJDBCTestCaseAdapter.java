@@ -625,6 +625,62 @@ public abstract class BasicJDBCTestCaseAdapter
         jdbcTestModule.verifyAllResultSetsClosed();
     }
 
+    /**
+     * Delegates to {@link com.mockrunner.jdbc.JDBCTestModule#verifyResultSetPeakRowsResident(MockResultSet, int)}
+     */
+    protected void verifyResultSetPeakRowsResident(MockResultSet resultSet, int maxRowsResident)
+    {
+        jdbcTestModule.verifyResultSetPeakRowsResident(resultSet, maxRowsResident);
+    }
+
+    /**
+     * Delegates to {@link com.mockrunner.jdbc.JDBCTestModule#verifyResultSetPeakRowsResident(String, int)}
+     */
+    protected void verifyResultSetPeakRowsResident(String id, int maxRowsResident)
+    {
+        jdbcTestModule.verifyResultSetPeakRowsResident(id, maxRowsResident);
+    }
+
+    /**
+     * Delegates to {@link com.mockrunner.jdbc.JDBCTestModule#verifyResultSetNumberRoundTrips(MockResultSet, int)}
+     */
+    protected void verifyResultSetNumberRoundTrips(MockResultSet resultSet, int number)
+    {
+        jdbcTestModule.verifyResultSetNumberRoundTrips(resultSet, number);
+    }
+
+    /**
+     * Delegates to {@link com.mockrunner.jdbc.JDBCTestModule#verifyResultSetNumberRoundTrips(String, int)}
+     */
+    protected void verifyResultSetNumberRoundTrips(String id, int number)
+    {
+        jdbcTestModule.verifyResultSetNumberRoundTrips(id, number);
+    }
+
+    /**
+     * Delegates to {@link com.mockrunner.jdbc.JDBCTestModule#verifyResultSetNumberPagesFetched(MockResultSet, int)}
+     */
+    protected void verifyResultSetNumberPagesFetched(MockResultSet resultSet, int number)
+    {
+        jdbcTestModule.verifyResultSetNumberPagesFetched(resultSet, number);
+    }
+
+    /**
+     * Delegates to {@link com.mockrunner.jdbc.JDBCTestModule#verifyResultSetNumberPagesFetched(String, int)}
+     */
+    protected void verifyResultSetNumberPagesFetched(String id, int number)
+    {
+        jdbcTestModule.verifyResultSetNumberPagesFetched(id, number);
+    }
+
+    /**
+     * Delegates to {@link com.mockrunner.jdbc.JDBCTestModule#verifyAllResultSetsPeakRowsResident(int)}
+     */
+    protected void verifyAllResultSetsPeakRowsResident(int maxRowsResident)
+    {
+        jdbcTestModule.verifyAllResultSetsPeakRowsResident(maxRowsResident);
+    }
+
     /**
      * Delegates to {@link com.mockrunner.jdbc.JDBCTestModule#verifyNumberCommits(int)}
      */
@@ -0,0 +1,98 @@
+package com.mockrunner.jdbc;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import com.mockrunner.mock.jdbc.MockParameterMap;
+
+/**
+ * The exceptions and update counts that were prepared for one SQL
+ * string of a batch. The SQL string is matched once when the object
+ * is created by {@link AbstractResultSetHandler#getBatchMatch}, so
+ * the entries of a batch are only matched against the prepared
+ * parameters. Later changes of the prepared data are not visible.
+ */
+public class BatchMatch
+{
+    private static final MockParameterMap NO_PARAMETERS = new MockParameterMap();
+
+    private final List<ParameterWrapper<SQLException>> exceptions;
+    private final List<ParameterWrapper<Integer[]>> updateCounts;
+    private final boolean exactMatchParameter;
+    private SQLException statementException;
+    private Integer[] statementUpdateCounts;
+    private boolean statementMatched;
+
+    BatchMatch(List<ParameterWrapper<SQLException>> exceptions, List<ParameterWrapper<Integer[]>> updateCounts, boolean exactMatchParameter)
+    {
+        this.exceptions = exceptions;
+        this.updateCounts = updateCounts;
+        this.exactMatchParameter = exactMatchParameter;
+    }
+
+    /**
+     * Returns the <code>SQLException</code> that was prepared for the
+     * SQL string and the specified parameters.
+     * @param parameters the parameters
+     * @return the <code>SQLException</code> or <code>null</code>
+     */
+    public SQLException getSQLException(MockParameterMap parameters)
+    {
+        return findMatching(exceptions, parameters, exactMatchParameter);
+    }
+
+    /**
+     * Returns the update counts that were prepared for the SQL
+     * string and the specified parameters.
+     * @param parameters the parameters
+     * @return the update counts or <code>null</code>
+     */
+    public Integer[] getUpdateCounts(MockParameterMap parameters)
+    {
+        return findMatching(updateCounts, parameters, exactMatchParameter);
+    }
+
+    /**
+     * Returns the <code>SQLException</code> that was prepared for the
+     * SQL string without parameters, like
+     * {@link AbstractResultSetHandler#getSQLException(String)}.
+     * @return the <code>SQLException</code> or <code>null</code>
+     */
+    public SQLException getSQLException()
+    {
+        matchStatement();
+        return statementException;
+    }
+
+    /**
+     * Returns the update counts that were prepared for the SQL
+     * string without parameters, like
+     * {@link AbstractResultSetHandler#getUpdateCounts(String)}.
+     * @return the update counts or <code>null</code>
+     */
+    public Integer[] getUpdateCounts()
+    {
+        matchStatement();
+        return statementUpdateCounts;
+    }
+
+    private void matchStatement()
+    {
+        if(statementMatched) return;
+        statementException = findMatching(exceptions, NO_PARAMETERS, true);
+        statementUpdateCounts = findMatching(updateCounts, NO_PARAMETERS, true);
+        statementMatched = true;
+    }
+
+    private static <T> T findMatching(List<ParameterWrapper<T>> wrappers, MockParameterMap parameters, boolean exactMatchParameter)
+    {
+        for(ParameterWrapper<T> wrapper : wrappers)
+        {
+            if(wrapper.getParameters().doParameterMatch(parameters, exactMatchParameter))
+            {
+                return wrapper.getWrappedObject();
+            }
+        }
+        return null;
+    }
+}
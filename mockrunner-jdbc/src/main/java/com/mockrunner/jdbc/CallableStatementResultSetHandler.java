@@ -5,6 +5,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import com.mockrunner.mock.jdbc.MockCallableStatement;
 
@@ -15,11 +17,33 @@ public class CallableStatementResultSetHandler extends AbstractOutParameterResul
 {
     private final List<MockCallableStatement> callableStatements;
     private final Map<String, List<MockCallableStatement>> callableStatementMap;
+    private final StripedAppendLog<MockCallableStatement> callableStatementsLog;
 
     public CallableStatementResultSetHandler()
     {
-        callableStatements = new ArrayList<MockCallableStatement>();
-        callableStatementMap = new TreeMap<String, List<MockCallableStatement>>();
+        this(false);
+    }
+
+    /**
+     * Creates a new handler.
+     * @param threadSafe <code>true</code> if the handler can be used
+     *        by more than one thread at the same time
+     */
+    public CallableStatementResultSetHandler(boolean threadSafe)
+    {
+        super(threadSafe);
+        if(threadSafe)
+        {
+            callableStatements = null;
+            callableStatementsLog = new StripedAppendLog<MockCallableStatement>();
+            callableStatementMap = new ConcurrentSkipListMap<String, List<MockCallableStatement>>();
+        }
+        else
+        {
+            callableStatements = new ArrayList<MockCallableStatement>();
+            callableStatementsLog = null;
+            callableStatementMap = new TreeMap<String, List<MockCallableStatement>>();
+        }
     }
 
     /**
@@ -30,6 +54,19 @@ public class CallableStatementResultSetHandler extends AbstractOutParameterResul
     public void addCallableStatement(MockCallableStatement statement)
     { 
         statement.setCallableStatementResultSetHandler(this);
+        if(isThreadSafe())
+        {
+            List<MockCallableStatement> list = callableStatementMap.get(statement.getSQL());
+            if(null == list)
+            {
+                list = Collections.synchronizedList(new ArrayList<MockCallableStatement>());
+                List<MockCallableStatement> existingList = ((ConcurrentMap<String, List<MockCallableStatement>>)callableStatementMap).putIfAbsent(statement.getSQL(), list);
+                if(null != existingList) list = existingList;
+            }
+            list.add(statement);
+            callableStatementsLog.add(statement);
+            return;
+        }
         List<MockCallableStatement> list = callableStatementMap.get(statement.getSQL());
         if(null == list)
         {
@@ -46,6 +83,10 @@ public class CallableStatementResultSetHandler extends AbstractOutParameterResul
      */
     public List<MockCallableStatement> getCallableStatements()
     {
+        if(isThreadSafe())
+        {
+            return Collections.unmodifiableList(callableStatementsLog.toList());
+        }
         return Collections.unmodifiableList(callableStatements);
     }
 
@@ -57,6 +98,19 @@ public class CallableStatementResultSetHandler extends AbstractOutParameterResul
      */
     public Map<String, List<MockCallableStatement>> getCallableStatementMap()
     {
+        if(isThreadSafe())
+        {
+            Map<String, List<MockCallableStatement>> copy = new TreeMap<String, List<MockCallableStatement>>();
+            for(Map.Entry<String, List<MockCallableStatement>> entry : callableStatementMap.entrySet())
+            {
+                List<MockCallableStatement> list = entry.getValue();
+                synchronized(list)
+                {
+                    copy.put(entry.getKey(), new ArrayList<MockCallableStatement>(list));
+                }
+            }
+            return Collections.unmodifiableMap(copy);
+        }
         return Collections.unmodifiableMap(callableStatementMap);
     }
 
@@ -65,7 +119,14 @@ public class CallableStatementResultSetHandler extends AbstractOutParameterResul
      */
     public void clearCallableStatements()
     {
-        callableStatements.clear();
+        if(isThreadSafe())
+        {
+            callableStatementsLog.clear();
+        }
+        else
+        {
+            callableStatements.clear();
+        }
         callableStatementMap.clear();
     }   
 }
@@ -0,0 +1,500 @@
+package com.mockrunner.jdbc;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.mockrunner.base.NestedApplicationException;
+import com.mockrunner.mock.jdbc.MockParameterMap;
+import com.mockrunner.mock.jdbc.ParameterReference;
+
+/**
+ * Stores parameter sets in a compact, columnar form. Each parameter
+ * is stored in a column of type tags and a column of <code>long</code>
+ * values, i.e. numbers and booleans are not kept as objects and no
+ * map is kept per parameter set. Strings are stored in a dictionary,
+ * so each distinct string is kept once. Other values, like
+ * <code>byte[]</code> or streams, are kept as they are.
+ * <br>
+ * The parameter sets are stored in blocks of {@link #BLOCK_SIZE}
+ * parameter sets. If a maximum number of parameter sets in memory is
+ * specified, older blocks are written to a temporary file and read
+ * again when they are accessed. Only the columns of numbers, booleans
+ * and dictionary strings are written to the file. Absent parameters
+ * and <code>null</code> values only take the byte of the type tag.
+ * <br>
+ * Call {@link #clear} to delete the temporary file when the log is
+ * not needed anymore. If a log with a temporary file is garbage
+ * collected, the file is deleted when the next temporary file is
+ * created, at the latest when the JVM exits.
+ * <br>
+ * {@link #get} and {@link #asList} create a new
+ * <code>MockParameterMap</code> for each access. This class is
+ * thread-safe.
+ */
+public class CompactParameterLog
+{
+    /**
+     * The number of parameter sets in a block.
+     */
+    public static final int BLOCK_SIZE = 4096;
+
+    /**
+     * The maximum number of strings in the dictionary. Further
+     * distinct strings are stored like other objects.
+     */
+    public static final int MAX_DICTIONARY_SIZE = 65536;
+
+    private static final byte ABSENT = 0;
+    private static final byte NULL = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte FLOAT = 5;
+    private static final byte SHORT = 6;
+    private static final byte BYTE = 7;
+    private static final byte BOOLEAN = 8;
+    private static final byte STRING = 9;
+    private static final byte OBJECT = 10;
+
+    private static final ReferenceQueue<CompactParameterLog> unreachableLogs = new ReferenceQueue<CompactParameterLog>();
+    //keeps the references reachable until the files are deleted
+    private static final Set<SpillFile> spillFiles = Collections.synchronizedSet(new HashSet<SpillFile>());
+
+    private final int maxBlocksInMemory;
+    private final Map<String, Integer> dictionaryIndex = new HashMap<String, Integer>();
+    private final List<String> dictionary = new ArrayList<String>();
+    private final List<Block> blocks = new ArrayList<Block>();
+    private int size;
+    private int numberSpilledBlocks;
+    private SpillFile spillFile;
+    private Block loadedBlock;
+
+    /**
+     * Creates a log that keeps all parameter sets in memory.
+     */
+    public CompactParameterLog()
+    {
+        this(-1);
+    }
+
+    /**
+     * Creates a log that keeps about <code>maxParameterSetsInMemory</code>
+     * parameter sets in memory and writes older ones to a temporary file.
+     * At least one block is kept in memory.
+     * @param maxParameterSetsInMemory the maximum number of parameter sets
+     *        in memory, -1 to keep all parameter sets in memory
+     */
+    public CompactParameterLog(int maxParameterSetsInMemory)
+    {
+        this.maxBlocksInMemory = (maxParameterSetsInMemory < 0) ? -1 : Math.max(1, maxParameterSetsInMemory / BLOCK_SIZE);
+    }
+
+    /**
+     * Adds a parameter set.
+     * @param parameters the parameter set
+     */
+    public synchronized void add(Map<ParameterReference, Object> parameters)
+    {
+        int offset = size % BLOCK_SIZE;
+        if(0 == offset)
+        {
+            blocks.add(new Block());
+            spillIfNecessary();
+        }
+        Block block = blocks.get(blocks.size() - 1);
+        for(Map.Entry<ParameterReference, Object> entry : parameters.entrySet())
+        {
+            Column column = block.columns.get(entry.getKey());
+            if(null == column)
+            {
+                column = new Column();
+                block.columns.put(entry.getKey(), column);
+            }
+            column.ensureCapacity(offset + 1);
+            encode(entry.getValue(), block, column, offset);
+        }
+        block.count++;
+        size++;
+    }
+
+    /**
+     * Returns the parameter set with the specified index.
+     * @param index the index
+     * @return the parameter set
+     * @throws IndexOutOfBoundsException if there is no parameter
+     *         set with this index
+     */
+    public synchronized MockParameterMap get(int index)
+    {
+        if(index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        Block block = blocks.get(index / BLOCK_SIZE);
+        if(block.isSpilled())
+        {
+            load(block);
+        }
+        int offset = index % BLOCK_SIZE;
+        MockParameterMap parameters = new MockParameterMap();
+        for(Map.Entry<ParameterReference, Column> entry : block.columns.entrySet())
+        {
+            Column column = entry.getValue();
+            if(offset < column.types.length && ABSENT != column.types[offset])
+            {
+                parameters.put(entry.getKey(), decode(block, column, offset));
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Returns the number of parameter sets.
+     * @return the number of parameter sets
+     */
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the number of distinct strings in the dictionary.
+     * @return the size of the dictionary
+     */
+    public synchronized int getDictionarySize()
+    {
+        return dictionary.size();
+    }
+
+    /**
+     * Returns the number of blocks that were written to the temporary file.
+     * @return the number of spilled blocks
+     */
+    public synchronized int getNumberSpilledBlocks()
+    {
+        return numberSpilledBlocks;
+    }
+
+    /**
+     * Returns an unmodifiable <code>List</code> view of the parameter sets.
+     * @return the <code>List</code> of parameter sets
+     */
+    public List<MockParameterMap> asList()
+    {
+        return new AbstractList<MockParameterMap>()
+        {
+            @Override
+            public MockParameterMap get(int index)
+            {
+                return CompactParameterLog.this.get(index);
+            }
+
+            @Override
+            public int size()
+            {
+                return CompactParameterLog.this.size();
+            }
+        };
+    }
+
+    /**
+     * Removes all parameter sets and deletes the temporary file.
+     */
+    public synchronized void clear()
+    {
+        blocks.clear();
+        dictionary.clear();
+        dictionaryIndex.clear();
+        size = 0;
+        numberSpilledBlocks = 0;
+        loadedBlock = null;
+        closeSpillFile();
+    }
+
+    private void encode(Object value, Block block, Column column, int offset)
+    {
+        if(null == value)
+        {
+            column.types[offset] = NULL;
+        }
+        else if(value instanceof Integer)
+        {
+            column.set(offset, INTEGER, ((Integer)value).intValue());
+        }
+        else if(value instanceof Long)
+        {
+            column.set(offset, LONG, ((Long)value).longValue());
+        }
+        else if(value instanceof Double)
+        {
+            column.set(offset, DOUBLE, Double.doubleToRawLongBits(((Double)value).doubleValue()));
+        }
+        else if(value instanceof Float)
+        {
+            column.set(offset, FLOAT, Float.floatToRawIntBits(((Float)value).floatValue()));
+        }
+        else if(value instanceof Short)
+        {
+            column.set(offset, SHORT, ((Short)value).shortValue());
+        }
+        else if(value instanceof Byte)
+        {
+            column.set(offset, BYTE, ((Byte)value).byteValue());
+        }
+        else if(value instanceof Boolean)
+        {
+            column.set(offset, BOOLEAN, ((Boolean)value).booleanValue() ? 1 : 0);
+        }
+        else if(value instanceof String && encodeString((String)value, column, offset))
+        {
+            return;
+        }
+        else
+        {
+            column.set(offset, OBJECT, block.objects.size());
+            block.objects.add(value);
+        }
+    }
+
+    private boolean encodeString(String value, Column column, int offset)
+    {
+        Integer index = dictionaryIndex.get(value);
+        if(null == index)
+        {
+            if(dictionary.size() >= MAX_DICTIONARY_SIZE) return false;
+            index = dictionary.size();
+            dictionary.add(value);
+            dictionaryIndex.put(value, index);
+        }
+        column.set(offset, STRING, index.intValue());
+        return true;
+    }
+
+    private Object decode(Block block, Column column, int offset)
+    {
+        long value = column.values[offset];
+        switch(column.types[offset])
+        {
+            case INTEGER: return Integer.valueOf((int)value);
+            case LONG: return Long.valueOf(value);
+            case DOUBLE: return Double.valueOf(Double.longBitsToDouble(value));
+            case FLOAT: return Float.valueOf(Float.intBitsToFloat((int)value));
+            case SHORT: return Short.valueOf((short)value);
+            case BYTE: return Byte.valueOf((byte)value);
+            case BOOLEAN: return Boolean.valueOf(0 != value);
+            case STRING: return dictionary.get((int)value);
+            case OBJECT: return block.objects.get((int)value);
+            default: return null;
+        }
+    }
+
+    private void spillIfNecessary()
+    {
+        if(maxBlocksInMemory < 0) return;
+        int blocksInMemory = blocks.size() - numberSpilledBlocks;
+        if(blocksInMemory <= maxBlocksInMemory) return;
+        Block block = blocks.get(numberSpilledBlocks);
+        try
+        {
+            if(null == spillFile)
+            {
+                deleteUnreachableSpillFiles();
+                spillFile = new SpillFile(this);
+            }
+            int length = 0;
+            for(Column column : block.columns.values())
+            {
+                column.ensureCapacity(block.count);
+                length += block.count;
+                for(int ii = 0; ii < block.count; ii++)
+                {
+                    if(hasValue(column.types[ii])) length += 8;
+                }
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            for(Column column : block.columns.values())
+            {
+                buffer.put(column.types, 0, block.count);
+                for(int ii = 0; ii < block.count; ii++)
+                {
+                    if(hasValue(column.types[ii])) buffer.putLong(column.values[ii]);
+                }
+            }
+            RandomAccessFile access = spillFile.access;
+            block.filePosition = access.length();
+            block.fileLength = length;
+            access.seek(block.filePosition);
+            access.write(buffer.array(), 0, length);
+            for(Column column : block.columns.values())
+            {
+                column.types = null;
+                column.values = null;
+            }
+            numberSpilledBlocks++;
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+    }
+
+    private void load(Block block)
+    {
+        if(null != loadedBlock && loadedBlock != block)
+        {
+            for(Column column : loadedBlock.columns.values())
+            {
+                column.types = null;
+                column.values = null;
+            }
+        }
+        loadedBlock = block;
+        if(!block.isSpilled()) return;
+        try
+        {
+            byte[] data = new byte[block.fileLength];
+            RandomAccessFile access = spillFile.access;
+            access.seek(block.filePosition);
+            access.readFully(data);
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            for(Column column : block.columns.values())
+            {
+                column.types = new byte[block.count];
+                column.values = new long[block.count];
+                buffer.get(column.types);
+                for(int ii = 0; ii < block.count; ii++)
+                {
+                    if(hasValue(column.types[ii])) column.values[ii] = buffer.getLong();
+                }
+            }
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+    }
+
+    private static boolean hasValue(byte type)
+    {
+        return ABSENT != type && NULL != type;
+    }
+
+    private void closeSpillFile()
+    {
+        if(null == spillFile) return;
+        try
+        {
+            spillFile.delete();
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+        finally
+        {
+            spillFile = null;
+        }
+    }
+
+    private static void deleteUnreachableSpillFiles()
+    {
+        Reference<? extends CompactParameterLog> reference;
+        while(null != (reference = unreachableLogs.poll()))
+        {
+            try
+            {
+                ((SpillFile)reference).delete();
+            }
+            catch(IOException exc)
+            {
+                //ignore
+            }
+        }
+    }
+
+    /**
+     * The temporary file of a log. It is enqueued when the
+     * log is garbage collected, so the file can be deleted.
+     */
+    private static class SpillFile extends PhantomReference<CompactParameterLog>
+    {
+        private final File file;
+        private final RandomAccessFile access;
+
+        private SpillFile(CompactParameterLog log) throws IOException
+        {
+            super(log, unreachableLogs);
+            file = File.createTempFile("mockrunner-parameters", ".tmp");
+            file.deleteOnExit();
+            access = new RandomAccessFile(file, "rw");
+            spillFiles.add(this);
+        }
+
+        private void delete() throws IOException
+        {
+            spillFiles.remove(this);
+            try
+            {
+                access.close();
+            }
+            finally
+            {
+                file.delete();
+            }
+        }
+    }
+
+    private static class Block
+    {
+        private final Map<ParameterReference, Column> columns = new LinkedHashMap<ParameterReference, Column>();
+        private final List<Object> objects = new ArrayList<Object>();
+        private int count;
+        private long filePosition = -1;
+        private int fileLength;
+
+        private boolean isSpilled()
+        {
+            if(-1 == filePosition) return false;
+            for(Column column : columns.values())
+            {
+                return null == column.types;
+            }
+            return false;
+        }
+    }
+
+    private static class Column
+    {
+        private byte[] types = new byte[16];
+        private long[] values = new long[16];
+
+        private void ensureCapacity(int capacity)
+        {
+            if(capacity <= types.length) return;
+            int newCapacity = Math.min(BLOCK_SIZE, Math.max(capacity, types.length * 2));
+            types = Arrays.copyOf(types, newCapacity);
+            values = Arrays.copyOf(values, newCapacity);
+        }
+
+        private void set(int offset, byte type, long value)
+        {
+            types[offset] = type;
+            values[offset] = value;
+        }
+    }
+}
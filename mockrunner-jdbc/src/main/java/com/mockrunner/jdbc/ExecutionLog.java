@@ -0,0 +1,192 @@
+package com.mockrunner.jdbc;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Records the executions of a result set handler according
+ * to the {@link RecordingPolicy} of the handler.
+ */
+abstract class ExecutionLog<E>
+{
+    /**
+     * Creates a log for the specified policy.
+     * @param policy the recording policy
+     * @param threadSafe <code>true</code> if the log is written
+     *        by more than one thread at the same time
+     * @return the log
+     */
+    public static <E> ExecutionLog<E> create(RecordingPolicy policy, boolean threadSafe)
+    {
+        if(0 == policy.getCapacity()) return new NullLog<E>();
+        if(threadSafe) return new StripedAppendLog<E>(policy.getCapacity());
+        if(policy.isFull()) return new ListLog<E>();
+        return new RingLog<E>(policy.getCapacity());
+    }
+
+    public abstract void add(E entry);
+
+    /**
+     * Adds the specified entry <code>count</code> times.
+     * @param entry the entry
+     * @param count the number of executions
+     */
+    public void add(E entry, int count)
+    {
+        for(int ii = 0; ii < count; ii++)
+        {
+            add(entry);
+        }
+    }
+
+    /**
+     * Returns the recorded entries in the order in which they were added.
+     * @return an unmodifiable <code>List</code>
+     */
+    public abstract List<E> toList();
+
+    public abstract void clear();
+
+    /**
+     * Keeps all entries. Equal entries that were added in a row,
+     * e.g. by a batch, are stored once with the end of their run.
+     * The list returned by {@link #toList} reflects later changes.
+     */
+    private static class ListLog<E> extends ExecutionLog<E>
+    {
+        private final List<E> entries = new ArrayList<E>();
+        private int[] ends = new int[16];
+        private int size;
+
+        public void add(E entry)
+        {
+            add(entry, 1);
+        }
+
+        public void add(E entry, int count)
+        {
+            if(count <= 0) return;
+            size += count;
+            int last = entries.size() - 1;
+            if(last >= 0 && equals(entries.get(last), entry))
+            {
+                ends[last] = size;
+                return;
+            }
+            if(entries.size() == ends.length)
+            {
+                ends = Arrays.copyOf(ends, ends.length * 2);
+            }
+            ends[entries.size()] = size;
+            entries.add(entry);
+        }
+
+        public List<E> toList()
+        {
+            return new RunList();
+        }
+
+        public void clear()
+        {
+            entries.clear();
+            ends = new int[16];
+            size = 0;
+        }
+
+        private static boolean equals(Object first, Object second)
+        {
+            return null == first ? null == second : first.equals(second);
+        }
+
+        private class RunList extends AbstractList<E> implements RandomAccess
+        {
+            public E get(int index)
+            {
+                if(index < 0 || index >= size)
+                {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+                }
+                int run = Arrays.binarySearch(ends, 0, entries.size(), index + 1);
+                if(run < 0) run = -run - 1;
+                return entries.get(run);
+            }
+
+            public int size()
+            {
+                return size;
+            }
+        }
+    }
+
+    /**
+     * Keeps the last entries.
+     */
+    private static class RingLog<E> extends ExecutionLog<E>
+    {
+        private final ArrayDeque<E> entries = new ArrayDeque<E>();
+        private final int capacity;
+
+        public RingLog(int capacity)
+        {
+            this.capacity = capacity;
+        }
+
+        public void add(E entry)
+        {
+            if(entries.size() == capacity)
+            {
+                entries.pollFirst();
+            }
+            entries.addLast(entry);
+        }
+
+        public void add(E entry, int count)
+        {
+            for(int ii = Math.min(count, capacity); ii > 0; ii--)
+            {
+                add(entry);
+            }
+        }
+
+        public List<E> toList()
+        {
+            return Collections.unmodifiableList(new ArrayList<E>(entries));
+        }
+
+        public void clear()
+        {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Does not keep any entries.
+     */
+    private static class NullLog<E> extends ExecutionLog<E>
+    {
+        public void add(E entry)
+        {
+
+        }
+
+        public void add(E entry, int count)
+        {
+
+        }
+
+        public List<E> toList()
+        {
+            return Collections.emptyList();
+        }
+
+        public void clear()
+        {
+
+        }
+    }
+}
@@ -5,6 +5,7 @@ import java.io.FileNotFoundException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import com.mockrunner.mock.jdbc.MockResultSet;
 import com.mockrunner.util.common.FileUtil;
@@ -23,6 +24,9 @@ import com.mockrunner.util.common.StringUtil;
  * (if not found) by calling <code>getResource</code>. Note that the
  * file must exist in the local file system and cannot be loaded from
  * inside a jar archive.
+ * With {@link #setStreaming} you can enable streaming for large files.
+ * With {@link #setUseCache} the parsed content of the file is cached
+ * in the {@link FixtureCache}.
  */
 public class FileResultSetFactory implements ResultSetFactory
 {
@@ -33,6 +37,8 @@ public class FileResultSetFactory implements ResultSetFactory
     private boolean useTemplates = false;
     private String templateMarker = null;
     private Map<String, String> templates = null;
+    private boolean streaming = false;
+    private boolean useCache = false;
 
     public FileResultSetFactory(String fileName)
     {
@@ -149,10 +155,72 @@ public class FileResultSetFactory implements ResultSetFactory
         setTemplateConfiguration("$", defaultTemplates);
     }
 
+    /**
+     * Set this to <code>true</code> to read the file while the
+     * cursor advances instead of reading it completely when the
+     * <code>ResultSet</code> is created. The created
+     * <code>ResultSet</code> is a {@link StreamingFileResultSet},
+     * which is forward-only and read-only and keeps only the current
+     * row in memory. Use this for large files.
+     * Default is <code>false</code>, i.e. the file is read completely.
+     * @param streaming set <code>true</code> to enable streaming
+     */
+    public void setStreaming(boolean streaming)
+    {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Set this to <code>true</code> to cache the parsed content
+     * of the file in the {@link FixtureCache}, so subsequent calls of
+     * {@link #create} with the same file and settings do not parse
+     * the file. The cache is ignored in streaming mode.
+     * Default is <code>false</code>, i.e. the file is parsed for
+     * every <code>ResultSet</code>.
+     * @param useCache set <code>true</code> to enable the cache
+     */
+    public void setUseCache(boolean useCache)
+    {
+        this.useCache = useCache;
+    }
+
     public MockResultSet create(String id)
     {
-        MockResultSet resultSet = new MockResultSet(id);
+        if(streaming)
+        {
+            String marker = useTemplates ? templateMarker : null;
+            Map<String, String> templateMap = useTemplates ? templates : null;
+            return new StreamingFileResultSet(id, getFile(), delimiter, firstLineContainsColumnNames, trim, marker, templateMap);
+        }
         File fileToRead = getFile();
+        if(!useCache)
+        {
+            return parse(id, fileToRead);
+        }
+        FixtureCache cache = FixtureCache.getInstance();
+        String key = FixtureCache.createKey(fileToRead, getCacheSettings());
+        MockResultSet resultSet = cache.get(key, id);
+        if(null == resultSet)
+        {
+            resultSet = parse(id, fileToRead);
+            cache.put(key, resultSet);
+        }
+        return resultSet;
+    }
+
+    private String getCacheSettings()
+    {
+        String settings = "csv|" + delimiter + "|" + firstLineContainsColumnNames + "|" + trim;
+        if(useTemplates)
+        {
+            settings += "|" + templateMarker + "|" + new TreeMap<String, String>(templates);
+        }
+        return settings;
+    }
+
+    private MockResultSet parse(String id, File fileToRead)
+    {
+        MockResultSet resultSet = new MockResultSet(id);
         List<String> lines = FileUtil.getLinesFromFile(fileToRead);
 
         if(lines.isEmpty())
@@ -0,0 +1,72 @@
+package com.mockrunner.jdbc;
+
+import com.mockrunner.util.regexp.PatternMatcher;
+
+/**
+ * {@link PatternMatcher} that compares the {@link SQLFingerprint}
+ * of the prepared SQL string with the fingerprint of the executed
+ * SQL string, i.e. differences in whitespace, comments and literal
+ * values are ignored. The fingerprint of the prepared SQL string is
+ * created once, the fingerprints of executed SQL strings are cached.
+ * <br>
+ * The {@link PatternMatcherIndex.Default} index looks up these
+ * matchers by fingerprint in a hash table, so the lookup cost does
+ * not depend on the number of prepared statements.
+ * Use it with {@link AbstractResultSetHandler#setPatternMatcherFactory}:
+ * <pre>
+ * handler.setPatternMatcherFactory(new FingerprintPatternMatcher.Factory(false));
+ * </pre>
+ * Please note that setting the case sensitivity or the matching mode of
+ * the handler afterwards resets the factory.
+ */
+public class FingerprintPatternMatcher extends PatternMatcher.Base
+{
+    private final String fingerprint;
+    private final boolean caseSensitive;
+
+    public FingerprintPatternMatcher(String pattern, boolean caseSensitive)
+    {
+        super(pattern);
+        this.caseSensitive = caseSensitive;
+        this.fingerprint = SQLFingerprint.of(pattern, caseSensitive);
+    }
+
+    public String type()
+    {
+        return caseSensitive ? "fingerprint" : "fingerprint-ignore-case";
+    }
+
+    public boolean matches(String string)
+    {
+        return fingerprint.equals(SQLFingerprint.of(string, caseSensitive));
+    }
+
+    /**
+     * Returns the fingerprint of the pattern.
+     * @return the fingerprint
+     */
+    public String getFingerprint()
+    {
+        return fingerprint;
+    }
+
+    public boolean isCaseSensitive()
+    {
+        return caseSensitive;
+    }
+
+    public static class Factory implements PatternMatcher.Factory
+    {
+        private final boolean caseSensitive;
+
+        public Factory(boolean caseSensitive)
+        {
+            this.caseSensitive = caseSensitive;
+        }
+
+        public PatternMatcher create(String pattern)
+        {
+            return new FingerprintPatternMatcher(pattern, caseSensitive);
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package com.mockrunner.jdbc;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.mockrunner.base.NestedApplicationException;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+/**
+ * Process wide cache for the parsed content of fixture files
+ * used by {@link FileResultSetFactory} and {@link XMLResultSetFactory}.
+ * Enable it with <code>setUseCache(true)</code> on the factory.
+ * <br>
+ * The cache key consists of the canonical path, the modification time
+ * and the length of the file and the settings of the factory, so a
+ * changed file or different settings result in a new entry.
+ * The content is stored as column names and column values, i.e. a
+ * <code>ResultSet</code> created from the cache is built without
+ * parsing the file. The number of entries in memory is bounded
+ * (please see {@link #setMaxSize}), the least recently used entry
+ * is discarded first.
+ * <br>
+ * If a snapshot directory is set with {@link #setSnapshotDirectory},
+ * the entries are additionally stored there as binary snapshots,
+ * so other JVMs (e.g. forked test processes) can load them without
+ * parsing the file. A snapshot that cannot be read, e.g. because
+ * it is truncated, is ignored.
+ */
+public class FixtureCache
+{
+    /**
+     * The default maximum number of entries in memory.
+     */
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    private static final int SNAPSHOT_MAGIC = 0x4D524643;
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final FixtureCache instance = new FixtureCache();
+
+    private final Map<String, Fixture> fixtures = new LinkedHashMap<String, Fixture>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Fixture> eldest)
+        {
+            return size() > maxSize;
+        }
+    };
+    private volatile File snapshotDirectory;
+    private volatile int maxSize = DEFAULT_MAX_SIZE;
+
+    /**
+     * Returns the process wide instance.
+     * @return the cache
+     */
+    public static FixtureCache getInstance()
+    {
+        return instance;
+    }
+
+    /**
+     * Sets the directory for binary snapshots. Snapshots are
+     * disabled, if the directory is <code>null</code>, which is
+     * the default. The directory is created if it does not exist.
+     * @param snapshotDirectory the directory for snapshots
+     */
+    public void setSnapshotDirectory(File snapshotDirectory)
+    {
+        this.snapshotDirectory = snapshotDirectory;
+    }
+
+    /**
+     * Returns the directory for binary snapshots.
+     * @return the directory for snapshots or <code>null</code>
+     */
+    public File getSnapshotDirectory()
+    {
+        return snapshotDirectory;
+    }
+
+    /**
+     * Sets the maximum number of entries in memory. If there are
+     * more entries, the least recently used ones are discarded.
+     * Snapshots on disk are not affected. The default is
+     * {@link #DEFAULT_MAX_SIZE}.
+     * @param maxSize the maximum number of entries
+     */
+    public void setMaxSize(int maxSize)
+    {
+        if(maxSize < 1) throw new IllegalArgumentException("maxSize must be positive");
+        synchronized(fixtures)
+        {
+            this.maxSize = maxSize;
+            Iterator<String> keys = fixtures.keySet().iterator();
+            while(fixtures.size() > maxSize)
+            {
+                keys.next();
+                keys.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the maximum number of entries in memory.
+     * @return the maximum number of entries
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Removes all entries from the cache. Snapshots on disk are
+     * not deleted.
+     */
+    public void clear()
+    {
+        synchronized(fixtures)
+        {
+            fixtures.clear();
+        }
+    }
+
+    /**
+     * Returns the number of entries in the cache.
+     * @return the number of entries
+     */
+    public int size()
+    {
+        synchronized(fixtures)
+        {
+            return fixtures.size();
+        }
+    }
+
+    /**
+     * Creates the cache key for a file and the settings of a factory.
+     * @param file the fixture file
+     * @param settings the settings of the factory
+     * @return the cache key
+     */
+    public static String createKey(File file, String settings)
+    {
+        String path;
+        try
+        {
+            path = file.getCanonicalPath();
+        }
+        catch(IOException exc)
+        {
+            path = file.getAbsolutePath();
+        }
+        return path + "|" + file.lastModified() + "|" + file.length() + "|" + settings;
+    }
+
+    /**
+     * Returns a new <code>MockResultSet</code> with the content
+     * stored for the specified key or <code>null</code>, if
+     * there is no entry in memory and no snapshot.
+     * @param key the cache key
+     * @param id the id of the result set
+     * @return the result set or <code>null</code>
+     */
+    public MockResultSet get(String key, String id)
+    {
+        Fixture fixture;
+        synchronized(fixtures)
+        {
+            fixture = fixtures.get(key);
+        }
+        if(null == fixture)
+        {
+            fixture = readSnapshot(key);
+            if(null == fixture) return null;
+            synchronized(fixtures)
+            {
+                fixtures.put(key, fixture);
+            }
+        }
+        return fixture.createResultSet(id);
+    }
+
+    /**
+     * Stores the content of the specified <code>MockResultSet</code>
+     * for the specified key. If a snapshot directory is set, a
+     * snapshot is written.
+     * @param key the cache key
+     * @param resultSet the result set
+     */
+    public void put(String key, MockResultSet resultSet)
+    {
+        Fixture fixture = new Fixture(resultSet);
+        synchronized(fixtures)
+        {
+            fixtures.put(key, fixture);
+        }
+        writeSnapshot(key, fixture);
+    }
+
+    private Fixture readSnapshot(String key)
+    {
+        File directory = snapshotDirectory;
+        if(null == directory) return null;
+        File file = new File(directory, getSnapshotFileName(key));
+        if(!file.isFile() || file.length() > Integer.MAX_VALUE) return null;
+        try
+        {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(readFile(file)));
+            if(input.readInt() != SNAPSHOT_MAGIC || input.readInt() != SNAPSHOT_VERSION) return null;
+            if(!key.equals(readString(input))) return null;
+            return new Fixture(input);
+        }
+        catch(IOException exc)
+        {
+            return null;
+        }
+    }
+
+    private byte[] readFile(File file) throws IOException
+    {
+        DataInputStream input = null;
+        try
+        {
+            input = new DataInputStream(new FileInputStream(file));
+            byte[] data = new byte[(int)file.length()];
+            input.readFully(data);
+            return data;
+        }
+        finally
+        {
+            close(input);
+        }
+    }
+
+    private void writeSnapshot(String key, Fixture fixture)
+    {
+        File directory = snapshotDirectory;
+        if(null == directory) return;
+        if(!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new RuntimeException("Cannot create snapshot directory " + directory);
+        }
+        File file = new File(directory, getSnapshotFileName(key));
+        DataOutputStream output = null;
+        try
+        {
+            File tempFile = File.createTempFile("snapshot", ".tmp", directory);
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            output.writeInt(SNAPSHOT_MAGIC);
+            output.writeInt(SNAPSHOT_VERSION);
+            writeString(output, key);
+            fixture.write(output);
+            output.close();
+            output = null;
+            if(!tempFile.renameTo(file))
+            {
+                file.delete();
+                if(!tempFile.renameTo(file))
+                {
+                    tempFile.delete();
+                }
+            }
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+        finally
+        {
+            close(output);
+        }
+    }
+
+    private String getSnapshotFileName(String key)
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(key.getBytes("UTF-8"));
+            StringBuilder name = new StringBuilder();
+            for(int ii = 0; ii < hash.length; ii++)
+            {
+                name.append(Character.forDigit((hash[ii] >> 4) & 0xF, 16));
+                name.append(Character.forDigit(hash[ii] & 0xF, 16));
+            }
+            return name.append(".snapshot").toString();
+        }
+        catch(NoSuchAlgorithmException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+    }
+
+    private static void close(Closeable stream)
+    {
+        if(null == stream) return;
+        try
+        {
+            stream.close();
+        }
+        catch(IOException exc)
+        {
+            //ignore
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException
+    {
+        if(null == value)
+        {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException
+    {
+        int length = input.readInt();
+        if(-1 == length) return null;
+        if(length < 0 || length > input.available())
+        {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * The parsed content of a fixture file, stored by column.
+     */
+    private static class Fixture
+    {
+        private final String[] columnNames;
+        private final Object[][] columns;
+
+        public Fixture(MockResultSet resultSet)
+        {
+            try
+            {
+                ResultSetMetaData metaData = resultSet.getMetaData();
+                columnNames = new String[resultSet.getColumnCount()];
+                columns = new Object[columnNames.length][];
+                for(int ii = 0; ii < columnNames.length; ii++)
+                {
+                    columnNames[ii] = metaData.getColumnName(ii + 1);
+                    List<Object> column = resultSet.getColumn(ii + 1);
+                    columns[ii] = column.toArray(new Object[column.size()]);
+                }
+            }
+            catch(SQLException exc)
+            {
+                throw new NestedApplicationException(exc);
+            }
+        }
+
+        public Fixture(DataInputStream input) throws IOException
+        {
+            int columnCount = input.readInt();
+            int rows = input.readInt();
+            if(columnCount < 0 || rows < 0 || (long)columnCount * (rows + 1L) * 4 > input.available())
+            {
+                throw new IOException("Invalid number of columns " + columnCount + " or rows " + rows);
+            }
+            columnNames = new String[columnCount];
+            columns = new Object[columnCount][];
+            for(int ii = 0; ii < columnNames.length; ii++)
+            {
+                columnNames[ii] = readString(input);
+                columns[ii] = new Object[rows];
+                for(int yy = 0; yy < rows; yy++)
+                {
+                    columns[ii][yy] = readString(input);
+                }
+            }
+        }
+
+        public void write(DataOutputStream output) throws IOException
+        {
+            int rows = (columns.length == 0) ? 0 : columns[0].length;
+            output.writeInt(columnNames.length);
+            output.writeInt(rows);
+            for(int ii = 0; ii < columnNames.length; ii++)
+            {
+                writeString(output, columnNames[ii]);
+                for(int yy = 0; yy < rows; yy++)
+                {
+                    Object value = columns[ii][yy];
+                    writeString(output, (null == value) ? null : value.toString());
+                }
+            }
+        }
+
+        public MockResultSet createResultSet(String id)
+        {
+            MockResultSet resultSet = new MockResultSet(id);
+            for(int ii = 0; ii < columnNames.length; ii++)
+            {
+                resultSet.addColumn(columnNames[ii], Arrays.asList(columns[ii]));
+            }
+            return resultSet;
+        }
+    }
+}
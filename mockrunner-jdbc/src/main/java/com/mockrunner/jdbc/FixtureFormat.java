@@ -0,0 +1,513 @@
+package com.mockrunner.jdbc;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.mockrunner.mock.jdbc.MockParameterMap;
+import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.mock.jdbc.ParameterIndex;
+import com.mockrunner.mock.jdbc.ParameterName;
+import com.mockrunner.mock.jdbc.ParameterReference;
+
+/**
+ * The binary format of the fixture files written by {@link FixtureRecorder}
+ * and read by {@link FixtureLoader}. All numbers are big endian.
+ * A file starts with a magic number and the version, followed by a
+ * table of all strings (SQL strings, column names, string values) and
+ * the recordings, which refer to the strings by their index.
+ * Each recording consists of the statement type, the SQL string, the
+ * parameters and the outcome of the execution, i.e. a result set, an
+ * update count or an exception. Result sets are stored by column.
+ */
+class FixtureFormat
+{
+    public static final int MAGIC = 0x4D524652;
+    public static final int VERSION = 1;
+
+    public static final byte STATEMENT = 0;
+    public static final byte PREPARED_STATEMENT = 1;
+    public static final byte CALLABLE_STATEMENT = 2;
+
+    public static final byte RESULT_SET = 0;
+    public static final byte UPDATE_COUNT = 1;
+    public static final byte EXCEPTION = 2;
+
+    private static final byte INDEX = 0;
+    private static final byte NAME = 1;
+
+    private static final byte NULL = 0;
+    private static final byte INTEGER = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte FLOAT = 4;
+    private static final byte SHORT = 5;
+    private static final byte BYTE = 6;
+    private static final byte BOOLEAN = 7;
+    private static final byte STRING = 8;
+    private static final byte BIG_DECIMAL = 9;
+    private static final byte BYTES = 10;
+    private static final byte DATE = 11;
+    private static final byte TIME = 12;
+    private static final byte TIMESTAMP = 13;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Returns if the specified value can be stored without
+     * converting it to a <code>String</code>.
+     * @param value the value
+     * @return <code>true</code> if the value can be stored
+     */
+    public static boolean isSupported(Object value)
+    {
+        return null == value || value instanceof Integer || value instanceof Long || value instanceof Double || value instanceof Float || value instanceof Short || value instanceof Byte || value instanceof Boolean || value instanceof String || value instanceof BigDecimal || value instanceof byte[] || value instanceof Date || value instanceof Time || value instanceof Timestamp;
+    }
+
+    /**
+     * One execution of a statement.
+     */
+    public static class Recording
+    {
+        private final byte statementType;
+        private final String sql;
+        private final MockParameterMap parameters;
+        private final byte outcome;
+        private final String[] columnNames;
+        private final Object[][] columns;
+        private final int updateCount;
+        private final String message;
+        private final String sqlState;
+        private final int errorCode;
+
+        private Recording(byte statementType, String sql, MockParameterMap parameters, byte outcome, String[] columnNames, Object[][] columns, int updateCount, String message, String sqlState, int errorCode)
+        {
+            this.statementType = statementType;
+            this.sql = sql;
+            this.parameters = parameters;
+            this.outcome = outcome;
+            this.columnNames = columnNames;
+            this.columns = columns;
+            this.updateCount = updateCount;
+            this.message = message;
+            this.sqlState = sqlState;
+            this.errorCode = errorCode;
+        }
+
+        public static Recording forResultSet(byte statementType, String sql, MockParameterMap parameters, String[] columnNames, Object[][] columns)
+        {
+            return new Recording(statementType, sql, parameters, RESULT_SET, columnNames, columns, 0, null, null, 0);
+        }
+
+        public static Recording forUpdateCount(byte statementType, String sql, MockParameterMap parameters, int updateCount)
+        {
+            return new Recording(statementType, sql, parameters, UPDATE_COUNT, null, null, updateCount, null, null, 0);
+        }
+
+        public static Recording forException(byte statementType, String sql, MockParameterMap parameters, SQLException exc)
+        {
+            return new Recording(statementType, sql, parameters, EXCEPTION, null, null, 0, exc.getMessage(), exc.getSQLState(), exc.getErrorCode());
+        }
+
+        public byte getStatementType()
+        {
+            return statementType;
+        }
+
+        public String getSQL()
+        {
+            return sql;
+        }
+
+        public MockParameterMap getParameters()
+        {
+            return parameters;
+        }
+
+        public byte getOutcome()
+        {
+            return outcome;
+        }
+
+        public int getUpdateCount()
+        {
+            return updateCount;
+        }
+
+        public SQLException createSQLException()
+        {
+            return new SQLException(message, sqlState, errorCode);
+        }
+
+        public MockResultSet createResultSet(String id)
+        {
+            MockResultSet resultSet = new MockResultSet(id);
+            for(int ii = 0; ii < columnNames.length; ii++)
+            {
+                resultSet.addColumn(columnNames[ii], new ArrayList<Object>(Arrays.asList(columns[ii])));
+            }
+            return resultSet;
+        }
+
+        /**
+         * Returns the key used to drop repeated executions. Two recordings
+         * with the same key would be registered for the same statement,
+         * so only the first one is used.
+         * @return the key
+         */
+        public List<Object> getKey()
+        {
+            return Arrays.<Object>asList(Byte.valueOf(statementType), sql, parameters);
+        }
+    }
+
+    /**
+     * Writes the specified recordings.
+     * @param output the output stream
+     * @param recordings the recordings
+     * @throws IOException if the recordings cannot be written
+     */
+    public static void write(DataOutputStream output, List<Recording> recordings) throws IOException
+    {
+        Map<String, Integer> strings = new HashMap<String, Integer>();
+        List<String> stringList = new ArrayList<String>();
+        for(Recording recording : recordings)
+        {
+            addString(recording.sql, strings, stringList);
+            addString(recording.message, strings, stringList);
+            addString(recording.sqlState, strings, stringList);
+            for(Map.Entry<ParameterReference, Object> entry : recording.parameters.entrySet())
+            {
+                if(entry.getKey() instanceof ParameterName)
+                {
+                    addString(((ParameterName)entry.getKey()).getName(), strings, stringList);
+                }
+                addValueString(entry.getValue(), strings, stringList);
+            }
+            if(RESULT_SET == recording.outcome)
+            {
+                for(int ii = 0; ii < recording.columnNames.length; ii++)
+                {
+                    addString(recording.columnNames[ii], strings, stringList);
+                    for(Object value : recording.columns[ii])
+                    {
+                        addValueString(value, strings, stringList);
+                    }
+                }
+            }
+        }
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(stringList.size());
+        for(String string : stringList)
+        {
+            byte[] bytes = string.getBytes(UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+        output.writeInt(recordings.size());
+        for(Recording recording : recordings)
+        {
+            output.writeByte(recording.statementType);
+            writeString(output, recording.sql, strings);
+            output.writeInt(recording.parameters.size());
+            for(Map.Entry<ParameterReference, Object> entry : recording.parameters.entrySet())
+            {
+                if(entry.getKey() instanceof ParameterName)
+                {
+                    output.writeByte(NAME);
+                    writeString(output, ((ParameterName)entry.getKey()).getName(), strings);
+                }
+                else
+                {
+                    output.writeByte(INDEX);
+                    output.writeInt(((ParameterIndex)entry.getKey()).getIndex());
+                }
+                writeValue(output, entry.getValue(), strings);
+            }
+            output.writeByte(recording.outcome);
+            if(RESULT_SET == recording.outcome)
+            {
+                int rows = (recording.columns.length == 0) ? 0 : recording.columns[0].length;
+                output.writeInt(recording.columnNames.length);
+                output.writeInt(rows);
+                for(int ii = 0; ii < recording.columnNames.length; ii++)
+                {
+                    writeString(output, recording.columnNames[ii], strings);
+                    for(int yy = 0; yy < rows; yy++)
+                    {
+                        writeValue(output, recording.columns[ii][yy], strings);
+                    }
+                }
+            }
+            else if(UPDATE_COUNT == recording.outcome)
+            {
+                output.writeInt(recording.updateCount);
+            }
+            else
+            {
+                writeString(output, recording.message, strings);
+                writeString(output, recording.sqlState, strings);
+                output.writeInt(recording.errorCode);
+            }
+        }
+    }
+
+    /**
+     * Reads the recordings from the specified buffer.
+     * @param buffer the buffer
+     * @return the recordings
+     * Counts, lengths and string indexes are checked against the
+     * size of the buffer and the string table.
+     * @throws IOException if the buffer does not contain valid recordings
+     */
+    public static List<Recording> read(ByteBuffer buffer) throws IOException
+    {
+        if(buffer.remaining() < 8 || buffer.getInt() != MAGIC)
+        {
+            throw new IOException("Not a fixture file");
+        }
+        int version = buffer.getInt();
+        if(version != VERSION)
+        {
+            throw new IOException("Unsupported fixture file version " + version);
+        }
+        String[] strings = new String[readCount(buffer, 4)];
+        byte[] bytes = new byte[256];
+        for(int ii = 0; ii < strings.length; ii++)
+        {
+            int length = readCount(buffer, 1);
+            if(length > bytes.length) bytes = new byte[Math.max(length, bytes.length * 2)];
+            buffer.get(bytes, 0, length);
+            strings[ii] = new String(bytes, 0, length, UTF_8);
+        }
+        int numberRecordings = readCount(buffer, 10);
+        List<Recording> recordings = new ArrayList<Recording>(numberRecordings);
+        for(int ii = 0; ii < numberRecordings; ii++)
+        {
+            byte statementType = buffer.get();
+            String sql = readString(buffer, strings);
+            MockParameterMap parameters = new MockParameterMap();
+            int numberParameters = readCount(buffer, 6);
+            for(int yy = 0; yy < numberParameters; yy++)
+            {
+                if(NAME == buffer.get())
+                {
+                    String name = readString(buffer, strings);
+                    parameters.put(name, readValue(buffer, strings));
+                }
+                else
+                {
+                    int index = buffer.getInt();
+                    parameters.put(index, readValue(buffer, strings));
+                }
+            }
+            byte outcome = buffer.get();
+            if(RESULT_SET == outcome)
+            {
+                String[] columnNames = new String[readCount(buffer, 4)];
+                int rows = buffer.getInt();
+                if(rows < 0 || (long)columnNames.length * rows > buffer.remaining())
+                {
+                    throw new IOException("Invalid number of rows " + rows);
+                }
+                Object[][] columns = new Object[columnNames.length][];
+                for(int yy = 0; yy < columnNames.length; yy++)
+                {
+                    columnNames[yy] = readString(buffer, strings);
+                    columns[yy] = new Object[rows];
+                    for(int zz = 0; zz < rows; zz++)
+                    {
+                        columns[yy][zz] = readValue(buffer, strings);
+                    }
+                }
+                recordings.add(Recording.forResultSet(statementType, sql, parameters, columnNames, columns));
+            }
+            else if(UPDATE_COUNT == outcome)
+            {
+                recordings.add(Recording.forUpdateCount(statementType, sql, parameters, buffer.getInt()));
+            }
+            else if(EXCEPTION == outcome)
+            {
+                String message = readString(buffer, strings);
+                String sqlState = readString(buffer, strings);
+                int errorCode = buffer.getInt();
+                recordings.add(new Recording(statementType, sql, parameters, EXCEPTION, null, null, 0, message, sqlState, errorCode));
+            }
+            else
+            {
+                throw new IOException("Unknown outcome " + outcome);
+            }
+        }
+        return recordings;
+    }
+
+    private static void addString(String string, Map<String, Integer> strings, List<String> stringList)
+    {
+        if(null == string || strings.containsKey(string)) return;
+        strings.put(string, Integer.valueOf(stringList.size()));
+        stringList.add(string);
+    }
+
+    private static void addValueString(Object value, Map<String, Integer> strings, List<String> stringList)
+    {
+        if(value instanceof String)
+        {
+            addString((String)value, strings, stringList);
+        }
+        else if(value instanceof BigDecimal)
+        {
+            addString(value.toString(), strings, stringList);
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String string, Map<String, Integer> strings) throws IOException
+    {
+        output.writeInt((null == string) ? -1 : strings.get(string).intValue());
+    }
+
+    private static String readString(ByteBuffer buffer, String[] strings) throws IOException
+    {
+        int index = buffer.getInt();
+        if(-1 == index) return null;
+        if(index < 0 || index >= strings.length)
+        {
+            throw new IOException("Invalid string index " + index);
+        }
+        return strings[index];
+    }
+
+    /**
+     * Reads a count or a length and checks that the remaining bytes
+     * can contain the specified number of elements.
+     */
+    private static int readCount(ByteBuffer buffer, int minimumElementSize) throws IOException
+    {
+        int count = buffer.getInt();
+        if(count < 0 || (long)count * minimumElementSize > buffer.remaining())
+        {
+            throw new IOException("Invalid count or length " + count);
+        }
+        return count;
+    }
+
+    private static void writeValue(DataOutputStream output, Object value, Map<String, Integer> strings) throws IOException
+    {
+        if(null == value)
+        {
+            output.writeByte(NULL);
+        }
+        else if(value instanceof Integer)
+        {
+            output.writeByte(INTEGER);
+            output.writeInt(((Integer)value).intValue());
+        }
+        else if(value instanceof Long)
+        {
+            output.writeByte(LONG);
+            output.writeLong(((Long)value).longValue());
+        }
+        else if(value instanceof Double)
+        {
+            output.writeByte(DOUBLE);
+            output.writeDouble(((Double)value).doubleValue());
+        }
+        else if(value instanceof Float)
+        {
+            output.writeByte(FLOAT);
+            output.writeFloat(((Float)value).floatValue());
+        }
+        else if(value instanceof Short)
+        {
+            output.writeByte(SHORT);
+            output.writeShort(((Short)value).shortValue());
+        }
+        else if(value instanceof Byte)
+        {
+            output.writeByte(BYTE);
+            output.writeByte(((Byte)value).byteValue());
+        }
+        else if(value instanceof Boolean)
+        {
+            output.writeByte(BOOLEAN);
+            output.writeBoolean(((Boolean)value).booleanValue());
+        }
+        else if(value instanceof String)
+        {
+            output.writeByte(STRING);
+            writeString(output, (String)value, strings);
+        }
+        else if(value instanceof BigDecimal)
+        {
+            output.writeByte(BIG_DECIMAL);
+            writeString(output, value.toString(), strings);
+        }
+        else if(value instanceof byte[])
+        {
+            byte[] bytes = (byte[])value;
+            output.writeByte(BYTES);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+        else if(value instanceof Date)
+        {
+            output.writeByte(DATE);
+            output.writeLong(((Date)value).getTime());
+        }
+        else if(value instanceof Time)
+        {
+            output.writeByte(TIME);
+            output.writeLong(((Time)value).getTime());
+        }
+        else if(value instanceof Timestamp)
+        {
+            output.writeByte(TIMESTAMP);
+            output.writeLong(((Timestamp)value).getTime());
+            output.writeInt(((Timestamp)value).getNanos());
+        }
+        else
+        {
+            throw new IOException("Unsupported type " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(ByteBuffer buffer, String[] strings) throws IOException
+    {
+        byte type = buffer.get();
+        switch(type)
+        {
+            case NULL: return null;
+            case INTEGER: return Integer.valueOf(buffer.getInt());
+            case LONG: return Long.valueOf(buffer.getLong());
+            case DOUBLE: return Double.valueOf(buffer.getDouble());
+            case FLOAT: return Float.valueOf(buffer.getFloat());
+            case SHORT: return Short.valueOf(buffer.getShort());
+            case BYTE: return Byte.valueOf(buffer.get());
+            case BOOLEAN: return Boolean.valueOf(0 != buffer.get());
+            case STRING: return readString(buffer, strings);
+            case BIG_DECIMAL: return new BigDecimal(readString(buffer, strings));
+            case BYTES:
+                byte[] bytes = new byte[readCount(buffer, 1)];
+                buffer.get(bytes);
+                return bytes;
+            case DATE: return new Date(buffer.getLong());
+            case TIME: return new Time(buffer.getLong());
+            case TIMESTAMP:
+                Timestamp timestamp = new Timestamp(buffer.getLong());
+                timestamp.setNanos(buffer.getInt());
+                return timestamp;
+            default: throw new IOException("Unknown type " + type);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.mockrunner.jdbc;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+import com.mockrunner.base.NestedApplicationException;
+import com.mockrunner.jdbc.FixtureFormat.Recording;
+import com.mockrunner.mock.jdbc.MockConnection;
+
+/**
+ * Loads a fixture file written by {@link FixtureRecorder} and prepares
+ * the recorded result sets, update counts and exceptions in the
+ * result set handlers, so a test can replay the recorded executions
+ * without a database. Small files are read into memory, larger files
+ * through a memory mapped buffer. Java cannot unmap such a buffer
+ * explicitly, it is released when it is garbage collected. On some
+ * platforms, e.g. Windows, a large fixture file cannot be deleted or
+ * overwritten until then.
+ * <br>
+ * The executions of <code>Statement</code> objects are prepared in the
+ * {@link StatementResultSetHandler}, the executions of
+ * <code>PreparedStatement</code> and <code>CallableStatement</code>
+ * objects with their parameters in the
+ * {@link PreparedStatementResultSetHandler} and the
+ * {@link CallableStatementResultSetHandler}. The recorded SQL strings are
+ * complete statements, so you may want to enable
+ * {@link AbstractResultSetHandler#setExactMatch} and
+ * {@link AbstractParameterResultSetHandler#setExactMatchParameter}.
+ * All executions are prepared in one bulk preparation
+ * (please see {@link AbstractResultSetHandler#beginBulkPreparation}),
+ * so loading large fixtures into thread-safe handlers is fast.
+ */
+public class FixtureLoader
+{
+    private static final long MAPPING_THRESHOLD = 1024 * 1024;
+
+    private final File file;
+
+    /**
+     * Creates a loader for the specified fixture file.
+     * @param file the fixture file
+     */
+    public FixtureLoader(File file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * Prepares the recorded executions in the result set handlers
+     * of the specified connection.
+     * @param connection the connection
+     * @return the number of prepared executions
+     */
+    public int load(MockConnection connection)
+    {
+        return load(connection.getStatementResultSetHandler(), connection.getPreparedStatementResultSetHandler(), connection.getCallableStatementResultSetHandler());
+    }
+
+    /**
+     * Prepares the recorded executions in the specified result set
+     * handlers. The executions of a statement type are skipped, if the
+     * corresponding handler is <code>null</code>.
+     * @param statementHandler the handler for <code>Statement</code> objects
+     * @param preparedStatementHandler the handler for <code>PreparedStatement</code> objects
+     * @param callableStatementHandler the handler for <code>CallableStatement</code> objects
+     * @return the number of prepared executions
+     */
+    public int load(StatementResultSetHandler statementHandler, PreparedStatementResultSetHandler preparedStatementHandler, CallableStatementResultSetHandler callableStatementHandler)
+    {
+        int numberPrepared = 0;
+        List<Recording> recordings = read();
+        AbstractResultSetHandler[] handlers = new AbstractResultSetHandler[] {statementHandler, preparedStatementHandler, callableStatementHandler};
+        beginBulkPreparation(handlers);
+        try
+        {
+            for(int ii = 0; ii < recordings.size(); ii++)
+            {
+                Recording recording = recordings.get(ii);
+                if(FixtureFormat.STATEMENT == recording.getStatementType())
+                {
+                    if(null == statementHandler) continue;
+                    prepare(statementHandler, recording, ii);
+                }
+                else
+                {
+                    AbstractParameterResultSetHandler handler = (FixtureFormat.PREPARED_STATEMENT == recording.getStatementType()) ? preparedStatementHandler : callableStatementHandler;
+                    if(null == handler) continue;
+                    prepare(handler, recording, ii);
+                }
+                numberPrepared++;
+            }
+        }
+        finally
+        {
+            endBulkPreparation(handlers);
+        }
+        return numberPrepared;
+    }
+
+    private void beginBulkPreparation(AbstractResultSetHandler[] handlers)
+    {
+        for(AbstractResultSetHandler handler : handlers)
+        {
+            if(null != handler) handler.beginBulkPreparation();
+        }
+    }
+
+    private void endBulkPreparation(AbstractResultSetHandler[] handlers)
+    {
+        for(int ii = handlers.length - 1; ii >= 0; ii--)
+        {
+            if(null != handlers[ii]) handlers[ii].endBulkPreparation();
+        }
+    }
+
+    private void prepare(AbstractResultSetHandler handler, Recording recording, int index)
+    {
+        String sql = recording.getSQL();
+        switch(recording.getOutcome())
+        {
+            case FixtureFormat.RESULT_SET:
+                handler.prepareResultSet(sql, recording.createResultSet(file.getName() + "-" + index));
+                break;
+            case FixtureFormat.UPDATE_COUNT:
+                handler.prepareUpdateCount(sql, recording.getUpdateCount());
+                break;
+            default:
+                handler.prepareThrowsSQLException(sql, recording.createSQLException());
+        }
+    }
+
+    private void prepare(AbstractParameterResultSetHandler handler, Recording recording, int index)
+    {
+        String sql = recording.getSQL();
+        switch(recording.getOutcome())
+        {
+            case FixtureFormat.RESULT_SET:
+                handler.prepareResultSet(sql, recording.createResultSet(file.getName() + "-" + index), recording.getParameters());
+                break;
+            case FixtureFormat.UPDATE_COUNT:
+                handler.prepareUpdateCount(sql, recording.getUpdateCount(), recording.getParameters());
+                break;
+            default:
+                handler.prepareThrowsSQLException(sql, recording.createSQLException(), recording.getParameters());
+        }
+    }
+
+    private List<Recording> read()
+    {
+        FileInputStream input = null;
+        try
+        {
+            input = new FileInputStream(file);
+            FileChannel channel = input.getChannel();
+            if(channel.size() > Integer.MAX_VALUE)
+            {
+                throw new IOException("Fixture file " + file + " is too large");
+            }
+            ByteBuffer buffer;
+            if(channel.size() < MAPPING_THRESHOLD)
+            {
+                buffer = ByteBuffer.allocate((int)channel.size());
+                while(buffer.hasRemaining() && channel.read(buffer) >= 0);
+                buffer.flip();
+            }
+            else
+            {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            return FixtureFormat.read(buffer);
+        }
+        catch(BufferUnderflowException exc)
+        {
+            throw new NestedApplicationException("Fixture file " + file + " is truncated", exc);
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+        finally
+        {
+            if(null != input)
+            {
+                try
+                {
+                    input.close();
+                }
+                catch(IOException exc)
+                {
+                    //ignore
+                }
+            }
+        }
+    }
+}
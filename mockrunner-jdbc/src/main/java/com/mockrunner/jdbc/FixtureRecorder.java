@@ -0,0 +1,403 @@
+package com.mockrunner.jdbc;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.BatchUpdateException;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.mockrunner.base.NestedApplicationException;
+import com.mockrunner.jdbc.FixtureFormat.Recording;
+import com.mockrunner.mock.jdbc.MockParameterMap;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+/**
+ * Records the executions of statements against a real database,
+ * so they can be replayed with {@link FixtureLoader} without
+ * touching the database.
+ * <br>
+ * Use {@link #wrap} to wrap a <code>Connection</code> of a real driver
+ * or an embedded database, or register a {@link RecordingDriver}.
+ * The SQL strings, the parameters of prepared and callable statements
+ * and the returned result sets, update counts and exceptions are
+ * recorded. A result set is read completely when it is returned by the
+ * database, so the application receives a read only
+ * {@link MockResultSet} with the same content. Values of types that
+ * cannot be stored, e.g. driver specific types, are recorded as
+ * <code>String</code>, <code>Clob</code> and <code>Blob</code> values
+ * as <code>String</code> and <code>byte[]</code>. Stream parameters,
+ * out parameters and generated keys are not recorded.
+ * <br>
+ * Write the recordings with {@link #write}. Repeated executions of a
+ * statement with the same parameters are only written once.
+ * This class is thread safe.
+ */
+public class FixtureRecorder
+{
+    private final List<Recording> recordings = new ArrayList<Recording>();
+
+    /**
+     * Returns a <code>Connection</code> that records all executions
+     * and delegates to the specified <code>Connection</code>.
+     * @param connection the connection of the real driver
+     * @return the recording connection
+     */
+    public Connection wrap(Connection connection)
+    {
+        return (Connection)Proxy.newProxyInstance(FixtureRecorder.class.getClassLoader(), new Class<?>[] {Connection.class}, new ConnectionHandler(connection));
+    }
+
+    /**
+     * Returns the number of recorded executions.
+     * @return the number of recorded executions
+     */
+    public synchronized int getNumberRecordings()
+    {
+        return recordings.size();
+    }
+
+    /**
+     * Removes all recorded executions.
+     */
+    public synchronized void clear()
+    {
+        recordings.clear();
+    }
+
+    /**
+     * Writes the recorded executions to the specified file.
+     * An existing file is replaced.
+     * @param file the fixture file
+     */
+    public void write(File file)
+    {
+        List<Recording> uniqueRecordings = new ArrayList<Recording>();
+        Set<List<Object>> keys = new HashSet<List<Object>>();
+        synchronized(this)
+        {
+            for(Recording recording : recordings)
+            {
+                if(keys.add(recording.getKey()))
+                {
+                    uniqueRecordings.add(recording);
+                }
+            }
+        }
+        DataOutputStream output = null;
+        try
+        {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            FixtureFormat.write(output, uniqueRecordings);
+            output.close();
+            output = null;
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+        finally
+        {
+            if(null != output)
+            {
+                try
+                {
+                    output.close();
+                }
+                catch(IOException exc)
+                {
+                    //ignore
+                }
+            }
+        }
+    }
+
+    private synchronized void record(Recording recording)
+    {
+        recordings.add(recording);
+    }
+
+    private static Object invoke(Object delegate, Method method, Object[] args) throws Throwable
+    {
+        try
+        {
+            return method.invoke(delegate, args);
+        }
+        catch(InvocationTargetException exc)
+        {
+            throw exc.getCause();
+        }
+    }
+
+    private static Object normalize(Object value) throws SQLException
+    {
+        if(value instanceof Clob)
+        {
+            Clob clob = (Clob)value;
+            return clob.getSubString(1, (int)clob.length());
+        }
+        if(value instanceof Blob)
+        {
+            Blob blob = (Blob)value;
+            return blob.getBytes(1, (int)blob.length());
+        }
+        if(value instanceof byte[])
+        {
+            return ((byte[])value).clone();
+        }
+        if(FixtureFormat.isSupported(value))
+        {
+            return value;
+        }
+        return value.toString();
+    }
+
+    private class ConnectionHandler implements InvocationHandler
+    {
+        private final Connection connection;
+
+        public ConnectionHandler(Connection connection)
+        {
+            this.connection = connection;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            Object result = FixtureRecorder.invoke(connection, method, args);
+            String name = method.getName();
+            if("createStatement".equals(name))
+            {
+                return wrapStatement(Statement.class, (Statement)result, FixtureFormat.STATEMENT, null);
+            }
+            if("prepareStatement".equals(name))
+            {
+                return wrapStatement(PreparedStatement.class, (Statement)result, FixtureFormat.PREPARED_STATEMENT, (String)args[0]);
+            }
+            if("prepareCall".equals(name))
+            {
+                return wrapStatement(CallableStatement.class, (Statement)result, FixtureFormat.CALLABLE_STATEMENT, (String)args[0]);
+            }
+            return result;
+        }
+
+        private Object wrapStatement(Class<?> statementInterface, Statement statement, byte statementType, String sql)
+        {
+            return Proxy.newProxyInstance(FixtureRecorder.class.getClassLoader(), new Class<?>[] {statementInterface}, new StatementHandler(statement, statementType, sql));
+        }
+    }
+
+    private class StatementHandler implements InvocationHandler
+    {
+        private final Statement statement;
+        private final byte statementType;
+        private final String sql;
+        private final MockParameterMap parameters = new MockParameterMap();
+        private final List<Object> batch = new ArrayList<Object>();
+        private MockResultSet currentResultSet;
+        private int numberResultSets;
+
+        public StatementHandler(Statement statement, byte statementType, String sql)
+        {
+            this.statement = statement;
+            this.statementType = statementType;
+            this.sql = sql;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            String name = method.getName();
+            if(name.startsWith("set") && null != args && args.length >= 2 && Statement.class != method.getDeclaringClass())
+            {
+                setParameter(name, args);
+            }
+            else if("clearParameters".equals(name))
+            {
+                parameters.clear();
+            }
+            else if("addBatch".equals(name))
+            {
+                batch.add((null == args || 0 == args.length) ? new MockParameterMap(parameters) : args[0]);
+            }
+            else if("clearBatch".equals(name))
+            {
+                batch.clear();
+            }
+            else if("getResultSet".equals(name) && null != currentResultSet)
+            {
+                return currentResultSet;
+            }
+            else if("executeQuery".equals(name) || "execute".equals(name) || "executeUpdate".equals(name) || "executeLargeUpdate".equals(name))
+            {
+                return execute(method, args);
+            }
+            else if("executeBatch".equals(name) || "executeLargeBatch".equals(name))
+            {
+                return executeBatch(method, args);
+            }
+            return FixtureRecorder.invoke(statement, method, args);
+        }
+
+        private void setParameter(String name, Object[] args)
+        {
+            Object value = args[1];
+            if(value instanceof InputStream || value instanceof Reader) return;
+            if("setNull".equals(name)) value = null;
+            try
+            {
+                value = normalize(value);
+            }
+            catch(SQLException exc)
+            {
+                return;
+            }
+            if(args[0] instanceof Integer)
+            {
+                parameters.put(((Integer)args[0]).intValue(), value);
+            }
+            else if(args[0] instanceof String)
+            {
+                parameters.put((String)args[0], value);
+            }
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable
+        {
+            String currentSQL = (null != args && args.length > 0 && args[0] instanceof String) ? (String)args[0] : sql;
+            MockParameterMap currentParameters = new MockParameterMap(parameters);
+            currentResultSet = null;
+            Object result;
+            try
+            {
+                result = FixtureRecorder.invoke(statement, method, args);
+            }
+            catch(SQLException exc)
+            {
+                record(Recording.forException(statementType, currentSQL, currentParameters, exc));
+                throw exc;
+            }
+            if(result instanceof ResultSet)
+            {
+                return recordResultSet(currentSQL, currentParameters, (ResultSet)result);
+            }
+            if(result instanceof Boolean)
+            {
+                if(((Boolean)result).booleanValue())
+                {
+                    recordResultSet(currentSQL, currentParameters, statement.getResultSet());
+                }
+                else
+                {
+                    record(Recording.forUpdateCount(statementType, currentSQL, currentParameters, statement.getUpdateCount()));
+                }
+                return result;
+            }
+            record(Recording.forUpdateCount(statementType, currentSQL, currentParameters, ((Number)result).intValue()));
+            return result;
+        }
+
+        private Object executeBatch(Method method, Object[] args) throws Throwable
+        {
+            List<Object> currentBatch = new ArrayList<Object>(batch);
+            batch.clear();
+            try
+            {
+                Object result = FixtureRecorder.invoke(statement, method, args);
+                if(result instanceof int[])
+                {
+                    recordBatch(currentBatch, (int[])result);
+                }
+                else if(result instanceof long[])
+                {
+                    long[] largeUpdateCounts = (long[])result;
+                    int[] updateCounts = new int[largeUpdateCounts.length];
+                    for(int ii = 0; ii < updateCounts.length; ii++)
+                    {
+                        updateCounts[ii] = (int)largeUpdateCounts[ii];
+                    }
+                    recordBatch(currentBatch, updateCounts);
+                }
+                return result;
+            }
+            catch(BatchUpdateException exc)
+            {
+                recordBatch(currentBatch, exc.getUpdateCounts());
+                throw exc;
+            }
+        }
+
+        private void recordBatch(List<Object> currentBatch, int[] updateCounts)
+        {
+            if(null == updateCounts) return;
+            int size = Math.min(currentBatch.size(), updateCounts.length);
+            for(int ii = 0; ii < size; ii++)
+            {
+                if(Statement.EXECUTE_FAILED == updateCounts[ii]) continue;
+                Object entry = currentBatch.get(ii);
+                if(entry instanceof MockParameterMap)
+                {
+                    record(Recording.forUpdateCount(statementType, sql, (MockParameterMap)entry, updateCounts[ii]));
+                }
+                else
+                {
+                    record(Recording.forUpdateCount(statementType, (String)entry, new MockParameterMap(), updateCounts[ii]));
+                }
+            }
+        }
+
+        private MockResultSet recordResultSet(String currentSQL, MockParameterMap currentParameters, ResultSet resultSet) throws SQLException
+        {
+            if(null == resultSet) return null;
+            Recording recording;
+            try
+            {
+                ResultSetMetaData metaData = resultSet.getMetaData();
+                String[] columnNames = new String[metaData.getColumnCount()];
+                List<List<Object>> columnLists = new ArrayList<List<Object>>();
+                for(int ii = 0; ii < columnNames.length; ii++)
+                {
+                    columnNames[ii] = metaData.getColumnLabel(ii + 1);
+                    columnLists.add(new ArrayList<Object>());
+                }
+                while(resultSet.next())
+                {
+                    for(int ii = 0; ii < columnNames.length; ii++)
+                    {
+                        columnLists.get(ii).add(normalize(resultSet.getObject(ii + 1)));
+                    }
+                }
+                Object[][] columns = new Object[columnNames.length][];
+                for(int ii = 0; ii < columnNames.length; ii++)
+                {
+                    columns[ii] = columnLists.get(ii).toArray();
+                }
+                recording = Recording.forResultSet(statementType, currentSQL, currentParameters, columnNames, columns);
+            }
+            finally
+            {
+                resultSet.close();
+            }
+            record(recording);
+            currentResultSet = recording.createResultSet("recorded" + (numberResultSets++));
+            return currentResultSet;
+        }
+    }
+}
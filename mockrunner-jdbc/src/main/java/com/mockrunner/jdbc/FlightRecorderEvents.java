@@ -0,0 +1,389 @@
+package com.mockrunner.jdbc;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Emits Java Flight Recorder events for the executions of the mock
+ * statements and for the commits and rollbacks of the mock connections,
+ * so a slow test suite can be profiled with the standard JDK tooling,
+ * e.g. <code>-XX:StartFlightRecording</code> or <code>jcmd JFR.start</code>.
+ * <br>
+ * The event <i>com.mockrunner.jdbc.Execution</i> is emitted for each
+ * successful execution and for each run of equal SQL strings in a batch.
+ * It contains the statement type, the fingerprint of the SQL string
+ * (please see {@link SQLFingerprint}), the match mode of the result set
+ * handler, the time spent to find the prepared results, the time spent
+ * to clone the returned <code>ResultSet</code> objects, the number of
+ * executions, the number of returned rows (-1 if unknown, i.e. for a
+ * {@link ForwardOnlyResultSet}) and the update count. The
+ * duration of the event includes the simulated latency of the
+ * {@link LatencyModel}.
+ * The event <i>com.mockrunner.jdbc.Transaction</i> is emitted for each
+ * commit and rollback.
+ * <br>
+ * Mockrunner is compiled for Java versions without Flight Recorder,
+ * so the event types are created with <code>jdk.jfr.EventFactory</code>
+ * by reflection. The events are only created while a recording is
+ * running. Otherwise, the only cost of an execution is the check of
+ * {@link #isRecording}. If Flight Recorder is not available, no
+ * events are emitted. If an event cannot be created or committed,
+ * a warning is logged once and no further events are emitted.
+ */
+public class FlightRecorderEvents
+{
+    private static final Log log = LogFactory.getLog(FlightRecorderEvents.class);
+    private static final String[] CATEGORY = new String[] {"Mockrunner", "JDBC"};
+
+    private static final Set<Object> runningRecordings = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+    private static volatile boolean recording;
+    private static volatile EventTypes eventTypes;
+    private static volatile boolean available;
+
+    static
+    {
+        try
+        {
+            Class<?> flightRecorderClass = Class.forName("jdk.jfr.FlightRecorder");
+            Class<?> listenerClass = Class.forName("jdk.jfr.FlightRecorderListener");
+            Object listener = Proxy.newProxyInstance(FlightRecorderEvents.class.getClassLoader(), new Class<?>[] {listenerClass}, new RecorderListener());
+            available = true;
+            flightRecorderClass.getMethod("addListener", listenerClass).invoke(null, listener);
+        }
+        catch(Throwable exc)
+        {
+            available = false;
+        }
+    }
+
+    private FlightRecorderEvents()
+    {
+    }
+
+    /**
+     * Returns if a Flight Recorder recording is running, i.e. if
+     * events are emitted.
+     * @return <code>true</code> if a recording is running
+     */
+    public static boolean isRecording()
+    {
+        return recording;
+    }
+
+    /**
+     * Starts an execution event. Returns <code>null</code>, if no
+     * recording is running.
+     * @return the execution event or <code>null</code>
+     */
+    public static Execution beginExecution()
+    {
+        if(!recording) return null;
+        EventTypes types = getEventTypes();
+        if(null == types) return null;
+        Object event = types.newEvent(types.executionFactory);
+        if(null == event) return null;
+        return new Execution(types, event);
+    }
+
+    /**
+     * Emits a transaction event, if a recording is running.
+     * @param operation the operation, i.e. <i>commit</i> or <i>rollback</i>
+     * @param savepoint the name or id of the savepoint of the rollback,
+     *        <code>null</code> if no savepoint is used
+     */
+    public static void transaction(String operation, String savepoint)
+    {
+        if(!recording) return;
+        EventTypes types = getEventTypes();
+        if(null == types) return;
+        Object event = types.newEvent(types.transactionFactory);
+        if(null == event) return;
+        types.commit(event, new Object[] {operation, savepoint});
+    }
+
+    private static EventTypes getEventTypes()
+    {
+        EventTypes types = eventTypes;
+        if(null != types || !available) return types;
+        synchronized(FlightRecorderEvents.class)
+        {
+            if(null == eventTypes && available)
+            {
+                try
+                {
+                    eventTypes = new EventTypes();
+                }
+                catch(Exception exc)
+                {
+                    disable(exc);
+                }
+            }
+            return eventTypes;
+        }
+    }
+
+    private static void disable(Exception exc)
+    {
+        boolean wasAvailable;
+        synchronized(FlightRecorderEvents.class)
+        {
+            wasAvailable = available;
+            available = false;
+            recording = false;
+        }
+        if(wasAvailable)
+        {
+            log.warn("Flight Recorder events are disabled after an error", exc);
+        }
+    }
+
+    private static void recordingStateChanged(Object flightRecording)
+    {
+        if(!available) return;
+        synchronized(runningRecordings)
+        {
+            if(isRunning(flightRecording))
+            {
+                runningRecordings.add(flightRecording);
+            }
+            else
+            {
+                runningRecordings.remove(flightRecording);
+            }
+            recording = !runningRecordings.isEmpty();
+        }
+    }
+
+    private static void recorderInitialized(Object flightRecorder)
+    {
+        if(!available) return;
+        try
+        {
+            List<?> recordings = (List<?>)flightRecorder.getClass().getMethod("getRecordings").invoke(flightRecorder);
+            for(Object currentRecording : recordings)
+            {
+                recordingStateChanged(currentRecording);
+            }
+        }
+        catch(Exception exc)
+        {
+            disable(exc);
+        }
+    }
+
+    private static boolean isRunning(Object flightRecording)
+    {
+        try
+        {
+            Object state = flightRecording.getClass().getMethod("getState").invoke(flightRecording);
+            return "RUNNING".equals(String.valueOf(state));
+        }
+        catch(Exception exc)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * A running execution event. The mock statements create it with
+     * {@link FlightRecorderEvents#beginExecution} before the
+     * execution and commit it after the execution.
+     * This class is not thread safe.
+     */
+    public static class Execution
+    {
+        private final EventTypes types;
+        private final Object event;
+        private long lookupStart;
+        private long cloneTime;
+
+        private Execution(EventTypes types, Object event)
+        {
+            this.types = types;
+            this.event = event;
+        }
+
+        /**
+         * Marks the start of the lookup of the prepared results,
+         * i.e. the end of the simulated latency.
+         */
+        public void startLookup()
+        {
+            lookupStart = System.nanoTime();
+        }
+
+        /**
+         * Adds the time spent to clone returned <code>ResultSet</code> objects.
+         * @param nanos the time in nanoseconds
+         */
+        public void addCloneTime(long nanos)
+        {
+            cloneTime += nanos;
+        }
+
+        /**
+         * Commits the event. The time since {@link #startLookup},
+         * without the clone time, is recorded as lookup time.
+         * @param statement the executing statement
+         * @param handler the result set handler of the statement
+         * @param sql the SQL string
+         * @param numberExecutions the number of executions
+         * @param rowsReturned the number of returned rows
+         * @param updateCount the update count, -1 if no update count was returned
+         */
+        public void commit(Statement statement, AbstractResultSetHandler handler, String sql, int numberExecutions, int rowsReturned, int updateCount)
+        {
+            long lookupTime = (0 == lookupStart) ? 0 : Math.max(0, System.nanoTime() - lookupStart - cloneTime);
+            Object[] values = new Object[] {getStatementType(statement), SQLFingerprint.of(sql, false), handler.getMatchMode(), Long.valueOf(lookupTime), Long.valueOf(cloneTime), Integer.valueOf(numberExecutions), Integer.valueOf(rowsReturned), Integer.valueOf(updateCount)};
+            types.commit(event, values);
+        }
+
+        private String getStatementType(Statement statement)
+        {
+            if(statement instanceof CallableStatement) return "CallableStatement";
+            if(statement instanceof PreparedStatement) return "PreparedStatement";
+            return "Statement";
+        }
+    }
+
+    private static class EventTypes
+    {
+        private final Class<?> annotationElementClass;
+        private final Constructor<?> annotationElementConstructor;
+        private final Constructor<?> valueDescriptorConstructor;
+        private final Method createMethod;
+        private final Method newEventMethod;
+        private final Method beginMethod;
+        private final Method setMethod;
+        private final Method commitMethod;
+        private final Object executionFactory;
+        private final Object transactionFactory;
+
+        public EventTypes() throws Exception
+        {
+            annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+            annotationElementConstructor = annotationElementClass.getConstructor(Class.class, Object.class);
+            Class<?> valueDescriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+            valueDescriptorConstructor = valueDescriptorClass.getConstructor(Class.class, String.class, List.class);
+            Class<?> eventFactoryClass = Class.forName("jdk.jfr.EventFactory");
+            createMethod = eventFactoryClass.getMethod("create", List.class, List.class);
+            newEventMethod = eventFactoryClass.getMethod("newEvent");
+            Class<?> eventClass = Class.forName("jdk.jfr.Event");
+            beginMethod = eventClass.getMethod("begin");
+            setMethod = eventClass.getMethod("set", int.class, Object.class);
+            commitMethod = eventClass.getMethod("commit");
+            List<Object> executionFields = new ArrayList<Object>();
+            executionFields.add(createField(String.class, "statementType", "Statement Type", null));
+            executionFields.add(createField(String.class, "sql", "SQL Fingerprint", null));
+            executionFields.add(createField(String.class, "matchMode", "Match Mode", null));
+            executionFields.add(createField(long.class, "lookupTime", "Lookup Time", "NANOSECONDS"));
+            executionFields.add(createField(long.class, "cloneTime", "Clone Time", "NANOSECONDS"));
+            executionFields.add(createField(int.class, "executions", "Executions", null));
+            executionFields.add(createField(int.class, "rowsReturned", "Rows Returned", null));
+            executionFields.add(createField(int.class, "updateCount", "Update Count", null));
+            executionFactory = createFactory("com.mockrunner.jdbc.Execution", "Mock JDBC Execution", "Execution of a mock statement", executionFields);
+            List<Object> transactionFields = new ArrayList<Object>();
+            transactionFields.add(createField(String.class, "operation", "Operation", null));
+            transactionFields.add(createField(String.class, "savepoint", "Savepoint", null));
+            transactionFactory = createFactory("com.mockrunner.jdbc.Transaction", "Mock JDBC Transaction", "Commit or rollback of a mock connection", transactionFields);
+        }
+
+        private Object createAnnotation(String annotationClassName, Object value) throws Exception
+        {
+            return annotationElementConstructor.newInstance(Class.forName(annotationClassName), value);
+        }
+
+        private Object createField(Class<?> type, String name, String label, String timespan) throws Exception
+        {
+            List<Object> annotations = new ArrayList<Object>();
+            annotations.add(createAnnotation("jdk.jfr.Label", label));
+            if(null != timespan)
+            {
+                annotations.add(createAnnotation("jdk.jfr.Timespan", timespan));
+            }
+            return valueDescriptorConstructor.newInstance(type, name, annotations);
+        }
+
+        private Object createFactory(String name, String label, String description, List<Object> fields) throws Exception
+        {
+            List<Object> annotations = Arrays.asList(createAnnotation("jdk.jfr.Name", name), createAnnotation("jdk.jfr.Label", label), createAnnotation("jdk.jfr.Description", description), createAnnotation("jdk.jfr.Category", CATEGORY));
+            return createMethod.invoke(null, annotations, fields);
+        }
+
+        public Object newEvent(Object factory)
+        {
+            try
+            {
+                Object event = newEventMethod.invoke(factory);
+                beginMethod.invoke(event);
+                return event;
+            }
+            catch(Exception exc)
+            {
+                disable(exc);
+                return null;
+            }
+        }
+
+        public void commit(Object event, Object[] values)
+        {
+            try
+            {
+                for(int ii = 0; ii < values.length; ii++)
+                {
+                    setMethod.invoke(event, Integer.valueOf(ii), values[ii]);
+                }
+                commitMethod.invoke(event);
+            }
+            catch(Exception exc)
+            {
+                disable(exc);
+            }
+        }
+    }
+
+    private static class RecorderListener implements InvocationHandler
+    {
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            String name = method.getName();
+            if("recordingStateChanged".equals(name))
+            {
+                recordingStateChanged(args[0]);
+                return null;
+            }
+            if("recorderInitialized".equals(name))
+            {
+                recorderInitialized(args[0]);
+                return null;
+            }
+            if("equals".equals(name))
+            {
+                return Boolean.valueOf(proxy == args[0]);
+            }
+            if("hashCode".equals(name))
+            {
+                return Integer.valueOf(System.identityHashCode(proxy));
+            }
+            if("toString".equals(name))
+            {
+                return "FlightRecorderEvents listener";
+            }
+            return null;
+        }
+    }
+}
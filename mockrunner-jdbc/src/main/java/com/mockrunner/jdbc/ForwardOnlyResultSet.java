@@ -0,0 +1,327 @@
+package com.mockrunner.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+/**
+ * Base class for the forward-only <code>ResultSet</code> implementations
+ * that produce their rows while the cursor advances instead of storing
+ * them in the simulated database table, i.e. {@link StreamingFileResultSet}
+ * and {@link GeneratedResultSet}.
+ * <br>
+ * The result set is <code>TYPE_FORWARD_ONLY</code> and
+ * <code>CONCUR_READ_ONLY</code>. This class keeps track of the cursor
+ * position and implements the getters on the values of the current row.
+ * Subclasses provide the rows with {@link #fetchNextRow} and
+ * {@link #getCurrentValue}. Cloning the result set creates a new
+ * result set with {@link #createCopy} that starts with the first row.
+ * <br>
+ * The rows are fetched in blocks of the fetch size (or
+ * {@link #DEFAULT_BLOCK_SIZE} rows, if the fetch size is 0).
+ * The fetch latency of the {@link LatencyModel} is simulated once
+ * per block, when the cursor leaves it. In paged cursor mode
+ * (please see {@link MockResultSet#setPagedCursor}), each block is
+ * a page, so the pages, round trips and resident rows can be
+ * verified like for other <code>ResultSet</code> objects. Unlike
+ * there, a fetch size of 0 does not fetch all rows at once.
+ */
+public abstract class ForwardOnlyResultSet extends MockResultSet
+{
+    /**
+     * The number of rows fetched at once, if the fetch size is 0.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 100;
+
+    private long row;
+    private int rowsInBlock;
+    private boolean endOfRowsFetched;
+    private boolean hasCurrentRow;
+    private boolean wasNull;
+    private boolean columnsCaseSensitive;
+
+    /**
+     * Creates a new forward-only result set.
+     * @param id the id of the result set
+     */
+    public ForwardOnlyResultSet(String id)
+    {
+        super(id);
+        setResultSetType(ResultSet.TYPE_FORWARD_ONLY);
+        setResultSetConcurrency(ResultSet.CONCUR_READ_ONLY);
+    }
+
+    /**
+     * Moves the current values to the next row.
+     * @return <code>true</code> if there is a next row,
+     *         <code>false</code> if the result set ends
+     * @throws SQLException if the row cannot be read
+     */
+    protected abstract boolean fetchNextRow() throws SQLException;
+
+    /**
+     * Returns the value of the current row in the specified column.
+     * The cursor is on a row and the column index is valid.
+     * @param columnIndex the column index, starting with 1
+     * @return the value
+     */
+    protected abstract Object getCurrentValue(int columnIndex);
+
+    /**
+     * Returns a new result set of the same rows that starts with the
+     * first row.
+     * @return the new result set
+     */
+    protected abstract ForwardOnlyResultSet createCopy();
+
+    /**
+     * Restarts the result set with the first row, after the columns of the
+     * simulated database table were reset. Implementations must add
+     * their columns again.
+     */
+    protected abstract void restart();
+
+    /**
+     * Returns the number of rows the cursor moved over, including
+     * the move after the last row.
+     * @return the cursor position
+     */
+    protected long getCursorPosition()
+    {
+        return row;
+    }
+
+    /**
+     * Returns the number of rows in a block, i.e. the fetch size
+     * or {@link #DEFAULT_BLOCK_SIZE}, if the fetch size is 0.
+     * @return the number of rows in a block
+     * @throws SQLException if the fetch size cannot be determined
+     */
+    protected int getBlockSize() throws SQLException
+    {
+        int fetchSize = getFetchSize();
+        return (fetchSize > 0) ? fetchSize : DEFAULT_BLOCK_SIZE;
+    }
+
+    /**
+     * Returns if the cursor is on a row.
+     * @return <code>true</code> if the cursor is on a row
+     */
+    protected boolean hasCurrentRow()
+    {
+        return hasCurrentRow;
+    }
+
+    /**
+     * Returns a new result set that starts with the first row.
+     * @return a new result set
+     */
+    @Override
+    public Object clone()
+    {
+        return copy();
+    }
+
+    /**
+     * Returns a new result set that starts with the first row.
+     * @return a new result set
+     */
+    @Override
+    public MockResultSet shallowCopy()
+    {
+        return copy();
+    }
+
+    private ForwardOnlyResultSet copy()
+    {
+        ForwardOnlyResultSet copy = createCopy();
+        copy.setColumnsCaseSensitive(columnsCaseSensitive);
+        return copy;
+    }
+
+    /**
+     * Sets if column names are case sensitive. Like in
+     * <code>MockResultSet</code>, this resets the result set,
+     * i.e. it starts with the first row again.
+     * @param columnsCaseSensitive are column names case sensitive
+     */
+    @Override
+    public void setColumnsCaseSensitive(boolean columnsCaseSensitive)
+    {
+        super.setColumnsCaseSensitive(columnsCaseSensitive);
+        this.columnsCaseSensitive = columnsCaseSensitive;
+        row = 0;
+        hasCurrentRow = false;
+        wasNull = false;
+        rowsInBlock = 0;
+        endOfRowsFetched = false;
+        restart();
+    }
+
+    /**
+     * Enables or disables the paged cursor mode. The blocks of rows
+     * are counted as pages, starting with the next block.
+     * @param pagedCursor <code>true</code> to enable the paged cursor mode
+     */
+    @Override
+    public void setPagedCursor(boolean pagedCursor)
+    {
+        super.setPagedCursor(pagedCursor);
+        rowsInBlock = 0;
+        endOfRowsFetched = false;
+    }
+
+    /**
+     * Sets the statement. The result set stays
+     * <code>TYPE_FORWARD_ONLY</code> and <code>CONCUR_READ_ONLY</code>.
+     * @param statement the statement
+     */
+    @Override
+    public void setStatement(Statement statement)
+    {
+        super.setStatement(statement);
+        setResultSetType(ResultSet.TYPE_FORWARD_ONLY);
+        setResultSetConcurrency(ResultSet.CONCUR_READ_ONLY);
+    }
+
+    @Override
+    public boolean next() throws SQLException
+    {
+        if(!fetchNextRow())
+        {
+            if(hasCurrentRow) row++;
+            hasCurrentRow = false;
+            fetchEndOfRows();
+            return false;
+        }
+        if(rowsInBlock >= getBlockSize())
+        {
+            finishBlock();
+        }
+        rowsInBlock++;
+        if(isPagedCursor())
+        {
+            countPagedRow(1 == rowsInBlock, rowsInBlock);
+        }
+        hasCurrentRow = true;
+        row++;
+        return true;
+    }
+
+    private void finishBlock() throws SQLException
+    {
+        simulateFetch(rowsInBlock);
+        rowsInBlock = 0;
+    }
+
+    private void fetchEndOfRows() throws SQLException
+    {
+        if(endOfRowsFetched) return;
+        endOfRowsFetched = true;
+        if(0 == rowsInBlock) return;
+        boolean lastBlockFull = rowsInBlock >= getBlockSize();
+        finishBlock();
+        if(lastBlockFull && isPagedCursor())
+        {
+            countPagedRoundTrip();
+            simulateFetch(0);
+        }
+    }
+
+    @Override
+    public boolean wasNull() throws SQLException
+    {
+        return wasNull;
+    }
+
+    @Override
+    public Object getObject(int columnIndex) throws SQLException
+    {
+        if(!hasCurrentRow) throw new SQLException("No current row");
+        if(columnIndex < 1 || columnIndex > getColumnCount())
+        {
+            throw new SQLException("Invalid column index " + columnIndex);
+        }
+        Object value = getCurrentValue(columnIndex);
+        wasNull = (null == value);
+        return value;
+    }
+
+    @Override
+    public Object getObject(String columnName) throws SQLException
+    {
+        return getObject(getColumnIndexOrFail(columnName));
+    }
+
+    @Override
+    public int getInt(int columnIndex) throws SQLException
+    {
+        Object value = getObject(columnIndex);
+        if(null == value) return 0;
+        if(value instanceof Number) return ((Number)value).intValue();
+        return Integer.parseInt(value.toString());
+    }
+
+    @Override
+    public int getInt(String columnName) throws SQLException
+    {
+        return getInt(getColumnIndexOrFail(columnName));
+    }
+
+    @Override
+    public long getLong(int columnIndex) throws SQLException
+    {
+        Object value = getObject(columnIndex);
+        if(null == value) return 0;
+        if(value instanceof Number) return ((Number)value).longValue();
+        return Long.parseLong(value.toString());
+    }
+
+    @Override
+    public long getLong(String columnName) throws SQLException
+    {
+        return getLong(getColumnIndexOrFail(columnName));
+    }
+
+    @Override
+    public double getDouble(int columnIndex) throws SQLException
+    {
+        Object value = getObject(columnIndex);
+        if(null == value) return 0;
+        if(value instanceof Number) return ((Number)value).doubleValue();
+        return Double.parseDouble(value.toString());
+    }
+
+    @Override
+    public double getDouble(String columnName) throws SQLException
+    {
+        return getDouble(getColumnIndexOrFail(columnName));
+    }
+
+    private int getColumnIndexOrFail(String columnName) throws SQLException
+    {
+        int index = getColumnIndex(columnName);
+        if(-1 == index) throw new SQLException("No column " + columnName);
+        return index;
+    }
+
+    @Override
+    public boolean isAfterLast() throws SQLException
+    {
+        return (row > 0) && !hasCurrentRow;
+    }
+
+    @Override
+    public boolean isFirst() throws SQLException
+    {
+        return (1 == row) && hasCurrentRow;
+    }
+
+    @Override
+    public int getRow() throws SQLException
+    {
+        return hasCurrentRow ? (int)Math.min(row, Integer.MAX_VALUE) : 0;
+    }
+}
@@ -0,0 +1,202 @@
+package com.mockrunner.jdbc;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * A forward-only <code>ResultSet</code> whose rows are created by a
+ * {@link RowGenerator} while the cursor advances. The rows are
+ * generated in blocks of the fetch size (or {@link #DEFAULT_BLOCK_SIZE}
+ * rows, if the fetch size is 0) and the arrays holding a block are
+ * reused, so arbitrarily large result sets can be read in constant
+ * memory. Use {@link GeneratedResultSetFactory} to create instances
+ * of this class.
+ * <br>
+ * The result set is <code>TYPE_FORWARD_ONLY</code> and
+ * <code>CONCUR_READ_ONLY</code>. Like with {@link StreamingFileResultSet},
+ * the rows are not stored in the simulated database table, i.e. the
+ * methods that work on the table data, like {@link #getRowCount},
+ * {@link #getColumn(int)} or {@link #isEqual(java.util.List)}, do not
+ * see them. Cloning the result set (which happens when a statement
+ * returns it) creates a new result set that starts with the first row.
+ * The generator is called with the row number, so a generator that
+ * computes the values from the row number creates the same rows for
+ * every clone.
+ */
+public class GeneratedResultSet extends ForwardOnlyResultSet
+{
+    private final String[] columnNames;
+    private final long numberRows;
+    private final RowGenerator generator;
+    private Object[][] block;
+    private int blockCount;
+    private int blockIndex;
+    private Object[] currentValues;
+    private Object[] peekValues;
+    private boolean exhausted;
+
+    /**
+     * Creates a new result set with the rows of the specified generator.
+     * The result set ends when the generator returns <code>false</code>.
+     * @param id the id of the result set
+     * @param columnNames the column names
+     * @param generator the row generator
+     */
+    public GeneratedResultSet(String id, String[] columnNames, RowGenerator generator)
+    {
+        this(id, columnNames, -1, generator);
+    }
+
+    /**
+     * Creates a new result set with the rows of the specified generator.
+     * The result set ends after <code>numberRows</code> rows or when the
+     * generator returns <code>false</code>.
+     * @param id the id of the result set
+     * @param columnNames the column names
+     * @param numberRows the number of rows, -1 for no limit
+     * @param generator the row generator
+     */
+    public GeneratedResultSet(String id, String[] columnNames, long numberRows, RowGenerator generator)
+    {
+        super(id);
+        this.columnNames = columnNames.clone();
+        this.numberRows = numberRows;
+        this.generator = generator;
+        addColumns();
+    }
+
+    private void addColumns()
+    {
+        for(int ii = 0; ii < columnNames.length; ii++)
+        {
+            addColumn(columnNames[ii]);
+        }
+    }
+
+    /**
+     * Generates the next block of rows after the current row.
+     * @return <code>true</code> if at least one row was generated
+     */
+    private boolean generateBlock() throws SQLException
+    {
+        blockCount = 0;
+        blockIndex = -1;
+        if(exhausted) return false;
+        int size = getBlockSize();
+        if(null == block || block.length < size)
+        {
+            block = new Object[size][columnNames.length];
+        }
+        while(blockCount < size)
+        {
+            long rowNumber = getCursorPosition() + blockCount + 1;
+            if(numberRows >= 0 && rowNumber > numberRows)
+            {
+                exhausted = true;
+                break;
+            }
+            Object[] values = block[blockCount];
+            Arrays.fill(values, null);
+            if(!generator.generateRow(rowNumber, values))
+            {
+                exhausted = true;
+                break;
+            }
+            blockCount++;
+        }
+        return blockCount > 0;
+    }
+
+    @Override
+    protected ForwardOnlyResultSet createCopy()
+    {
+        return new GeneratedResultSet(getId(), columnNames, numberRows, generator);
+    }
+
+    @Override
+    protected void restart()
+    {
+        addColumns();
+        blockCount = 0;
+        blockIndex = -1;
+        currentValues = null;
+        exhausted = false;
+    }
+
+    @Override
+    public void close() throws SQLException
+    {
+        super.close();
+        exhausted = true;
+        blockCount = 0;
+        block = null;
+    }
+
+    @Override
+    protected boolean fetchNextRow() throws SQLException
+    {
+        if(blockIndex + 1 >= blockCount && !generateBlock())
+        {
+            currentValues = null;
+            return false;
+        }
+        blockIndex++;
+        currentValues = block[blockIndex];
+        return true;
+    }
+
+    @Override
+    protected Object getCurrentValue(int columnIndex)
+    {
+        return currentValues[columnIndex - 1];
+    }
+
+    @Override
+    public boolean isBeforeFirst() throws SQLException
+    {
+        if(0 != getCursorPosition()) return false;
+        if(blockIndex + 1 >= blockCount)
+        {
+            generateBlock();
+        }
+        return blockCount > 0;
+    }
+
+    /**
+     * Returns if the cursor is on the last row. If the current row
+     * is the last one of its block, the next block is generated to
+     * find out. The values of the current row are still available.
+     * @return <code>true</code> if the cursor is on the last row
+     */
+    @Override
+    public boolean isLast() throws SQLException
+    {
+        if(!hasCurrentRow()) return false;
+        if(blockIndex + 1 < blockCount) return false;
+        if(null == peekValues)
+        {
+            peekValues = new Object[columnNames.length];
+        }
+        System.arraycopy(currentValues, 0, peekValues, 0, columnNames.length);
+        currentValues = peekValues;
+        return !generateBlock();
+    }
+
+    /**
+     * Creates the rows of a {@link GeneratedResultSet}.
+     */
+    public interface RowGenerator
+    {
+        /**
+         * Fills the values of the specified row. <code>values</code>
+         * has one entry for each column and is reused for other rows,
+         * i.e. the generator must not keep a reference to it.
+         * @param rowNumber the row number, starting with 1
+         * @param values the values of the row, initially <code>null</code>
+         * @return <code>true</code> if the row exists, <code>false</code>
+         *         if the result set ends before this row
+         * @throws SQLException if the row cannot be generated
+         */
+        boolean generateRow(long rowNumber, Object[] values) throws SQLException;
+    }
+}
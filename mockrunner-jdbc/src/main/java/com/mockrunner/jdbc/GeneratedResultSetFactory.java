@@ -0,0 +1,75 @@
+package com.mockrunner.jdbc;
+
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+/**
+ * A <code>ResultSetFactory</code> that creates {@link GeneratedResultSet}
+ * objects, i.e. result sets whose rows are created by a
+ * {@link GeneratedResultSet.RowGenerator} while the cursor advances.
+ * This is useful for throughput tests with large amounts of synthetic
+ * data:
+ * <pre>
+ * ResultSetFactory factory = new GeneratedResultSetFactory(new String[] {"id", "name"}, 10000000, new GeneratedResultSet.RowGenerator()
+ * {
+ *     public boolean generateRow(long rowNumber, Object[] values)
+ *     {
+ *         values[0] = rowNumber;
+ *         values[1] = "name" + rowNumber;
+ *         return true;
+ *     }
+ * });
+ * handler.prepareResultSet("select id, name from person", handler.createResultSet("person", factory));
+ * </pre>
+ */
+public class GeneratedResultSetFactory implements ResultSetFactory
+{
+    private final String[] columnNames;
+    private final long numberRows;
+    private final GeneratedResultSet.RowGenerator generator;
+    private boolean columnsCaseSensitive = false;
+
+    /**
+     * Creates a factory for result sets that end when the
+     * generator returns <code>false</code>.
+     * @param columnNames the column names
+     * @param generator the row generator
+     */
+    public GeneratedResultSetFactory(String[] columnNames, GeneratedResultSet.RowGenerator generator)
+    {
+        this(columnNames, -1, generator);
+    }
+
+    /**
+     * Creates a factory for result sets with the specified
+     * number of rows.
+     * @param columnNames the column names
+     * @param numberRows the number of rows, -1 for no limit
+     * @param generator the row generator
+     */
+    public GeneratedResultSetFactory(String[] columnNames, long numberRows, GeneratedResultSet.RowGenerator generator)
+    {
+        this.columnNames = columnNames.clone();
+        this.numberRows = numberRows;
+        this.generator = generator;
+    }
+
+    /**
+     * Set if the column names are case sensitive. Default is
+     * <code>false</code>.
+     * @param columnsCaseSensitive are column names case sensitive
+     */
+    public void setColumnsCaseSensitive(boolean columnsCaseSensitive)
+    {
+        this.columnsCaseSensitive = columnsCaseSensitive;
+    }
+
+    public MockResultSet create(String id)
+    {
+        GeneratedResultSet resultSet = new GeneratedResultSet(id, columnNames, numberRows, generator);
+        if(columnsCaseSensitive)
+        {
+            resultSet.setColumnsCaseSensitive(true);
+        }
+        return resultSet;
+    }
+}
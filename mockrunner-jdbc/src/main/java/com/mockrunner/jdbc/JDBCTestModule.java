@@ -5,6 +5,7 @@ import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -13,6 +14,7 @@ import com.mockrunner.base.NestedApplicationException;
 import com.mockrunner.base.VerifyFailedException;
 import com.mockrunner.mock.jdbc.JDBCMockObjectFactory;
 import com.mockrunner.mock.jdbc.MockCallableStatement;
+import com.mockrunner.mock.jdbc.MockConnection;
 import com.mockrunner.mock.jdbc.MockParameterMap;
 import com.mockrunner.mock.jdbc.MockPreparedStatement;
 import com.mockrunner.mock.jdbc.MockResultSet;
@@ -178,6 +180,42 @@ public class JDBCTestModule
         return list;
     }
     
+    /**
+     * Returns the {@link StatementStatistics} for all SQL statements that
+     * were executed by a {@link com.mockrunner.mock.jdbc.MockStatement},
+     * {@link com.mockrunner.mock.jdbc.MockPreparedStatement} or
+     * {@link com.mockrunner.mock.jdbc.MockCallableStatement}.
+     * If the same SQL statement was executed by different types of
+     * statements, the statistics are combined.
+     * Please note that the statistics contain execution times only
+     * if the {@link RecordingPolicy} of the handlers does not record
+     * all executions.
+     * @return the <code>Map</code> of statistics, the keys are the
+     *         SQL statements
+     */
+    public Map<String, StatementStatistics> getExecutedSQLStatementStatistics()
+    {
+        Map<String, StatementStatistics> map = new LinkedHashMap<String, StatementStatistics>();
+        addStatistics(map, mockFactory.getMockConnection().getStatementResultSetHandler());
+        addStatistics(map, mockFactory.getMockConnection().getPreparedStatementResultSetHandler());
+        addStatistics(map, mockFactory.getMockConnection().getCallableStatementResultSetHandler());
+        return map;
+    }
+
+    private void addStatistics(Map<String, StatementStatistics> map, AbstractResultSetHandler handler)
+    {
+        for(StatementStatistics statistics : handler.getExecutedStatementStatistics().values())
+        {
+            StatementStatistics combinedStatistics = map.get(statistics.getSQLStatement());
+            if(null == combinedStatistics)
+            {
+                combinedStatistics = new StatementStatistics(statistics.getSQLStatement());
+                map.put(statistics.getSQLStatement(), combinedStatistics);
+            }
+            combinedStatistics.add(statistics);
+        }
+    }
+    
     /**
      * @deprecated use {@link #getExecutedSQLStatementParameterMap}
      */
@@ -583,13 +621,14 @@ public class JDBCTestModule
     
     /**
      * Verifies that an SQL statement was executed.
+     * Works with every {@link RecordingPolicy} of the handlers.
      * @param sql the expected SQL string
      * @throws VerifyFailedException if verification fails
      */
     public void verifySQLStatementExecuted(String sql)
     {
         SQLStatementMatcher matcher = new SQLStatementMatcher(caseSensitive, exactMatch, useRegularExpressions);
-        if(!matcher.contains(getExecutedSQLStatements(), sql, false))
+        if(!matcher.contains(getExecutedSQLStatementStatistics().keySet(), sql, false))
         {
             throw new VerifyFailedException("Statement " + sql + " not executed.");
         }
@@ -597,13 +636,14 @@ public class JDBCTestModule
     
     /**
      * Verifies that an SQL statement was not executed.
+     * Works with every {@link RecordingPolicy} of the handlers.
      * @param sql the SQL string
      * @throws VerifyFailedException if verification fails
      */
     public void verifySQLStatementNotExecuted(String sql)
     {
         SQLStatementMatcher matcher = new SQLStatementMatcher(caseSensitive, exactMatch, useRegularExpressions);
-        if(matcher.contains(getExecutedSQLStatements(), sql, false))
+        if(matcher.contains(getExecutedSQLStatementStatistics().keySet(), sql, false))
         {
             throw new VerifyFailedException("Statement " + sql + " was executed.");
         }
@@ -740,6 +780,11 @@ public class JDBCTestModule
             throw new VerifyFailedException("Statement " + sql + " has no parameter set with index " + indexOfParameterSet +
                                             ". Maybe it has been executed less than " + (indexOfParameterSet + 1) + " times.");
         }
+        if(!actualParameterSets.isParameterSetRecorded(indexOfParameterSet))
+        {
+            throw new VerifyFailedException("The parameter set with index " + indexOfParameterSet + " of statement " + sql + " has not been recorded. " +
+                                            "Please check the recording policy of the result set handler.");
+        }
         return actualParameterSets.getParameterSet(indexOfParameterSet);
     }
     
@@ -1018,10 +1063,13 @@ public class JDBCTestModule
      * returned when executing a statement and that were explicitly closed. 
      * Implicit closed <code>ResultSet</code> objects (when closing a statement) 
      * are not recognized.
+     * Fails, if the {@link RecordingPolicy} of a handler does not
+     * record the returned <code>ResultSet</code> objects.
      * @throws VerifyFailedException if verification fails
      */
     public void verifyAllResultSetsClosed()
     {
+        throwExceptionIfResultSetsNotRecorded();
         List<MockResultSet[]> allResultSets = getReturnedResultSets();
         for (MockResultSet[] resultSets : allResultSets) {
             for (MockResultSet resultSet : resultSets) {
@@ -1030,6 +1078,23 @@ public class JDBCTestModule
         }
     }
 
+    private void throwExceptionIfResultSetsNotRecorded()
+    {
+        MockConnection connection = mockFactory.getMockConnection();
+        throwExceptionIfResultSetsNotRecorded(connection.getStatementResultSetHandler(), "Statement");
+        throwExceptionIfResultSetsNotRecorded(connection.getPreparedStatementResultSetHandler(), "PreparedStatement");
+        throwExceptionIfResultSetsNotRecorded(connection.getCallableStatementResultSetHandler(), "CallableStatement");
+    }
+
+    private void throwExceptionIfResultSetsNotRecorded(AbstractResultSetHandler handler, String statementType)
+    {
+        RecordingPolicy policy = handler.getRecordingPolicy();
+        if(!policy.isRecordingExecutions())
+        {
+            throw new VerifyFailedException("The recording policy " + policy + " of the " + statementType + " handler does not record returned ResultSet objects.");
+        }
+    }
+
     private void throwExceptionIfNotClosed(MockResultSet resultSet)
     {
         if(!resultSet.isClosed())
@@ -1037,6 +1102,142 @@ public class JDBCTestModule
             throw new VerifyFailedException("ResultSet with id " + resultSet.getId() + " not closed.");
         }
     }
+
+    /**
+     * Verifies that not more than the specified number of rows of
+     * the <code>ResultSet</code> were resident at the same time.
+     * The <code>ResultSet</code> must use a paged cursor, please see
+     * {@link AbstractResultSetHandler#setPagedCursors}.
+     * @param resultSet the <code>ResultSet</code>
+     * @param maxRowsResident the maximum number of resident rows
+     * @throws VerifyFailedException if verification fails
+     */
+    public void verifyResultSetPeakRowsResident(MockResultSet resultSet, int maxRowsResident)
+    {
+        throwExceptionIfNotPaged(resultSet);
+        if(resultSet.getPeakRowsResident() > maxRowsResident)
+        {
+            throw new VerifyFailedException("ResultSet " + resultSet.getId() + " had " + resultSet.getPeakRowsResident() + " rows resident, expected not more than " + maxRowsResident + ".");
+        }
+    }
+
+    /**
+     * Verifies that not more than the specified number of rows of
+     * the <code>ResultSet</code> were resident at the same time.
+     * The <code>ResultSet</code> must use a paged cursor, please see
+     * {@link AbstractResultSetHandler#setPagedCursors}.
+     * @param id the id of the <code>ResultSet</code>
+     * @param maxRowsResident the maximum number of resident rows
+     * @throws VerifyFailedException if verification fails
+     */
+    public void verifyResultSetPeakRowsResident(String id, int maxRowsResident)
+    {
+        MockResultSet resultSet = getReturnedResultSet(id);
+        if(null == resultSet)
+        {
+            throw new VerifyFailedException("ResultSet with id " + id + " not present.");
+        }
+        verifyResultSetPeakRowsResident(resultSet, maxRowsResident);
+    }
+
+    /**
+     * Verifies the number of round trips of a <code>ResultSet</code>
+     * with a paged cursor, please see
+     * {@link MockResultSet#setPagedCursor}.
+     * @param resultSet the <code>ResultSet</code>
+     * @param number the expected number of round trips
+     * @throws VerifyFailedException if verification fails
+     */
+    public void verifyResultSetNumberRoundTrips(MockResultSet resultSet, int number)
+    {
+        throwExceptionIfNotPaged(resultSet);
+        if(resultSet.getNumberRoundTrips() != number)
+        {
+            throw new VerifyFailedException("ResultSet " + resultSet.getId() + " took " + resultSet.getNumberRoundTrips() + " round trips, expected " + number + ".");
+        }
+    }
+
+    /**
+     * Verifies the number of round trips of a <code>ResultSet</code>
+     * with a paged cursor, please see
+     * {@link MockResultSet#setPagedCursor}.
+     * @param id the id of the <code>ResultSet</code>
+     * @param number the expected number of round trips
+     * @throws VerifyFailedException if verification fails
+     */
+    public void verifyResultSetNumberRoundTrips(String id, int number)
+    {
+        MockResultSet resultSet = getReturnedResultSet(id);
+        if(null == resultSet)
+        {
+            throw new VerifyFailedException("ResultSet with id " + id + " not present.");
+        }
+        verifyResultSetNumberRoundTrips(resultSet, number);
+    }
+
+    /**
+     * Verifies the number of fetched pages of a <code>ResultSet</code>
+     * with a paged cursor, please see
+     * {@link MockResultSet#setPagedCursor}.
+     * @param resultSet the <code>ResultSet</code>
+     * @param number the expected number of fetched pages
+     * @throws VerifyFailedException if verification fails
+     */
+    public void verifyResultSetNumberPagesFetched(MockResultSet resultSet, int number)
+    {
+        throwExceptionIfNotPaged(resultSet);
+        if(resultSet.getNumberPagesFetched() != number)
+        {
+            throw new VerifyFailedException("ResultSet " + resultSet.getId() + " fetched " + resultSet.getNumberPagesFetched() + " pages, expected " + number + ".");
+        }
+    }
+
+    /**
+     * Verifies the number of fetched pages of a <code>ResultSet</code>
+     * with a paged cursor, please see
+     * {@link MockResultSet#setPagedCursor}.
+     * @param id the id of the <code>ResultSet</code>
+     * @param number the expected number of fetched pages
+     * @throws VerifyFailedException if verification fails
+     */
+    public void verifyResultSetNumberPagesFetched(String id, int number)
+    {
+        MockResultSet resultSet = getReturnedResultSet(id);
+        if(null == resultSet)
+        {
+            throw new VerifyFailedException("ResultSet with id " + id + " not present.");
+        }
+        verifyResultSetNumberPagesFetched(resultSet, number);
+    }
+
+    /**
+     * Verifies that not more than the specified number of rows of
+     * each returned <code>ResultSet</code> were resident at the same
+     * time. All returned <code>ResultSet</code> objects must use a
+     * paged cursor, please see {@link AbstractResultSetHandler#setPagedCursors}.
+     * Fails, if the {@link RecordingPolicy} of a handler does not
+     * record the returned <code>ResultSet</code> objects.
+     * @param maxRowsResident the maximum number of resident rows
+     * @throws VerifyFailedException if verification fails
+     */
+    public void verifyAllResultSetsPeakRowsResident(int maxRowsResident)
+    {
+        throwExceptionIfResultSetsNotRecorded();
+        List<MockResultSet[]> allResultSets = getReturnedResultSets();
+        for (MockResultSet[] resultSets : allResultSets) {
+            for (MockResultSet resultSet : resultSets) {
+                verifyResultSetPeakRowsResident(resultSet, maxRowsResident);
+            }
+        }
+    }
+
+    private void throwExceptionIfNotPaged(MockResultSet resultSet)
+    {
+        if(!resultSet.isPagedCursor())
+        {
+            throw new VerifyFailedException("ResultSet " + resultSet.getId() + " does not use a paged cursor.");
+        }
+    }
     
     /**
      * Verifies that the changes were commited, i.e. the <code>commit</code>
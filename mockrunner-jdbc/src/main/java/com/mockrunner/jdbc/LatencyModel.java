@@ -0,0 +1,214 @@
+package com.mockrunner.jdbc;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.mockrunner.util.regexp.PatternMatcher;
+
+/**
+ * Simulates the latency of a database. The mock statements wait for
+ * the execution latency before they return and the returned
+ * <code>ResultSet</code> objects wait for the fetch latency whenever
+ * the cursor reaches rows that were not fetched yet. Rows are fetched
+ * in blocks of the fetch size of the <code>ResultSet</code>, which is
+ * taken from the statement. A fetch size of 0 fetches all rows at once.
+ * <br>
+ * Use {@link AbstractResultSetHandler#setLatencyModel} to set the
+ * model of a handler. The handler can additionally limit the number
+ * of concurrent executions with
+ * {@link AbstractResultSetHandler#setMaxConcurrentExecutions}.
+ */
+public interface LatencyModel
+{
+    /**
+     * No latency at all. This is the default.
+     */
+    LatencyModel NONE = new LatencyModel()
+    {
+        public long getExecutionLatency(String sql)
+        {
+            return 0;
+        }
+
+        public long getFetchLatency(String sql, int numberRows)
+        {
+            return 0;
+        }
+    };
+
+    /**
+     * Returns the time the execution of the specified SQL string takes.
+     * @param sql the SQL string
+     * @return the latency in nanoseconds
+     */
+    long getExecutionLatency(String sql);
+
+    /**
+     * Returns the time it takes to fetch the specified number of rows
+     * of a <code>ResultSet</code> returned by the specified SQL string
+     * in one round trip.
+     * @param sql the SQL string
+     * @param numberRows the number of rows
+     * @return the latency in nanoseconds
+     */
+    long getFetchLatency(String sql, int numberRows);
+
+    /**
+     * Fixed latencies. Every execution takes the same time, every fetch
+     * takes the time for the round trip plus the time for each row.
+     */
+    class Fixed implements LatencyModel
+    {
+        private final long executionLatency;
+        private final long roundTripLatency;
+        private final long rowLatency;
+
+        /**
+         * @param executionLatency the latency of an execution
+         * @param roundTripLatency the latency of each fetch
+         * @param rowLatency the additional latency of each fetched row
+         * @param unit the time unit of the latencies
+         */
+        public Fixed(long executionLatency, long roundTripLatency, long rowLatency, TimeUnit unit)
+        {
+            this.executionLatency = unit.toNanos(executionLatency);
+            this.roundTripLatency = unit.toNanos(roundTripLatency);
+            this.rowLatency = unit.toNanos(rowLatency);
+        }
+
+        public long getExecutionLatency(String sql)
+        {
+            return executionLatency;
+        }
+
+        public long getFetchLatency(String sql, int numberRows)
+        {
+            return roundTripLatency + numberRows * rowLatency;
+        }
+    }
+
+    /**
+     * Random execution latencies following a log-normal distribution,
+     * which is typical for the response times of a database. The
+     * random numbers are created with the specified seed, i.e. a
+     * single-threaded test sees the same latencies in every run.
+     * The fetch latency is the one of the specified fetch model.
+     */
+    class LogNormal implements LatencyModel
+    {
+        private final double median;
+        private final double sigma;
+        private final Random random;
+        private final LatencyModel fetchModel;
+
+        /**
+         * @param median the median of the execution latency
+         * @param sigma the standard deviation of the logarithm of the
+         *        latency, e.g. 0.5 for moderate and 1.0 for high variance
+         * @param unit the time unit of the median
+         * @param seed the seed of the random numbers
+         * @param fetchModel the model for the fetch latency
+         */
+        public LogNormal(long median, double sigma, TimeUnit unit, long seed, LatencyModel fetchModel)
+        {
+            if(sigma < 0) throw new IllegalArgumentException("sigma must not be negative");
+            this.median = unit.toNanos(median);
+            this.sigma = sigma;
+            this.random = new Random(seed);
+            this.fetchModel = fetchModel;
+        }
+
+        public long getExecutionLatency(String sql)
+        {
+            return (long)(median * Math.exp(sigma * random.nextGaussian()));
+        }
+
+        public long getFetchLatency(String sql, int numberRows)
+        {
+            return fetchModel.getFetchLatency(sql, numberRows);
+        }
+    }
+
+    /**
+     * Different models for different SQL strings. The SQL strings
+     * are matched with the patterns in the order in which they were
+     * added, the model of the first matching pattern is used. If no
+     * pattern matches, the default model is used.
+     * <br>
+     * Adding a pattern replaces the array of patterns, so the lookup
+     * on every execution does not need a lock.
+     */
+    class PerPattern implements LatencyModel
+    {
+        private final PatternMatcher.Factory patternMatcherFactory;
+        private final LatencyModel defaultModel;
+        private volatile PatternModel[] patternModels = new PatternModel[0];
+
+        /**
+         * Matches the patterns case insensitive, an SQL string
+         * matches a pattern if it contains it.
+         * @param defaultModel the model if no pattern matches
+         */
+        public PerPattern(LatencyModel defaultModel)
+        {
+            this(PatternMatcher.Factories.from(false, false, false), defaultModel);
+        }
+
+        /**
+         * @param patternMatcherFactory the factory for the patterns
+         * @param defaultModel the model if no pattern matches
+         */
+        public PerPattern(PatternMatcher.Factory patternMatcherFactory, LatencyModel defaultModel)
+        {
+            this.patternMatcherFactory = patternMatcherFactory;
+            this.defaultModel = defaultModel;
+        }
+
+        /**
+         * Adds a model for the SQL strings matching the specified pattern.
+         * @param pattern the pattern
+         * @param model the model
+         * @return this instance
+         */
+        public synchronized PerPattern add(String pattern, LatencyModel model)
+        {
+            PatternModel[] newPatternModels = Arrays.copyOf(patternModels, patternModels.length + 1);
+            newPatternModels[patternModels.length] = new PatternModel(patternMatcherFactory.create(pattern), model);
+            patternModels = newPatternModels;
+            return this;
+        }
+
+        public long getExecutionLatency(String sql)
+        {
+            return getModel(sql).getExecutionLatency(sql);
+        }
+
+        public long getFetchLatency(String sql, int numberRows)
+        {
+            return getModel(sql).getFetchLatency(sql, numberRows);
+        }
+
+        private LatencyModel getModel(String sql)
+        {
+            PatternModel[] currentPatternModels = patternModels;
+            for(int ii = 0; ii < currentPatternModels.length; ii++)
+            {
+                if(currentPatternModels[ii].pattern.matches(sql)) return currentPatternModels[ii].model;
+            }
+            return defaultModel;
+        }
+
+        private static class PatternModel
+        {
+            private final PatternMatcher pattern;
+            private final LatencyModel model;
+
+            private PatternModel(PatternMatcher pattern, LatencyModel model)
+            {
+                this.pattern = pattern;
+                this.model = model;
+            }
+        }
+    }
+}
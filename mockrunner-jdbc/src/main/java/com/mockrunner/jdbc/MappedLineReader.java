@@ -0,0 +1,152 @@
+package com.mockrunner.jdbc;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Reads the lines of a file through a memory mapped window that moves
+ * over the file. Only the window and one line are held in memory, so
+ * the size of the file does not matter. The current line is kept in
+ * a buffer that is reused for the next line.
+ * Lines are terminated like in <code>BufferedReader</code>, i.e. by
+ * <i>\n</i>, <i>\r</i> or <i>\r\n</i>.
+ */
+class MappedLineReader
+{
+    private static final int WINDOW_SIZE = 8 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final CharsetDecoder decoder;
+    private final CharBuffer chars = CharBuffer.allocate(64 * 1024);
+    private ByteBuffer window;
+    private long windowStart;
+    private char[] line = new char[256];
+    private int length;
+
+    public MappedLineReader(File file, Charset charset) throws IOException
+    {
+        channel = new FileInputStream(file).getChannel();
+        size = channel.size();
+        decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        chars.flip();
+    }
+
+    /**
+     * Reads the next line into the line buffer.
+     * @return <code>false</code> if the end of the file is reached
+     * @throws IOException if the file cannot be read
+     */
+    public boolean readLine() throws IOException
+    {
+        length = 0;
+        boolean read = false;
+        while(chars.hasRemaining() || fill())
+        {
+            read = true;
+            char[] array = chars.array();
+            int start = chars.position();
+            int end = chars.limit();
+            int pos = start;
+            while(pos < end && array[pos] != '\n' && array[pos] != '\r')
+            {
+                pos++;
+            }
+            append(array, start, pos - start);
+            if(pos == end)
+            {
+                chars.position(end);
+                continue;
+            }
+            chars.position(pos + 1);
+            if(array[pos] == '\r' && (chars.hasRemaining() || fill()) && chars.get(chars.position()) == '\n')
+            {
+                chars.get();
+            }
+            return true;
+        }
+        return read;
+    }
+
+    /**
+     * Returns the buffer containing the current line. The buffer
+     * is reused, its content changes with the next call of
+     * {@link #readLine}.
+     * @return the line buffer
+     */
+    public char[] getLine()
+    {
+        return line;
+    }
+
+    /**
+     * Returns the length of the current line.
+     * @return the length of the current line
+     */
+    public int getLength()
+    {
+        return length;
+    }
+
+    public void close() throws IOException
+    {
+        window = null;
+        channel.close();
+    }
+
+    private void append(char[] source, int offset, int count)
+    {
+        if(length + count > line.length)
+        {
+            char[] newLine = new char[Math.max(length + count, line.length * 2)];
+            System.arraycopy(line, 0, newLine, 0, length);
+            line = newLine;
+        }
+        System.arraycopy(source, offset, line, length, count);
+        length += count;
+    }
+
+    private boolean fill() throws IOException
+    {
+        chars.compact();
+        try
+        {
+            while(chars.position() == 0)
+            {
+                if(null == window || !window.hasRemaining())
+                {
+                    if(!map((null == window) ? 0 : windowStart + window.limit())) break;
+                }
+                boolean endOfInput = (windowStart + window.limit() == size);
+                CoderResult result = decoder.decode(window, chars, endOfInput);
+                if(result.isUnderflow() && window.hasRemaining() && !endOfInput)
+                {
+                    // incomplete character at the end of the window
+                    map(windowStart + window.position());
+                }
+            }
+        }
+        finally
+        {
+            chars.flip();
+        }
+        return chars.hasRemaining();
+    }
+
+    private boolean map(long offset) throws IOException
+    {
+        if(offset >= size) return false;
+        long count = Math.min(WINDOW_SIZE, size - offset);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, count);
+        windowStart = offset;
+        return true;
+    }
+}
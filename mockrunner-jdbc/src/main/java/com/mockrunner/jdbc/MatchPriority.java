@@ -0,0 +1,108 @@
+package com.mockrunner.jdbc;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.mockrunner.util.regexp.PatternMatcher;
+
+/**
+ * Decides which prepared SQL string wins if more than one of them
+ * matches an executed SQL string. Patterns that are equal with respect
+ * to the priority are ordered by the time they were prepared, i.e.
+ * the one that was prepared first wins.
+ * Use {@link AbstractResultSetHandler#setMatchPriority} to change the
+ * priority of a handler.
+ */
+public interface MatchPriority
+{
+    /**
+     * The prepared SQL string that was prepared first wins.
+     * This is the default.
+     */
+    MatchPriority INSERTION_ORDER = new MatchPriority()
+    {
+        public int compare(PatternMatcher first, PatternMatcher second)
+        {
+            return 0;
+        }
+    };
+
+    /**
+     * The longest, i.e. the most specific prepared SQL string wins.
+     * If you prepare <i>select * from x</i> and <i>select</i>, the
+     * first one will be returned for <i>select * from x where y = ?</i>,
+     * regardless of the order the strings were prepared.
+     */
+    MatchPriority MOST_SPECIFIC_FIRST = new MatchPriority()
+    {
+        public int compare(PatternMatcher first, PatternMatcher second)
+        {
+            int firstLength = first.pattern().length();
+            int secondLength = second.pattern().length();
+            return (firstLength < secondLength) ? 1 : ((firstLength == secondLength) ? 0 : -1);
+        }
+    };
+
+    /**
+     * Compares two matching patterns.
+     * @param first the first pattern
+     * @param second the second pattern
+     * @return a negative value if <i>first</i> wins, a positive value
+     *         if <i>second</i> wins and 0 if both have the same priority
+     */
+    int compare(PatternMatcher first, PatternMatcher second);
+
+    /**
+     * Priority based on ranks assigned to prepared SQL strings.
+     * The SQL string with the highest rank wins. SQL strings without
+     * a rank have the rank 0. SQL strings with the same rank are
+     * compared with the specified fallback priority.
+     */
+    class Ranked implements MatchPriority
+    {
+        private final Map<String, Integer> ranks = new HashMap<String, Integer>();
+        private final MatchPriority fallback;
+
+        public Ranked()
+        {
+            this(INSERTION_ORDER);
+        }
+
+        public Ranked(MatchPriority fallback)
+        {
+            this.fallback = fallback;
+        }
+
+        /**
+         * Sets the rank of a prepared SQL string.
+         * @param sql the SQL string as it was prepared
+         * @param rank the rank
+         */
+        public void setRank(String sql, int rank)
+        {
+            ranks.put(sql, rank);
+        }
+
+        /**
+         * Returns the rank of a prepared SQL string.
+         * @param sql the SQL string as it was prepared
+         * @return the rank
+         */
+        public int getRank(String sql)
+        {
+            Integer rank = ranks.get(sql);
+            return (null == rank) ? 0 : rank;
+        }
+
+        public int compare(PatternMatcher first, PatternMatcher second)
+        {
+            int firstRank = getRank(first.pattern());
+            int secondRank = getRank(second.pattern());
+            if(firstRank != secondRank)
+            {
+                return (firstRank > secondRank) ? -1 : 1;
+            }
+            return fallback.compare(first, second);
+        }
+    }
+}
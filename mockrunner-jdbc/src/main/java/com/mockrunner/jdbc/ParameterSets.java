@@ -13,15 +13,71 @@ import java.util.List;
  * Each <code>execute</code> call creates a parameter set.
  * A parameter set is a map, the index or the name of the 
  * parameter maps to the value.
+ * <br>
+ * Depending on the {@link RecordingPolicy} of the handler, only the
+ * last parameter sets are kept or the parameter sets are just counted.
+ * The index of a parameter set does not change if older parameter
+ * sets are discarded, {@link #getParameterSet} returns <code>null</code>
+ * for discarded parameter sets. With a compact policy, the parameter
+ * sets are stored in a {@link CompactParameterLog} and
+ * {@link #getParameterSet} returns a new map for each call.
  */
 public class ParameterSets
 {
 	private final List<MockParameterMap> parameterSets;
+	private final MockParameterMap[] lastParameterSets;
+	private final CompactParameterLog compactParameterSets;
 	private final String sql;
+	private int numberParameterSets;
 	
 	public ParameterSets(String sql)
 	{
-		parameterSets = new ArrayList<MockParameterMap>();
+		this(sql, -1);
+	}
+	
+	/**
+	 * Creates an instance that keeps the last <code>capacity</code>
+	 * parameter sets.
+	 * @param sql the SQL string
+	 * @param capacity the number of parameter sets that are kept,
+	 *        -1 to keep all parameter sets
+	 */
+	public ParameterSets(String sql, int capacity)
+	{
+		this(sql, capacity, false, -1);
+	}
+	
+	/**
+	 * Creates an instance that records the parameter sets
+	 * according to the specified {@link RecordingPolicy}.
+	 * @param sql the SQL string
+	 * @param recordingPolicy the recording policy
+	 */
+	public ParameterSets(String sql, RecordingPolicy recordingPolicy)
+	{
+		this(sql, recordingPolicy.getCapacity(), recordingPolicy.isCompact(), recordingPolicy.getMaxParameterSetsInMemory());
+	}
+	
+	private ParameterSets(String sql, int capacity, boolean compact, int maxParameterSetsInMemory)
+	{
+		if(compact)
+		{
+			parameterSets = null;
+			lastParameterSets = null;
+			compactParameterSets = new CompactParameterLog(maxParameterSetsInMemory);
+		}
+		else if(capacity < 0)
+		{
+			parameterSets = new ArrayList<MockParameterMap>();
+			lastParameterSets = null;
+			compactParameterSets = null;
+		}
+		else
+		{
+			parameterSets = null;
+			lastParameterSets = new MockParameterMap[capacity];
+			compactParameterSets = null;
+		}
 		this.sql = sql;
 	}
 	
@@ -38,28 +94,58 @@ public class ParameterSets
 	 * Adds a parameter set.
 	 * @param parameterSet the parameter set.
 	 */
-	public void addParameterSet(MockParameterMap parameterSet)
+	public synchronized void addParameterSet(MockParameterMap parameterSet)
 	{
-		parameterSets.add(parameterSet);
+		if(null != parameterSets)
+		{
+			parameterSets.add(parameterSet);
+		}
+		else if(null != compactParameterSets)
+		{
+			compactParameterSets.add(parameterSet);
+		}
+		else if(lastParameterSets.length > 0)
+		{
+			lastParameterSets[numberParameterSets % lastParameterSets.length] = parameterSet;
+		}
+		numberParameterSets++;
 	}
 	
 	/**
-	 * Get the current number of parameter sets.
+	 * Get the current number of parameter sets. Includes the
+	 * parameter sets that were discarded.
 	 * @return the number of parameter sets
 	 */
-	public int getNumberParameterSets()
+	public synchronized int getNumberParameterSets()
 	{
-		return parameterSets.size();
+		return numberParameterSets;
 	}
 	
 	/**
 	 * Gets a parameter set for a specified index.
 	 * @param indexOfParameterSet the index
-	 * @return the parameter set
+	 * @return the parameter set or <code>null</code>, if there is no
+	 *         parameter set with this index or it was discarded
 	 */
-	public MockParameterMap getParameterSet(int indexOfParameterSet)
+	public synchronized MockParameterMap getParameterSet(int indexOfParameterSet)
 	{
 		if(indexOfParameterSet >= getNumberParameterSets()) return null;
-		return parameterSets.get(indexOfParameterSet);
+		if(null != parameterSets) return parameterSets.get(indexOfParameterSet);
+		if(null != compactParameterSets) return compactParameterSets.get(indexOfParameterSet);
+		if(!isParameterSetRecorded(indexOfParameterSet)) return null;
+		return lastParameterSets[indexOfParameterSet % lastParameterSets.length];
+	}
+	
+	/**
+	 * Returns if the parameter set with the specified index
+	 * was recorded and not discarded.
+	 * @param indexOfParameterSet the index
+	 * @return <code>true</code> if the parameter set is available
+	 */
+	public synchronized boolean isParameterSetRecorded(int indexOfParameterSet)
+	{
+		if(indexOfParameterSet < 0 || indexOfParameterSet >= getNumberParameterSets()) return false;
+		if(null != parameterSets || null != compactParameterSets) return true;
+		return indexOfParameterSet >= numberParameterSets - lastParameterSets.length;
 	}
 }
@@ -0,0 +1,295 @@
+package com.mockrunner.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.mockrunner.util.regexp.PatternMatcher;
+import com.mockrunner.util.regexp.SimplePatternMatcher;
+import com.mockrunner.util.regexp.StartsEndsPatternMatcher;
+
+/**
+ * Lookup index for the compiled SQL patterns of a result set handler.
+ * An index narrows down the patterns that may match an executed SQL
+ * string, so the handler does not have to try every prepared pattern
+ * on every execution. The returned candidates are always verified with
+ * {@link PatternMatcher#matches}, i.e. an index may return more
+ * patterns than actually match, but it must never miss a matching one.
+ * Use {@link AbstractResultSetHandler#setPatternMatcherIndexFactory} to
+ * plug in a custom index.
+ */
+public interface PatternMatcherIndex
+{
+    /**
+     * Adds a pattern to the index.
+     * @param matcher the pattern
+     */
+    void add(PatternMatcher matcher);
+
+    /**
+     * Removes a pattern from the index.
+     * @param matcher the pattern
+     */
+    void remove(PatternMatcher matcher);
+
+    /**
+     * Removes all patterns from the index.
+     */
+    void clear();
+
+    /**
+     * Returns the patterns that may match the specified SQL string.
+     * @param sql the SQL string
+     * @return the candidate patterns
+     */
+    Collection<PatternMatcher> getCandidates(String sql);
+
+    interface Factory
+    {
+        PatternMatcherIndex create();
+    }
+
+    /**
+     * The default index. Exact patterns are looked up in a hash table,
+     * the default <i>contains</i> patterns of {@link SimplePatternMatcher}
+     * with an Aho-Corasick automaton and the literal prefixes of
+     * {@link StartsEndsPatternMatcher} with a trie, so the lookup cost
+     * depends on the length of the SQL string and not on the number
+     * of prepared statements. {@link FingerprintPatternMatcher} patterns
+     * are looked up by the fingerprint of the SQL string in a hash table.
+     * All other patterns, e.g. Perl5 regular expressions, are tried
+     * one by one.
+     */
+    class Default implements PatternMatcherIndex
+    {
+        public final static Factory FACTORY = new Factory()
+        {
+            public PatternMatcherIndex create()
+            {
+                return new Default();
+            }
+        };
+
+        private final Map<String, List<PatternMatcher>> exactCaseSensitive = new HashMap<String, List<PatternMatcher>>();
+        private final Map<String, List<PatternMatcher>> exactIgnoreCase = new HashMap<String, List<PatternMatcher>>();
+        private final SubstringIndex containsCaseSensitive = new SubstringIndex();
+        private final SubstringIndex containsIgnoreCase = new SubstringIndex();
+        private final PrefixIndex startsWith = new PrefixIndex();
+        private final Map<String, List<PatternMatcher>> fingerprintCaseSensitive = new HashMap<String, List<PatternMatcher>>();
+        private final Map<String, List<PatternMatcher>> fingerprintIgnoreCase = new HashMap<String, List<PatternMatcher>>();
+        private final Set<PatternMatcher> fallback = new LinkedHashSet<PatternMatcher>();
+
+        public void add(PatternMatcher matcher)
+        {
+            if(matcher instanceof SimplePatternMatcher)
+            {
+                SimplePatternMatcher simpleMatcher = (SimplePatternMatcher)matcher;
+                String pattern = simpleMatcher.pattern();
+                if(simpleMatcher.isExactMatch())
+                {
+                    if(simpleMatcher.isCaseSensitive())
+                    {
+                        getList(exactCaseSensitive, pattern).add(matcher);
+                    }
+                    else
+                    {
+                        getList(exactIgnoreCase, foldCase(pattern)).add(matcher);
+                    }
+                }
+                else if(simpleMatcher.isCaseSensitive())
+                {
+                    containsCaseSensitive.add(pattern, matcher);
+                }
+                else
+                {
+                    containsIgnoreCase.add(pattern.toUpperCase(), matcher);
+                }
+            }
+            else if(matcher instanceof StartsEndsPatternMatcher && null != ((StartsEndsPatternMatcher)matcher).getStart())
+            {
+                startsWith.add(((StartsEndsPatternMatcher)matcher).getStart(), matcher);
+            }
+            else if(matcher instanceof FingerprintPatternMatcher)
+            {
+                FingerprintPatternMatcher fingerprintMatcher = (FingerprintPatternMatcher)matcher;
+                getList(getFingerprintMap(fingerprintMatcher.isCaseSensitive()), fingerprintMatcher.getFingerprint()).add(matcher);
+            }
+            else
+            {
+                fallback.add(matcher);
+            }
+        }
+
+        public void remove(PatternMatcher matcher)
+        {
+            if(matcher instanceof SimplePatternMatcher)
+            {
+                SimplePatternMatcher simpleMatcher = (SimplePatternMatcher)matcher;
+                String pattern = simpleMatcher.pattern();
+                if(simpleMatcher.isExactMatch())
+                {
+                    if(simpleMatcher.isCaseSensitive())
+                    {
+                        removeFromList(exactCaseSensitive, pattern, matcher);
+                    }
+                    else
+                    {
+                        removeFromList(exactIgnoreCase, foldCase(pattern), matcher);
+                    }
+                }
+                else if(simpleMatcher.isCaseSensitive())
+                {
+                    containsCaseSensitive.remove(pattern, matcher);
+                }
+                else
+                {
+                    containsIgnoreCase.remove(pattern.toUpperCase(), matcher);
+                }
+            }
+            else if(matcher instanceof StartsEndsPatternMatcher && null != ((StartsEndsPatternMatcher)matcher).getStart())
+            {
+                startsWith.remove(((StartsEndsPatternMatcher)matcher).getStart(), matcher);
+            }
+            else if(matcher instanceof FingerprintPatternMatcher)
+            {
+                FingerprintPatternMatcher fingerprintMatcher = (FingerprintPatternMatcher)matcher;
+                removeFromList(getFingerprintMap(fingerprintMatcher.isCaseSensitive()), fingerprintMatcher.getFingerprint(), matcher);
+            }
+            else
+            {
+                fallback.remove(matcher);
+            }
+        }
+
+        public void clear()
+        {
+            exactCaseSensitive.clear();
+            exactIgnoreCase.clear();
+            containsCaseSensitive.clear();
+            containsIgnoreCase.clear();
+            startsWith.clear();
+            fingerprintCaseSensitive.clear();
+            fingerprintIgnoreCase.clear();
+            fallback.clear();
+        }
+
+        public Collection<PatternMatcher> getCandidates(String sql)
+        {
+            Set<PatternMatcher> candidates = new HashSet<PatternMatcher>();
+            addAll(candidates, exactCaseSensitive.get(sql));
+            if(!exactIgnoreCase.isEmpty())
+            {
+                addAll(candidates, exactIgnoreCase.get(foldCase(sql)));
+            }
+            containsCaseSensitive.collectMatches(sql, candidates);
+            if(!containsIgnoreCase.isEmpty())
+            {
+                containsIgnoreCase.collectMatches(sql.toUpperCase(), candidates);
+            }
+            startsWith.collectMatches(sql, candidates);
+            if(!fingerprintCaseSensitive.isEmpty())
+            {
+                addAll(candidates, fingerprintCaseSensitive.get(SQLFingerprint.of(sql, true)));
+            }
+            if(!fingerprintIgnoreCase.isEmpty())
+            {
+                addAll(candidates, fingerprintIgnoreCase.get(SQLFingerprint.of(sql, false)));
+            }
+            candidates.addAll(fallback);
+            return candidates;
+        }
+
+        private Map<String, List<PatternMatcher>> getFingerprintMap(boolean caseSensitive)
+        {
+            return caseSensitive ? fingerprintCaseSensitive : fingerprintIgnoreCase;
+        }
+
+        /**
+         * Folds the case of every character the same way
+         * <code>String.equalsIgnoreCase</code> compares them, so two
+         * strings are equal ignoring case if and only if their folded
+         * forms are equal.
+         */
+        private String foldCase(String string)
+        {
+            char[] chars = new char[string.length()];
+            for(int ii = 0; ii < chars.length; ii++)
+            {
+                chars[ii] = Character.toLowerCase(Character.toUpperCase(string.charAt(ii)));
+            }
+            return new String(chars);
+        }
+
+        private List<PatternMatcher> getList(Map<String, List<PatternMatcher>> map, String key)
+        {
+            List<PatternMatcher> list = map.get(key);
+            if(null == list)
+            {
+                list = new ArrayList<PatternMatcher>(1);
+                map.put(key, list);
+            }
+            return list;
+        }
+
+        private void removeFromList(Map<String, List<PatternMatcher>> map, String key, PatternMatcher matcher)
+        {
+            List<PatternMatcher> list = map.get(key);
+            if(null == list) return;
+            list.remove(matcher);
+            if(list.isEmpty())
+            {
+                map.remove(key);
+            }
+        }
+
+        private void addAll(Set<PatternMatcher> candidates, List<PatternMatcher> list)
+        {
+            if(null != list)
+            {
+                candidates.addAll(list);
+            }
+        }
+    }
+
+    /**
+     * No index at all. Every pattern is a candidate for every SQL string,
+     * i.e. the handler tries all prepared patterns one by one.
+     */
+    class Scan implements PatternMatcherIndex
+    {
+        public final static Factory FACTORY = new Factory()
+        {
+            public PatternMatcherIndex create()
+            {
+                return new Scan();
+            }
+        };
+
+        private final Set<PatternMatcher> matchers = new LinkedHashSet<PatternMatcher>();
+
+        public void add(PatternMatcher matcher)
+        {
+            matchers.add(matcher);
+        }
+
+        public void remove(PatternMatcher matcher)
+        {
+            matchers.remove(matcher);
+        }
+
+        public void clear()
+        {
+            matchers.clear();
+        }
+
+        public Collection<PatternMatcher> getCandidates(String sql)
+        {
+            return matchers;
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package com.mockrunner.jdbc;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.mockrunner.util.regexp.PatternMatcher;
+
+/**
+ * <code>Map</code> of compiled SQL patterns that keeps a
+ * {@link PatternMatcherIndex} in sync with its keys. Used by the
+ * result set handlers to find the prepared objects for an executed
+ * SQL string without trying every pattern.
+ * If multiple patterns match, the {@link MatchPriority} decides
+ * which one wins. Patterns with the same priority are ordered by
+ * the time they were added to this <code>Map</code>.
+ * <br>
+ * A copy-on-write <code>Map</code> never modifies the data that readers
+ * see. Each modification copies the mappings, creates a new index and
+ * publishes them at once, so any number of threads can read without
+ * locking while another thread modifies the <code>Map</code>. Concurrent
+ * modifications must still be synchronized by the caller. Modifications
+ * take time linear to the size of the <code>Map</code>, which is fine
+ * for prepared data that is read far more often than it is modified.
+ * Use {@link #beginBatch} and {@link #endBatch} for many modifications
+ * at once. Only the first modification of a batch copies the mappings
+ * and the index, the others modify the copy, which is published at the
+ * end of the batch.
+ * @param <T> the type of the mapped objects
+ */
+public class PatternMatcherMap<T> extends AbstractMap<PatternMatcher, T>
+{
+    private PatternMatcherIndex.Factory indexFactory;
+    private final boolean copyOnWrite;
+    private volatile Snapshot<T> snapshot;
+    private Snapshot<T> pending;
+    private int batchDepth;
+
+    /**
+     * Creates a <code>Map</code> that is modified in place and must not
+     * be read while it is modified.
+     * @param map the backing <code>Map</code>
+     * @param index the index
+     */
+    public PatternMatcherMap(Map<PatternMatcher, T> map, PatternMatcherIndex index)
+    {
+        this.indexFactory = null;
+        this.copyOnWrite = false;
+        this.snapshot = new Snapshot<T>(map, index, MatchPriority.INSERTION_ORDER);
+        snapshot.addAll(map.keySet());
+    }
+
+    /**
+     * Creates a <code>Map</code> whose indexes are created by the
+     * specified factory.
+     * @param map the backing <code>Map</code>, copied if <code>copyOnWrite</code>
+     *        is <code>true</code>
+     * @param indexFactory the factory for the indexes
+     * @param copyOnWrite <code>true</code> if modifications must not
+     *        change the data that concurrent readers see
+     */
+    public PatternMatcherMap(Map<PatternMatcher, T> map, PatternMatcherIndex.Factory indexFactory, boolean copyOnWrite)
+    {
+        this.indexFactory = indexFactory;
+        this.copyOnWrite = copyOnWrite;
+        Map<PatternMatcher, T> backingMap = copyOnWrite ? new HashMap<PatternMatcher, T>(map) : map;
+        this.snapshot = new Snapshot<T>(backingMap, indexFactory.create(), MatchPriority.INSERTION_ORDER);
+        snapshot.addAll(map.keySet());
+    }
+
+    /**
+     * Sets the priority that decides which pattern wins
+     * if multiple patterns match.
+     * @param priority the priority
+     */
+    public void setMatchPriority(MatchPriority priority)
+    {
+        modifiableSnapshot().priority = priority;
+        publish();
+    }
+
+    /**
+     * Starts a batch of modifications. The modifications of a
+     * copy-on-write <code>Map</code> are not visible to readers before
+     * the batch is ended with {@link #endBatch}. Batches can be nested.
+     * Does nothing, if the <code>Map</code> is modified in place.
+     */
+    public void beginBatch()
+    {
+        batchDepth++;
+    }
+
+    /**
+     * Ends a batch of modifications and publishes them, if this is
+     * the outermost batch.
+     */
+    public void endBatch()
+    {
+        if(batchDepth > 0) batchDepth--;
+        publish();
+    }
+
+    /**
+     * Replaces all mappings, the index factory and the priority at once.
+     * The patterns are ordered like the specified mappings.
+     * Readers of a copy-on-write <code>Map</code> either see the old
+     * or the new mappings, but never a mix of them.
+     * @param mappings the new mappings
+     * @param indexFactory the new index factory
+     * @param priority the new priority
+     */
+    public void replaceAll(Map<PatternMatcher, T> mappings, PatternMatcherIndex.Factory indexFactory, MatchPriority priority)
+    {
+        this.indexFactory = indexFactory;
+        Map<PatternMatcher, T> map;
+        if(copyOnWrite)
+        {
+            map = new HashMap<PatternMatcher, T>(mappings);
+        }
+        else
+        {
+            map = snapshot.map;
+            map.clear();
+            map.putAll(mappings);
+        }
+        Snapshot<T> next = new Snapshot<T>(map, indexFactory.create(), priority);
+        next.addAll(mappings.keySet());
+        if(copyOnWrite)
+        {
+            pending = next;
+            publish();
+        }
+        else
+        {
+            snapshot = next;
+        }
+    }
+
+    /**
+     * Returns all objects whose pattern matches the specified
+     * SQL string, the winning one first.
+     * @param sql the SQL string
+     * @return the <code>List</code> of matching objects
+     */
+    public List<T> getMatchingObjects(String sql)
+    {
+        List<T> resultList = new ArrayList<T>();
+        Iterator<T> iterator = iterateMatchingObjects(sql);
+        while(iterator.hasNext())
+        {
+            resultList.add(iterator.next());
+        }
+        return resultList;
+    }
+
+    /**
+     * Returns the object whose pattern wins for the specified SQL string.
+     * @param sql the SQL string
+     * @return the matching object or <code>null</code>
+     */
+    public T getFirstMatchingObject(String sql)
+    {
+        Iterator<T> iterator = iterateMatchingObjects(sql);
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    /**
+     * Returns the objects whose pattern matches the specified SQL string,
+     * the winning one first. The patterns are tried lazily, so a caller
+     * that stops after the first suitable object does not pay for
+     * matching the patterns with lower priority.
+     * @param sql the SQL string
+     * @return the <code>Iterator</code> over the matching objects
+     */
+    public Iterator<T> iterateMatchingObjects(final String sql)
+    {
+        final Snapshot<T> current = snapshot;
+        Collection<PatternMatcher> candidates = current.index.getCandidates(sql);
+        final PatternMatcher[] ordered = candidates.toArray(new PatternMatcher[candidates.size()]);
+        if(ordered.length > 1)
+        {
+            Arrays.sort(ordered, current);
+        }
+        return new Iterator<T>()
+        {
+            private int position = 0;
+            private PatternMatcher next = null;
+
+            public boolean hasNext()
+            {
+                while(null == next && position < ordered.length)
+                {
+                    PatternMatcher candidate = ordered[position++];
+                    if(candidate.matches(sql))
+                    {
+                        next = candidate;
+                    }
+                }
+                return null != next;
+            }
+
+            public T next()
+            {
+                if(!hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+                T object = current.map.get(next);
+                next = null;
+                return object;
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public T put(PatternMatcher key, T value)
+    {
+        Snapshot<T> latest = latestSnapshot();
+        T oldValue = latest.map.get(key);
+        if(copyOnWrite && oldValue == value && latest.map.containsKey(key))
+        {
+            return oldValue;
+        }
+        Snapshot<T> next = modifiableSnapshot();
+        next.add(key);
+        next.map.put(key, value);
+        publish();
+        return oldValue;
+    }
+
+    @Override
+    public T remove(Object key)
+    {
+        if(!latestSnapshot().map.containsKey(key))
+        {
+            return null;
+        }
+        Snapshot<T> next = modifiableSnapshot();
+        next.sequences.remove(key);
+        next.index.remove((PatternMatcher)key);
+        T oldValue = next.map.remove(key);
+        publish();
+        return oldValue;
+    }
+
+    @Override
+    public void clear()
+    {
+        if(!copyOnWrite)
+        {
+            snapshot.map.clear();
+            snapshot.sequences.clear();
+            snapshot.index.clear();
+            return;
+        }
+        pending = new Snapshot<T>(new HashMap<PatternMatcher, T>(), indexFactory.create(), latestSnapshot().priority);
+        publish();
+    }
+
+    @Override
+    public T get(Object key)
+    {
+        return snapshot.map.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return snapshot.map.containsKey(key);
+    }
+
+    @Override
+    public int size()
+    {
+        return snapshot.map.size();
+    }
+
+    @Override
+    public Set<Map.Entry<PatternMatcher, T>> entrySet()
+    {
+        return Collections.unmodifiableMap(snapshot.map).entrySet();
+    }
+
+    /**
+     * Returns the snapshot with all modifications, including the ones
+     * of the current batch that are not published yet.
+     */
+    private Snapshot<T> latestSnapshot()
+    {
+        return (null != pending) ? pending : snapshot;
+    }
+
+    /**
+     * Returns the snapshot to modify. A copy-on-write <code>Map</code>
+     * copies the published snapshot once per batch or modification.
+     */
+    private Snapshot<T> modifiableSnapshot()
+    {
+        if(!copyOnWrite) return snapshot;
+        if(null == pending)
+        {
+            Snapshot<T> current = snapshot;
+            pending = new Snapshot<T>(new HashMap<PatternMatcher, T>(current.map), indexFactory.create(), current.priority);
+            pending.addAll(current.orderedKeys());
+        }
+        return pending;
+    }
+
+    private void publish()
+    {
+        if(null != pending && 0 == batchDepth)
+        {
+            snapshot = pending;
+            pending = null;
+        }
+    }
+
+    /**
+     * The mappings, the insertion order of the patterns and the index.
+     * A copy-on-write <code>Map</code> does not modify a snapshot
+     * after it is published.
+     */
+    private static class Snapshot<T> implements Comparator<PatternMatcher>
+    {
+        private final Map<PatternMatcher, T> map;
+        private final Map<PatternMatcher, Integer> sequences = new HashMap<PatternMatcher, Integer>();
+        private final PatternMatcherIndex index;
+        private MatchPriority priority;
+        private int nextSequence = 0;
+
+        public Snapshot(Map<PatternMatcher, T> map, PatternMatcherIndex index, MatchPriority priority)
+        {
+            this.map = map;
+            this.index = index;
+            this.priority = priority;
+        }
+
+        public void add(PatternMatcher matcher)
+        {
+            if(sequences.containsKey(matcher)) return;
+            sequences.put(matcher, nextSequence++);
+            index.add(matcher);
+        }
+
+        public void addAll(Collection<PatternMatcher> matchers)
+        {
+            for(PatternMatcher matcher : matchers)
+            {
+                add(matcher);
+            }
+        }
+
+        public List<PatternMatcher> orderedKeys()
+        {
+            List<PatternMatcher> keys = new ArrayList<PatternMatcher>(sequences.keySet());
+            Collections.sort(keys, new Comparator<PatternMatcher>()
+            {
+                public int compare(PatternMatcher first, PatternMatcher second)
+                {
+                    return sequences.get(first).compareTo(sequences.get(second));
+                }
+            });
+            return keys;
+        }
+
+        public int compare(PatternMatcher first, PatternMatcher second)
+        {
+            int result = priority.compare(first, second);
+            if(0 != result) return result;
+            return sequences.get(first).compareTo(sequences.get(second));
+        }
+    }
+}
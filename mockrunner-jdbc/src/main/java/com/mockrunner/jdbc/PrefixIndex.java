@@ -0,0 +1,78 @@
+package com.mockrunner.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.mockrunner.util.regexp.PatternMatcher;
+
+/**
+ * Trie that finds all registered keys a string starts with
+ * with one pass over the string.
+ */
+class PrefixIndex
+{
+    private SubstringIndex.Node root = new SubstringIndex.Node();
+    private int count;
+
+    public void add(String key, PatternMatcher matcher)
+    {
+        SubstringIndex.Node node = root;
+        for(int ii = 0; ii < key.length(); ii++)
+        {
+            node = node.getOrCreateChild(key.charAt(ii));
+        }
+        if(null == node.output)
+        {
+            node.output = new ArrayList<PatternMatcher>(1);
+        }
+        node.output.add(matcher);
+        count++;
+    }
+
+    public void remove(String key, PatternMatcher matcher)
+    {
+        SubstringIndex.Node node = root;
+        for(int ii = 0; ii < key.length() && null != node; ii++)
+        {
+            node = node.getChild(key.charAt(ii));
+        }
+        if(null != node && null != node.output && node.output.remove(matcher))
+        {
+            count--;
+        }
+    }
+
+    public void clear()
+    {
+        root = new SubstringIndex.Node();
+        count = 0;
+    }
+
+    /**
+     * Adds the matchers of all keys the specified string
+     * starts with to the specified collection.
+     * @param string the string to search
+     * @param result the collection receiving the matchers
+     */
+    public void collectMatches(String string, Collection<PatternMatcher> result)
+    {
+        if(0 == count) return;
+        SubstringIndex.Node node = root;
+        addOutput(node.output, result);
+        for(int ii = 0; ii < string.length(); ii++)
+        {
+            node = node.getChild(string.charAt(ii));
+            if(null == node) return;
+            addOutput(node.output, result);
+        }
+    }
+
+    private void addOutput(List<PatternMatcher> output, Collection<PatternMatcher> result)
+    {
+        if(null != output)
+        {
+            result.addAll(output);
+        }
+    }
+}
@@ -5,6 +5,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import com.mockrunner.mock.jdbc.MockPreparedStatement;
 
@@ -15,11 +17,33 @@ public class PreparedStatementResultSetHandler extends AbstractParameterResultSe
 { 
     private final List<MockPreparedStatement> preparedStatements;
     private final Map<String, List<MockPreparedStatement>> preparedStatementMap;
+    private final StripedAppendLog<MockPreparedStatement> preparedStatementsLog;
     
     public PreparedStatementResultSetHandler()
     {
-        preparedStatements = new ArrayList<MockPreparedStatement>();
-        preparedStatementMap = new TreeMap<String, List<MockPreparedStatement>>();
+        this(false);
+    }
+
+    /**
+     * Creates a new handler.
+     * @param threadSafe <code>true</code> if the handler can be used
+     *        by more than one thread at the same time
+     */
+    public PreparedStatementResultSetHandler(boolean threadSafe)
+    {
+        super(threadSafe);
+        if(threadSafe)
+        {
+            preparedStatements = null;
+            preparedStatementsLog = new StripedAppendLog<MockPreparedStatement>();
+            preparedStatementMap = new ConcurrentSkipListMap<String, List<MockPreparedStatement>>();
+        }
+        else
+        {
+            preparedStatements = new ArrayList<MockPreparedStatement>();
+            preparedStatementsLog = null;
+            preparedStatementMap = new TreeMap<String, List<MockPreparedStatement>>();
+        }
     }
     
     /**
@@ -30,6 +54,19 @@ public class PreparedStatementResultSetHandler extends AbstractParameterResultSe
     public void addPreparedStatement(MockPreparedStatement statement)
     { 
         statement.setPreparedStatementResultSetHandler(this);
+        if(isThreadSafe())
+        {
+            List<MockPreparedStatement> list = preparedStatementMap.get(statement.getSQL());
+            if(null == list)
+            {
+                list = Collections.synchronizedList(new ArrayList<MockPreparedStatement>());
+                List<MockPreparedStatement> existingList = ((ConcurrentMap<String, List<MockPreparedStatement>>)preparedStatementMap).putIfAbsent(statement.getSQL(), list);
+                if(null != existingList) list = existingList;
+            }
+            list.add(statement);
+            preparedStatementsLog.add(statement);
+            return;
+        }
         List<MockPreparedStatement> list = preparedStatementMap.get(statement.getSQL());
         if(null == list)
         {
@@ -46,6 +83,10 @@ public class PreparedStatementResultSetHandler extends AbstractParameterResultSe
      */
     public List<MockPreparedStatement> getPreparedStatements()
     {
+        if(isThreadSafe())
+        {
+            return Collections.unmodifiableList(preparedStatementsLog.toList());
+        }
         return Collections.unmodifiableList(preparedStatements);
     }
     
@@ -57,6 +98,19 @@ public class PreparedStatementResultSetHandler extends AbstractParameterResultSe
      */
     public Map<String, List<MockPreparedStatement>> getPreparedStatementMap()
     {
+        if(isThreadSafe())
+        {
+            Map<String, List<MockPreparedStatement>> copy = new TreeMap<String, List<MockPreparedStatement>>();
+            for(Map.Entry<String, List<MockPreparedStatement>> entry : preparedStatementMap.entrySet())
+            {
+                List<MockPreparedStatement> list = entry.getValue();
+                synchronized(list)
+                {
+                    copy.put(entry.getKey(), new ArrayList<MockPreparedStatement>(list));
+                }
+            }
+            return Collections.unmodifiableMap(copy);
+        }
         return Collections.unmodifiableMap(preparedStatementMap);
     }
 
@@ -65,7 +119,14 @@ public class PreparedStatementResultSetHandler extends AbstractParameterResultSe
      */
     public void clearPreparedStatements()
     {
-        preparedStatements.clear();
+        if(isThreadSafe())
+        {
+            preparedStatementsLog.clear();
+        }
+        else
+        {
+            preparedStatements.clear();
+        }
         preparedStatementMap.clear();
     }
 }
@@ -0,0 +1,79 @@
+package com.mockrunner.jdbc;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * A JDBC <code>Driver</code> that delegates to a real driver and
+ * records the executions of all connections with a {@link FixtureRecorder}.
+ * Register it with the <code>DriverManager</code> (and deregister the
+ * real driver) to record the executions of code that obtains its
+ * connections from the <code>DriverManager</code>.
+ */
+public class RecordingDriver implements Driver
+{
+    private final Driver driver;
+    private final FixtureRecorder recorder;
+
+    /**
+     * Creates a driver that delegates to the specified driver.
+     * @param driver the real driver
+     * @param recorder the recorder
+     */
+    public RecordingDriver(Driver driver, FixtureRecorder recorder)
+    {
+        this.driver = driver;
+        this.recorder = recorder;
+    }
+
+    /**
+     * Returns the recorder.
+     * @return the recorder
+     */
+    public FixtureRecorder getRecorder()
+    {
+        return recorder;
+    }
+
+    public int getMajorVersion()
+    {
+        return driver.getMajorVersion();
+    }
+
+    public int getMinorVersion()
+    {
+        return driver.getMinorVersion();
+    }
+
+    public boolean jdbcCompliant()
+    {
+        return driver.jdbcCompliant();
+    }
+
+    public boolean acceptsURL(String url) throws SQLException
+    {
+        return driver.acceptsURL(url);
+    }
+
+    public Connection connect(String url, Properties info) throws SQLException
+    {
+        Connection connection = driver.connect(url, info);
+        if(null == connection) return null;
+        return recorder.wrap(connection);
+    }
+
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) throws SQLException
+    {
+        return driver.getPropertyInfo(url, info);
+    }
+
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException
+    {
+        return driver.getParentLogger();
+    }
+}
@@ -0,0 +1,149 @@
+package com.mockrunner.jdbc;
+
+/**
+ * Decides how much a result set handler records about the executed
+ * statements. Use {@link AbstractResultSetHandler#setRecordingPolicy}
+ * to change the policy of a handler.
+ * <br>
+ * {@link #FULL} records every executed SQL string, every returned
+ * <code>ResultSet</code> and every parameter set. This is the default.
+ * The recorded data grows with every execution, which is fine for
+ * unit tests, but not for long running load tests.
+ * <br>
+ * {@link #lastExecutions} only keeps the last executions, i.e. the
+ * recorded data is bounded. {@link #AGGREGATE} does not keep any
+ * executions at all, but only counts them. With both policies, the
+ * handler additionally maintains {@link StatementStatistics} for
+ * each executed SQL string.
+ * <br>
+ * {@link #COMPACT} and {@link #compact} record all executions like
+ * {@link #FULL}, but store the parameter sets of prepared and callable
+ * statements in a {@link CompactParameterLog}, which needs a fraction
+ * of the memory and can write older parameter sets to a temporary file.
+ */
+public class RecordingPolicy
+{
+    /**
+     * Records all executions. This is the default.
+     */
+    public static final RecordingPolicy FULL = new RecordingPolicy(-1, false, -1);
+
+    /**
+     * Does not record single executions, but only the
+     * {@link StatementStatistics} of each SQL string and the number
+     * of parameter sets.
+     */
+    public static final RecordingPolicy AGGREGATE = new RecordingPolicy(0, false, -1);
+
+    /**
+     * Records all executions and keeps the parameter sets in memory
+     * in a {@link CompactParameterLog}.
+     */
+    public static final RecordingPolicy COMPACT = new RecordingPolicy(-1, true, -1);
+
+    private final int capacity;
+    private final boolean compact;
+    private final int maxParameterSetsInMemory;
+
+    private RecordingPolicy(int capacity, boolean compact, int maxParameterSetsInMemory)
+    {
+        this.capacity = capacity;
+        this.compact = compact;
+        this.maxParameterSetsInMemory = maxParameterSetsInMemory;
+    }
+
+    /**
+     * Returns a policy that keeps the last <code>capacity</code>
+     * executed SQL strings and returned <code>ResultSet</code> objects
+     * and the last <code>capacity</code> parameter sets of each SQL
+     * string. Older entries are discarded.
+     * @param capacity the number of executions that are kept
+     * @return the policy
+     */
+    public static RecordingPolicy lastExecutions(int capacity)
+    {
+        if(capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        return new RecordingPolicy(capacity, false, -1);
+    }
+
+    /**
+     * Returns a policy that records all executions and keeps the
+     * parameter sets in a {@link CompactParameterLog}. If a SQL string
+     * has more than <code>maxParameterSetsInMemory</code> parameter sets,
+     * the older ones are written to a temporary file.
+     * @param maxParameterSetsInMemory the number of parameter sets of each
+     *        SQL string that are kept in memory
+     * @return the policy
+     */
+    public static RecordingPolicy compact(int maxParameterSetsInMemory)
+    {
+        if(maxParameterSetsInMemory < 1) throw new IllegalArgumentException("maxParameterSetsInMemory must be positive");
+        return new RecordingPolicy(-1, true, maxParameterSetsInMemory);
+    }
+
+    /**
+     * Returns the number of executions that are kept.
+     * @return the number of executions or -1, if all executions are kept
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * Returns if the parameter sets are stored in a {@link CompactParameterLog}.
+     * @return <code>true</code> for {@link #COMPACT} and {@link #compact}
+     */
+    public boolean isCompact()
+    {
+        return compact;
+    }
+
+    /**
+     * Returns the number of parameter sets of each SQL string that
+     * are kept in memory by a compact policy.
+     * @return the number of parameter sets or -1, if all parameter
+     *         sets are kept in memory
+     */
+    public int getMaxParameterSetsInMemory()
+    {
+        return maxParameterSetsInMemory;
+    }
+
+    /**
+     * Returns if all executions are kept.
+     * @return <code>true</code> for {@link #FULL} and the compact policies
+     */
+    public boolean isFull()
+    {
+        return capacity < 0;
+    }
+
+    /**
+     * Returns if single executions, i.e. the executed SQL strings and
+     * the returned <code>ResultSet</code> objects, are kept.
+     * @return <code>false</code> for {@link #AGGREGATE}
+     */
+    public boolean isRecordingExecutions()
+    {
+        return 0 != capacity;
+    }
+
+    /**
+     * Returns if the handler maintains {@link StatementStatistics}.
+     * @return <code>true</code>, if not all executions are kept
+     */
+    public boolean isAggregating()
+    {
+        return capacity >= 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        if(compact) return (maxParameterSetsInMemory < 0) ? "COMPACT" : "COMPACT(" + maxParameterSetsInMemory + ")";
+        if(isFull()) return "FULL";
+        if(0 == capacity) return "AGGREGATE";
+        return "LAST_EXECUTIONS(" + capacity + ")";
+    }
+}
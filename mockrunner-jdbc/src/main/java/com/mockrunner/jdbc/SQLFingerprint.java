@@ -0,0 +1,314 @@
+package com.mockrunner.jdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates normalized fingerprints of SQL strings. Two SQL strings
+ * have the same fingerprint, if they only differ in whitespace,
+ * comments, literal values and the case of keywords and identifiers.
+ * <br>
+ * The SQL string is split into tokens. Comments and whitespace are
+ * dropped, string and numeric literals and parameter markers
+ * (<code>?</code>, <code>:name</code>, <code>$1</code>) are replaced
+ * by <code>?</code>, a list of literals after <code>IN</code> is
+ * replaced by <code>(?+)</code> and a trailing semicolon is removed.
+ * Unless the fingerprint is case sensitive, keywords and unquoted
+ * identifiers are converted to lower case. Quoted identifiers are
+ * kept as they are.
+ * E.g. <i>SELECT * FROM person -- all
+ * WHERE id = 42 and name in ('a', 'b')</i> has the fingerprint
+ * <i>select * from person where id = ? and name in (?+)</i>.
+ * <br>
+ * Fingerprints are cached by SQL string, so executing the same
+ * statement again does not tokenize the SQL string again.
+ */
+public class SQLFingerprint
+{
+    /**
+     * The maximum number of cached fingerprints. The cache is
+     * cleared if it grows beyond this size.
+     */
+    public static final int MAX_CACHE_SIZE = 4096;
+
+    private static final String PLACEHOLDER = "?";
+    private static final String LIST_PLACEHOLDER = "?+";
+
+    private static final Map<String, String> caseSensitiveCache = new ConcurrentHashMap<String, String>();
+    private static final Map<String, String> ignoreCaseCache = new ConcurrentHashMap<String, String>();
+
+    /**
+     * Returns the fingerprint of the specified SQL string.
+     * @param sql the SQL string
+     * @param caseSensitive <code>false</code> to convert keywords and
+     *        unquoted identifiers to lower case
+     * @return the fingerprint
+     */
+    public static String of(String sql, boolean caseSensitive)
+    {
+        Map<String, String> cache = caseSensitive ? caseSensitiveCache : ignoreCaseCache;
+        String fingerprint = cache.get(sql);
+        if(null == fingerprint)
+        {
+            fingerprint = create(sql, caseSensitive);
+            if(cache.size() >= MAX_CACHE_SIZE)
+            {
+                cache.clear();
+            }
+            cache.put(sql, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Creates the fingerprint of the specified SQL string
+     * without using the cache.
+     * @param sql the SQL string
+     * @param caseSensitive <code>false</code> to convert keywords and
+     *        unquoted identifiers to lower case
+     * @return the fingerprint
+     */
+    public static String create(String sql, boolean caseSensitive)
+    {
+        List<String> tokens = tokenize(sql, caseSensitive);
+        collapseInLists(tokens);
+        while(!tokens.isEmpty() && ";".equals(tokens.get(tokens.size() - 1)))
+        {
+            tokens.remove(tokens.size() - 1);
+        }
+        StringBuilder fingerprint = new StringBuilder(sql.length());
+        for(int ii = 0; ii < tokens.size(); ii++)
+        {
+            if(ii > 0) fingerprint.append(' ');
+            fingerprint.append(tokens.get(ii));
+        }
+        return fingerprint.toString();
+    }
+
+    private static List<String> tokenize(String sql, boolean caseSensitive)
+    {
+        List<String> tokens = new ArrayList<String>();
+        int length = sql.length();
+        int ii = 0;
+        while(ii < length)
+        {
+            char current = sql.charAt(ii);
+            char next = (ii + 1 < length) ? sql.charAt(ii + 1) : 0;
+            if(Character.isWhitespace(current))
+            {
+                ii++;
+            }
+            else if('-' == current && '-' == next)
+            {
+                ii = skipLine(sql, ii);
+            }
+            else if('/' == current && '*' == next)
+            {
+                int end = sql.indexOf("*/", ii + 2);
+                ii = (-1 == end) ? length : end + 2;
+            }
+            else if('\'' == current)
+            {
+                ii = skipQuoted(sql, ii, '\'');
+                tokens.add(PLACEHOLDER);
+            }
+            else if('"' == current || '`' == current)
+            {
+                int end = skipQuoted(sql, ii, current);
+                tokens.add(sql.substring(ii, end));
+                ii = end;
+            }
+            else if('[' == current)
+            {
+                int end = sql.indexOf(']', ii + 1);
+                end = (-1 == end) ? length : end + 1;
+                tokens.add(sql.substring(ii, end));
+                ii = end;
+            }
+            else if(Character.isDigit(current) || ('.' == current && Character.isDigit(next)))
+            {
+                ii = skipNumber(sql, ii);
+                tokens.add(PLACEHOLDER);
+            }
+            else if(('-' == current || '+' == current) && (Character.isDigit(next) || '.' == next) && isSignPosition(tokens))
+            {
+                ii = skipNumber(sql, ii + 1);
+                tokens.add(PLACEHOLDER);
+            }
+            else if('?' == current)
+            {
+                ii++;
+                tokens.add(PLACEHOLDER);
+            }
+            else if((':' == current && isIdentifierStart(next)) || ('$' == current && Character.isDigit(next)))
+            {
+                ii = skipIdentifier(sql, ii + 1);
+                tokens.add(PLACEHOLDER);
+            }
+            else if(isIdentifierStart(current))
+            {
+                int end = skipIdentifier(sql, ii);
+                if(end < length && '\'' == sql.charAt(end) && end - ii == 1 && "nNeExXbB".indexOf(current) >= 0)
+                {
+                    ii = skipQuoted(sql, end, '\'');
+                    tokens.add(PLACEHOLDER);
+                }
+                else
+                {
+                    String identifier = sql.substring(ii, end);
+                    tokens.add(caseSensitive ? identifier : identifier.toLowerCase());
+                    ii = end;
+                }
+            }
+            else
+            {
+                tokens.add(String.valueOf(current));
+                ii++;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Replaces <i>in ( ? , ? , ... )</i> with <i>in (?+)</i>.
+     */
+    private static void collapseInLists(List<String> tokens)
+    {
+        for(int ii = 0; ii + 1 < tokens.size(); ii++)
+        {
+            if(!"in".equalsIgnoreCase(tokens.get(ii)) || !"(".equals(tokens.get(ii + 1))) continue;
+            int end = ii + 2;
+            boolean expectPlaceholder = true;
+            while(end < tokens.size())
+            {
+                String token = tokens.get(end);
+                if(expectPlaceholder && PLACEHOLDER.equals(token))
+                {
+                    expectPlaceholder = false;
+                }
+                else if(!expectPlaceholder && ",".equals(token))
+                {
+                    expectPlaceholder = true;
+                }
+                else
+                {
+                    break;
+                }
+                end++;
+            }
+            if(end < tokens.size() && ")".equals(tokens.get(end)) && !expectPlaceholder)
+            {
+                tokens.subList(ii + 1, end + 1).clear();
+                tokens.add(ii + 1, "(" + LIST_PLACEHOLDER + ")");
+            }
+        }
+    }
+
+    private static boolean isSignPosition(List<String> tokens)
+    {
+        if(tokens.isEmpty()) return true;
+        String previous = tokens.get(tokens.size() - 1);
+        if(PLACEHOLDER.equals(previous) || ")".equals(previous)) return false;
+        char first = previous.charAt(0);
+        if('"' == first || '`' == first || '[' == first) return false;
+        if(isIdentifierStart(first))
+        {
+            return isKeywordBeforeOperand(previous);
+        }
+        return true;
+    }
+
+    private static boolean isKeywordBeforeOperand(String token)
+    {
+        String lowerCase = token.toLowerCase();
+        return "select".equals(lowerCase) || "where".equals(lowerCase) || "and".equals(lowerCase) ||
+               "or".equals(lowerCase) || "not".equals(lowerCase) || "values".equals(lowerCase) ||
+               "set".equals(lowerCase) || "then".equals(lowerCase) || "else".equals(lowerCase) ||
+               "when".equals(lowerCase) || "return".equals(lowerCase) || "by".equals(lowerCase) ||
+               "limit".equals(lowerCase) || "offset".equals(lowerCase) || "between".equals(lowerCase);
+    }
+
+    private static boolean isIdentifierStart(char character)
+    {
+        return Character.isLetter(character) || '_' == character;
+    }
+
+    private static boolean isIdentifierPart(char character)
+    {
+        return Character.isLetterOrDigit(character) || '_' == character || '$' == character || '#' == character;
+    }
+
+    private static int skipIdentifier(String sql, int index)
+    {
+        while(index < sql.length() && isIdentifierPart(sql.charAt(index)))
+        {
+            index++;
+        }
+        return index;
+    }
+
+    private static int skipLine(String sql, int index)
+    {
+        int end = sql.indexOf('\n', index);
+        return (-1 == end) ? sql.length() : end + 1;
+    }
+
+    /**
+     * Skips a quoted string starting at <code>index</code>. Two quotes
+     * in a row are an escaped quote. Returns the index after the
+     * closing quote.
+     */
+    private static int skipQuoted(String sql, int index, char quote)
+    {
+        int ii = index + 1;
+        while(ii < sql.length())
+        {
+            char current = sql.charAt(ii);
+            if(quote == current)
+            {
+                if(ii + 1 < sql.length() && quote == sql.charAt(ii + 1))
+                {
+                    ii += 2;
+                }
+                else
+                {
+                    return ii + 1;
+                }
+            }
+            else
+            {
+                ii++;
+            }
+        }
+        return sql.length();
+    }
+
+    /**
+     * Skips a decimal or hexadecimal number including
+     * fraction and exponent.
+     */
+    private static int skipNumber(String sql, int index)
+    {
+        int length = sql.length();
+        if(index + 1 < length && '0' == sql.charAt(index) && ('x' == sql.charAt(index + 1) || 'X' == sql.charAt(index + 1)))
+        {
+            index += 2;
+            while(index < length && Character.digit(sql.charAt(index), 16) >= 0) index++;
+            return index;
+        }
+        while(index < length && (Character.isDigit(sql.charAt(index)) || '.' == sql.charAt(index))) index++;
+        if(index < length && ('e' == sql.charAt(index) || 'E' == sql.charAt(index)))
+        {
+            int exponent = index + 1;
+            if(exponent < length && ('+' == sql.charAt(exponent) || '-' == sql.charAt(exponent))) exponent++;
+            if(exponent < length && Character.isDigit(sql.charAt(exponent)))
+            {
+                index = exponent;
+                while(index < length && Character.isDigit(sql.charAt(index))) index++;
+            }
+        }
+        return index;
+    }
+}
@@ -5,6 +5,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+import com.mockrunner.util.regexp.CachingPatternMatcherFactory;
 import com.mockrunner.util.regexp.PatternMatcher;
 
 import java.util.Map.Entry;
@@ -22,9 +23,18 @@ import java.util.Map.Entry;
  * <code>useRegularExpression</code> use regular expressions for matching, if this parameter is
  *                                   <code>false</code>, strings match, if one string starts with the other
  *                                   (default is <code>false</code>)
+ * <br>
+ * The created {@link PatternMatcher} instances are cached in a
+ * {@link CachingPatternMatcherFactory}, so matching many strings against the
+ * same pattern compiles the pattern only once. Matchers created with
+ * the same search parameters share one cache. Matchers created with a
+ * custom factory share the cache, if the factory is a
+ * {@link CachingPatternMatcherFactory}.
  */
 public class SQLStatementMatcher
 {
+    private static final CachingPatternMatcherFactory[] sharedFactories = new CachingPatternMatcherFactory[8];
+
     private final PatternMatcher.Factory patternMatcherFactory;
 
     public SQLStatementMatcher(boolean caseSensitive, boolean exactMatch)
@@ -34,11 +44,31 @@ public class SQLStatementMatcher
     
     public SQLStatementMatcher(boolean caseSensitive, boolean exactMatch, boolean useRegularExpressions)
     {
-        this(PatternMatcher.Factories.from(caseSensitive, exactMatch, useRegularExpressions));
+        this(getSharedFactory(caseSensitive, exactMatch, useRegularExpressions));
     }
 
     public SQLStatementMatcher(PatternMatcher.Factory patternMatcherFactory) {
-        this.patternMatcherFactory = patternMatcherFactory;
+        if(patternMatcherFactory instanceof CachingPatternMatcherFactory)
+        {
+            this.patternMatcherFactory = patternMatcherFactory;
+        }
+        else
+        {
+            this.patternMatcherFactory = new CachingPatternMatcherFactory(patternMatcherFactory);
+        }
+    }
+
+    private static CachingPatternMatcherFactory getSharedFactory(boolean caseSensitive, boolean exactMatch, boolean useRegularExpressions)
+    {
+        int index = (caseSensitive ? 4 : 0) | (exactMatch ? 2 : 0) | (useRegularExpressions ? 1 : 0);
+        synchronized(sharedFactories)
+        {
+            if(null == sharedFactories[index])
+            {
+                sharedFactories[index] = new CachingPatternMatcherFactory(PatternMatcher.Factories.from(caseSensitive, exactMatch, useRegularExpressions));
+            }
+            return sharedFactories[index];
+        }
     }
     
     /**
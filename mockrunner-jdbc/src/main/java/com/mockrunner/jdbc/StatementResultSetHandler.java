@@ -12,11 +12,32 @@ import com.mockrunner.mock.jdbc.MockStatement;
 public class StatementResultSetHandler extends AbstractResultSetHandler
 {
     private final List<MockStatement> statements;
+    private final StripedAppendLog<MockStatement> statementLog;
 
     public StatementResultSetHandler()
     {
-        statements = new ArrayList<MockStatement>();
-    }  
+        this(false);
+    }
+
+    /**
+     * Creates a new handler.
+     * @param threadSafe <code>true</code> if the handler can be used
+     *        by more than one thread at the same time
+     */
+    public StatementResultSetHandler(boolean threadSafe)
+    {
+        super(threadSafe);
+        if(threadSafe)
+        {
+            statements = null;
+            statementLog = new StripedAppendLog<MockStatement>();
+        }
+        else
+        {
+            statements = new ArrayList<MockStatement>();
+            statementLog = null;
+        }
+    }
     
     /**
      * The <code>Connection</code> adds new statements with
@@ -26,7 +47,14 @@ public class StatementResultSetHandler extends AbstractResultSetHandler
     public void addStatement(MockStatement statement)
     {
         statement.setResultSetHandler(this);
-        statements.add(statement);
+        if(isThreadSafe())
+        {
+            statementLog.add(statement);
+        }
+        else
+        {
+            statements.add(statement);
+        }
     }
     
     /**
@@ -35,6 +63,10 @@ public class StatementResultSetHandler extends AbstractResultSetHandler
      */
     public List<MockStatement> getStatements()
     {
+        if(isThreadSafe())
+        {
+            return Collections.unmodifiableList(statementLog.toList());
+        }
         return Collections.unmodifiableList(statements);
     }
 
@@ -43,6 +75,13 @@ public class StatementResultSetHandler extends AbstractResultSetHandler
      */
     public void clearStatements()
     {
-        statements.clear();
+        if(isThreadSafe())
+        {
+            statementLog.clear();
+        }
+        else
+        {
+            statements.clear();
+        }
     }
 }
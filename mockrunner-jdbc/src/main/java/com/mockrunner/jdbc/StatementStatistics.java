@@ -0,0 +1,204 @@
+package com.mockrunner.jdbc;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Aggregated data about the executions of an SQL string.
+ * Maintained by the result set handlers, if the
+ * {@link RecordingPolicy} does not record all executions.
+ * <br>
+ * The execution times are the times spent in the <code>execute</code>
+ * methods of the mock statements. They are counted in a histogram
+ * with buckets of growing size, bucket <i>n</i> contains the executions
+ * that took at least 2<sup><i>n</i></sup> and less than
+ * 2<sup><i>n</i>+1</sup> nanoseconds (bucket 0 contains the
+ * executions that took less than 2 nanoseconds).
+ */
+public class StatementStatistics
+{
+    /**
+     * The number of buckets of the execution time histogram.
+     */
+    public static final int NUMBER_BUCKETS = 64;
+
+    private final String sql;
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong timedExecutions = new AtomicLong();
+    private final AtomicLong totalTime = new AtomicLong();
+    private final AtomicLong maximumTime = new AtomicLong();
+    private final AtomicLongArray histogram = new AtomicLongArray(NUMBER_BUCKETS);
+
+    public StatementStatistics(String sql)
+    {
+        this.sql = sql;
+    }
+
+    /**
+     * Get the SQL string.
+     * @return the SQL string
+     */
+    public String getSQLStatement()
+    {
+        return sql;
+    }
+
+    /**
+     * Counts an execution of the SQL string.
+     */
+    public void addExecution()
+    {
+        executions.incrementAndGet();
+    }
+
+    /**
+     * Counts several executions of the SQL string.
+     * @param numberExecutions the number of executions
+     */
+    public void addExecutions(long numberExecutions)
+    {
+        executions.addAndGet(numberExecutions);
+    }
+
+    /**
+     * Adds the time of an execution to the histogram.
+     * @param nanos the execution time in nanoseconds
+     */
+    public void addExecutionTime(long nanos)
+    {
+        if(nanos < 0) nanos = 0;
+        timedExecutions.incrementAndGet();
+        totalTime.addAndGet(nanos);
+        histogram.incrementAndGet(getBucket(nanos));
+        long maximum = maximumTime.get();
+        while(nanos > maximum && !maximumTime.compareAndSet(maximum, nanos))
+        {
+            maximum = maximumTime.get();
+        }
+    }
+
+    /**
+     * Adds the data of the specified statistics to this statistics.
+     * @param other the other statistics
+     */
+    public void add(StatementStatistics other)
+    {
+        executions.addAndGet(other.getNumberExecutions());
+        timedExecutions.addAndGet(other.getNumberTimedExecutions());
+        totalTime.addAndGet(other.getTotalExecutionTime());
+        for(int ii = 0; ii < NUMBER_BUCKETS; ii++)
+        {
+            histogram.addAndGet(ii, other.histogram.get(ii));
+        }
+        long otherMaximum = other.getMaximumExecutionTime();
+        long maximum = maximumTime.get();
+        while(otherMaximum > maximum && !maximumTime.compareAndSet(maximum, otherMaximum))
+        {
+            maximum = maximumTime.get();
+        }
+    }
+
+    /**
+     * Returns how often the SQL string was executed.
+     * @return the number of executions
+     */
+    public long getNumberExecutions()
+    {
+        return executions.get();
+    }
+
+    /**
+     * Returns the number of executions in the execution time histogram.
+     * @return the number of timed executions
+     */
+    public long getNumberTimedExecutions()
+    {
+        return timedExecutions.get();
+    }
+
+    /**
+     * Returns the sum of all execution times.
+     * @return the total execution time in nanoseconds
+     */
+    public long getTotalExecutionTime()
+    {
+        return totalTime.get();
+    }
+
+    /**
+     * Returns the longest execution time.
+     * @return the maximum execution time in nanoseconds
+     */
+    public long getMaximumExecutionTime()
+    {
+        return maximumTime.get();
+    }
+
+    /**
+     * Returns the average execution time.
+     * @return the average execution time in nanoseconds
+     */
+    public double getAverageExecutionTime()
+    {
+        long count = timedExecutions.get();
+        return (0 == count) ? 0 : (double)totalTime.get() / count;
+    }
+
+    /**
+     * Returns a copy of the execution time histogram.
+     * @return the number of executions in each bucket
+     */
+    public long[] getExecutionTimeHistogram()
+    {
+        long[] result = new long[NUMBER_BUCKETS];
+        for(int ii = 0; ii < NUMBER_BUCKETS; ii++)
+        {
+            result[ii] = histogram.get(ii);
+        }
+        return result;
+    }
+
+    /**
+     * Returns an upper bound for the specified percentile of the execution
+     * times, i.e. the upper limit of the histogram bucket that contains
+     * the percentile. The result is never greater than the maximum
+     * execution time.
+     * @param percentile the percentile, e.g. 99.0
+     * @return the upper bound in nanoseconds
+     */
+    public long getExecutionTimePercentile(double percentile)
+    {
+        if(percentile < 0 || percentile > 100) throw new IllegalArgumentException("percentile must be between 0 and 100");
+        long[] buckets = getExecutionTimeHistogram();
+        long count = 0;
+        for(int ii = 0; ii < NUMBER_BUCKETS; ii++)
+        {
+            count += buckets[ii];
+        }
+        if(0 == count) return 0;
+        long rank = (long)Math.ceil(percentile / 100 * count);
+        long current = 0;
+        for(int ii = 0; ii < NUMBER_BUCKETS; ii++)
+        {
+            current += buckets[ii];
+            if(current >= rank && current > 0)
+            {
+                long upperBound = (ii >= 62) ? Long.MAX_VALUE : (1L << (ii + 1)) - 1;
+                return Math.min(upperBound, getMaximumExecutionTime());
+            }
+        }
+        return getMaximumExecutionTime();
+    }
+
+    private static int getBucket(long nanos)
+    {
+        if(nanos < 2) return 0;
+        return 63 - Long.numberOfLeadingZeros(nanos);
+    }
+
+    @Override
+    public String toString()
+    {
+        return sql + ": " + getNumberExecutions() + " executions";
+    }
+}
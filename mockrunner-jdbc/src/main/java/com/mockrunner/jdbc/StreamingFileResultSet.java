@@ -0,0 +1,312 @@
+package com.mockrunner.jdbc;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Map;
+
+import com.mockrunner.base.NestedApplicationException;
+
+/**
+ * A forward-only <code>ResultSet</code> that reads its rows from a
+ * CSV file while the cursor advances. Only the current row is kept in
+ * memory, so it can be used for files that are too large to be read
+ * into a <code>MockResultSet</code> completely. The file is parsed
+ * like in {@link FileResultSetFactory#create}.
+ * Use {@link FileResultSetFactory#setStreaming} to create instances
+ * of this class.
+ * <br>
+ * The result set is <code>TYPE_FORWARD_ONLY</code> and
+ * <code>CONCUR_READ_ONLY</code>. The rows are not stored in the
+ * simulated database table, i.e. the methods that work on the table
+ * data, like {@link #getRowCount}, {@link #getColumn(int)} or
+ * {@link #isEqual(java.util.List)}, do not see them. Cloning the
+ * result set (which happens when a statement returns it) creates
+ * a new result set that reads the file from the beginning.
+ * The constructor only reads the column names. The file is opened
+ * again when the cursor is moved the first time and closed when
+ * the last row is read or the result set is closed, so result sets
+ * that are never read, like the prepared result set that statements
+ * clone, do not keep the file open.
+ * If a row contains more values than the result set has columns,
+ * columns are added when the row is read. Note that the result set
+ * reads one row ahead of the cursor.
+ */
+public class StreamingFileResultSet extends ForwardOnlyResultSet
+{
+    private final File file;
+    private final String delimiter;
+    private final boolean firstLineContainsColumnNames;
+    private final boolean trim;
+    private final String templateMarker;
+    private final Map<String, String> templates;
+    private MappedLineReader reader;
+    private String[] currentRow;
+    private String[] nextRow;
+    private boolean hasNextRow;
+    private boolean opened;
+    private boolean endOfFile;
+    private int tokenCount;
+
+    /**
+     * Creates a new result set reading the specified file.
+     * @param id the id of the result set
+     * @param file the CSV file
+     * @param delimiter the column delimiter
+     * @param firstLineContainsColumnNames <code>true</code> if the first line contains the column names
+     * @param trim <code>true</code> if the column entries should be trimmed
+     * @param templateMarker the template marker, <code>null</code> if templates are disabled
+     * @param templates the templates, <code>null</code> if templates are disabled
+     */
+    public StreamingFileResultSet(String id, File file, String delimiter, boolean firstLineContainsColumnNames, boolean trim, String templateMarker, Map<String, String> templates)
+    {
+        super(id);
+        this.file = file;
+        this.delimiter = delimiter;
+        this.firstLineContainsColumnNames = firstLineContainsColumnNames;
+        this.trim = trim;
+        this.templateMarker = templateMarker;
+        this.templates = templates;
+        readColumnNames();
+    }
+
+    /**
+     * Reads the column names from the first line, if the first line
+     * contains the column names, and closes the file.
+     */
+    private void readColumnNames()
+    {
+        if(!firstLineContainsColumnNames) return;
+        try
+        {
+            MappedLineReader headerReader = new MappedLineReader(file, Charset.defaultCharset());
+            try
+            {
+                if(headerReader.readLine())
+                {
+                    String[] names = split(headerReader, new String[8], false);
+                    for(int ii = 0; ii < tokenCount; ii++)
+                    {
+                        addColumn(names[ii]);
+                    }
+                }
+            }
+            finally
+            {
+                headerReader.close();
+            }
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+    }
+
+    /**
+     * Opens the file and reads the first row, if the file
+     * was not opened yet.
+     */
+    private void open()
+    {
+        if(opened) return;
+        opened = true;
+        try
+        {
+            reader = new MappedLineReader(file, Charset.defaultCharset());
+            if(firstLineContainsColumnNames)
+            {
+                reader.readLine();
+            }
+            currentRow = new String[getColumnCount()];
+            nextRow = new String[getColumnCount()];
+            prefetch();
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+    }
+
+    /**
+     * Reads the next row. Like in {@link FileResultSetFactory#create},
+     * every line is a row, but lines without values, i.e. empty lines,
+     * do not add a row to the result set.
+     */
+    private void prefetch() throws IOException
+    {
+        hasNextRow = false;
+        while(!endOfFile && !hasNextRow)
+        {
+            if(!reader.readLine())
+            {
+                endOfFile = true;
+                reader.close();
+            }
+            else
+            {
+                nextRow = split(reader, nextRow, true);
+                hasNextRow = (tokenCount > 0);
+            }
+        }
+    }
+
+    /**
+     * Splits the current line of <code>lineReader</code> like
+     * {@link com.mockrunner.util.common.StringUtil#split} into
+     * <code>values</code>, which is enlarged if necessary. The number
+     * of values is stored in <code>tokenCount</code>. If the line
+     * is a row and contains more values than the result set has
+     * columns, columns are added.
+     */
+    private String[] split(MappedLineReader lineReader, String[] values, boolean isRow)
+    {
+        char[] line = lineReader.getLine();
+        int length = lineReader.getLength();
+        char[] delim = delimiter.toCharArray();
+        int count = 0;
+        int begin = 0;
+        while(begin < length)
+        {
+            int end = indexOf(line, length, delim, begin);
+            int next = end + delim.length;
+            if(-1 == end)
+            {
+                end = length;
+                next = length;
+            }
+            if(count == values.length)
+            {
+                values = Arrays.copyOf(values, Math.max(4, values.length * 2));
+            }
+            values[count++] = createValue(line, begin, end, isRow && null != templateMarker);
+            begin = next;
+        }
+        tokenCount = count;
+        if(!isRow || 0 == count) return values;
+        for(int ii = getColumnCount(); ii < count; ii++)
+        {
+            addColumn();
+        }
+        if(values.length < getColumnCount())
+        {
+            values = Arrays.copyOf(values, getColumnCount());
+        }
+        Arrays.fill(values, count, values.length, null);
+        return values;
+    }
+
+    private int indexOf(char[] line, int length, char[] delim, int begin)
+    {
+        int last = length - delim.length;
+        for(int ii = begin; ii <= last; ii++)
+        {
+            int yy = 0;
+            while(yy < delim.length && line[ii + yy] == delim[yy])
+            {
+                yy++;
+            }
+            if(yy == delim.length) return ii;
+        }
+        return -1;
+    }
+
+    private String createValue(char[] line, int begin, int end, boolean replaceTemplates)
+    {
+        if(trim)
+        {
+            while(begin < end && line[begin] <= ' ') begin++;
+            while(begin < end && line[end - 1] <= ' ') end--;
+        }
+        if(begin == end) return null;
+        String value = new String(line, begin, end - begin);
+        if(replaceTemplates && value.startsWith(templateMarker) && templates.containsKey(value.substring(1)))
+        {
+            value = templates.get(value.substring(1));
+        }
+        return value;
+    }
+
+    @Override
+    protected ForwardOnlyResultSet createCopy()
+    {
+        return new StreamingFileResultSet(getId(), file, delimiter, firstLineContainsColumnNames, trim, templateMarker, templates);
+    }
+
+    /**
+     * Closes the file and reads the column names again, so the file
+     * is read from the beginning.
+     */
+    @Override
+    protected void restart()
+    {
+        closeReader();
+        opened = false;
+        endOfFile = false;
+        readColumnNames();
+    }
+
+    @Override
+    public void close() throws SQLException
+    {
+        super.close();
+        opened = true;
+        closeReader();
+    }
+
+    private void closeReader()
+    {
+        try
+        {
+            if(!endOfFile)
+            {
+                endOfFile = true;
+                hasNextRow = false;
+                if(null != reader) reader.close();
+            }
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+    }
+
+    @Override
+    protected boolean fetchNextRow() throws SQLException
+    {
+        open();
+        if(!hasNextRow) return false;
+        String[] swap = currentRow;
+        currentRow = nextRow;
+        nextRow = swap;
+        try
+        {
+            prefetch();
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+        return true;
+    }
+
+    @Override
+    protected Object getCurrentValue(int columnIndex)
+    {
+        return (columnIndex > currentRow.length) ? null : currentRow[columnIndex - 1];
+    }
+
+    @Override
+    public boolean isBeforeFirst() throws SQLException
+    {
+        open();
+        return (0 == getCursorPosition()) && hasNextRow;
+    }
+
+    @Override
+    public boolean isLast() throws SQLException
+    {
+        return hasCurrentRow() && !hasNextRow;
+    }
+}
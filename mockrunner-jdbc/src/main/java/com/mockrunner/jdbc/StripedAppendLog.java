@@ -0,0 +1,167 @@
+package com.mockrunner.jdbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only log that can be written by many threads at the same time.
+ * The entries are distributed over stripes selected by the id of the
+ * writing thread, so threads usually do not contend for the same lock.
+ * Each entry gets a sequence number, {@link #toList} merges the stripes
+ * in the order in which the entries were added.
+ * If the log has a capacity, only the last entries are kept. Each stripe
+ * keeps up to <code>capacity</code> entries, which includes the stripe's
+ * share of the last <code>capacity</code> entries of the log.
+ */
+class StripedAppendLog<E> extends ExecutionLog<E>
+{
+    private final AtomicLong sequence = new AtomicLong();
+    private final Stripe[] stripes;
+    private final int mask;
+    private final int capacity;
+
+    public StripedAppendLog()
+    {
+        this(-1);
+    }
+
+    /**
+     * Creates a log that keeps the last <code>capacity</code> entries.
+     * @param capacity the number of entries, -1 to keep all entries
+     */
+    public StripedAppendLog(int capacity)
+    {
+        this.capacity = capacity;
+        int size = 1;
+        while(size < 2 * Runtime.getRuntime().availableProcessors())
+        {
+            size <<= 1;
+        }
+        stripes = new Stripe[size];
+        for(int ii = 0; ii < size; ii++)
+        {
+            stripes[ii] = new Stripe(capacity);
+        }
+        mask = size - 1;
+    }
+
+    public void add(E entry)
+    {
+        Stripe stripe = stripes[(int)Thread.currentThread().getId() & mask];
+        synchronized(stripe)
+        {
+            stripe.add(sequence.getAndIncrement(), entry);
+        }
+    }
+
+    /**
+     * Returns the entries in the order in which they were added.
+     * Entries that are added while this method runs may be missing.
+     * @return an unmodifiable copy of the entries
+     */
+    @SuppressWarnings("unchecked")
+    public List<E> toList()
+    {
+        int count = 0;
+        long[][] sequences = new long[stripes.length][];
+        Object[][] entries = new Object[stripes.length][];
+        for(int ii = 0; ii < stripes.length; ii++)
+        {
+            Stripe stripe = stripes[ii];
+            synchronized(stripe)
+            {
+                sequences[ii] = new long[stripe.size];
+                entries[ii] = new Object[stripe.size];
+                stripe.copyTo(sequences[ii], entries[ii]);
+            }
+            count += sequences[ii].length;
+        }
+        List<E> result = new ArrayList<E>(count);
+        int[] positions = new int[stripes.length];
+        for(int ii = 0; ii < count; ii++)
+        {
+            int next = -1;
+            for(int yy = 0; yy < stripes.length; yy++)
+            {
+                if(positions[yy] < sequences[yy].length && (-1 == next || sequences[yy][positions[yy]] < sequences[next][positions[next]]))
+                {
+                    next = yy;
+                }
+            }
+            result.add((E)entries[next][positions[next]++]);
+        }
+        if(capacity >= 0 && result.size() > capacity)
+        {
+            result = result.subList(result.size() - capacity, result.size());
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    public void clear()
+    {
+        for(int ii = 0; ii < stripes.length; ii++)
+        {
+            Stripe stripe = stripes[ii];
+            synchronized(stripe)
+            {
+                stripe.clear();
+            }
+        }
+    }
+
+    private static class Stripe
+    {
+        private final int capacity;
+        private long[] sequences;
+        private Object[] entries;
+        private int head;
+        private int size;
+
+        public Stripe(int capacity)
+        {
+            this.capacity = capacity;
+            clear();
+        }
+
+        public void add(long sequence, Object entry)
+        {
+            if(size == capacity)
+            {
+                sequences[head] = sequence;
+                entries[head] = entry;
+                head = (head + 1) % capacity;
+                return;
+            }
+            if(size == sequences.length)
+            {
+                int newLength = (capacity < 0) ? size * 2 : Math.min(size * 2, capacity);
+                sequences = Arrays.copyOf(sequences, newLength);
+                entries = Arrays.copyOf(entries, newLength);
+            }
+            sequences[size] = sequence;
+            entries[size] = entry;
+            size++;
+        }
+
+        public void copyTo(long[] sequenceCopy, Object[] entryCopy)
+        {
+            int firstPart = size - head;
+            System.arraycopy(sequences, head, sequenceCopy, 0, firstPart);
+            System.arraycopy(entries, head, entryCopy, 0, firstPart);
+            System.arraycopy(sequences, 0, sequenceCopy, firstPart, head);
+            System.arraycopy(entries, 0, entryCopy, firstPart, head);
+        }
+
+        public void clear()
+        {
+            int length = (capacity < 0) ? 16 : Math.min(16, capacity);
+            sequences = new long[length];
+            entries = new Object[length];
+            head = 0;
+            size = 0;
+        }
+    }
+}
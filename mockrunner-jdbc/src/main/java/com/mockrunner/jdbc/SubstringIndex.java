@@ -0,0 +1,176 @@
+package com.mockrunner.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import com.mockrunner.util.regexp.PatternMatcher;
+
+/**
+ * Aho-Corasick automaton that finds all registered keys contained in a
+ * string with one pass over the string. The automaton is rebuilt lazily
+ * on the first lookup after keys have been added or removed.
+ */
+class SubstringIndex
+{
+    private final Map<String, List<PatternMatcher>> keys = new HashMap<String, List<PatternMatcher>>();
+    private volatile Node root;
+
+    public void add(String key, PatternMatcher matcher)
+    {
+        List<PatternMatcher> list = keys.get(key);
+        if(null == list)
+        {
+            list = new ArrayList<PatternMatcher>(1);
+            keys.put(key, list);
+        }
+        list.add(matcher);
+        root = null;
+    }
+
+    public void remove(String key, PatternMatcher matcher)
+    {
+        List<PatternMatcher> list = keys.get(key);
+        if(null == list) return;
+        list.remove(matcher);
+        if(list.isEmpty())
+        {
+            keys.remove(key);
+        }
+        root = null;
+    }
+
+    public void clear()
+    {
+        keys.clear();
+        root = null;
+    }
+
+    public boolean isEmpty()
+    {
+        return keys.isEmpty();
+    }
+
+    /**
+     * Adds the matchers of all keys that are contained in
+     * the specified string to the specified collection.
+     * @param string the string to search
+     * @param result the collection receiving the matchers
+     */
+    public void collectMatches(String string, Collection<PatternMatcher> result)
+    {
+        if(keys.isEmpty()) return;
+        Node root = this.root;
+        if(null == root)
+        {
+            root = build();
+            this.root = root;
+        }
+        if(null != root.output)
+        {
+            result.addAll(root.output);
+        }
+        Node node = root;
+        for(int ii = 0; ii < string.length(); ii++)
+        {
+            char current = string.charAt(ii);
+            Node next = node.getChild(current);
+            while(null == next && node != root)
+            {
+                node = node.fail;
+                next = node.getChild(current);
+            }
+            node = (null == next) ? root : next;
+            for(Node match = node; null != match && match != root; match = match.dictionary)
+            {
+                if(null != match.output)
+                {
+                    result.addAll(match.output);
+                }
+            }
+        }
+    }
+
+    private Node build()
+    {
+        Node newRoot = new Node();
+        for(Map.Entry<String, List<PatternMatcher>> entry : keys.entrySet())
+        {
+            Node node = newRoot;
+            String key = entry.getKey();
+            for(int ii = 0; ii < key.length(); ii++)
+            {
+                node = node.getOrCreateChild(key.charAt(ii));
+            }
+            node.output = entry.getValue();
+        }
+        LinkedList<Node> queue = new LinkedList<Node>();
+        for(int ii = 0; ii < newRoot.size; ii++)
+        {
+            newRoot.children[ii].fail = newRoot;
+            queue.add(newRoot.children[ii]);
+        }
+        while(!queue.isEmpty())
+        {
+            Node node = queue.removeFirst();
+            for(int ii = 0; ii < node.size; ii++)
+            {
+                char label = node.labels[ii];
+                Node child = node.children[ii];
+                Node fail = node.fail;
+                Node target = fail.getChild(label);
+                while(null == target && fail != newRoot)
+                {
+                    fail = fail.fail;
+                    target = fail.getChild(label);
+                }
+                child.fail = (null == target) ? newRoot : target;
+                child.dictionary = (null != child.fail.output && child.fail != newRoot) ? child.fail : child.fail.dictionary;
+                queue.add(child);
+            }
+        }
+        return newRoot;
+    }
+
+    static class Node
+    {
+        char[] labels = new char[2];
+        Node[] children = new Node[2];
+        int size;
+        Node fail;
+        Node dictionary;
+        List<PatternMatcher> output;
+
+        Node getChild(char label)
+        {
+            for(int ii = 0; ii < size; ii++)
+            {
+                if(labels[ii] == label) return children[ii];
+            }
+            return null;
+        }
+
+        Node getOrCreateChild(char label)
+        {
+            Node child = getChild(label);
+            if(null != child) return child;
+            if(size == labels.length)
+            {
+                char[] newLabels = new char[size * 2];
+                Node[] newChildren = new Node[size * 2];
+                System.arraycopy(labels, 0, newLabels, 0, size);
+                System.arraycopy(children, 0, newChildren, 0, size);
+                labels = newLabels;
+                children = newChildren;
+            }
+            child = new Node();
+            labels[size] = label;
+            children[size] = child;
+            size++;
+            return child;
+        }
+    }
+}
@@ -27,6 +27,8 @@ import com.mockrunner.util.common.FileUtil;
  * (if not found) by calling <code>getResource</code>. Note that the
  * file must exist in the local file system and cannot be loaded from
  * inside a jar archive.
+ * With {@link #setUseCache} the parsed content of the file is cached
+ * in the {@link FixtureCache}.
  */
 public class XMLResultSetFactory implements ResultSetFactory 
 {
@@ -37,6 +39,7 @@ public class XMLResultSetFactory implements ResultSetFactory
     private String fileName = null;
     private boolean trim = true;
     private int dialect = SYBASE_DIALECT;
+    private boolean useCache = false;
     
     public XMLResultSetFactory(String fileName)
     {
@@ -57,6 +60,23 @@ public class XMLResultSetFactory implements ResultSetFactory
      * @return a new MockResultSet
      */
     public MockResultSet create(String id) 
+    {
+        if(!useCache)
+        {
+            return parse(id);
+        }
+        FixtureCache cache = FixtureCache.getInstance();
+        String key = FixtureCache.createKey(getXMLFile(), "xml|" + dialect + "|" + trim);
+        MockResultSet resultSet = cache.get(key, id);
+        if(null == resultSet)
+        {
+            resultSet = parse(id);
+            cache.put(key, resultSet);
+        }
+        return resultSet;
+    }
+    
+    private MockResultSet parse(String id)
     {
         MockResultSet resultSet;
         
@@ -113,6 +133,20 @@ public class XMLResultSetFactory implements ResultSetFactory
         this.trim = trim;
     }
     
+    /**
+     * Set this to <code>true</code> to cache the parsed content
+     * of the file in the {@link FixtureCache}, so subsequent calls of
+     * {@link #create} with the same file and settings do not parse
+     * the file.
+     * Default is <code>false</code>, i.e. the file is parsed for
+     * every <code>ResultSet</code>.
+     * @param useCache set <code>true</code> to enable the cache
+     */
+    public void setUseCache(boolean useCache)
+    {
+        this.useCache = useCache;
+    }
+    
     /**
      * Get whether or not trim is true or false.
      */
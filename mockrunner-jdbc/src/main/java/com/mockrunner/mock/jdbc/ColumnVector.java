@@ -0,0 +1,383 @@
+package com.mockrunner.mock.jdbc;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+import com.mockrunner.jdbc.ParameterUtil;
+
+/**
+ * Column storage used by {@link MockResultSet}. Columns that contain
+ * only <code>Integer</code>, only <code>Long</code> or only
+ * <code>Double</code> values (and <code>null</code>) are stored in
+ * a primitive array and a null bitmap, so they do not keep one boxed
+ * object per cell. Values are boxed when they are read with
+ * {@link #get}, the primitive accessors avoid that.
+ * If a value of another type is stored, the column switches
+ * to an <code>Object</code> array.
+ */
+class ColumnVector extends AbstractList<Object> implements RandomAccess
+{
+    private static final int NULL = 0;
+    private static final int INT = 1;
+    private static final int LONG = 2;
+    private static final int DOUBLE = 3;
+    private static final int OBJECT = 4;
+
+    private int type = NULL;
+    private int size;
+    private int[] ints;
+    private long[] longs;
+    private double[] doubles;
+    private Object[] objects;
+    private BitSet nulls = new BitSet();
+
+    public ColumnVector()
+    {
+
+    }
+
+    public ColumnVector(Collection<?> values)
+    {
+        ensureCapacity(values.size());
+        for(Object value : values)
+        {
+            add(value);
+        }
+    }
+
+    /**
+     * Returns a copy of this column.
+     * @param deep if <code>true</code>, the values of a column that
+     *        is not stored in a primitive array are copied using
+     *        {@link ParameterUtil#copyParameter}
+     * @return the copy
+     */
+    public ColumnVector copy(boolean deep)
+    {
+        ColumnVector copy = new ColumnVector();
+        copy.type = type;
+        copy.size = size;
+        copy.nulls = (BitSet)nulls.clone();
+        if(null != ints) copy.ints = Arrays.copyOf(ints, size);
+        if(null != longs) copy.longs = Arrays.copyOf(longs, size);
+        if(null != doubles) copy.doubles = Arrays.copyOf(doubles, size);
+        if(null != objects)
+        {
+            copy.objects = Arrays.copyOf(objects, size);
+            if(deep)
+            {
+                for(int ii = 0; ii < size; ii++)
+                {
+                    copy.objects[ii] = ParameterUtil.copyParameter(objects[ii]);
+                }
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Returns if this column is stored in a primitive array,
+     * i.e. if {@link #getInt}, {@link #getLong} and {@link #getDouble}
+     * can be used.
+     * @return <code>true</code> if the column is numeric
+     */
+    public boolean isNumeric()
+    {
+        return type != OBJECT;
+    }
+
+    /**
+     * Returns if the value at the specified index is <code>null</code>.
+     * @param index the index
+     * @return <code>true</code> if the value is <code>null</code>
+     */
+    public boolean isNull(int index)
+    {
+        checkIndex(index);
+        if(type == OBJECT) return null == objects[index];
+        return nulls.get(index);
+    }
+
+    /**
+     * Returns the value at the specified index of a numeric column
+     * as <code>int</code>. <code>null</code> is returned as 0.
+     * @param index the index
+     * @return the value
+     */
+    public int getInt(int index)
+    {
+        checkIndex(index);
+        switch(type)
+        {
+            case INT: return ints[index];
+            case LONG: return (int)longs[index];
+            case DOUBLE: return (int)doubles[index];
+            case NULL: return 0;
+        }
+        throw new IllegalStateException("column is not numeric");
+    }
+
+    /**
+     * Returns the value at the specified index of a numeric column
+     * as <code>long</code>. <code>null</code> is returned as 0.
+     * @param index the index
+     * @return the value
+     */
+    public long getLong(int index)
+    {
+        checkIndex(index);
+        switch(type)
+        {
+            case INT: return ints[index];
+            case LONG: return longs[index];
+            case DOUBLE: return (long)doubles[index];
+            case NULL: return 0;
+        }
+        throw new IllegalStateException("column is not numeric");
+    }
+
+    /**
+     * Returns the value at the specified index of a numeric column
+     * as <code>double</code>. <code>null</code> is returned as 0.
+     * @param index the index
+     * @return the value
+     */
+    public double getDouble(int index)
+    {
+        checkIndex(index);
+        switch(type)
+        {
+            case INT: return ints[index];
+            case LONG: return longs[index];
+            case DOUBLE: return doubles[index];
+            case NULL: return 0;
+        }
+        throw new IllegalStateException("column is not numeric");
+    }
+
+    /**
+     * Reverses the order of the values.
+     */
+    public void reverse()
+    {
+        for(int ii = 0, jj = size - 1; ii < jj; ii++, jj--)
+        {
+            swap(ii, jj);
+        }
+    }
+
+    @Override
+    public Object get(int index)
+    {
+        checkIndex(index);
+        if(type == OBJECT) return objects[index];
+        if(nulls.get(index)) return null;
+        switch(type)
+        {
+            case INT: return ints[index];
+            case LONG: return longs[index];
+            case DOUBLE: return doubles[index];
+        }
+        return null;
+    }
+
+    @Override
+    public Object set(int index, Object value)
+    {
+        checkIndex(index);
+        Object previous = get(index);
+        prepareType(value);
+        store(index, value);
+        return previous;
+    }
+
+    @Override
+    public void add(int index, Object value)
+    {
+        if(index < 0 || index > size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        prepareType(value);
+        ensureCapacity(size + 1);
+        int moved = size - index;
+        if(moved > 0)
+        {
+            switch(type)
+            {
+                case INT: System.arraycopy(ints, index, ints, index + 1, moved); break;
+                case LONG: System.arraycopy(longs, index, longs, index + 1, moved); break;
+                case DOUBLE: System.arraycopy(doubles, index, doubles, index + 1, moved); break;
+                case OBJECT: System.arraycopy(objects, index, objects, index + 1, moved); break;
+            }
+            for(int ii = nulls.length() - 1; ii >= index; ii--)
+            {
+                nulls.set(ii + 1, nulls.get(ii));
+            }
+        }
+        size++;
+        modCount++;
+        store(index, value);
+    }
+
+    @Override
+    public Object remove(int index)
+    {
+        checkIndex(index);
+        Object previous = get(index);
+        int moved = size - index - 1;
+        if(moved > 0)
+        {
+            switch(type)
+            {
+                case INT: System.arraycopy(ints, index + 1, ints, index, moved); break;
+                case LONG: System.arraycopy(longs, index + 1, longs, index, moved); break;
+                case DOUBLE: System.arraycopy(doubles, index + 1, doubles, index, moved); break;
+                case OBJECT: System.arraycopy(objects, index + 1, objects, index, moved); break;
+            }
+        }
+        for(int ii = index; ii < size - 1; ii++)
+        {
+            nulls.set(ii, nulls.get(ii + 1));
+        }
+        nulls.clear(size - 1);
+        if(type == OBJECT) objects[size - 1] = null;
+        size--;
+        modCount++;
+        return previous;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    private void checkIndex(int index)
+    {
+        if(index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private void store(int index, Object value)
+    {
+        if(type == OBJECT)
+        {
+            objects[index] = value;
+            return;
+        }
+        nulls.set(index, null == value);
+        if(null == value) return;
+        switch(type)
+        {
+            case INT: ints[index] = (Integer)value; break;
+            case LONG: longs[index] = (Long)value; break;
+            case DOUBLE: doubles[index] = (Double)value; break;
+        }
+    }
+
+    private void swap(int first, int second)
+    {
+        switch(type)
+        {
+            case INT:
+                int intValue = ints[first];
+                ints[first] = ints[second];
+                ints[second] = intValue;
+                break;
+            case LONG:
+                long longValue = longs[first];
+                longs[first] = longs[second];
+                longs[second] = longValue;
+                break;
+            case DOUBLE:
+                double doubleValue = doubles[first];
+                doubles[first] = doubles[second];
+                doubles[second] = doubleValue;
+                break;
+            case OBJECT:
+                Object objectValue = objects[first];
+                objects[first] = objects[second];
+                objects[second] = objectValue;
+                break;
+        }
+        boolean isNull = nulls.get(first);
+        nulls.set(first, nulls.get(second));
+        nulls.set(second, isNull);
+    }
+
+    private void prepareType(Object value)
+    {
+        if(null == value || type == OBJECT) return;
+        int valueType = getType(value);
+        if(valueType == type) return;
+        if(type == NULL)
+        {
+            allocate(valueType, Math.max(size, 10));
+            type = valueType;
+            return;
+        }
+        Object[] boxed = new Object[Math.max(size, 10)];
+        for(int ii = 0; ii < size; ii++)
+        {
+            boxed[ii] = get(ii);
+        }
+        ints = null;
+        longs = null;
+        doubles = null;
+        objects = boxed;
+        nulls.clear();
+        type = OBJECT;
+    }
+
+    private int getType(Object value)
+    {
+        Class<?> valueClass = value.getClass();
+        if(valueClass == Integer.class) return INT;
+        if(valueClass == Long.class) return LONG;
+        if(valueClass == Double.class) return DOUBLE;
+        return OBJECT;
+    }
+
+    private void allocate(int type, int capacity)
+    {
+        switch(type)
+        {
+            case INT: ints = new int[capacity]; break;
+            case LONG: longs = new long[capacity]; break;
+            case DOUBLE: doubles = new double[capacity]; break;
+            case OBJECT: objects = new Object[capacity]; break;
+        }
+    }
+
+    private void ensureCapacity(int minCapacity)
+    {
+        int capacity = getCapacity();
+        if(minCapacity <= capacity) return;
+        int newCapacity = Math.max(minCapacity, capacity + (capacity >> 1) + 1);
+        switch(type)
+        {
+            case INT: ints = Arrays.copyOf(ints, newCapacity); break;
+            case LONG: longs = Arrays.copyOf(longs, newCapacity); break;
+            case DOUBLE: doubles = Arrays.copyOf(doubles, newCapacity); break;
+            case OBJECT: objects = Arrays.copyOf(objects, newCapacity); break;
+        }
+    }
+
+    private int getCapacity()
+    {
+        switch(type)
+        {
+            case INT: return ints.length;
+            case LONG: return longs.length;
+            case DOUBLE: return doubles.length;
+            case OBJECT: return objects.length;
+        }
+        return Integer.MAX_VALUE;
+    }
+}
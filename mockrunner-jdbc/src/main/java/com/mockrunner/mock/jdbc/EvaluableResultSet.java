@@ -4,7 +4,6 @@ import com.mockrunner.jdbc.ResultSetFactory;
 
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -20,25 +19,23 @@ public class EvaluableResultSet extends MockResultSet {
       super(id, cursorName);
    }
 
+   /**
+    * Returns a new result set with the contents of this result set evaluated
+    * using the given SQL query and parameters. The cells are evaluated lazily,
+    * i.e. when they are read for the first time, and each cell is evaluated at
+    * most once per call of this method. The columns of this result set are
+    * shared with the returned result set and copied before this result set
+    * modifies them, so this result set can be evaluated by concurrent executions.
+    */
    @Override
    public MockResultSet evaluate(String sql, MockParameterMap parameters) {
       try {
          MockResultSet newResultSet = new MockResultSet(getId(), getCursorName());
          ResultSetMetaData metaData = getMetaData();
-         for (int i = 1; i <= getColumnCount(); ++i) {
+         List<Object>[] columns = shareColumns();
+         for (int i = 1; i <= columns.length; ++i) {
             String columnName = metaData.getColumnName(i);
-            List<Object> values = getColumn(columnName);
-            List<Object> newValues = new ArrayList<Object>(values.size());
-            int row = 0;
-            for (Object value : values) {
-               if (value instanceof Evaluable) {
-                  newValues.add(((Evaluable) value).evaluate(sql, parameters, columnName, row));
-               } else {
-                  newValues.add(value);
-               }
-               ++row;
-            }
-            newResultSet.addColumn(columnName, newValues);
+            newResultSet.addColumnData(columnName, new EvaluatedColumn(columns[i - 1], sql, parameters, columnName));
          }
          return newResultSet;
       } catch (SQLException e) {
@@ -0,0 +1,177 @@
+package com.mockrunner.mock.jdbc;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+
+import com.mockrunner.jdbc.ParameterUtil;
+
+/**
+ * Column storage used by {@link EvaluableResultSet#evaluate}. The cells
+ * of the template column are evaluated when they are read for the first
+ * time. The evaluated values are shared by all copies of the column, i.e.
+ * each cell is evaluated at most once per execution, and each copy keeps
+ * its own copies of the values, like a copied {@link ColumnVector}.
+ * The column is materialized in a <code>List</code>, when rows are
+ * added or removed.
+ */
+class EvaluatedColumn extends AbstractList<Object> implements RandomAccess
+{
+    private final Evaluation evaluation;
+    private final Object[] values;
+    private final BitSet present;
+    private List<Object> materialized;
+
+    /**
+     * Creates a column that evaluates the cells of the specified template column.
+     * The template column must not be modified afterwards.
+     * @param template the template column
+     * @param sql the SQL string
+     * @param parameters the parameters
+     * @param columnName the column name
+     */
+    public EvaluatedColumn(List<Object> template, String sql, MockParameterMap parameters, String columnName)
+    {
+        this(new Evaluation(template, sql, parameters, columnName));
+    }
+
+    private EvaluatedColumn(Evaluation evaluation)
+    {
+        this.evaluation = evaluation;
+        this.values = new Object[evaluation.size()];
+        this.present = new BitSet();
+    }
+
+    /**
+     * Returns a copy of this column. The cells that were not read
+     * yet are still evaluated on first access.
+     * @param deep if <code>true</code>, the values that were already
+     *        read are copied using {@link ParameterUtil#copyParameter}
+     * @return the copy
+     */
+    public List<Object> copy(boolean deep)
+    {
+        if(null != materialized)
+        {
+            List<Object> copy = new ArrayList<Object>(materialized.size());
+            for(Object value : materialized)
+            {
+                copy.add(deep ? ParameterUtil.copyParameter(value) : value);
+            }
+            return copy;
+        }
+        EvaluatedColumn copy = new EvaluatedColumn(evaluation);
+        for(int ii = present.nextSetBit(0); ii >= 0; ii = present.nextSetBit(ii + 1))
+        {
+            copy.values[ii] = deep ? ParameterUtil.copyParameter(values[ii]) : values[ii];
+            copy.present.set(ii);
+        }
+        return copy;
+    }
+
+    @Override
+    public Object get(int index)
+    {
+        if(null != materialized) return materialized.get(index);
+        checkIndex(index);
+        if(!present.get(index))
+        {
+            values[index] = ParameterUtil.copyParameter(evaluation.get(index));
+            present.set(index);
+        }
+        return values[index];
+    }
+
+    @Override
+    public Object set(int index, Object value)
+    {
+        if(null != materialized) return materialized.set(index, value);
+        Object previous = get(index);
+        values[index] = value;
+        return previous;
+    }
+
+    @Override
+    public void add(int index, Object value)
+    {
+        materialize().add(index, value);
+        modCount++;
+    }
+
+    @Override
+    public Object remove(int index)
+    {
+        Object value = materialize().remove(index);
+        modCount++;
+        return value;
+    }
+
+    @Override
+    public int size()
+    {
+        if(null != materialized) return materialized.size();
+        return values.length;
+    }
+
+    private List<Object> materialize()
+    {
+        if(null == materialized)
+        {
+            List<Object> list = new ArrayList<Object>(values.length + 1);
+            for(int ii = 0; ii < values.length; ii++)
+            {
+                list.add(get(ii));
+            }
+            materialized = list;
+        }
+        return materialized;
+    }
+
+    private void checkIndex(int index)
+    {
+        if(index < 0 || index >= values.length)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + values.length);
+        }
+    }
+
+    private static class Evaluation
+    {
+        private final List<Object> template;
+        private final String sql;
+        private final MockParameterMap parameters;
+        private final String columnName;
+        private final Object[] results;
+        private final BitSet evaluated;
+
+        public Evaluation(List<Object> template, String sql, MockParameterMap parameters, String columnName)
+        {
+            this.template = template;
+            this.sql = sql;
+            this.parameters = parameters;
+            this.columnName = columnName;
+            this.results = new Object[template.size()];
+            this.evaluated = new BitSet();
+        }
+
+        public int size()
+        {
+            return results.length;
+        }
+
+        public synchronized Object get(int row)
+        {
+            if(evaluated.get(row)) return results[row];
+            Object value = template.get(row);
+            if(value instanceof EvaluableResultSet.Evaluable)
+            {
+                value = ((EvaluableResultSet.Evaluable)value).evaluate(sql, parameters, columnName, row);
+            }
+            results[row] = value;
+            evaluated.set(row);
+            return value;
+        }
+    }
+}
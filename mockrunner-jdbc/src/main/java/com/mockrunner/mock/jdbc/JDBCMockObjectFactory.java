@@ -9,6 +9,9 @@ import java.util.Iterator;
 import java.util.Set;
 
 import com.mockrunner.base.NestedApplicationException;
+import com.mockrunner.jdbc.CallableStatementResultSetHandler;
+import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
+import com.mockrunner.jdbc.StatementResultSetHandler;
 
 /**
  * Used to create all types of JDBC mock objects. 
@@ -27,12 +30,27 @@ public class JDBCMockObjectFactory
     private final MockDriver driver;
     private final MockConnection connection;
     private final Set<Driver> preservedDrivers;
+    private final boolean threadSafe;
     
     /**
      * Creates a new set of mock objects.
      */
     public JDBCMockObjectFactory()
     {
+        this(false);
+    }
+
+    /**
+     * Creates a new set of mock objects. If <code>threadSafe</code>
+     * is <code>true</code>, the result set handlers of the connection
+     * can be used by more than one thread at the same time, e.g. if
+     * the tested code uses the connection from a thread pool.
+     * @param threadSafe <code>true</code> to create thread-safe
+     *        result set handlers
+     */
+    public JDBCMockObjectFactory(boolean threadSafe)
+    {
+        this.threadSafe = threadSafe;
         dataSource = createMockDataSource();
         driver = createMockDriver();
         connection = createMockConnection();
@@ -145,9 +163,22 @@ public class JDBCMockObjectFactory
      */
     public MockConnection createMockConnection()
     {
+        if(threadSafe)
+        {
+            return new MockConnection(new StatementResultSetHandler(true), new PreparedStatementResultSetHandler(true), new CallableStatementResultSetHandler(true));
+        }
         return new MockConnection();
     }
 
+    /**
+     * Returns if the result set handlers of the connection are thread-safe.
+     * @return <code>true</code> if the handlers are thread-safe
+     */
+    public boolean isThreadSafe()
+    {
+        return threadSafe;
+    }
+
     /**
      * Creates the {@link com.mockrunner.mock.jdbc.MockDriver} using <code>new</code>.
      * This method can be overridden to return a subclass of {@link com.mockrunner.mock.jdbc.MockDriver}.
@@ -6,24 +6,31 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.sql.Blob;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 import com.mockrunner.base.NestedApplicationException;
-import com.mockrunner.util.common.ArrayUtil;
-import com.mockrunner.util.common.CollectionUtil;
 
 /**
  * Mock implementation of <code>Blob</code>.
+ * The data is stored in a byte array that grows as necessary.
+ * The streams returned by {@link #getBinaryStream} read directly
+ * from this array and the streams returned by {@link #setBinaryStream}
+ * write directly into it, i.e. no data is copied. Please note that
+ * changes of the <code>Blob</code> may be visible to a stream that
+ * is read at the same time.
  */
 public class MockBlob implements Blob, Cloneable
 {
-    private List<Byte> blobData;
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private byte[] blobData;
+    private int length;
     private boolean wasFreeCalled;
     
     public MockBlob(byte[] data)
     {
-        blobData = ArrayUtil.getListFromByteArray(data);
+        blobData = data.clone();
+        length = data.length;
         wasFreeCalled = false;
     }
     
@@ -33,7 +40,7 @@ public class MockBlob implements Blob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        return blobData.size();
+        return length;
     }
 
     public byte[] getBytes(long pos, int length) throws SQLException
@@ -43,7 +50,7 @@ public class MockBlob implements Blob, Cloneable
             throw new SQLException("free() was called");
         }
         length = verifyAndFixLength(pos, length);
-        return ArrayUtil.getByteArrayFromList(blobData, (int)(pos - 1), length);
+        return Arrays.copyOfRange(blobData, (int)(pos - 1), (int)(pos - 1) + length);
     }
 
     public InputStream getBinaryStream() throws SQLException
@@ -52,7 +59,7 @@ public class MockBlob implements Blob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        return new ByteArrayInputStream(ArrayUtil.getByteArrayFromList(blobData));
+        return new ByteArrayInputStream(blobData, 0, length);
     }
 
     public InputStream getBinaryStream(long pos, long length) throws SQLException
@@ -62,7 +69,7 @@ public class MockBlob implements Blob, Cloneable
             throw new SQLException("free() was called");
         }
         length = verifyAndFixLength(pos, (int)length);
-        return new ByteArrayInputStream(ArrayUtil.getByteArrayFromList(blobData, (int)(pos - 1), (int)length));
+        return new ByteArrayInputStream(blobData, (int)(pos - 1), (int)length);
     }
 
     public long position(byte[] pattern, long start) throws SQLException
@@ -71,10 +78,12 @@ public class MockBlob implements Blob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        byte[] data = ArrayUtil.getByteArrayFromList(blobData);
-        int index = ArrayUtil.indexOf(data, pattern, (int)(start - 1));
-        if(-1 != index) index += 1;
-        return index;
+        int last = length - pattern.length;
+        for(int ii = Math.max(0, (int)(start - 1)); ii <= last; ii++)
+        {
+            if(matches(pattern, ii)) return ii + 1;
+        }
+        return -1;
     }
 
     public long position(Blob pattern, long start) throws SQLException
@@ -88,7 +97,7 @@ public class MockBlob implements Blob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        ArrayUtil.addBytesToList(bytes, blobData, (int)(pos - 1));
+        write((int)(pos - 1), bytes, 0, bytes.length);
         return bytes.length;
     }
 
@@ -98,7 +107,7 @@ public class MockBlob implements Blob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        ArrayUtil.addBytesToList(bytes, offset, len, blobData, (int)(pos - 1));
+        write((int)(pos - 1), bytes, offset, len);
         return len;
     }
 
@@ -117,7 +126,14 @@ public class MockBlob implements Blob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        blobData = CollectionUtil.truncateList(blobData, (int)len);
+        if(len < 0)
+        {
+            throw new SQLException("len must be >= 0");
+        }
+        if(len < length)
+        {
+            length = (int)len;
+        }
     }
     
     public void free() throws SQLException
@@ -142,13 +158,22 @@ public class MockBlob implements Blob, Cloneable
         if(!obj.getClass().equals(this.getClass())) return false;
         MockBlob other = (MockBlob)obj;
         if(wasFreeCalled != other.wasFreeCalled()) return false;
-        return blobData.equals(other.blobData);
+        if(length != other.length) return false;
+        for(int ii = 0; ii < length; ii++)
+        {
+            if(blobData[ii] != other.blobData[ii]) return false;
+        }
+        return true;
     }
 
     @Override
     public int hashCode()
     {
-        int hashCode = blobData.hashCode();
+        int hashCode = 1;
+        for(int ii = 0; ii < length; ii++)
+        {
+            hashCode = (31 * hashCode) + blobData[ii];
+        }
         hashCode = (31 * hashCode) + (wasFreeCalled ? 31 : 62);
         return hashCode;
     }
@@ -156,7 +181,7 @@ public class MockBlob implements Blob, Cloneable
     @Override
     public String toString()
     {
-        return "Blob data: " + blobData.toString();     
+        return "Blob data: " + Arrays.toString(Arrays.copyOf(blobData, length));
     }
     
     @Override
@@ -165,7 +190,7 @@ public class MockBlob implements Blob, Cloneable
         try
         {
             MockBlob blob = (MockBlob)super.clone();
-            blob.blobData = new ArrayList<Byte>(blobData);
+            blob.blobData = Arrays.copyOf(blobData, length);
             return blob;
         }
         catch(CloneNotSupportedException exc)
@@ -180,12 +205,40 @@ public class MockBlob implements Blob, Cloneable
         {
             throw new IllegalArgumentException("length must be greater or equals 0");
         }
-        if((length + (pos - 1)) > blobData.size())
+        if((length + (pos - 1)) > this.length)
         {
-            return blobData.size() - (int)(pos - 1);
+            return Math.max(0, this.length - (int)(pos - 1));
         }
         return length;
     }
+
+    private boolean matches(byte[] pattern, int index)
+    {
+        for(int ii = 0; ii < pattern.length; ii++)
+        {
+            if(blobData[index + ii] != pattern[ii]) return false;
+        }
+        return true;
+    }
+
+    private void write(int index, byte[] bytes, int offset, int len)
+    {
+        int end = index + len;
+        if(end > blobData.length)
+        {
+            int newCapacity = (int)Math.min(MAX_ARRAY_SIZE, Math.max(end, 2L * blobData.length));
+            blobData = Arrays.copyOf(blobData, newCapacity);
+        }
+        if(index > length)
+        {
+            Arrays.fill(blobData, length, index, (byte)0);
+        }
+        System.arraycopy(bytes, offset, blobData, index, len);
+        if(end > length)
+        {
+            length = end;
+        }
+    }
     
     private class BlobOutputStream extends OutputStream
     {  
@@ -198,9 +251,15 @@ public class MockBlob implements Blob, Cloneable
         
         public void write(int byteValue) throws IOException
         {
-            byte[] bytes = new byte[] {(byte)byteValue};
-            ArrayUtil.addBytesToList(bytes, blobData, index);
+            MockBlob.this.write(index, new byte[] {(byte)byteValue}, 0, 1);
             index++;
         }
+
+        @Override
+        public void write(byte[] bytes, int offset, int len) throws IOException
+        {
+            MockBlob.this.write(index, bytes, offset, len);
+            index += len;
+        }
     }
 }
@@ -22,17 +22,16 @@ import java.sql.SQLException;
 import java.sql.SQLXML;
 import java.sql.Time;
 import java.sql.Timestamp;
-import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import com.mockrunner.base.NestedApplicationException;
 import com.mockrunner.jdbc.AbstractOutParameterResultSetHandler;
+import com.mockrunner.jdbc.CompactParameterLog;
 import com.mockrunner.util.common.StreamUtil;
 
 /**
@@ -44,7 +43,7 @@ public class MockCallableStatement extends MockPreparedStatement implements Call
 //    private final MockParameterMap paramObjects = new MockParameterMap();
     private final Set<ParameterIndex> registeredOutParameterSetIndexed = new HashSet<ParameterIndex>();
     private final Set<ParameterName> registeredOutParameterSetNamed = new HashSet<ParameterName>();
-    private List<MockParameterMap> batchParameters = new ArrayList<MockParameterMap>();
+    private CompactParameterLog batchParameters = new CompactParameterLog();
     private MockParameterMap lastOutParameters = null;
     private boolean wasNull = false;
     
@@ -143,13 +142,13 @@ public class MockCallableStatement extends MockPreparedStatement implements Call
     @Override
     public void addBatch() throws SQLException
     {
-        batchParameters.add(new MockParameterMap(getParameterMap()));
+        batchParameters.add(getParameterMap());
     }
 
     @Override
     public int[] executeBatch() throws SQLException
     {
-        return executeBatch(batchParameters);
+        return executeBatch(batchParameters.asList());
     }
     
     public void registerOutParameter(int parameterIndex, int sqlType) throws SQLException
@@ -1067,6 +1066,12 @@ public class MockCallableStatement extends MockPreparedStatement implements Call
     
     private NClob getNClobFromClob(Clob clobValue) throws SQLException
     {
+        if(clobValue instanceof MockClob)
+        {
+            MockClob mockClob = (MockClob)clobValue;
+            if(mockClob.wasFreeCalled()) throw new SQLException("free() was called");
+            return new MockNClob(mockClob);
+        }
         return new MockNClob(clobValue.getSubString(1, (int)clobValue.length()));
     }
 }
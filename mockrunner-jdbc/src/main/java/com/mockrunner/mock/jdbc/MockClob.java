@@ -1,35 +1,65 @@
 package com.mockrunner.mock.jdbc;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
-import java.io.StringReader;
-import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.sql.Clob;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 
 import com.mockrunner.base.NestedApplicationException;
 
 /**
  * Mock implementation of <code>Clob</code>.
+ * The data is stored in chunks of characters, so positioning is
+ * independent of the size of the <code>Clob</code> and changing a part
+ * only touches the affected chunks. The streams returned by
+ * {@link #getCharacterStream} and {@link #getAsciiStream} read directly
+ * from the chunks, the streams returned by {@link #setCharacterStream}
+ * and {@link #setAsciiStream} write directly into them. Clones share
+ * the chunks until one of them changes a chunk.
+ * <br>
+ * This class is not thread-safe.
  */
 public class MockClob implements Clob, Cloneable
 {
-    private StringBuffer clobData;
+    private static final int CHUNK_SHIFT = 13;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private List<char[]> chunks;
+    private BitSet ownedChunks;
+    private int length;
     private boolean wasFreeCalled;
     
     public MockClob(String data)
     {
-        clobData = new StringBuffer(data);
+        chunks = new ArrayList<char[]>();
+        ownedChunks = new BitSet();
+        length = 0;
+        write(0, data, 0, data.length());
+        wasFreeCalled = false;
+    }
+
+    /**
+     * Creates a <code>Clob</code> with the data of the specified
+     * <code>Clob</code>. The data is not copied, the chunks are
+     * shared until one of the <code>Clob</code> objects changes them.
+     * @param clob the <code>Clob</code> with the data
+     */
+    protected MockClob(MockClob clob)
+    {
+        shareChunks(clob);
         wasFreeCalled = false;
     }
 
     public long length() throws SQLException
     {
-        return clobData.length();
+        return length;
     }
 
     public void truncate(long len) throws SQLException
@@ -38,7 +68,11 @@ public class MockClob implements Clob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        clobData.setLength((int)len);
+        if(len < 0)
+        {
+            throw new SQLException("len must be >= 0");
+        }
+        setLength((int)len);
     }
 
     public InputStream getAsciiStream() throws SQLException
@@ -47,14 +81,7 @@ public class MockClob implements Clob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        try
-        {
-            return new ByteArrayInputStream(clobData.toString().getBytes("ISO-8859-1"));
-        } 
-        catch(UnsupportedEncodingException exc)
-        {
-            throw new NestedApplicationException(exc);
-        }
+        return new ClobInputStream();
     }
 
     public OutputStream setAsciiStream(long pos) throws SQLException
@@ -72,7 +99,7 @@ public class MockClob implements Clob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        return new StringReader(clobData.toString());
+        return new ClobReader(0, length);
     }
 
     public Reader getCharacterStream(long pos, long length) throws SQLException
@@ -82,7 +109,7 @@ public class MockClob implements Clob, Cloneable
             throw new SQLException("free() was called");
         }
         length = verifyAndFixLength(pos, (int)length);
-        return new StringReader(getSubString(pos, (int)length));
+        return new ClobReader((int)(pos - 1), (int)(pos - 1) + (int)length);
     }
 
     public Writer setCharacterStream(long pos) throws SQLException
@@ -101,7 +128,9 @@ public class MockClob implements Clob, Cloneable
             throw new SQLException("free() was called");
         }
         length = verifyAndFixLength(pos, length);
-        return clobData.substring((int)(pos - 1), (int)(pos - 1) + length);
+        char[] data = new char[length];
+        read((int)(pos - 1), data, 0, length);
+        return new String(data);
     }
 
     public int setString(long pos, String str) throws SQLException
@@ -115,8 +144,8 @@ public class MockClob implements Clob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        str = str.substring(offset, offset + len);
-        clobData.replace((int)(pos - 1), (int)(pos - 1) + str.length(), str);
+        verifyIndex((int)(pos - 1));
+        write((int)(pos - 1), str, offset, len);
         return len;
     }
 
@@ -126,9 +155,12 @@ public class MockClob implements Clob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        int index = clobData.toString().indexOf(searchstr, (int)(start - 1));
-        if(-1 != index) index += 1;
-        return index;
+        int last = length - searchstr.length();
+        for(int ii = Math.max(0, (int)(start - 1)); ii <= last; ii++)
+        {
+            if(matches(searchstr, ii)) return ii + 1;
+        }
+        return -1;
     }
 
     public long position(Clob searchClob, long start) throws SQLException
@@ -157,19 +189,30 @@ public class MockClob implements Clob, Cloneable
         if(!obj.getClass().equals(this.getClass())) return false;
         MockClob other = (MockClob)obj;
         if(wasFreeCalled != other.wasFreeCalled()) return false;
-        return clobData.toString().equals(other.clobData.toString());
+        if(length != other.length) return false;
+        for(int ii = 0; ii < length; ii++)
+        {
+            if(charAt(ii) != other.charAt(ii)) return false;
+        }
+        return true;
     }
 
     public int hashCode()
     {
-        int hashCode = clobData.toString().hashCode();
+        int hashCode = 0;
+        for(int ii = 0; ii < length; ii++)
+        {
+            hashCode = (31 * hashCode) + charAt(ii);
+        }
         hashCode = (31 * hashCode) + (wasFreeCalled ? 31 : 62);
         return hashCode;
     }
 
     public String toString()
     {
-        return "Clob data: " + clobData.toString();
+        char[] data = new char[length];
+        read(0, data, 0, length);
+        return "Clob data: " + new String(data);
     }
     
     public Object clone()
@@ -177,7 +220,7 @@ public class MockClob implements Clob, Cloneable
         try
         {
             MockClob clone = (MockClob)super.clone();
-            clone.clobData = new StringBuffer(clobData.toString());
+            clone.shareChunks(this);
             return clone;
         }
         catch(CloneNotSupportedException exc)
@@ -192,13 +235,161 @@ public class MockClob implements Clob, Cloneable
         {
             throw new IllegalArgumentException("length must be greater or equals 0");
         }
-        if((length + (pos - 1)) > clobData.length())
+        if((length + (pos - 1)) > this.length)
         {
-            return clobData.length() - (int)(pos - 1);
+            return this.length - (int)(pos - 1);
         }
         return length;
     }
+
+    private void verifyIndex(int index)
+    {
+        if(index < 0 || index > length)
+        {
+            throw new StringIndexOutOfBoundsException(index);
+        }
+    }
+
+    private void shareChunks(MockClob clob)
+    {
+        chunks = new ArrayList<char[]>(clob.chunks);
+        ownedChunks = new BitSet();
+        clob.ownedChunks.clear();
+        length = clob.length;
+    }
+
+    private char charAt(int index)
+    {
+        return chunks.get(index >>> CHUNK_SHIFT)[index & CHUNK_MASK];
+    }
+
+    private boolean matches(String searchstr, int index)
+    {
+        for(int ii = 0; ii < searchstr.length(); ii++)
+        {
+            if(charAt(index + ii) != searchstr.charAt(ii)) return false;
+        }
+        return true;
+    }
+
+    private void read(int index, char[] data, int offset, int len)
+    {
+        while(len > 0)
+        {
+            int chunkOffset = index & CHUNK_MASK;
+            int count = Math.min(len, CHUNK_SIZE - chunkOffset);
+            System.arraycopy(chunks.get(index >>> CHUNK_SHIFT), chunkOffset, data, offset, count);
+            index += count;
+            offset += count;
+            len -= count;
+        }
+    }
+
+    private char[] getWritableChunk(int chunkIndex)
+    {
+        if(chunkIndex == chunks.size())
+        {
+            chunks.add(new char[CHUNK_SIZE]);
+            ownedChunks.set(chunkIndex);
+        }
+        else if(!ownedChunks.get(chunkIndex))
+        {
+            chunks.set(chunkIndex, chunks.get(chunkIndex).clone());
+            ownedChunks.set(chunkIndex);
+        }
+        return chunks.get(chunkIndex);
+    }
+
+    private void write(int index, String data, int offset, int len)
+    {
+        int end = index + len;
+        while(len > 0)
+        {
+            int chunkOffset = index & CHUNK_MASK;
+            int count = Math.min(len, CHUNK_SIZE - chunkOffset);
+            data.getChars(offset, offset + count, getWritableChunk(index >>> CHUNK_SHIFT), chunkOffset);
+            index += count;
+            offset += count;
+            len -= count;
+        }
+        if(end > length)
+        {
+            length = end;
+        }
+    }
+
+    private void write(int index, char[] data, int offset, int len)
+    {
+        int end = index + len;
+        while(len > 0)
+        {
+            int chunkOffset = index & CHUNK_MASK;
+            int count = Math.min(len, CHUNK_SIZE - chunkOffset);
+            System.arraycopy(data, offset, getWritableChunk(index >>> CHUNK_SHIFT), chunkOffset, count);
+            index += count;
+            offset += count;
+            len -= count;
+        }
+        if(end > length)
+        {
+            length = end;
+        }
+    }
+
+    private void setLength(int newLength)
+    {
+        if(newLength > length)
+        {
+            write(length, new char[newLength - length], 0, newLength - length);
+            return;
+        }
+        int numberChunks = (newLength + CHUNK_MASK) >>> CHUNK_SHIFT;
+        while(chunks.size() > numberChunks)
+        {
+            ownedChunks.clear(chunks.size() - 1);
+            chunks.remove(chunks.size() - 1);
+        }
+        length = newLength;
+    }
     
+    private class ClobReader extends Reader
+    {
+        private int index;
+        private final int end;
+
+        public ClobReader(int index, int end)
+        {
+            this.index = index;
+            this.end = end;
+        }
+
+        public int read(char[] cbuf, int off, int len) throws IOException
+        {
+            int count = Math.min(len, Math.min(end, length) - index);
+            if(count <= 0) return (0 == len) ? 0 : -1;
+            MockClob.this.read(index, cbuf, off, count);
+            index += count;
+            return count;
+        }
+
+        public void close() throws IOException
+        {
+
+        }
+    }
+
+    private class ClobInputStream extends InputStream
+    {
+        private int index;
+
+        public int read() throws IOException
+        {
+            if(index >= length) return -1;
+            char character = charAt(index++);
+            return (character > 0xFF) ? '?' : character;
+        }
+    }
+
     private class ClobWriter extends Writer
     {  
         private int index;
@@ -222,13 +413,14 @@ public class MockClob implements Clob, Cloneable
         {
             try
             {
-                setString(index + 1, new String(cbuf, off, len));
+                verifyIndex(index);
             }
-            catch(SQLException exc)
+            catch(StringIndexOutOfBoundsException exc)
             {
                 throw new IOException(exc.getMessage());
             }
-            index++;
+            MockClob.this.write(index, cbuf, off, len);
+            index += len;
         }
     }
     
@@ -243,15 +435,15 @@ public class MockClob implements Clob, Cloneable
     
         public void write(int byteValue) throws IOException
         {
-            byte[] bytes = new byte[] {(byte)byteValue};
             try
             {
-                setString(index + 1, new String(bytes));
+                verifyIndex(index);
             }
-            catch(SQLException exc)
+            catch(StringIndexOutOfBoundsException exc)
             {
                 throw new IOException(exc.getMessage());
             }
+            MockClob.this.write(index, new char[] {(char)(byteValue & 0xFF)}, 0, 1);
             index++;
         }
     }
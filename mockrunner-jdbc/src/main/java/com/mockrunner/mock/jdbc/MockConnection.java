@@ -23,6 +23,7 @@ import java.util.concurrent.Executor;
 
 import com.mockrunner.base.NestedApplicationException;
 import com.mockrunner.jdbc.CallableStatementResultSetHandler;
+import com.mockrunner.jdbc.FlightRecorderEvents;
 import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
 import com.mockrunner.jdbc.StatementResultSetHandler;
 
@@ -437,11 +438,13 @@ public class MockConnection implements Connection
     public void commit() throws SQLException
     {
         numberCommits++;
+        FlightRecorderEvents.transaction("commit", null);
     }
     
     public void rollback() throws SQLException
     {
         numberRollbacks++;
+        FlightRecorderEvents.transaction("rollback", null);
     }
     
     public void rollback(Savepoint savepoint) throws SQLException
@@ -457,6 +460,11 @@ public class MockConnection implements Connection
         }
         currentSavepoint.setRolledBack(true);
         numberRollbacks++;
+        if(FlightRecorderEvents.isRecording())
+        {
+            String savepointName = currentSavepoint.getSavepointName();
+            FlightRecorderEvents.transaction("rollback", (null == savepointName || savepointName.length() == 0) ? String.valueOf(currentSavepoint.getSavepointId()) : savepointName);
+        }
     }
     
     public void clearWarnings() throws SQLException
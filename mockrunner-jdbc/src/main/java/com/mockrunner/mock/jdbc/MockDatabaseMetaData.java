@@ -7,9 +7,12 @@ import java.sql.RowIdLifetime;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import com.mockrunner.util.common.StringUtil;
 
@@ -170,27 +173,27 @@ public class MockDatabaseMetaData implements DatabaseMetaData
     private ResultSet tableTypes;
     private ResultSet typeInfo;
     private ResultSet clientInfoProperties;
-    private Map<DatabaseIdentifier, ResultSet> schemasMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> exportedKeysMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> importedKeysMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> primaryKeysMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> proceduresMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> functionsMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> superTablesMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> superTypesMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> tablePrivilegesMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> versionColumnsMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> bestRowIdentifierMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> indexInfoMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> udtsMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> attributesMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> columnPrivilegesMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> columnsMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> procedureColumnsMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> functionColumnsMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> tablesMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> crossReferenceMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> pseudoColumnsMap = new HashMap<DatabaseIdentifier, ResultSet>();
+    private DatabaseIdentifierIndex schemasMap = new DatabaseIdentifierIndex();
+    private DatabaseIdentifierIndex exportedKeysMap = new DatabaseIdentifierIndex();
+    private DatabaseIdentifierIndex importedKeysMap = new DatabaseIdentifierIndex();
+    private DatabaseIdentifierIndex primaryKeysMap = new DatabaseIdentifierIndex();
+    private DatabaseIdentifierIndex proceduresMap = new DatabaseIdentifierIndex();
+    private DatabaseIdentifierIndex functionsMap = new DatabaseIdentifierIndex();
+    private DatabaseIdentifierIndex superTablesMap = new DatabaseIdentifierIndex();
+    private DatabaseIdentifierIndex superTypesMap = new DatabaseIdentifierIndex();
+    private DatabaseIdentifierIndex tablePrivilegesMap = new DatabaseIdentifierIndex();
+    private DatabaseIdentifierIndex versionColumnsMap = new DatabaseIdentifierIndex();
+    private DatabaseIdentifierIndex bestRowIdentifierMap = new DatabaseIdentifierIndex();
+    private DatabaseIdentifierIndex indexInfoMap = new DatabaseIdentifierIndex();
+    private DatabaseIdentifierIndex udtsMap = new DatabaseIdentifierIndex();
+    private DatabaseIdentifierIndex attributesMap = new DatabaseIdentifierIndex();
+    private DatabaseIdentifierIndex columnPrivilegesMap = new DatabaseIdentifierIndex();
+    private DatabaseIdentifierIndex columnsMap = new DatabaseIdentifierIndex();
+    private DatabaseIdentifierIndex procedureColumnsMap = new DatabaseIdentifierIndex();
+    private DatabaseIdentifierIndex functionColumnsMap = new DatabaseIdentifierIndex();
+    private DatabaseIdentifierIndex tablesMap = new DatabaseIdentifierIndex();
+    private DatabaseIdentifierIndex crossReferenceMap = new DatabaseIdentifierIndex();
+    private DatabaseIdentifierIndex pseudoColumnsMap = new DatabaseIdentifierIndex();
     
     /**
      * Set if matching of catalogs, schemas, tables and columns
@@ -2179,30 +2182,233 @@ public class MockDatabaseMetaData implements DatabaseMetaData
      * ResultSet otherwise return a PolyResultSet with the ResultSet of each
      * matching DatabaseIdentifier.
      */
-    private ResultSet findMatchingDatabaseIdentifier(DatabaseIdentifier expected, Map<DatabaseIdentifier, ResultSet> theMap)
+    private ResultSet findMatchingDatabaseIdentifier(DatabaseIdentifier expected, DatabaseIdentifierIndex theIndex)
     {
-        List<ResultSet> list = new ArrayList<ResultSet>();
-        for (Map.Entry<DatabaseIdentifier, ResultSet> entry : theMap.entrySet()) {
-            DatabaseIdentifier next = entry.getKey();
-            if(next.isGlobal() || expected.matches(next)) 
-            {
-                list.add(entry.getValue());
-            }
-        }
+        List<ResultSet> list = theIndex.findMatching(expected);
         if(list.isEmpty()) return null;
         if(list.size() == 1) return list.get(0);
         return new PolyResultSet(list);
     }
     
-    private ResultSet getAll(Map<DatabaseIdentifier, ResultSet> theMap)
+    private ResultSet getAll(DatabaseIdentifierIndex theIndex)
     {
         List<ResultSet> list = new ArrayList<ResultSet>();
-        list.addAll(theMap.values());
+        list.addAll(theIndex.values());
         if(list.isEmpty()) return null;
         if(list.size() == 1) return list.get(0);
         return new PolyResultSet(list);
     }
     
+    /*
+     * Matches a name against an SQL LIKE pattern, i.e. % matches any
+     * sequence of characters and _ matches one character. The search
+     * string escape character escapes the following character.
+     */
+    private boolean matchesPattern(String name, String pattern)
+    {
+        int patternLength = 0;
+        char[] patternChars = new char[pattern.length()];
+        boolean[] isLiteral = new boolean[pattern.length()];
+        char escape = (null != searchStringEscape && searchStringEscape.length() == 1) ? searchStringEscape.charAt(0) : 0;
+        for(int ii = 0; ii < pattern.length(); ii++)
+        {
+            char next = pattern.charAt(ii);
+            boolean literal = (next != '%' && next != '_');
+            if(0 != escape && next == escape && ii + 1 < pattern.length())
+            {
+                next = pattern.charAt(++ii);
+                literal = true;
+            }
+            patternChars[patternLength] = next;
+            isLiteral[patternLength] = literal;
+            patternLength++;
+        }
+        int nameIndex = 0;
+        int patternIndex = 0;
+        int lastWildcard = -1;
+        int lastWildcardNameIndex = 0;
+        while(nameIndex < name.length())
+        {
+            if(patternIndex < patternLength && !isLiteral[patternIndex] && patternChars[patternIndex] == '%')
+            {
+                lastWildcard = patternIndex++;
+                lastWildcardNameIndex = nameIndex;
+            }
+            else if(patternIndex < patternLength && (!isLiteral[patternIndex] || matchesChar(name.charAt(nameIndex), patternChars[patternIndex])))
+            {
+                patternIndex++;
+                nameIndex++;
+            }
+            else if(-1 != lastWildcard)
+            {
+                patternIndex = lastWildcard + 1;
+                nameIndex = ++lastWildcardNameIndex;
+            }
+            else
+            {
+                return false;
+            }
+        }
+        while(patternIndex < patternLength && !isLiteral[patternIndex] && patternChars[patternIndex] == '%')
+        {
+            patternIndex++;
+        }
+        return patternIndex == patternLength;
+    }
+    
+    private boolean matchesChar(char char1, char char2)
+    {
+        if(char1 == char2) return true;
+        if(caseSensitive) return false;
+        return Character.toLowerCase(char1) == Character.toLowerCase(char2) || Character.toUpperCase(char1) == Character.toUpperCase(char2);
+    }
+    
+    /*
+     * Returns the part of the pattern before the first wildcard,
+     * the whole pattern if it has no wildcard.
+     */
+    private String getLiteralPrefix(String pattern)
+    {
+        for(int ii = 0; ii < pattern.length(); ii++)
+        {
+            char next = pattern.charAt(ii);
+            if(next == '%' || next == '_' || (null != searchStringEscape && searchStringEscape.indexOf(next) != -1))
+            {
+                return pattern.substring(0, ii);
+            }
+        }
+        return pattern;
+    }
+    
+    /*
+     * Holds the registered DatabaseIdentifiers and their ResultSets.
+     * The identifiers are indexed by catalog, schema and name (i.e.
+     * table, procedure or type name), so a lookup only checks the
+     * identifiers with a matching name, or with a matching prefix, if
+     * the name pattern starts with a literal part. The indexes ignore
+     * case; the matching itself is done by DatabaseIdentifier.matches.
+     */
+    private class DatabaseIdentifierIndex
+    {
+        private final Map<DatabaseIdentifier, ResultSet> entries = new LinkedHashMap<DatabaseIdentifier, ResultSet>();
+        private final List<DatabaseIdentifier> globalIdentifiers = new ArrayList<DatabaseIdentifier>();
+        private final TreeMap<String, List<DatabaseIdentifier>> catalogIndex = new TreeMap<String, List<DatabaseIdentifier>>(String.CASE_INSENSITIVE_ORDER);
+        private final TreeMap<String, List<DatabaseIdentifier>> schemaIndex = new TreeMap<String, List<DatabaseIdentifier>>(String.CASE_INSENSITIVE_ORDER);
+        private final TreeMap<String, List<DatabaseIdentifier>> nameIndex = new TreeMap<String, List<DatabaseIdentifier>>(String.CASE_INSENSITIVE_ORDER);
+        
+        public void put(DatabaseIdentifier identifier, ResultSet resultSet)
+        {
+            if(null != entries.put(identifier, resultSet)) return;
+            if(identifier.isGlobal())
+            {
+                globalIdentifiers.add(identifier);
+                return;
+            }
+            DatabaseIdentifierImpl indexed = getIndexedIdentifier(identifier);
+            if(null == indexed || null == indexed.getTable()) return;
+            addToIndex(catalogIndex, indexed.getCatalog(), identifier);
+            addToIndex(schemaIndex, indexed.getSchema(), identifier);
+            addToIndex(nameIndex, indexed.getTable(), identifier);
+        }
+        
+        public Collection<ResultSet> values()
+        {
+            return entries.values();
+        }
+        
+        public void clear()
+        {
+            entries.clear();
+            globalIdentifiers.clear();
+            catalogIndex.clear();
+            schemaIndex.clear();
+            nameIndex.clear();
+        }
+        
+        public List<ResultSet> findMatching(DatabaseIdentifier expected)
+        {
+            List<ResultSet> list = new ArrayList<ResultSet>();
+            for(DatabaseIdentifier next : globalIdentifiers)
+            {
+                list.add(entries.get(next));
+            }
+            Collection<DatabaseIdentifier> candidates = findCandidates(expected);
+            for(DatabaseIdentifier next : candidates)
+            {
+                if(expected.matches(next))
+                {
+                    list.add(entries.get(next));
+                }
+            }
+            return list;
+        }
+        
+        private Collection<DatabaseIdentifier> findCandidates(DatabaseIdentifier expected)
+        {
+            DatabaseIdentifierImpl indexed = getIndexedIdentifier(expected);
+            if(null == indexed || indexed.isGlobal()) return entries.keySet();
+            if(null == indexed.getTable()) return Collections.emptyList();
+            Collection<DatabaseIdentifier> candidates = findInIndex(nameIndex, indexed.getTable(), indexed.isUseTablePattern());
+            if(null != candidates) return candidates;
+            if(null != indexed.getSchema())
+            {
+                candidates = findInIndex(schemaIndex, indexed.getSchema(), indexed.isUseSchemaPattern());
+                if(null != candidates) return candidates;
+            }
+            if(null != indexed.getCatalog())
+            {
+                candidates = findInIndex(catalogIndex, indexed.getCatalog(), false);
+                if(null != candidates) return candidates;
+            }
+            return entries.keySet();
+        }
+        
+        /*
+         * Returns null, if the index cannot be used for the pattern.
+         */
+        private Collection<DatabaseIdentifier> findInIndex(TreeMap<String, List<DatabaseIdentifier>> index, String name, boolean usePattern)
+        {
+            String prefix = usePattern ? getLiteralPrefix(name) : name;
+            if(prefix.length() == name.length())
+            {
+                List<DatabaseIdentifier> candidates = index.get(name);
+                return (null == candidates) ? Collections.<DatabaseIdentifier>emptyList() : candidates;
+            }
+            if(prefix.length() == 0) return null;
+            List<DatabaseIdentifier> candidates = new ArrayList<DatabaseIdentifier>();
+            for(List<DatabaseIdentifier> next : index.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values())
+            {
+                candidates.addAll(next);
+            }
+            return candidates;
+        }
+        
+        private void addToIndex(TreeMap<String, List<DatabaseIdentifier>> index, String name, DatabaseIdentifier identifier)
+        {
+            String key = (null == name) ? "" : name;
+            List<DatabaseIdentifier> identifiers = index.get(key);
+            if(null == identifiers)
+            {
+                identifiers = new ArrayList<DatabaseIdentifier>(1);
+                index.put(key, identifiers);
+            }
+            identifiers.add(identifier);
+        }
+        
+        private DatabaseIdentifierImpl getIndexedIdentifier(DatabaseIdentifier identifier)
+        {
+            if(identifier instanceof DatabaseIdentifierImplWrapper)
+            {
+                identifier = ((DatabaseIdentifierImplWrapper)identifier).getIdentifier1();
+            }
+            if(identifier instanceof DatabaseIdentifierImpl)
+            {
+                return (DatabaseIdentifierImpl)identifier;
+            }
+            return null;
+        }
+    }
+    
     private interface DatabaseIdentifier
     {
         boolean isGlobal();
@@ -2259,17 +2465,14 @@ public class MockDatabaseMetaData implements DatabaseMetaData
             return table;
         }
         
-        protected String convert(String name) 
+        public boolean isUseSchemaPattern()
         {
-            if(name.indexOf('%') != -1) 
-            {
-                name = StringUtil.replaceAll(name, "%", ".*");
-            }
-            if(name.indexOf('_') != -1) 
-            {
-                name = StringUtil.replaceAll(name, "_", ".");
-            }
-            return name;
+            return useSchemaPattern;
+        }
+        
+        public boolean isUseTablePattern()
+        {
+            return useTablePattern;
         }
         
         public boolean matches(DatabaseIdentifier object) 
@@ -2313,7 +2516,7 @@ public class MockDatabaseMetaData implements DatabaseMetaData
                 }
                 else
                 {
-                    return StringUtil.matchesPerl5(other.getSchema(), convert(schema), caseSensitive);
+                    return matchesPattern(other.getSchema(), schema);
                 }
             }
         }
@@ -2328,7 +2531,7 @@ public class MockDatabaseMetaData implements DatabaseMetaData
             }
             else
             {
-                return StringUtil.matchesPerl5(other.getTable(), convert(table), caseSensitive);
+                return matchesPattern(other.getTable(), table);
             }
         }
         
@@ -2391,7 +2594,7 @@ public class MockDatabaseMetaData implements DatabaseMetaData
             AttributesDatabaseIdentifierImpl other = (AttributesDatabaseIdentifierImpl)object;
             if(null == attributeNamePattern) return false;
             if(null == other.getAttributeNamePattern()) return false;
-            return StringUtil.matchesPerl5(other.getAttributeNamePattern(), convert(attributeNamePattern), caseSensitive);
+            return matchesPattern(other.getAttributeNamePattern(), attributeNamePattern);
         }
         
         @Override
@@ -2447,7 +2650,7 @@ public class MockDatabaseMetaData implements DatabaseMetaData
             ColumnDatabaseIdentifierImpl other = (ColumnDatabaseIdentifierImpl)object;
             if(null == columnNamePattern) return false;
             if(null == other.getColumnNamePattern()) return false;
-            return StringUtil.matchesPerl5(other.getColumnNamePattern(), convert(columnNamePattern), caseSensitive);
+            return matchesPattern(other.getColumnNamePattern(), columnNamePattern);
         }
         
         @Override
@@ -11,4 +11,15 @@ public class MockNClob extends MockClob implements NClob
     {
         super(data);
     }
+
+    /**
+     * Creates an <code>NClob</code> with the data of the specified
+     * <code>Clob</code>. The data is not copied, the chunks are
+     * shared until one of the objects changes them.
+     * @param clob the <code>Clob</code> with the data
+     */
+    public MockNClob(MockClob clob)
+    {
+        super(clob);
+    }
 }
@@ -0,0 +1,435 @@
+package com.mockrunner.mock.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.mockrunner.jdbc.CallableStatementResultSetHandler;
+import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
+import com.mockrunner.jdbc.StatementResultSetHandler;
+
+/**
+ * Mock implementation of a pooled <code>DataSource</code>.
+ * In contrast to {@link MockDataSource}, which always returns the same
+ * connection, this data source hands out up to <code>maxPoolSize</code>
+ * independent {@link MockConnection} objects, so every thread of a
+ * multi-threaded test works with its own connection. All connections
+ * share the same result set handlers, i.e. the prepared result sets
+ * and the recorded executions are the same for all connections.
+ * Please create the handlers with <code>threadSafe</code> set to
+ * <code>true</code>. The constructor without handlers does this.
+ * <br>
+ * Closing a connection returns it to the pool, the next
+ * {@link #getConnection} call may return it again. The state of the
+ * connection, e.g. the number of commits, the savepoints or the
+ * auto commit mode, is kept. The statements of all borrowers of all
+ * connections are recorded by the shared handlers, i.e.
+ * <code>getStatements()</code> of a handler returns the statements of
+ * the current and of all earlier borrowers. Use the <code>reset</code>
+ * methods of {@link MockConnection} and the <code>clear</code> methods
+ * of the handlers to start from scratch. If all connections
+ * are in use, {@link #getConnection} waits until a connection is
+ * returned or the maximum wait time is over. In the latter case,
+ * an <code>SQLTransientConnectionException</code> is thrown.
+ * <br>
+ * The data source maintains metrics about the pool, e.g. how long
+ * it took to borrow a connection and how often a thread had to wait,
+ * so pool settings can be evaluated without a database.
+ */
+public class MockPooledDataSource extends MockDataSource
+{
+    /**
+     * The default maximum time to wait for a connection in milliseconds.
+     */
+    public static final long DEFAULT_MAX_WAIT = 30000;
+
+    private final StatementResultSetHandler statementHandler;
+    private final PreparedStatementResultSetHandler preparedStatementHandler;
+    private final CallableStatementResultSetHandler callableStatementHandler;
+    private final int maxPoolSize;
+    private final Semaphore permits;
+    private final ConcurrentLinkedQueue<PooledConnection> idleConnections = new ConcurrentLinkedQueue<PooledConnection>();
+    private final List<MockConnection> connections = Collections.synchronizedList(new ArrayList<MockConnection>());
+    private volatile long maxWait = DEFAULT_MAX_WAIT;
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final AtomicLong numberBorrows = new AtomicLong();
+    private final AtomicLong numberWaits = new AtomicLong();
+    private final AtomicLong numberTimeouts = new AtomicLong();
+    private final AtomicLong totalBorrowTime = new AtomicLong();
+    private final AtomicLong maximumBorrowTime = new AtomicLong();
+
+    /**
+     * Creates a pool with new thread-safe result set handlers.
+     * @param maxPoolSize the maximum number of connections
+     */
+    public MockPooledDataSource(int maxPoolSize)
+    {
+        this(new StatementResultSetHandler(true), new PreparedStatementResultSetHandler(true), new CallableStatementResultSetHandler(true), maxPoolSize);
+    }
+
+    /**
+     * Creates a pool whose connections share the specified handlers.
+     * @param statementHandler the handler for statements
+     * @param preparedStatementHandler the handler for prepared statements
+     * @param callableStatementHandler the handler for callable statements
+     * @param maxPoolSize the maximum number of connections
+     */
+    public MockPooledDataSource(StatementResultSetHandler statementHandler,
+                                PreparedStatementResultSetHandler preparedStatementHandler,
+                                CallableStatementResultSetHandler callableStatementHandler,
+                                int maxPoolSize)
+    {
+        if(maxPoolSize < 1) throw new IllegalArgumentException("maxPoolSize must be positive");
+        this.statementHandler = statementHandler;
+        this.preparedStatementHandler = preparedStatementHandler;
+        this.callableStatementHandler = callableStatementHandler;
+        this.maxPoolSize = maxPoolSize;
+        this.permits = new Semaphore(maxPoolSize, true);
+    }
+
+    /**
+     * Sets the maximum time {@link #getConnection} waits for a
+     * connection, if all connections are in use. A negative value
+     * means to wait without limit. The default is {@link #DEFAULT_MAX_WAIT}.
+     * @param maxWait the maximum wait time in milliseconds
+     */
+    public void setMaxWait(long maxWait)
+    {
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Returns the maximum time {@link #getConnection} waits for a connection.
+     * @return the maximum wait time in milliseconds
+     */
+    public long getMaxWait()
+    {
+        return maxWait;
+    }
+
+    /**
+     * Returns the maximum number of connections.
+     * @return the maximum number of connections
+     */
+    public int getMaxPoolSize()
+    {
+        return maxPoolSize;
+    }
+
+    public StatementResultSetHandler getStatementResultSetHandler()
+    {
+        return statementHandler;
+    }
+
+    public PreparedStatementResultSetHandler getPreparedStatementResultSetHandler()
+    {
+        return preparedStatementHandler;
+    }
+
+    public CallableStatementResultSetHandler getCallableStatementResultSetHandler()
+    {
+        return callableStatementHandler;
+    }
+
+    /**
+     * Returns all connections created by this pool,
+     * the ones in use and the idle ones.
+     * @return the <code>List</code> of connections
+     */
+    public List<MockConnection> getMockConnections()
+    {
+        synchronized(connections)
+        {
+            return new ArrayList<MockConnection>(connections);
+        }
+    }
+
+    /**
+     * Returns the first connection of the pool, e.g. to prepare
+     * result sets like with {@link MockDataSource}. If the pool does
+     * not have a connection yet, a new idle connection is created.
+     * Use {@link #getMockConnections} to get all connections.
+     * @return the first connection of the pool
+     */
+    @Override
+    public MockConnection getMockConnection()
+    {
+        synchronized(connections)
+        {
+            if(connections.isEmpty())
+            {
+                idleConnections.offer(addPooledConnection());
+            }
+            return connections.get(0);
+        }
+    }
+
+    /**
+     * Adds the specified connection to the pool as idle connection,
+     * i.e. one of the next {@link #getConnection} calls returns it.
+     * The connection must be a {@link PooledConnection} of this pool,
+     * e.g. an instance of a subclass, that was not yet added.
+     * @param connection the connection
+     * @throws IllegalArgumentException if the connection is not a new
+     *         {@link PooledConnection} of this pool
+     * @throws IllegalStateException if the pool already has
+     *         <code>maxPoolSize</code> connections
+     */
+    @Override
+    public void setupConnection(Connection connection)
+    {
+        if(!(connection instanceof PooledConnection) || ((PooledConnection)connection).getPool() != this)
+        {
+            throw new IllegalArgumentException("Only pooled connections of this data source can be added");
+        }
+        synchronized(connections)
+        {
+            if(connections.contains(connection))
+            {
+                throw new IllegalArgumentException("The connection is already part of the pool");
+            }
+            if(connections.size() >= maxPoolSize)
+            {
+                throw new IllegalStateException("The pool already has " + maxPoolSize + " connections");
+            }
+            connections.add((PooledConnection)connection);
+            idleConnections.offer((PooledConnection)connection);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException
+    {
+        long start = System.nanoTime();
+        if(!permits.tryAcquire())
+        {
+            numberWaits.incrementAndGet();
+            acquire();
+        }
+        PooledConnection connection = idleConnections.poll();
+        if(null == connection)
+        {
+            connection = pollOrAddPooledConnection();
+        }
+        connection.borrow();
+        activeConnections.incrementAndGet();
+        addBorrowTime(System.nanoTime() - start);
+        return connection;
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException
+    {
+        return getConnection();
+    }
+
+    /**
+     * Creates the pooled connections.
+     * This method can be overridden to return a subclass of {@link PooledConnection}.
+     * @return the connection
+     */
+    protected PooledConnection createPooledConnection()
+    {
+        return new PooledConnection();
+    }
+
+    private PooledConnection pollOrAddPooledConnection()
+    {
+        synchronized(connections)
+        {
+            PooledConnection connection = idleConnections.poll();
+            if(null != connection) return connection;
+            return addPooledConnection();
+        }
+    }
+
+    private PooledConnection addPooledConnection()
+    {
+        PooledConnection connection = createPooledConnection();
+        connections.add(connection);
+        return connection;
+    }
+
+    private void acquire() throws SQLException
+    {
+        try
+        {
+            if(maxWait < 0)
+            {
+                permits.acquire();
+            }
+            else if(!permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS))
+            {
+                numberTimeouts.incrementAndGet();
+                throw new SQLTransientConnectionException("No connection available within " + maxWait + " ms, all " + maxPoolSize + " connections are in use");
+            }
+        }
+        catch(InterruptedException exc)
+        {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection", exc);
+        }
+    }
+
+    private void release(PooledConnection connection)
+    {
+        activeConnections.decrementAndGet();
+        idleConnections.offer(connection);
+        permits.release();
+    }
+
+    private void addBorrowTime(long nanos)
+    {
+        numberBorrows.incrementAndGet();
+        totalBorrowTime.addAndGet(nanos);
+        long maximum = maximumBorrowTime.get();
+        while(nanos > maximum && !maximumBorrowTime.compareAndSet(maximum, nanos))
+        {
+            maximum = maximumBorrowTime.get();
+        }
+    }
+
+    /**
+     * Returns the number of connections that are currently in use.
+     * @return the number of active connections
+     */
+    public int getNumberActiveConnections()
+    {
+        return activeConnections.get();
+    }
+
+    /**
+     * Returns the number of connections that are currently in the pool.
+     * @return the number of idle connections
+     */
+    public int getNumberIdleConnections()
+    {
+        return idleConnections.size();
+    }
+
+    /**
+     * Returns how often a connection was borrowed.
+     * @return the number of borrows
+     */
+    public long getNumberBorrows()
+    {
+        return numberBorrows.get();
+    }
+
+    /**
+     * Returns how often a thread had to wait for a connection, because
+     * all connections were in use. Includes the waits that timed out.
+     * @return the number of waits
+     */
+    public long getNumberWaits()
+    {
+        return numberWaits.get();
+    }
+
+    /**
+     * Returns how often a thread did not get a connection within
+     * the maximum wait time.
+     * @return the number of timeouts
+     */
+    public long getNumberTimeouts()
+    {
+        return numberTimeouts.get();
+    }
+
+    /**
+     * Returns the sum of the times it took to borrow a connection.
+     * @return the total borrow time in nanoseconds
+     */
+    public long getTotalBorrowTime()
+    {
+        return totalBorrowTime.get();
+    }
+
+    /**
+     * Returns the longest time it took to borrow a connection.
+     * @return the maximum borrow time in nanoseconds
+     */
+    public long getMaximumBorrowTime()
+    {
+        return maximumBorrowTime.get();
+    }
+
+    /**
+     * Returns the average time it took to borrow a connection.
+     * @return the average borrow time in nanoseconds
+     */
+    public double getAverageBorrowTime()
+    {
+        long count = numberBorrows.get();
+        return (0 == count) ? 0 : (double)totalBorrowTime.get() / count;
+    }
+
+    /**
+     * Resets the metrics. Does not change the pool.
+     */
+    public void resetMetrics()
+    {
+        numberBorrows.set(0);
+        numberWaits.set(0);
+        numberTimeouts.set(0);
+        totalBorrowTime.set(0);
+        maximumBorrowTime.set(0);
+    }
+
+    /**
+     * A connection of the pool. Closing it returns it to the pool.
+     */
+    public class PooledConnection extends MockConnection
+    {
+        private volatile boolean borrowed;
+
+        public PooledConnection()
+        {
+            super(statementHandler, preparedStatementHandler, callableStatementHandler);
+        }
+
+        private MockPooledDataSource getPool()
+        {
+            return MockPooledDataSource.this;
+        }
+
+        private void borrow()
+        {
+            borrowed = true;
+        }
+
+        /**
+         * Returns the connection to the pool. Calling this method
+         * on a connection that was already returned has no effect.
+         */
+        @Override
+        public void close() throws SQLException
+        {
+            synchronized(this)
+            {
+                if(!borrowed) return;
+                borrowed = false;
+            }
+            release(this);
+        }
+
+        /**
+         * Returns <code>true</code>, if the connection was returned
+         * to the pool.
+         * @return <code>true</code>, if the connection is not in use
+         */
+        @Override
+        public boolean isClosed() throws SQLException
+        {
+            return !borrowed || super.isClosed();
+        }
+    }
+}
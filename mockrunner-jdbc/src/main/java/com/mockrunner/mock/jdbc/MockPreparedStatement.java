@@ -23,12 +23,13 @@ import java.sql.SQLException;
 import java.sql.SQLXML;
 import java.sql.Time;
 import java.sql.Timestamp;
-import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Iterator;
 import java.util.List;
 
 import com.mockrunner.jdbc.AbstractParameterResultSetHandler;
+import com.mockrunner.jdbc.BatchMatch;
+import com.mockrunner.jdbc.CompactParameterLog;
 import com.mockrunner.jdbc.ParameterUtil;
 import com.mockrunner.util.common.StreamUtil;
 import com.mockrunner.util.common.StringUtil;
@@ -40,7 +41,7 @@ public class MockPreparedStatement extends MockStatement implements PreparedStat
 {
     private AbstractParameterResultSetHandler resultSetHandler;
     protected final MockParameterMap paramObjects = new MockParameterMap();
-    private final List<MockParameterMap> batchParameters = new ArrayList<MockParameterMap>();
+    private final CompactParameterLog batchParameters = new CompactParameterLog();
     private String sql;
     private MockParameterMetaData parameterMetaData;
     private boolean returnGeneratedKeys = false;
@@ -128,7 +129,7 @@ public class MockPreparedStatement extends MockStatement implements PreparedStat
     
     public void addBatch() throws SQLException
     {
-        batchParameters.add(new MockParameterMap(paramObjects));
+        batchParameters.add(paramObjects);
     }
     
     @Override
@@ -163,6 +164,14 @@ public class MockPreparedStatement extends MockStatement implements PreparedStat
     }
 
     protected ResultSet executeQuery(MockParameterMap params) throws SQLException
+    {
+        long start = startExecution(getSQL());
+        ResultSet resultSet = doExecuteQuery(params);
+        finishExecution(getSQL(), start);
+        return resultSet;
+    }
+
+    private ResultSet doExecuteQuery(MockParameterMap params) throws SQLException
     {
         SQLException exception = resultSetHandler.getSQLException(sql, params);
         if(null != exception)
@@ -188,7 +197,7 @@ public class MockPreparedStatement extends MockStatement implements PreparedStat
                 return cloneAndSetSingleResultSet(results[0], params);
             }
         }
-        ResultSet superResultSet = super.executeQuery(getSQL());
+        ResultSet superResultSet = super.doExecuteQuery(getSQL());
         setGeneratedKeysResultSet(sql, params);
         return superResultSet;
     }
@@ -227,6 +236,14 @@ public class MockPreparedStatement extends MockStatement implements PreparedStat
     }
     
     protected int executeUpdate(MockParameterMap params) throws SQLException
+    {
+        long start = startExecution(getSQL());
+        int updateCount = doExecuteUpdate(params);
+        finishExecution(getSQL(), start);
+        return updateCount;
+    }
+
+    private int doExecuteUpdate(MockParameterMap params) throws SQLException
     {
         SQLException exception = resultSetHandler.getSQLException(sql, params);
         if(null != exception)
@@ -251,7 +268,7 @@ public class MockPreparedStatement extends MockStatement implements PreparedStat
                 return setSingleUpdateCount(updateCounts[0], params);
             }
         }
-        int superUpdateCount = super.executeUpdate(getSQL());
+        int superUpdateCount = super.doExecuteUpdate(getSQL());
         setGeneratedKeysResultSet(sql, params);
         return superUpdateCount;
     }
@@ -277,7 +294,7 @@ public class MockPreparedStatement extends MockStatement implements PreparedStat
     @Override
     public int[] executeBatch() throws SQLException
     {        
-        return executeBatch(this.batchParameters);
+        return executeBatch(batchParameters.asList());
     }
     
     protected int[] executeBatch(List<MockParameterMap> batchParams) throws SQLException
@@ -286,27 +303,76 @@ public class MockPreparedStatement extends MockStatement implements PreparedStat
         {
             int[] results = new int[batchParams.size()];
             SQLException exception = null;
-            for(int ii = 0; ii < results.length; ii++)
+            boolean isQuery = isQuery(getSQL());
+            BatchMatch match = null;
+            SQLException statementException = null;
+            Integer[] statementUpdateCounts = null;
+            long start = 0;
+            int numberExecutions = 0;
+            Integer[] lastUpdateCounts = null;
+            MockParameterMap lastParameters = null;
+            try
             {
-                if(isQuery(getSQL()))
+                for(int ii = 0; ii < results.length; ii++)
                 {
-                    exception = prepareFailedResult(results, ii, "SQL " + getSQL() + " in the list of batches returned a ResultSet.", null);
-                }
-                else
-                {
-                    try
+                    if(isQuery)
                     {
-                        MockParameterMap currentParameters = batchParams.get(ii);
-                        results[ii] = executeUpdate(currentParameters);
-                    } 
-                    catch(SQLException exc)
+                        exception = prepareFailedResult(results, ii, "SQL " + getSQL() + " in the list of batches returned a ResultSet.", null);
+                    }
+                    else
                     {
-                        exception = prepareFailedResult(results, ii, null, exc);
+                        try
+                        {
+                            if(null == match)
+                            {
+                                start = startExecution(getSQL());
+                                match = resultSetHandler.getBatchMatch(getSQL());
+                                statementException = match.getSQLException();
+                                statementUpdateCounts = match.getUpdateCounts();
+                                if(null == statementUpdateCounts || 0 == statementUpdateCounts.length)
+                                {
+                                    statementUpdateCounts = getGlobalUpdateCounts();
+                                }
+                            }
+                            MockParameterMap currentParameters = batchParams.get(ii);
+                            SQLException currentException = match.getSQLException(currentParameters);
+                            if(null == currentException)
+                            {
+                                currentException = statementException;
+                            }
+                            if(null != currentException)
+                            {
+                                throw currentException;
+                            }
+                            resultSetHandler.addParameterMapForExecutedStatement(getSQL(), getParameterMapCopy(currentParameters));
+                            Integer[] updateCounts = match.getUpdateCounts(currentParameters);
+                            if(null == updateCounts || 0 == updateCounts.length)
+                            {
+                                updateCounts = statementUpdateCounts;
+                            }
+                            numberExecutions++;
+                            lastUpdateCounts = updateCounts;
+                            lastParameters = currentParameters;
+                            results[ii] = updateCounts[0];
+                        } 
+                        catch(SQLException exc)
+                        {
+                            exception = prepareFailedResult(results, ii, null, exc);
+                        }
+                    }
+                    if(null != exception && !resultSetHandler.getContinueProcessingOnBatchFailure())
+                    {
+                        throw exception;
                     }
                 }
-                if(null != exception && !resultSetHandler.getContinueProcessingOnBatchFailure())
+            }
+            finally
+            {
+                finishBatchExecution(getSQL(), numberExecutions, start);
+                if(null != lastUpdateCounts)
                 {
-                    throw exception;
+                    setUpdateCounts(lastUpdateCounts.clone());
+                    setGeneratedKeysResultSet(sql, lastParameters);
                 }
             }
             if(null != exception)
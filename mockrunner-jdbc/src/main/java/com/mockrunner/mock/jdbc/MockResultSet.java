@@ -25,15 +25,19 @@ import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import com.mockrunner.base.NestedApplicationException;
+import com.mockrunner.jdbc.LatencyModel;
 import com.mockrunner.jdbc.ParameterUtil;
 import com.mockrunner.jdbc.SQLUtil;
 import com.mockrunner.util.common.CaseAwareMap;
@@ -61,9 +65,9 @@ public class MockResultSet implements ResultSet, Cloneable
     private Map<String, List<Object>> columnMapCopy;
     private Map<String, List<Object>> insertRow;
     private List<String> columnNameList;
-    private List<Boolean> updatedRows;
-    private List<Boolean> deletedRows;
-    private List<Boolean> insertedRows;
+    private BitSet updatedRows;
+    private BitSet deletedRows;
+    private BitSet insertedRows;
     private int cursor;
     private boolean isCursorInInsertRow;
     private boolean wasNull;
@@ -77,6 +81,23 @@ public class MockResultSet implements ResultSet, Cloneable
     private ResultSetMetaData resultSetMetaData;
     private boolean closed;
     private boolean columnsCaseSensitive;
+    private boolean copyOnWrite;
+    private Set<List<Object>> sharedColumns;
+    private List<Object>[] databaseColumns;
+    private List<Object>[] resultSetColumns;
+    private Map<String, Integer> columnIndexMap;
+    private Map<String, Integer> upperCaseColumnIndexMap;
+    private LatencyModel latencyModel;
+    private String latencySQL;
+    private int fetchedRows;
+    private boolean pagedCursor;
+    private int pageStart;
+    private int pageEnd;
+    private boolean endOfRowsFetched;
+    private int numberRoundTrips;
+    private int numberPagesFetched;
+    private int numberRowsFetched;
+    private int peakRowsResident;
     
     public MockResultSet(String id)
     {
@@ -95,15 +116,17 @@ public class MockResultSet implements ResultSet, Cloneable
     {
         columnMap = createCaseAwareMap();
         columnNameList = new ArrayList<String>();
-        updatedRows = new ArrayList<Boolean>();
-        deletedRows = new ArrayList<Boolean>();
-        insertedRows = new ArrayList<Boolean>();
+        updatedRows = new BitSet();
+        deletedRows = new BitSet();
+        insertedRows = new BitSet();
         cursor = -1;
         wasNull = false;
         closed = false;
         isCursorInInsertRow = false;
         isDatabaseView = false;
         resultSetMetaData = null;
+        sharedColumns = null;
+        invalidateColumnCache();
         copyColumnMap();
         adjustInsertRow();
     }
@@ -131,11 +154,44 @@ public class MockResultSet implements ResultSet, Cloneable
         init();
     }
 
+    /**
+     * Set if copies of this <code>ResultSet</code> are created
+     * copy-on-write. Default is <code>false</code>.
+     * Statements clone a prepared <code>ResultSet</code> every
+     * time it is returned. By default the complete data is copied
+     * using {@link com.mockrunner.jdbc.ParameterUtil#copyParameter}.
+     * If this attribute is set to <code>true</code>, {@link #clone}
+     * shares the column data between this <code>ResultSet</code>
+     * and the copy. A column is copied, when it is modified for the
+     * first time by one of them, e.g. by an <code>updateXYZ</code>
+     * method or <code>insertRow</code>, so the copies are still
+     * independent. Please note, that the values themselves are not
+     * copied, i.e. if you modify a mutable value, like a
+     * <code>Blob</code> returned by <code>getBlob</code>, the
+     * modification is visible in all copies.
+     * @param copyOnWrite are copies created copy-on-write
+     */
+    public void setCopyOnWrite(boolean copyOnWrite)
+    {
+        this.copyOnWrite = copyOnWrite;
+    }
+    
+    /**
+     * Returns if copies of this <code>ResultSet</code> are
+     * created copy-on-write.
+     * @return are copies created copy-on-write
+     */
+    public boolean isCopyOnWrite()
+    {
+        return copyOnWrite;
+    }
+
     /**
      * Copies this <code>ResultSet</code>. The data of the
      * <code>ResultSet</code> is copied using the
      * {@link com.mockrunner.jdbc.ParameterUtil#copyParameter}
-     * method.
+     * method. If copy-on-write is enabled, the data is shared
+     * and copied when it is modified.
      * @return a copy of this <code>ResultSet</code>
      */
     @Override
@@ -143,14 +199,20 @@ public class MockResultSet implements ResultSet, Cloneable
     {
         try
         {       
+            if(copyOnWrite)
+            {
+                return copyOnWriteClone();
+            }
             MockResultSet copy = (MockResultSet)super.clone();
+            copy.sharedColumns = null;
             copy.columnNameList = new ArrayList<String>(columnNameList);
-            copy.updatedRows = new ArrayList<Boolean>(updatedRows);
-            copy.deletedRows = new ArrayList<Boolean>(deletedRows);
-            copy.insertedRows = new ArrayList<Boolean>(insertedRows);
+            copy.updatedRows = (BitSet)updatedRows.clone();
+            copy.deletedRows = (BitSet)deletedRows.clone();
+            copy.insertedRows = (BitSet)insertedRows.clone();
             copy.insertRow = copyColumnDataMap(insertRow);
             copy.columnMap = copyColumnDataMap(columnMap);
             copy.columnMapCopy = copyColumnDataMap(columnMapCopy);
+            copy.invalidateColumnCache();
             if(null != resultSetMetaData && resultSetMetaData instanceof MockResultSetMetaData)
             {
                 copy.resultSetMetaData = (ResultSetMetaData)((MockResultSetMetaData)resultSetMetaData).clone();
@@ -163,9 +225,42 @@ public class MockResultSet implements ResultSet, Cloneable
         }
     }
 
+    /*
+     * Synchronized like shareColumns and unshare, because statements of
+     * different threads may clone the same prepared ResultSet at the
+     * same time.
+     */
+    private synchronized MockResultSet copyOnWriteClone() throws CloneNotSupportedException
+    {
+        if(null == sharedColumns)
+        {
+            sharedColumns = createIdentitySet();
+        }
+        sharedColumns.addAll(columnMap.values());
+        sharedColumns.addAll(columnMapCopy.values());
+        MockResultSet copy = (MockResultSet)super.clone();
+        copy.sharedColumns = createIdentitySet();
+        copy.sharedColumns.addAll(sharedColumns);
+        copy.columnNameList = new ArrayList<String>(columnNameList);
+        copy.updatedRows = (BitSet)updatedRows.clone();
+        copy.deletedRows = (BitSet)deletedRows.clone();
+        copy.insertedRows = (BitSet)insertedRows.clone();
+        copy.insertRow = copyColumnDataMap(insertRow);
+        copy.columnMap = shareColumnDataMap(columnMap);
+        copy.columnMapCopy = shareColumnDataMap(columnMapCopy);
+        copy.invalidateColumnCache();
+        if(null != resultSetMetaData && resultSetMetaData instanceof MockResultSetMetaData)
+        {
+            copy.resultSetMetaData = (ResultSetMetaData)((MockResultSetMetaData)resultSetMetaData).clone();
+        }
+        return copy;
+    }
+
    public MockResultSet shallowCopy() {
       try {
-         return (MockResultSet) super.clone();
+         MockResultSet copy = (MockResultSet) super.clone();
+         copy.invalidateColumnCache();
+         return copy;
       } catch (CloneNotSupportedException e) {
          throw new NestedApplicationException(e);
       }
@@ -354,12 +449,11 @@ public class MockResultSet implements ResultSet, Cloneable
         {   
            Object nextValue = values.get(ii);
            String nextColumnName = columnNameList.get(ii);
-           List<Object> nextColumnList = columnMap.get(nextColumnName);
+           List<Object> nextColumnList = getWritableColumn(columnMap, nextColumnName);
            nextColumnList.add(nextValue);
         }
         adjustColumns();
         copyColumnMap();
-        adjustFlags();
     }
     
     /**
@@ -467,13 +561,43 @@ public class MockResultSet implements ResultSet, Cloneable
      */
     public void addColumn(String columnName, List<Object> values)
     {
-        List<Object> column = new ArrayList<Object>(values);
+        List<Object> column = new ColumnVector(values);
         columnMap.put(columnName, column);
         columnNameList.add(columnName);
+        invalidateColumnCache();
         adjustColumns();
         adjustInsertRow();
         copyColumnMap();
-        adjustFlags();
+    }
+    
+    /*
+     * Adds a column without copying its data. Used by
+     * EvaluableResultSet for lazily evaluated columns.
+     */
+    void addColumnData(String columnName, List<Object> column)
+    {
+        columnMap.put(columnName, column);
+        columnNameList.add(columnName);
+        invalidateColumnCache();
+        adjustColumns();
+        adjustInsertRow();
+        copyColumnMap();
+    }
+    
+    /*
+     * Returns the columns of the current view and marks them as shared,
+     * i.e. this ResultSet copies a column before it modifies it. Used by
+     * EvaluableResultSet to read its columns while they are evaluated.
+     */
+    synchronized List<Object>[] shareColumns()
+    {
+        if(null == sharedColumns)
+        {
+            sharedColumns = createIdentitySet();
+        }
+        List<Object>[] columns = getColumns();
+        sharedColumns.addAll(Arrays.asList(columns));
+        return columns.clone();
     }
     
     /**
@@ -505,7 +629,7 @@ public class MockResultSet implements ResultSet, Cloneable
      */
     public boolean rowInserted(int number)
     {
-        if(number < 1) return false;
+        if(number < 1 || number > getRowCount()) return false;
         return insertedRows.get(number - 1);
     }
     
@@ -518,7 +642,7 @@ public class MockResultSet implements ResultSet, Cloneable
      */
     public boolean rowDeleted(int number)
     {
-        if(number < 1) return false;
+        if(number < 1 || number > getRowCount()) return false;
         return deletedRows.get(number - 1);
     }
     
@@ -531,7 +655,7 @@ public class MockResultSet implements ResultSet, Cloneable
      */
     public boolean rowUpdated(int number)
     {
-        if(number < 1) return false;
+        if(number < 1 || number > getRowCount()) return false;
         return updatedRows.get(number - 1);
     }
     
@@ -786,26 +910,15 @@ public class MockResultSet implements ResultSet, Cloneable
     
     public Object getObject(int columnIndex) throws SQLException
     {
-        checkColumnBounds(columnIndex);
-        checkRowBounds();
-        String columnName = columnNameList.get(columnIndex - 1);
-        return getObject(columnName);
+        List<Object> column = getCurrentColumn(columnIndex);
+        Object value = column.get(cursor);
+        wasNull = (null == value);
+        return value;
     }
     
     public Object getObject(String columnName) throws SQLException
     {
-        checkRowBounds();
-        if(rowDeleted()) throw new SQLException("row was deleted");
-        List<Object> column;
-        if(isDatabaseView)
-        {
-            column = columnMap.get(columnName);
-        }
-        else
-        {
-            column = columnMapCopy.get(columnName);
-        }
-        checkColumnNotNull(column, columnName);
+        List<Object> column = getCurrentColumn(columnName);
         Object value = column.get(cursor);
         wasNull = (null == value);
         return value;
@@ -923,18 +1036,24 @@ public class MockResultSet implements ResultSet, Cloneable
 
     public int getInt(int columnIndex) throws SQLException
     {
-        Object value = getObject(columnIndex);
-        if(null != value)
-        {
-            if(value instanceof Number) return ((Number)value).intValue();
-            return Integer.parseInt(value.toString());
-        }
-        return 0;
+        return getInt(getCurrentColumn(columnIndex));
     }
     
     public int getInt(String columnName) throws SQLException
     {
-        Object value = getObject(columnName);
+        return getInt(getCurrentColumn(columnName));
+    }
+    
+    private int getInt(List<Object> column)
+    {
+        if(column instanceof ColumnVector && ((ColumnVector)column).isNumeric())
+        {
+            ColumnVector vector = (ColumnVector)column;
+            wasNull = vector.isNull(cursor);
+            return vector.getInt(cursor);
+        }
+        Object value = column.get(cursor);
+        wasNull = (null == value);
         if(null != value)
         {
             if(value instanceof Number) return ((Number)value).intValue();
@@ -945,18 +1064,24 @@ public class MockResultSet implements ResultSet, Cloneable
 
     public long getLong(int columnIndex) throws SQLException
     {
-        Object value = getObject(columnIndex);
-        if(null != value)
-        {
-            if(value instanceof Number) return ((Number)value).longValue();
-            return Long.parseLong(value.toString());
-        }
-        return 0;
+        return getLong(getCurrentColumn(columnIndex));
     }
     
     public long getLong(String columnName) throws SQLException
     {
-        Object value = getObject(columnName);
+        return getLong(getCurrentColumn(columnName));
+    }
+    
+    private long getLong(List<Object> column)
+    {
+        if(column instanceof ColumnVector && ((ColumnVector)column).isNumeric())
+        {
+            ColumnVector vector = (ColumnVector)column;
+            wasNull = vector.isNull(cursor);
+            return vector.getLong(cursor);
+        }
+        Object value = column.get(cursor);
+        wasNull = (null == value);
         if(null != value)
         {
             if(value instanceof Number) return ((Number)value).longValue();
@@ -989,18 +1114,24 @@ public class MockResultSet implements ResultSet, Cloneable
     
     public double getDouble(int columnIndex) throws SQLException
     {
-        Object value = getObject(columnIndex);
-        if(null != value)
-        {
-            if(value instanceof Number) return ((Number)value).doubleValue();
-            return Double.parseDouble(value.toString());
-        }
-        return 0;
+        return getDouble(getCurrentColumn(columnIndex));
     }
     
     public double getDouble(String columnName) throws SQLException
     {
-        Object value = getObject(columnName);
+        return getDouble(getCurrentColumn(columnName));
+    }
+    
+    private double getDouble(List<Object> column)
+    {
+        if(column instanceof ColumnVector && ((ColumnVector)column).isNumeric())
+        {
+            ColumnVector vector = (ColumnVector)column;
+            wasNull = vector.isNull(cursor);
+            return vector.getDouble(cursor);
+        }
+        Object value = column.get(cursor);
+        wasNull = (null == value);
         if(null != value)
         {
             if(value instanceof Number) return ((Number)value).doubleValue();
@@ -1556,7 +1687,221 @@ public class MockResultSet implements ResultSet, Cloneable
         if(getRowCount() == 0) return false;
         cursor++;
         adjustCursor();
-        return isCurrentRowValid();
+        if(!isCurrentRowValid())
+        {
+            if(pagedCursor) fetchEndOfRows();
+            return false;
+        }
+        if(pagedCursor)
+        {
+            fetchPageIfNecessary();
+        }
+        else if(null != latencyModel && cursor >= fetchedRows)
+        {
+            fetchRows();
+        }
+        return true;
+    }
+
+    /**
+     * Enables or disables the paged cursor mode. In paged cursor mode,
+     * only one page of rows is resident at a time, like with the cursor
+     * of a database. Whenever the cursor moves to a row outside the
+     * current page, the page of rows starting at this row (or ending
+     * at this row, if the cursor moves backwards) is fetched in a round
+     * trip. The size of a page is the fetch size, a fetch size of 0
+     * fetches all remaining rows. If the last page was full, moving
+     * the cursor behind the last row takes one more round trip, which
+     * does not return any rows.
+     * The pages, round trips and the peak number of resident rows are
+     * counted, so tests can verify that the code reads a large
+     * <code>ResultSet</code> incrementally. Enabling or disabling the
+     * mode resets the counters.
+     * This method is called by the mock statements for the returned
+     * <code>ResultSet</code> objects, if paged cursors are enabled
+     * for the result set handler.
+     * @param pagedCursor <code>true</code> to enable the paged cursor mode
+     */
+    public void setPagedCursor(boolean pagedCursor)
+    {
+        this.pagedCursor = pagedCursor;
+        pageStart = 0;
+        pageEnd = 0;
+        endOfRowsFetched = false;
+        numberRoundTrips = 0;
+        numberPagesFetched = 0;
+        numberRowsFetched = 0;
+        peakRowsResident = 0;
+    }
+
+    /**
+     * Returns if the paged cursor mode is enabled.
+     * @return <code>true</code> if the paged cursor mode is enabled
+     */
+    public boolean isPagedCursor()
+    {
+        return pagedCursor;
+    }
+
+    /**
+     * Returns the number of round trips in paged cursor mode,
+     * including the round trips that did not return rows.
+     * @return the number of round trips
+     */
+    public int getNumberRoundTrips()
+    {
+        return numberRoundTrips;
+    }
+
+    /**
+     * Returns the number of pages that were fetched in paged cursor mode.
+     * @return the number of fetched pages
+     */
+    public int getNumberPagesFetched()
+    {
+        return numberPagesFetched;
+    }
+
+    /**
+     * Returns the number of rows that were fetched in paged cursor mode.
+     * Rows that were fetched more than once, because the cursor moved
+     * back, are counted each time.
+     * @return the number of fetched rows
+     */
+    public int getNumberRowsFetched()
+    {
+        return numberRowsFetched;
+    }
+
+    /**
+     * Returns the maximum number of rows that were resident at
+     * the same time in paged cursor mode, i.e. the size of the
+     * largest page.
+     * @return the peak number of resident rows
+     */
+    public int getPeakRowsResident()
+    {
+        return peakRowsResident;
+    }
+
+    private void fetchPageIfNecessary() throws SQLException
+    {
+        if(cursor >= pageStart && cursor < pageEnd) return;
+        int rowCount = getRowCount();
+        if(cursor >= pageEnd)
+        {
+            int remainingRows = rowCount - cursor;
+            pageStart = cursor;
+            pageEnd = cursor + ((fetchSize > 0) ? Math.min(fetchSize, remainingRows) : remainingRows);
+            endOfRowsFetched = pageEnd == rowCount && (fetchSize <= 0 || pageEnd - pageStart < fetchSize);
+        }
+        else
+        {
+            pageEnd = cursor + 1;
+            pageStart = (fetchSize > 0) ? Math.max(0, pageEnd - fetchSize) : 0;
+        }
+        int numberRows = pageEnd - pageStart;
+        numberRoundTrips++;
+        numberPagesFetched++;
+        numberRowsFetched += numberRows;
+        peakRowsResident = Math.max(peakRowsResident, numberRows);
+        simulateFetch(numberRows);
+    }
+
+    private boolean fetchPageIfValid() throws SQLException
+    {
+        if(!isCurrentRowValid()) return false;
+        if(pagedCursor) fetchPageIfNecessary();
+        return true;
+    }
+
+    private void fetchEndOfRows() throws SQLException
+    {
+        pageStart = 0;
+        pageEnd = 0;
+        if(endOfRowsFetched) return;
+        endOfRowsFetched = true;
+        numberRoundTrips++;
+        simulateFetch(0);
+    }
+
+    /**
+     * Counts a row in paged cursor mode. Subclasses that create their
+     * rows while the cursor advances call this method for each row
+     * they return, if {@link #isPagedCursor} is <code>true</code>.
+     * @param startsPage <code>true</code> if the row is the first one
+     *        of a page, i.e. the page is fetched in a new round trip
+     * @param rowsResident the number of rows of the current page
+     *        that are resident
+     */
+    protected void countPagedRow(boolean startsPage, int rowsResident)
+    {
+        if(startsPage)
+        {
+            numberRoundTrips++;
+            numberPagesFetched++;
+        }
+        numberRowsFetched++;
+        peakRowsResident = Math.max(peakRowsResident, rowsResident);
+    }
+
+    /**
+     * Counts a round trip that does not return rows in paged cursor
+     * mode, i.e. the round trip that finds out that the last page was
+     * full. Subclasses that create their rows while the cursor advances
+     * call this method, if {@link #isPagedCursor} is <code>true</code>.
+     */
+    protected void countPagedRoundTrip()
+    {
+        numberRoundTrips++;
+    }
+
+    /**
+     * Sets the {@link LatencyModel} that simulates the fetch latency.
+     * {@link #next} waits for the fetch latency whenever the cursor
+     * reaches a row that was not fetched yet. The rows are fetched in
+     * blocks of the fetch size, a fetch size of 0 fetches all remaining
+     * rows at once. This method is called by the mock statements
+     * for the returned <code>ResultSet</code> objects, if the result
+     * set handler has a latency model.
+     * @param latencyModel the latency model, <code>null</code> for no latency
+     * @param sql the SQL string that returned this <code>ResultSet</code>
+     */
+    public void setLatencyModel(LatencyModel latencyModel, String sql)
+    {
+        this.latencyModel = latencyModel;
+        this.latencySQL = sql;
+        this.fetchedRows = 0;
+    }
+
+    private void fetchRows() throws SQLException
+    {
+        int remainingRows = getRowCount() - cursor;
+        int numberRows = (fetchSize > 0) ? Math.min(fetchSize, remainingRows) : remainingRows;
+        fetchedRows = cursor + numberRows;
+        simulateFetch(numberRows);
+    }
+
+    /**
+     * Waits for the fetch latency of the specified number of rows,
+     * if a {@link LatencyModel} is set. Subclasses that create their
+     * rows while the cursor advances call this method for each block
+     * of rows.
+     * @param numberRows the number of fetched rows
+     * @throws SQLException if the thread is interrupted
+     */
+    protected void simulateFetch(int numberRows) throws SQLException
+    {
+        if(null == latencyModel) return;
+        try
+        {
+            TimeUnit.NANOSECONDS.sleep(latencyModel.getFetchLatency(latencySQL, numberRows));
+        }
+        catch(InterruptedException exc)
+        {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while fetching rows", exc);
+        }
     }
 
 
@@ -1566,6 +1911,7 @@ public class MockResultSet implements ResultSet, Cloneable
         checkResultSetType();
         if(getRowCount() == 0) return false;
         cursor = 0;
+        if(pagedCursor) fetchPageIfNecessary();
         return true;
     }
 
@@ -1575,6 +1921,7 @@ public class MockResultSet implements ResultSet, Cloneable
         checkResultSetType();
         if(getRowCount() == 0) return false;
         cursor = getRowCount() - 1;
+        if(pagedCursor) fetchPageIfNecessary();
         return true;
     }
     
@@ -1586,7 +1933,7 @@ public class MockResultSet implements ResultSet, Cloneable
         if(row > 0) cursor = row - 1;
         if(row < 0) cursor = getRowCount() + row;
         adjustCursor();
-        return isCurrentRowValid();
+        return fetchPageIfValid();
     }
 
     public boolean relative(int rows) throws SQLException
@@ -1596,7 +1943,7 @@ public class MockResultSet implements ResultSet, Cloneable
         if(getRowCount() == 0) return false;
         cursor += rows;
         adjustCursor();
-        return isCurrentRowValid();
+        return fetchPageIfValid();
     }
 
     public int getRow() throws SQLException
@@ -1611,7 +1958,7 @@ public class MockResultSet implements ResultSet, Cloneable
         if(getRowCount() == 0) return false;
         cursor--;
         adjustCursor();
-        return isCurrentRowValid();
+        return fetchPageIfValid();
     }
     
     public void setFetchDirection(int fetchDirection) throws SQLException
@@ -1624,8 +1971,16 @@ public class MockResultSet implements ResultSet, Cloneable
             return;
         }
         this.fetchDirection = fetchDirection;
-        for (List<Object> column : columnMapCopy.values()) {
-            Collections.reverse(column);
+        for (String columnName : columnMapCopy.keySet()) {
+            List<Object> column = getWritableColumn(columnMapCopy, columnName);
+            if(column instanceof ColumnVector)
+            {
+                ((ColumnVector)column).reverse();
+            }
+            else
+            {
+                Collections.reverse(column);
+            }
         }
         if(-1 != cursor) cursor = getRowCount() - cursor - 1;
     }
@@ -1660,12 +2015,29 @@ public class MockResultSet implements ResultSet, Cloneable
         return resultSetHoldability;
     }
 
-    public int findColumn(String columnName) throws SQLException
+    /**
+     * Returns the index of the column with the specified name.
+     * Unlike {@link #findColumn}, this method respects
+     * {@link #setColumnsCaseSensitive}, i.e. it works like the
+     * getters that take a column name.
+     * The first column has the index 1.
+     * @param columnName the column name
+     * @return the column index or -1, if there is no such column
+     */
+    protected int getColumnIndex(String columnName)
     {
-        for(int ii = 0; ii < columnNameList.size(); ii++)
+        Integer index = getColumnIndexMap().get(columnName);
+        if(null == index && !columnsCaseSensitive && null != columnName)
         {
-            if(columnName.equals(columnNameList.get(ii))) return ii + 1;
+            index = upperCaseColumnIndexMap.get(columnName.toUpperCase());
         }
+        return (null == index) ? -1 : index + 1;
+    }
+
+    public int findColumn(String columnName) throws SQLException
+    {
+        Integer index = getColumnIndexMap().get(columnName);
+        if(null != index) return index + 1;
         throw new SQLException("No column with name " + columnName + " found");
     }
 
@@ -1707,7 +2079,7 @@ public class MockResultSet implements ResultSet, Cloneable
         }
         else
         {
-            List<Object> column = columnMapCopy.get(columnName);
+            List<Object> column = getWritableColumn(columnMapCopy, columnName);
             checkColumnNotNull(column, columnName);
             column.set(cursor, value);
         }
@@ -2126,7 +2498,7 @@ public class MockResultSet implements ResultSet, Cloneable
     public boolean rowUpdated() throws SQLException
     {
         checkRowBounds();
-        return (updatedRows.get(cursor));
+        return updatedRows.get(cursor);
     }
 
     public boolean rowInserted() throws SQLException
@@ -2155,7 +2527,7 @@ public class MockResultSet implements ResultSet, Cloneable
         checkResultSetConcurrency();
         checkRowBounds();
         updateRow(cursor, true);
-        updatedRows.set(cursor, true);
+        updatedRows.set(cursor);
     }
 
     public void deleteRow() throws SQLException
@@ -2164,7 +2536,7 @@ public class MockResultSet implements ResultSet, Cloneable
         checkResultSetConcurrency();
         checkRowBounds();
         deleteRow(cursor);
-        deletedRows.set(cursor, true);
+        deletedRows.set(cursor);
     }
 
     public void refreshRow() throws SQLException
@@ -2178,7 +2550,7 @@ public class MockResultSet implements ResultSet, Cloneable
         if(rowDeleted()) throw new SQLException("row was deleted");
         checkRowBounds();
         updateRow(cursor, false);
-        updatedRows.set(cursor, false);
+        updatedRows.clear(cursor);
     }
 
     public void moveToInsertRow() throws SQLException
@@ -2202,6 +2574,79 @@ public class MockResultSet implements ResultSet, Cloneable
         throw new SQLException("No object found for " + iface);
     }
     
+    private List<Object> getCurrentColumn(int columnIndex) throws SQLException
+    {
+        checkColumnBounds(columnIndex);
+        checkRowBounds();
+        if(rowDeleted()) throw new SQLException("row was deleted");
+        return getColumns()[columnIndex - 1];
+    }
+    
+    private List<Object> getCurrentColumn(String columnName) throws SQLException
+    {
+        checkRowBounds();
+        if(rowDeleted()) throw new SQLException("row was deleted");
+        int index = getColumnIndex(columnName);
+        List<Object> column = (-1 == index) ? null : getColumns()[index - 1];
+        checkColumnNotNull(column, columnName);
+        return column;
+    }
+    
+    private List<Object>[] getColumns()
+    {
+        if(isDatabaseView)
+        {
+            if(null == databaseColumns)
+            {
+                databaseColumns = createColumnArray(columnMap);
+            }
+            return databaseColumns;
+        }
+        if(null == resultSetColumns)
+        {
+            resultSetColumns = createColumnArray(columnMapCopy);
+        }
+        return resultSetColumns;
+    }
+    
+    private List<Object>[] createColumnArray(Map<String, List<Object>> columnMap)
+    {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        List<Object>[] columns = new List[columnNameList.size()];
+        for(int ii = 0; ii < columns.length; ii++)
+        {
+            columns[ii] = columnMap.get(columnNameList.get(ii));
+        }
+        return columns;
+    }
+    
+    private Map<String, Integer> getColumnIndexMap()
+    {
+        if(null == columnIndexMap)
+        {
+            columnIndexMap = new HashMap<String, Integer>();
+            upperCaseColumnIndexMap = new HashMap<String, Integer>();
+            for(int ii = columnNameList.size() - 1; ii >= 0; ii--)
+            {
+                String columnName = columnNameList.get(ii);
+                columnIndexMap.put(columnName, ii);
+                if(null != columnName)
+                {
+                    upperCaseColumnIndexMap.put(columnName.toUpperCase(), ii);
+                }
+            }
+        }
+        return columnIndexMap;
+    }
+    
+    private void invalidateColumnCache()
+    {
+        databaseColumns = null;
+        resultSetColumns = null;
+        columnIndexMap = null;
+        upperCaseColumnIndexMap = null;
+    }
+    
     private void checkColumnNotNull(List<Object> column, String columnName) throws SQLException
     {
         if(column == null)
@@ -2259,22 +2704,22 @@ public class MockResultSet implements ResultSet, Cloneable
     private void insertRow(int index)
     {
         for (String currentColumnName : columnMapCopy.keySet()) {
-            List<Object> copyColumn = columnMapCopy.get(currentColumnName);
-            List<Object> databaseColumn = columnMap.get(currentColumnName);
+            List<Object> copyColumn = getWritableColumn(columnMapCopy, currentColumnName);
+            List<Object> databaseColumn = getWritableColumn(columnMap, currentColumnName);
             List<Object> sourceColumn = insertRow.get(currentColumnName);
             copyColumn.add(index, ParameterUtil.copyParameter(sourceColumn.get(0)));
             databaseColumn.add(index, ParameterUtil.copyParameter(sourceColumn.get(0)));  
         }
-        updatedRows.add(index, false);
-        deletedRows.add(index, false);
-        insertedRows.add(index, true);
+        insertFlag(updatedRows, index, false);
+        insertFlag(deletedRows, index, false);
+        insertFlag(insertedRows, index, true);
     }
     
     private void deleteRow(int index)
     {
         for (String currentColumnName : columnMapCopy.keySet()) {
-            List<Object> copyColumn = columnMapCopy.get(currentColumnName);
-            List<Object> databaseColumn = columnMap.get(currentColumnName);
+            List<Object> copyColumn = getWritableColumn(columnMapCopy, currentColumnName);
+            List<Object> databaseColumn = getWritableColumn(columnMap, currentColumnName);
             copyColumn.set(index, null);
             databaseColumn.set(index, null);
         }
@@ -2288,12 +2733,12 @@ public class MockResultSet implements ResultSet, Cloneable
             if(toDatabase)
             {
                 sourceColumn = columnMapCopy.get(currentColumnName);
-                targetColumn = columnMap.get(currentColumnName);
+                targetColumn = getWritableColumn(columnMap, currentColumnName);
             }
             else
             {
                 sourceColumn = columnMap.get(currentColumnName);
-                targetColumn = columnMapCopy.get(currentColumnName);
+                targetColumn = getWritableColumn(columnMapCopy, currentColumnName);
             } 
             targetColumn.set(index, ParameterUtil.copyParameter(sourceColumn.get(index)));
         }
@@ -2317,25 +2762,21 @@ public class MockResultSet implements ResultSet, Cloneable
         for (List<Object> nextColumn : columnMap.values()) {
             rowCount = Math.max(rowCount, nextColumn.size());
         }
-        for (List<Object> nextColumn : columnMap.values()) {
-            CollectionUtil.fillList(nextColumn, rowCount);
+        for (String columnName : columnMap.keySet()) {
+            if(columnMap.get(columnName).size() < rowCount)
+            {
+                CollectionUtil.fillList(getWritableColumn(columnMap, columnName), rowCount);
+            }
         }
     }
     
-    private void adjustFlags()
+    private void insertFlag(BitSet flags, int index, boolean value)
     {
-        for(int ii = updatedRows.size(); ii < getRowCount(); ii++)
+        for(int ii = flags.length() - 1; ii >= index; ii--)
         {
-            updatedRows.add(false);
-        }
-        for(int ii = deletedRows.size(); ii < getRowCount(); ii++)
-        {
-            deletedRows.add(false);
-        }
-        for(int ii = insertedRows.size(); ii < getRowCount(); ii++)
-        {
-            insertedRows.add(false);
+            flags.set(ii + 1, flags.get(ii));
         }
+        flags.set(index, value);
     }
     
     private void adjustInsertRow()
@@ -2351,6 +2792,7 @@ public class MockResultSet implements ResultSet, Cloneable
     private void copyColumnMap()
     {
         columnMapCopy = copyColumnDataMap(columnMap);
+        invalidateColumnCache();
     }
     
     private String determineValidColumnName()
@@ -2364,22 +2806,72 @@ public class MockResultSet implements ResultSet, Cloneable
         return name + count;
     }
     
-    private <T> Map<String, List<T>> copyColumnDataMap(Map<String, List<T>> columnMap)
+    private Map<String, List<Object>> copyColumnDataMap(Map<String, List<Object>> columnMap)
     {
-        Map<String, List<T>> copy = createCaseAwareMap();
+        Map<String, List<Object>> copy = createCaseAwareMap();
         for (String s : columnMap.keySet()) {
-            List<T> copyList = new ArrayList<T>();
             String nextKey = s;
-            List<T> nextColumnList = columnMap.get(nextKey);
-            for (T nextColumnList1 : nextColumnList) {
-                T copyParameter = (T) ParameterUtil.copyParameter(nextColumnList1);
-                copyList.add(copyParameter);
+            List<Object> nextColumnList = columnMap.get(nextKey);
+            if(nextColumnList instanceof ColumnVector)
+            {
+                copy.put(nextKey, ((ColumnVector)nextColumnList).copy(true));
+                continue;
+            }
+            if(nextColumnList instanceof EvaluatedColumn)
+            {
+                copy.put(nextKey, ((EvaluatedColumn)nextColumnList).copy(true));
+                continue;
+            }
+            List<Object> copyList = new ArrayList<Object>();
+            for (Object nextColumnList1 : nextColumnList) {
+                copyList.add(ParameterUtil.copyParameter(nextColumnList1));
             }
             copy.put(nextKey, copyList);
         }
         return copy;
     }
     
+    private Map<String, List<Object>> shareColumnDataMap(Map<String, List<Object>> columnMap)
+    {
+        Map<String, List<Object>> copy = createCaseAwareMap();
+        copy.putAll(columnMap);
+        return copy;
+    }
+    
+    private List<Object> getWritableColumn(Map<String, List<Object>> columnMap, String columnName)
+    {
+        List<Object> column = columnMap.get(columnName);
+        List<Object> writableColumn = unshare(column);
+        if(writableColumn != column)
+        {
+            columnMap.put(columnName, writableColumn);
+            invalidateColumnCache();
+        }
+        return writableColumn;
+    }
+    
+    private synchronized List<Object> unshare(List<Object> column)
+    {
+        if(null == column || null == sharedColumns || !sharedColumns.remove(column))
+        {
+            return column;
+        }
+        if(column instanceof ColumnVector)
+        {
+            return ((ColumnVector)column).copy(false);
+        }
+        if(column instanceof EvaluatedColumn)
+        {
+            return ((EvaluatedColumn)column).copy(false);
+        }
+        return new ArrayList<Object>(column);
+    }
+    
+    private Set<List<Object>> createIdentitySet()
+    {
+        return Collections.newSetFromMap(new IdentityHashMap<List<Object>, Boolean>());
+    }
+    
     private <T> Map<String, T> createCaseAwareMap()
     {
         return (Map<String, T>)new CaseAwareMap(columnsCaseSensitive);
@@ -2387,6 +2879,12 @@ public class MockResultSet implements ResultSet, Cloneable
     
     private NClob getNClobFromClob(Clob clobValue) throws SQLException
     {
+        if(clobValue instanceof MockClob)
+        {
+            MockClob mockClob = (MockClob)clobValue;
+            if(mockClob.wasFreeCalled()) throw new SQLException("free() was called");
+            return new MockNClob(mockClob);
+        }
         return new MockNClob(clobValue.getSubString(1, (int)clobValue.length()));
     }
     
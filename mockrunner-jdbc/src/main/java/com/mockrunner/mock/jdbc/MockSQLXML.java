@@ -48,26 +48,28 @@ import com.mockrunner.util.common.StreamUtil;
 /**
  * Mock implementation of <code>MockSQLXML</code>.
  * Uses JDOM for XML handling.
+ * <br>
+ * The parsers and outputters are not created per object. They are
+ * obtained with the <code>create</code> methods whenever they are
+ * needed, and the default implementations return instances that are
+ * shared by all objects of the current thread. Content that is set as
+ * <code>String</code> or <code>byte[]</code> is parsed at most once.
  */
 public class MockSQLXML implements SQLXML, Cloneable
 {
-    private DocumentBuilder domParser;
-    private SAXParser saxParser;
-    private XMLOutputFactory outputFactory;
-    private XMLInputFactory inputFactory;
-    private SAXBuilder jdomParser;
-    private DOMBuilder jdomDOMBuilder;
-    private XMLOutputter xmlPrintOutputter;
-    private DOMOutputter domOutputter;
-    private XMLOutputter xmlCompareOutputter;
+    private static final ThreadLocal<XMLObjects> xmlObjects = new ThreadLocal<XMLObjects>();
+    
     private Object content;
+    private Object cachedContent;
+    private Document parsedContent;
+    private String printedContent;
+    private String comparableContent;
     private boolean wasFreeCalled;
     private boolean wasWriteMethodCalled;
     private boolean wasReadMethodCalled;
 
     public MockSQLXML()
     {
-        createXMLObjects();
         content = null;
         wasFreeCalled = false;
         wasWriteMethodCalled = false;
@@ -76,7 +78,6 @@ public class MockSQLXML implements SQLXML, Cloneable
     
     public MockSQLXML(String stringContent)
     {
-        createXMLObjects();
         content = stringContent;
         wasFreeCalled = false;
         wasWriteMethodCalled = false;
@@ -85,7 +86,6 @@ public class MockSQLXML implements SQLXML, Cloneable
     
     public MockSQLXML(Reader readerContent)
     {
-        createXMLObjects();
         content = StreamUtil.getReaderAsString(readerContent);
         wasFreeCalled = false;
         wasWriteMethodCalled = false;
@@ -94,7 +94,6 @@ public class MockSQLXML implements SQLXML, Cloneable
     
     public MockSQLXML(InputStream inputStreamContent)
     {
-        createXMLObjects();
         content = StreamUtil.getStreamAsByteArray(inputStreamContent);
         wasFreeCalled = false;
         wasWriteMethodCalled = false;
@@ -103,30 +102,31 @@ public class MockSQLXML implements SQLXML, Cloneable
     
     public MockSQLXML(org.w3c.dom.Document documentContent)
     {
-        createXMLObjects();
         content = documentContent;
         wasFreeCalled = false;
         wasWriteMethodCalled = false;
         wasReadMethodCalled = false;
     }
     
+    /**
+     * Returns the <code>DocumentBuilder</code> used to create W3C documents.
+     * Called whenever a builder is needed. The default implementation
+     * returns a builder that is shared by the current thread. The same
+     * applies to the other <code>create</code> methods, except
+     * {@link #createSAXParser}, which returns a new parser, because the
+     * parser is handed out with a <code>SAXSource</code>.
+     * @return the <code>DocumentBuilder</code>
+     */
     protected DocumentBuilder createDocumentBuilder()
     {
-        try
-        {
-            return DocumentBuilderFactory.newInstance().newDocumentBuilder();
-        } 
-        catch(ParserConfigurationException exc)
-        {
-            throw new NestedApplicationException(exc);
-        }
+        return getXMLObjects().getDocumentBuilder();
     }
     
     protected SAXParser createSAXParser()
     {
         try
         {
-            return SAXParserFactory.newInstance().newSAXParser();
+            return XMLObjects.newSAXParser();
         } 
         catch(Exception exc)
         {
@@ -136,42 +136,48 @@ public class MockSQLXML implements SQLXML, Cloneable
     
     protected XMLOutputFactory createXMLOutputFactory()
     {
-        return XMLOutputFactory.newInstance();
+        return XMLObjects.getXMLOutputFactory();
     }
     
     protected XMLInputFactory createXMLInputFactory()
     {
-        return XMLInputFactory.newInstance();
+        return XMLObjects.getXMLInputFactory();
     }
     
     protected SAXBuilder createJDOMSAXBuilder()
     {
-        SAXBuilder builder = new SAXBuilder();
-        builder.setValidation(false);
-        return builder;
+        return getXMLObjects().getJDOMSAXBuilder();
     }
     
     protected DOMBuilder createJDOMDOMBuilder()
     {
-        return new DOMBuilder();
+        return getXMLObjects().getJDOMDOMBuilder();
     }
     
     protected XMLOutputter createJDOMXMLPrintOutputter()
     {
-        return new XMLOutputter(Format.getPrettyFormat());
+        return getXMLObjects().getJDOMXMLPrintOutputter();
     }
     
     protected XMLOutputter createJDOMXMLCompareOutputter()
     {
-        Format format = Format.getCompactFormat();
-        format.setOmitDeclaration(true);
-        format.setOmitEncoding(true);
-        return new XMLOutputter(format);
+        return getXMLObjects().getJDOMXMLCompareOutputter();
     }
     
     protected DOMOutputter createJDOMDOMOutputter()
     {
-        return new DOMOutputter();
+        return getXMLObjects().getJDOMDOMOutputter();
+    }
+    
+    private static XMLObjects getXMLObjects()
+    {
+        XMLObjects objects = xmlObjects.get();
+        if(null == objects)
+        {
+            objects = new XMLObjects();
+            xmlObjects.set(objects);
+        }
+        return objects;
     }
     
     /**
@@ -290,7 +296,7 @@ public class MockSQLXML implements SQLXML, Cloneable
             }
             if(SAXSource.class.equals(sourceClass))
             {
-                return (T) new SAXSource(saxParser.getXMLReader(), new InputSource(contentToInputStream()));
+                return (T) new SAXSource(createSAXParser().getXMLReader(), new InputSource(contentToInputStream()));
             }
             if(StAXSource.class.equals(sourceClass))
             {
@@ -345,7 +351,7 @@ public class MockSQLXML implements SQLXML, Cloneable
         }
         if(DOMResult.class.equals(resultClass))
         {
-            org.w3c.dom.Document document = domParser.newDocument();
+            org.w3c.dom.Document document = createDocumentBuilder().newDocument();
             content = new DOMResult(document);
             return (T)content;
         }
@@ -360,7 +366,7 @@ public class MockSQLXML implements SQLXML, Cloneable
             ByteArrayOutputStream outStream = new ByteArrayOutputStream();
             try
             {
-                xmlWriter = outputFactory.createXMLStreamWriter(outStream);
+                xmlWriter = createXMLOutputFactory().createXMLStreamWriter(outStream);
             } 
             catch(XMLStreamException exc)
             {
@@ -426,11 +432,9 @@ public class MockSQLXML implements SQLXML, Cloneable
         if(null == content || null == otherSQLXML.content) return false;
         try
         {
-            Document thisContent = contentToJDOMDocument();
-            Document otherContent = otherSQLXML.contentToJDOMDocument();
-            if(null == thisContent || null == otherContent) return false;
-            String thisContentAsString = xmlCompareOutputter.outputString(thisContent);
-            String otherContentAsString = xmlCompareOutputter.outputString(otherContent);
+            String thisContentAsString = contentToComparableString();
+            String otherContentAsString = otherSQLXML.contentToComparableString();
+            if(null == thisContentAsString || null == otherContentAsString) return false;
             return thisContentAsString.equals(otherContentAsString);
         } 
         catch(Exception exc)
@@ -447,10 +451,9 @@ public class MockSQLXML implements SQLXML, Cloneable
         {
             try
             {
-                Document document = contentToJDOMDocument();
-                if(null == document) return hashCode;
-                String documentAsString = xmlCompareOutputter.outputString(document);
-                if(null != documentAsString) hashCode = (31 * hashCode) + documentAsString.hashCode();
+                String documentAsString = contentToComparableString();
+                if(null == documentAsString) return hashCode;
+                hashCode = (31 * hashCode) + documentAsString.hashCode();
             } 
             catch(Exception ignored)
             {
@@ -467,15 +470,14 @@ public class MockSQLXML implements SQLXML, Cloneable
         try
         {
             MockSQLXML other = (MockSQLXML)super.clone();
-            other.domParser = createDocumentBuilder();
-            other.saxParser = createSAXParser();
-            other.outputFactory = createXMLOutputFactory();
-            other.inputFactory = createXMLInputFactory();
-            other.jdomParser = createJDOMSAXBuilder();
-            other.jdomDOMBuilder = createJDOMDOMBuilder();
-            other.xmlPrintOutputter = createJDOMXMLPrintOutputter();
-            other.domOutputter = createJDOMDOMOutputter();
-            other.xmlCompareOutputter = createJDOMXMLCompareOutputter();
+            if(isImmutableContent())
+            {
+                return other;
+            }
+            other.cachedContent = null;
+            other.parsedContent = null;
+            other.printedContent = null;
+            other.comparableContent = null;
             if(null != content)
             {
                 try
@@ -519,19 +521,6 @@ public class MockSQLXML implements SQLXML, Cloneable
         return buffer.toString();
     }
     
-    private void createXMLObjects()
-    {
-        domParser = createDocumentBuilder();
-        saxParser = createSAXParser();
-        outputFactory = createXMLOutputFactory();
-        inputFactory = createXMLInputFactory();
-        jdomParser = createJDOMSAXBuilder();
-        jdomDOMBuilder = createJDOMDOMBuilder();
-        xmlPrintOutputter = createJDOMXMLPrintOutputter();
-        domOutputter = createJDOMDOMOutputter();
-        xmlCompareOutputter = createJDOMXMLCompareOutputter();
-    }
-
     private void verifyWrite() throws SQLException
     {
         if(!isWriteable())
@@ -552,7 +541,37 @@ public class MockSQLXML implements SQLXML, Cloneable
         }
     }
     
+    private boolean isImmutableContent()
+    {
+        return content instanceof String || content instanceof byte[];
+    }
+    
+    private boolean isContentCached()
+    {
+        if(cachedContent != content)
+        {
+            cachedContent = isImmutableContent() ? content : null;
+            parsedContent = null;
+            printedContent = null;
+            comparableContent = null;
+        }
+        return null != cachedContent;
+    }
+    
     private Document contentToJDOMDocument() throws Exception
+    {
+        if(isContentCached())
+        {
+            if(null == parsedContent)
+            {
+                parsedContent = parseContent();
+            }
+            return parsedContent;
+        }
+        return parseContent();
+    }
+    
+    private Document parseContent() throws Exception
     {
         Document jdomDocument = null;
         if(content instanceof Document)
@@ -561,23 +580,23 @@ public class MockSQLXML implements SQLXML, Cloneable
         }
         else if(content instanceof String)
         {
-            jdomDocument = jdomParser.build(new StringReader((String)content));
+            jdomDocument = createJDOMSAXBuilder().build(new StringReader((String)content));
         }
         else if(content instanceof StringWriter)
         {
-            jdomDocument = jdomParser.build(new StringReader(content.toString()));
+            jdomDocument = createJDOMSAXBuilder().build(new StringReader(content.toString()));
         }
         else if(content instanceof ByteArrayOutputStream)
         {
-            jdomDocument = jdomParser.build(new ByteArrayInputStream(((ByteArrayOutputStream)content).toByteArray()));
+            jdomDocument = createJDOMSAXBuilder().build(new ByteArrayInputStream(((ByteArrayOutputStream)content).toByteArray()));
         }
         else if(content instanceof byte[])
         {
-            jdomDocument = jdomParser.build(new ByteArrayInputStream((byte[])content));
+            jdomDocument = createJDOMSAXBuilder().build(new ByteArrayInputStream((byte[])content));
         }
         else if(content instanceof org.w3c.dom.Document)
         {
-            jdomDocument = jdomDOMBuilder.build((org.w3c.dom.Document)content);
+            jdomDocument = createJDOMDOMBuilder().build((org.w3c.dom.Document)content);
         }
         else if(content instanceof DOMResult)
         {
@@ -589,10 +608,10 @@ public class MockSQLXML implements SQLXML, Cloneable
             }
             else
             {
-                document = domParser.newDocument(); 
+                document = createDocumentBuilder().newDocument(); 
                 document.appendChild(document.importNode(node, true));
             }
-            jdomDocument = jdomDOMBuilder.build(document);
+            jdomDocument = createJDOMDOMBuilder().build(document);
         }
         else if(content instanceof SAXHandler)
         {
@@ -604,27 +623,51 @@ public class MockSQLXML implements SQLXML, Cloneable
             xmlWriter.flush();
             xmlWriter.close();
             ByteArrayOutputStream outStream = ((StreamWriterOutputStreamMapping)content).getOutputStream();
-            jdomDocument = jdomParser.build(new ByteArrayInputStream(outStream.toByteArray()));
+            jdomDocument = createJDOMSAXBuilder().build(new ByteArrayInputStream(outStream.toByteArray()));
         }
         return jdomDocument;
     }
     
     private String contentToString() throws Exception
     {
+        boolean isCached = isContentCached();
+        if(isCached && null != printedContent)
+        {
+            return printedContent;
+        }
         Document jdomDocument = contentToJDOMDocument();
         if(null != jdomDocument)
         {
-            return xmlPrintOutputter.outputString(jdomDocument);
+            String contentAsString = createJDOMXMLPrintOutputter().outputString(jdomDocument);
+            if(isCached) printedContent = contentAsString;
+            return contentAsString;
         }
         return null;
     }
     
-    private Reader contentToReader() throws Exception
+    private String contentToComparableString() throws Exception
     {
+        boolean isCached = isContentCached();
+        if(isCached && null != comparableContent)
+        {
+            return comparableContent;
+        }
         Document jdomDocument = contentToJDOMDocument();
         if(null != jdomDocument)
         {
-            return new StringReader(xmlPrintOutputter.outputString(jdomDocument));
+            String contentAsString = createJDOMXMLCompareOutputter().outputString(jdomDocument);
+            if(isCached) comparableContent = contentAsString;
+            return contentAsString;
+        }
+        return null;
+    }
+    
+    private Reader contentToReader() throws Exception
+    {
+        String contentAsString = contentToString();
+        if(null != contentAsString)
+        {
+            return new StringReader(contentAsString);
         }
         return null;
     }
@@ -635,7 +678,7 @@ public class MockSQLXML implements SQLXML, Cloneable
         if(null != jdomDocument)
         {
             ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-            xmlPrintOutputter.output(jdomDocument, outStream);
+            createJDOMXMLPrintOutputter().output(jdomDocument, outStream);
             outStream.flush();
             return new ByteArrayInputStream(outStream.toByteArray());
         }
@@ -647,7 +690,7 @@ public class MockSQLXML implements SQLXML, Cloneable
         Document jdomDocument = contentToJDOMDocument();
         if(null != jdomDocument)
         {
-            return domOutputter.output(jdomDocument);
+            return createJDOMDOMOutputter().output(jdomDocument);
         }
         return null;
     }
@@ -658,14 +701,134 @@ public class MockSQLXML implements SQLXML, Cloneable
         if(null != jdomDocument)
         {
             ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-            xmlPrintOutputter.output(jdomDocument, outStream);
+            createJDOMXMLPrintOutputter().output(jdomDocument, outStream);
             outStream.flush();
             InputStream inStream = new ByteArrayInputStream(outStream.toByteArray());
-            return inputFactory.createXMLStreamReader(inStream);
+            return createXMLInputFactory().createXMLStreamReader(inStream);
         }
         return null;
     }
     
+    /**
+     * The parsers and outputters of a thread. The factories are
+     * shared by all threads.
+     */
+    private static class XMLObjects
+    {
+        private static DocumentBuilderFactory documentBuilderFactory;
+        private static SAXParserFactory saxParserFactory;
+        private static XMLOutputFactory outputFactory;
+        private static XMLInputFactory inputFactory;
+        
+        private DocumentBuilder documentBuilder;
+        private SAXBuilder jdomSAXBuilder;
+        private DOMBuilder jdomDOMBuilder;
+        private XMLOutputter jdomXMLPrintOutputter;
+        private XMLOutputter jdomXMLCompareOutputter;
+        private DOMOutputter jdomDOMOutputter;
+        
+        public static synchronized SAXParser newSAXParser() throws Exception
+        {
+            if(null == saxParserFactory)
+            {
+                saxParserFactory = SAXParserFactory.newInstance();
+            }
+            return saxParserFactory.newSAXParser();
+        }
+        
+        public static synchronized XMLOutputFactory getXMLOutputFactory()
+        {
+            if(null == outputFactory)
+            {
+                outputFactory = XMLOutputFactory.newInstance();
+            }
+            return outputFactory;
+        }
+        
+        public static synchronized XMLInputFactory getXMLInputFactory()
+        {
+            if(null == inputFactory)
+            {
+                inputFactory = XMLInputFactory.newInstance();
+            }
+            return inputFactory;
+        }
+        
+        private static synchronized DocumentBuilder newDocumentBuilder() throws ParserConfigurationException
+        {
+            if(null == documentBuilderFactory)
+            {
+                documentBuilderFactory = DocumentBuilderFactory.newInstance();
+            }
+            return documentBuilderFactory.newDocumentBuilder();
+        }
+        
+        public DocumentBuilder getDocumentBuilder()
+        {
+            if(null == documentBuilder)
+            {
+                try
+                {
+                    documentBuilder = newDocumentBuilder();
+                } 
+                catch(ParserConfigurationException exc)
+                {
+                    throw new NestedApplicationException(exc);
+                }
+            }
+            return documentBuilder;
+        }
+        
+        public SAXBuilder getJDOMSAXBuilder()
+        {
+            if(null == jdomSAXBuilder)
+            {
+                jdomSAXBuilder = new SAXBuilder();
+                jdomSAXBuilder.setValidation(false);
+            }
+            return jdomSAXBuilder;
+        }
+        
+        public DOMBuilder getJDOMDOMBuilder()
+        {
+            if(null == jdomDOMBuilder)
+            {
+                jdomDOMBuilder = new DOMBuilder();
+            }
+            return jdomDOMBuilder;
+        }
+        
+        public XMLOutputter getJDOMXMLPrintOutputter()
+        {
+            if(null == jdomXMLPrintOutputter)
+            {
+                jdomXMLPrintOutputter = new XMLOutputter(Format.getPrettyFormat());
+            }
+            return jdomXMLPrintOutputter;
+        }
+        
+        public XMLOutputter getJDOMXMLCompareOutputter()
+        {
+            if(null == jdomXMLCompareOutputter)
+            {
+                Format format = Format.getCompactFormat();
+                format.setOmitDeclaration(true);
+                format.setOmitEncoding(true);
+                jdomXMLCompareOutputter = new XMLOutputter(format);
+            }
+            return jdomXMLCompareOutputter;
+        }
+        
+        public DOMOutputter getJDOMDOMOutputter()
+        {
+            if(null == jdomDOMOutputter)
+            {
+                jdomDOMOutputter = new DOMOutputter();
+            }
+            return jdomDOMOutputter;
+        }
+    }
+    
     private class StreamWriterOutputStreamMapping
     {
         private XMLStreamWriter streamWriter;
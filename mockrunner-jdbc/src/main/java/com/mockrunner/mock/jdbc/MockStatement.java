@@ -7,10 +7,16 @@ import java.sql.SQLException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.mockrunner.base.NestedApplicationException;
 import com.mockrunner.jdbc.AbstractResultSetHandler;
+import com.mockrunner.jdbc.BatchMatch;
+import com.mockrunner.jdbc.FlightRecorderEvents;
+import com.mockrunner.jdbc.ForwardOnlyResultSet;
+import com.mockrunner.jdbc.LatencyModel;
 import com.mockrunner.jdbc.SQLUtil;
 import com.mockrunner.util.common.ArrayUtil;
 
@@ -19,6 +25,8 @@ import com.mockrunner.util.common.ArrayUtil;
  */
 public class MockStatement implements Statement
 {
+    private static final long NOT_TIMED = Long.MIN_VALUE;
+
     private AbstractResultSetHandler resultSetHandler;
     private ResultSet[] currentResultSets = null;
     private Integer[] currentUpdateCounts = null;
@@ -39,6 +47,7 @@ public class MockStatement implements Statement
     private boolean poolable = false;
     private boolean closeOnCompletition = false;
     private Connection connection;
+    private FlightRecorderEvents.Execution executionEvent;
     
     public MockStatement(Connection connection)
     {
@@ -112,6 +121,86 @@ public class MockStatement implements Statement
     }
     
     public ResultSet executeQuery(String sql) throws SQLException
+    {
+        long start = startExecution(sql);
+        ResultSet resultSet = doExecuteQuery(sql);
+        finishExecution(sql, start);
+        return resultSet;
+    }
+
+    /**
+     * Called before an execution. Simulates the execution latency
+     * of the {@link LatencyModel} of the result set handler and
+     * begins the {@link FlightRecorderEvents} event of the execution,
+     * if a recording is running.
+     * @param sql the SQL string
+     * @return the start time for {@link #finishExecution}
+     * @throws SQLException if the query timeout is exceeded
+     */
+    protected long startExecution(String sql) throws SQLException
+    {
+        long start = resultSetHandler.getRecordingPolicy().isAggregating() ? System.nanoTime() : NOT_TIMED;
+        executionEvent = FlightRecorderEvents.beginExecution();
+        resultSetHandler.simulateExecution(sql, querySeconds);
+        if(null != executionEvent)
+        {
+            executionEvent.startLookup();
+        }
+        return start;
+    }
+
+    /**
+     * Called after a successful execution. Adds the execution time to
+     * the statistics of the result set handler. Sets the fetch size
+     * of this statement, the {@link LatencyModel} of the handler and
+     * the paged cursor mode for the returned <code>ResultSet</code> objects
+     * and commits the {@link FlightRecorderEvents} event of the execution.
+     * @param sql the SQL string
+     * @param start the start time returned by {@link #startExecution}
+     * @throws SQLException if the fetch size cannot be set
+     */
+    protected void finishExecution(String sql, long start) throws SQLException
+    {
+        if(NOT_TIMED != start)
+        {
+            resultSetHandler.addExecutionTime(sql, System.nanoTime() - start);
+        }
+        if(null != executionEvent)
+        {
+            commitExecutionEvent(sql);
+        }
+        LatencyModel latencyModel = resultSetHandler.getLatencyModel();
+        boolean pagedCursors = resultSetHandler.getPagedCursors();
+        if((LatencyModel.NONE == latencyModel && 0 == fetchSize && !pagedCursors) || null == currentResultSets) return;
+        for(ResultSet currentResultSet : currentResultSets)
+        {
+            if(currentResultSet instanceof MockResultSet)
+            {
+                MockResultSet resultSet = (MockResultSet)currentResultSet;
+                if(0 == resultSet.getFetchSize())
+                {
+                    resultSet.setFetchSize(fetchSize);
+                }
+                if(LatencyModel.NONE != latencyModel)
+                {
+                    resultSet.setLatencyModel(latencyModel, sql);
+                }
+                if(pagedCursors)
+                {
+                    resultSet.setPagedCursor(true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Executes the query without adding the execution time to
+     * the statistics of the result set handler.
+     * @param sql the SQL string
+     * @return the <code>ResultSet</code>
+     * @throws SQLException if the statement is prepared to throw an exception
+     */
+    protected ResultSet doExecuteQuery(String sql) throws SQLException
     {
         SQLException exception = resultSetHandler.getSQLException(sql);
         if(null != exception)
@@ -188,6 +277,21 @@ public class MockStatement implements Statement
     }
 
     public int executeUpdate(String sql) throws SQLException
+    {
+        long start = startExecution(sql);
+        int updateCount = doExecuteUpdate(sql);
+        finishExecution(sql, start);
+        return updateCount;
+    }
+
+    /**
+     * Executes the update without adding the execution time to
+     * the statistics of the result set handler.
+     * @param sql the SQL string
+     * @return the update count
+     * @throws SQLException if the statement is prepared to throw an exception
+     */
+    protected int doExecuteUpdate(String sql) throws SQLException
     {
         SQLException exception = resultSetHandler.getSQLException(sql);
         if(null != exception)
@@ -251,27 +355,70 @@ public class MockStatement implements Statement
         try{
             int[] results = new int[batches.size()];
             SQLException exception = null;
-            for(int ii = 0; ii < results.length; ii++)
+            Map<String, BatchEntry> entries = new HashMap<String, BatchEntry>();
+            Integer[] lastUpdateCounts = null;
+            String runSQL = null;
+            int runExecutions = 0;
+            long runStart = NOT_TIMED;
+            try
             {
-                String nextSQL = batches.get(ii);
-                if(isQuery(nextSQL))
-                {
-                    exception = prepareFailedResult(results, ii, "SQL " + batches.get(ii) + " in the list of batches returned a ResultSet.", null);
-                }
-                else
+                for(int ii = 0; ii < results.length; ii++)
                 {
-                    try
+                    String nextSQL = batches.get(ii);
+                    if(null != runSQL && !runSQL.equals(nextSQL))
+                    {
+                        finishBatchExecution(runSQL, runExecutions, runStart);
+                        runSQL = null;
+                        runExecutions = 0;
+                    }
+                    BatchEntry entry = entries.get(nextSQL);
+                    if(null == entry)
+                    {
+                        entry = new BatchEntry(nextSQL);
+                        entries.put(nextSQL, entry);
+                    }
+                    if(entry.isQuery)
                     {
-                        results[ii] = executeUpdate(nextSQL);
-                    } 
-                    catch(SQLException exc)
+                        exception = prepareFailedResult(results, ii, "SQL " + batches.get(ii) + " in the list of batches returned a ResultSet.", null);
+                    }
+                    else
+                    {
+                        try
+                        {
+                            if(null == runSQL)
+                            {
+                                runStart = startExecution(nextSQL);
+                                runSQL = nextSQL;
+                            }
+                            if(null != entry.exception)
+                            {
+                                throw entry.exception;
+                            }
+                            runExecutions++;
+                            lastUpdateCounts = entry.updateCounts;
+                            results[ii] = entry.updateCounts[0];
+                        } 
+                        catch(SQLException exc)
+                        {
+                            exception = prepareFailedResult(results, ii, null, exc);
+                        }
+                    }
+                    if(null != exception && !resultSetHandler.getContinueProcessingOnBatchFailure())
                     {
-                        exception = prepareFailedResult(results, ii, null, exc);
+                        throw exception;
                     }
                 }
-                if(null != exception && !resultSetHandler.getContinueProcessingOnBatchFailure())
+            }
+            finally
+            {
+                if(null != runSQL)
+                {
+                    finishBatchExecution(runSQL, runExecutions, runStart);
+                }
+                if(null != lastUpdateCounts)
                 {
-                    throw exception;
+                    setUpdateCounts(lastUpdateCounts);
+                    setLastGeneratedKeysResultSet(null);
                 }
             }
             if(null != exception)
@@ -286,6 +433,78 @@ public class MockStatement implements Statement
             clearBatch();
         }
     }
+
+    /**
+     * Called after a run of batch entries with the same SQL string.
+     * Adds the executions to the executed statements and the time
+     * of the run to the statistics of the result set handler.
+     * The latency of the run is only simulated once by {@link #startExecution}.
+     * Like a failed single execution, a run without a successful
+     * execution is not recorded and its {@link FlightRecorderEvents}
+     * event is discarded.
+     * @param sql the SQL string
+     * @param numberExecutions the number of successful executions of the run
+     * @param start the start time returned by {@link #startExecution}
+     */
+    protected void finishBatchExecution(String sql, int numberExecutions, long start)
+    {
+        if(numberExecutions <= 0)
+        {
+            executionEvent = null;
+            return;
+        }
+        resultSetHandler.addExecutedStatements(sql, numberExecutions);
+        if(NOT_TIMED != start)
+        {
+            resultSetHandler.addExecutionTime(sql, System.nanoTime() - start);
+        }
+        if(null != executionEvent)
+        {
+            executionEvent.commit(this, resultSetHandler, sql, numberExecutions, 0, -1);
+            executionEvent = null;
+        }
+    }
+
+    private void commitExecutionEvent(String sql)
+    {
+        int rowsReturned = 0;
+        int updateCount = -1;
+        if(null != currentResultSets)
+        {
+            for(ResultSet currentResultSet : currentResultSets)
+            {
+                if(currentResultSet instanceof ForwardOnlyResultSet)
+                {
+                    //the rows are produced while the cursor advances
+                    rowsReturned = -1;
+                    break;
+                }
+                if(currentResultSet instanceof MockResultSet)
+                {
+                    rowsReturned += ((MockResultSet)currentResultSet).getRowCount();
+                }
+            }
+        }
+        else if(null != currentUpdateCounts && currentUpdateCounts.length > 0 && null != currentUpdateCounts[0])
+        {
+            updateCount = currentUpdateCounts[0];
+        }
+        executionEvent.commit(this, resultSetHandler, sql, 1, rowsReturned, updateCount);
+        executionEvent = null;
+    }
+
+    /**
+     * Returns the global update counts of the result set handler.
+     * @return the global update counts
+     */
+    protected Integer[] getGlobalUpdateCounts()
+    {
+        if(resultSetHandler.hasMultipleGlobalUpdateCounts())
+        {
+            return resultSetHandler.getGlobalUpdateCounts();
+        }
+        return new Integer[] {resultSetHandler.getGlobalUpdateCount()};
+    }
     
     protected SQLException prepareFailedResult(int[] actualResults, int index, String message, SQLException caughtException)
     {
@@ -586,6 +805,15 @@ public class MockStatement implements Statement
     }
 
     protected MockResultSet cloneResultSet(MockResultSet resultSet)
+    {
+        if(null == executionEvent) return copyResultSet(resultSet);
+        long start = System.nanoTime();
+        MockResultSet clone = copyResultSet(resultSet);
+        executionEvent.addCloneTime(System.nanoTime() - start);
+        return clone;
+    }
+
+    private MockResultSet copyResultSet(MockResultSet resultSet)
     {
         if (resultSetConcurrency == ResultSet.CONCUR_READ_ONLY) {
             // no need to clone
@@ -600,19 +828,39 @@ public class MockStatement implements Statement
     protected MockResultSet[] cloneResultSets(MockResultSet[] resultSets)
     {
         if(null == resultSets) return null;
+        long start = (null != executionEvent) ? System.nanoTime() : 0;
         MockResultSet[] clonedResultsSets = new MockResultSet[resultSets.length];
         for(int ii = 0; ii < resultSets.length; ii++)
         {
             if(null != resultSets[ii])
             {
-                if (resultSetConcurrency == ResultSet.CONCUR_READ_ONLY) {
-                    clonedResultsSets[ii] = resultSets[ii].shallowCopy();
-                } else {
-                    clonedResultsSets[ii] = (MockResultSet) resultSets[ii].clone();
-                    clonedResultsSets[ii].setStatement(this);
-                }
+                clonedResultsSets[ii] = copyResultSet(resultSets[ii]);
             }
         }
+        if(null != executionEvent)
+        {
+            executionEvent.addCloneTime(System.nanoTime() - start);
+        }
         return clonedResultsSets;
     }
+
+    private class BatchEntry
+    {
+        private final boolean isQuery;
+        private SQLException exception;
+        private Integer[] updateCounts;
+
+        public BatchEntry(String sql)
+        {
+            isQuery = isQuery(sql);
+            if(isQuery) return;
+            BatchMatch match = resultSetHandler.getBatchMatch(sql);
+            exception = match.getSQLException();
+            updateCounts = match.getUpdateCounts();
+            if(null == updateCounts || 0 == updateCounts.length)
+            {
+                updateCounts = getGlobalUpdateCounts();
+            }
+        }
+    }
 }
@@ -16,6 +16,10 @@ public class ParameterIndex implements ParameterReference{
         this.index = index;
     }
 
+    public int getIndex() {
+        return index;
+    }
+
     @Override
     public int hashCode() {
         int hash = 7;
@@ -16,6 +16,10 @@ public class ParameterName implements ParameterReference{
         this.name = name;
     }
 
+    public String getName() {
+        return name;
+    }
+
     @Override
     public int hashCode() {
         int hash = 3;
@@ -0,0 +1,137 @@
+package com.mockrunner.test.jdbc;
+
+import java.sql.BatchUpdateException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.jdbc.CallableStatementResultSetHandler;
+import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
+import com.mockrunner.jdbc.RecordingPolicy;
+import com.mockrunner.jdbc.StatementResultSetHandler;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockParameterMap;
+
+public class BatchExecutionTest extends TestCase
+{
+    private StatementResultSetHandler statementHandler;
+    private PreparedStatementResultSetHandler preparedStatementHandler;
+    private MockConnection connection;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        statementHandler = new StatementResultSetHandler();
+        preparedStatementHandler = new PreparedStatementResultSetHandler();
+        connection = new MockConnection(statementHandler, preparedStatementHandler, new CallableStatementResultSetHandler());
+    }
+
+    public void testLargePreparedBatch() throws Exception
+    {
+        preparedStatementHandler.prepareGlobalUpdateCount(2);
+        PreparedStatement statement = connection.prepareStatement("insert into person values(?)");
+        int numberEntries = 100000;
+        for(int ii = 0; ii < numberEntries; ii++)
+        {
+            statement.setInt(1, ii);
+            statement.addBatch();
+        }
+        int[] updateCounts = statement.executeBatch();
+        assertEquals(numberEntries, updateCounts.length);
+        assertEquals(2, updateCounts[numberEntries - 1]);
+        assertEquals(2, statement.getUpdateCount());
+        List<String> executedStatements = preparedStatementHandler.getExecutedStatements();
+        assertEquals(numberEntries, executedStatements.size());
+        assertEquals("insert into person values(?)", executedStatements.get(numberEntries / 2));
+        assertEquals(numberEntries, preparedStatementHandler.getParametersForExecutedStatement("insert into person values(?)").getNumberParameterSets());
+    }
+
+    public void testStatementBatchOrder() throws Exception
+    {
+        statementHandler.prepareUpdateCount("update a", 3);
+        statementHandler.prepareUpdateCounts("update b", new Integer[] {4, 5});
+        Statement statement = connection.createStatement();
+        statement.addBatch("update a");
+        statement.addBatch("update a");
+        statement.addBatch("update b");
+        statement.addBatch("update a");
+        statement.addBatch("delete c");
+        int[] updateCounts = statement.executeBatch();
+        assertEquals(5, updateCounts.length);
+        assertEquals(3, updateCounts[0]);
+        assertEquals(3, updateCounts[1]);
+        assertEquals(4, updateCounts[2]);
+        assertEquals(3, updateCounts[3]);
+        assertEquals(0, updateCounts[4]);
+        List<String> executedStatements = statementHandler.getExecutedStatements();
+        assertEquals(5, executedStatements.size());
+        assertEquals("update a", executedStatements.get(1));
+        assertEquals("update b", executedStatements.get(2));
+        assertEquals("update a", executedStatements.get(3));
+        assertEquals("delete c", executedStatements.get(4));
+        statement.addBatch("update b");
+        statement.executeBatch();
+        assertEquals(6, statementHandler.getExecutedStatements().size());
+        assertEquals(4, statement.getUpdateCount());
+        assertFalse(statement.getMoreResults());
+        assertEquals(5, statement.getUpdateCount());
+    }
+
+    public void testStatementBatchFailure() throws Exception
+    {
+        statementHandler.prepareThrowsSQLException("update b", new SQLException("b"));
+        statementHandler.setContinueProcessingOnBatchFailure(true);
+        Statement statement = connection.createStatement();
+        statement.addBatch("update a");
+        statement.addBatch("update b");
+        statement.addBatch("update a");
+        try
+        {
+            statement.executeBatch();
+            fail();
+        }
+        catch(BatchUpdateException exc)
+        {
+            assertEquals(3, exc.getUpdateCounts().length);
+            assertEquals(-3, exc.getUpdateCounts()[1]);
+        }
+        assertEquals(2, statementHandler.getExecutedStatements().size());
+    }
+
+    public void testPreparedBatchParameters() throws Exception
+    {
+        MockParameterMap parameters = new MockParameterMap();
+        parameters.put(1, "x");
+        preparedStatementHandler.prepareUpdateCount("update person", 7, parameters);
+        preparedStatementHandler.prepareUpdateCount("update person", 1);
+        MockParameterMap failingParameters = new MockParameterMap();
+        failingParameters.put(1, "y");
+        preparedStatementHandler.prepareThrowsSQLException("update person", new SQLException("y"), failingParameters);
+        preparedStatementHandler.setContinueProcessingOnBatchFailure(true);
+        preparedStatementHandler.setRecordingPolicy(RecordingPolicy.AGGREGATE);
+        PreparedStatement statement = connection.prepareStatement("update person set name=?");
+        statement.setString(1, "x");
+        statement.addBatch();
+        statement.setString(1, "y");
+        statement.addBatch();
+        statement.setString(1, "z");
+        statement.addBatch();
+        try
+        {
+            statement.executeBatch();
+            fail();
+        }
+        catch(BatchUpdateException exc)
+        {
+            int[] updateCounts = exc.getUpdateCounts();
+            assertEquals(7, updateCounts[0]);
+            assertEquals(-3, updateCounts[1]);
+            assertEquals(1, updateCounts[2]);
+        }
+        assertEquals(2, preparedStatementHandler.getExecutedStatementStatistics().get("update person set name=?").getNumberExecutions());
+    }
+}
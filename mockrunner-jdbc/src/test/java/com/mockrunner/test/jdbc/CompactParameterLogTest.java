@@ -0,0 +1,173 @@
+package com.mockrunner.test.jdbc;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.jdbc.CallableStatementResultSetHandler;
+import com.mockrunner.jdbc.CompactParameterLog;
+import com.mockrunner.jdbc.ParameterSets;
+import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
+import com.mockrunner.jdbc.RecordingPolicy;
+import com.mockrunner.jdbc.StatementResultSetHandler;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockParameterMap;
+import com.mockrunner.mock.jdbc.ParameterIndex;
+
+public class CompactParameterLogTest extends TestCase
+{
+    public void testTypes()
+    {
+        CompactParameterLog log = new CompactParameterLog();
+        byte[] bytes = new byte[] {1, 2};
+        MockParameterMap parameters = new MockParameterMap();
+        parameters.put(1, Integer.valueOf(1));
+        parameters.put(2, Long.valueOf(Long.MAX_VALUE));
+        parameters.put(3, Double.valueOf(-2.5));
+        parameters.put(4, Float.valueOf(1.5f));
+        parameters.put(5, Short.valueOf((short)-3));
+        parameters.put(6, Byte.valueOf((byte)7));
+        parameters.put(7, Boolean.TRUE);
+        parameters.put(8, "abc");
+        parameters.put(9, null);
+        parameters.put(10, new BigDecimal("1.23"));
+        parameters.put(11, bytes);
+        parameters.put("name", "abc");
+        log.add(parameters);
+        MockParameterMap other = new MockParameterMap();
+        other.put(2, Long.valueOf(5));
+        log.add(other);
+        assertEquals(2, log.size());
+        MockParameterMap first = log.get(0);
+        assertEquals(12, first.size());
+        assertEquals(Integer.valueOf(1), first.get(1));
+        assertEquals(Long.valueOf(Long.MAX_VALUE), first.get(2));
+        assertEquals(Double.valueOf(-2.5), first.get(3));
+        assertEquals(Float.valueOf(1.5f), first.get(4));
+        assertEquals(Short.valueOf((short)-3), first.get(5));
+        assertEquals(Byte.valueOf((byte)7), first.get(6));
+        assertEquals(Boolean.TRUE, first.get(7));
+        assertEquals("abc", first.get(8));
+        assertTrue(first.containsKey(new ParameterIndex(9)));
+        assertNull(first.get(9));
+        assertEquals(new BigDecimal("1.23"), first.get(10));
+        assertSame(bytes, first.get(11));
+        assertEquals("abc", first.get("name"));
+        assertEquals(1, log.getDictionarySize());
+        assertEquals(parameters, first);
+        assertEquals(other, log.get(1));
+        List<MockParameterMap> list = log.asList();
+        assertEquals(2, list.size());
+        assertEquals(other, list.get(1));
+        try
+        {
+            log.get(2);
+            fail();
+        }
+        catch(IndexOutOfBoundsException exc)
+        {
+            //expected exception
+        }
+        log.clear();
+        assertEquals(0, log.size());
+        assertEquals(0, log.getDictionarySize());
+    }
+
+    public void testSpill()
+    {
+        CompactParameterLog log = new CompactParameterLog(CompactParameterLog.BLOCK_SIZE);
+        int numberParameterSets = CompactParameterLog.BLOCK_SIZE * 3 + 10;
+        for(int ii = 0; ii < numberParameterSets; ii++)
+        {
+            MockParameterMap parameters = new MockParameterMap();
+            parameters.put(1, Integer.valueOf(ii));
+            parameters.put(2, "name" + (ii % 10));
+            if(0 == ii % 7) parameters.put(3, new byte[] {(byte)ii});
+            log.add(parameters);
+        }
+        assertEquals(numberParameterSets, log.size());
+        assertEquals(3, log.getNumberSpilledBlocks());
+        assertEquals(10, log.getDictionarySize());
+        for(int ii : new int[] {0, 7, CompactParameterLog.BLOCK_SIZE + 1, 5, numberParameterSets - 1, CompactParameterLog.BLOCK_SIZE * 2 + 14})
+        {
+            MockParameterMap parameters = log.get(ii);
+            assertEquals(Integer.valueOf(ii), parameters.get(1));
+            assertEquals("name" + (ii % 10), parameters.get(2));
+            if(0 == ii % 7)
+            {
+                assertTrue(Arrays.equals(new byte[] {(byte)ii}, (byte[])parameters.get(3)));
+            }
+            else
+            {
+                assertEquals(2, parameters.size());
+            }
+        }
+        log.clear();
+        assertEquals(0, log.getNumberSpilledBlocks());
+    }
+
+    public void testSpillSparseParameters()
+    {
+        CompactParameterLog log = new CompactParameterLog(CompactParameterLog.BLOCK_SIZE);
+        int numberParameterSets = CompactParameterLog.BLOCK_SIZE * 2 + 10;
+        for(int ii = 0; ii < numberParameterSets; ii++)
+        {
+            MockParameterMap parameters = new MockParameterMap();
+            if(0 == ii % 3) parameters.put(1, Long.valueOf(ii));
+            if(0 == ii % 5) parameters.put("name", null);
+            parameters.put(2, Boolean.valueOf(0 == ii % 2));
+            log.add(parameters);
+        }
+        assertEquals(2, log.getNumberSpilledBlocks());
+        for(int ii = 0; ii < numberParameterSets; ii++)
+        {
+            MockParameterMap parameters = log.get(ii);
+            int expectedSize = 1;
+            if(0 == ii % 3)
+            {
+                assertEquals(Long.valueOf(ii), parameters.get(1));
+                expectedSize++;
+            }
+            if(0 == ii % 5)
+            {
+                assertNull(parameters.get("name"));
+                expectedSize++;
+            }
+            assertEquals(Boolean.valueOf(0 == ii % 2), parameters.get(2));
+            assertEquals(expectedSize, parameters.size());
+        }
+        log.clear();
+    }
+
+    public void testCompactPolicy() throws Exception
+    {
+        assertEquals("COMPACT", RecordingPolicy.COMPACT.toString());
+        assertEquals("COMPACT(10)", RecordingPolicy.compact(10).toString());
+        assertTrue(RecordingPolicy.COMPACT.isFull());
+        assertTrue(RecordingPolicy.COMPACT.isCompact());
+        assertFalse(RecordingPolicy.FULL.isCompact());
+        PreparedStatementResultSetHandler handler = new PreparedStatementResultSetHandler();
+        handler.setRecordingPolicy(RecordingPolicy.COMPACT);
+        MockConnection connection = new MockConnection(new StatementResultSetHandler(), handler, new CallableStatementResultSetHandler());
+        PreparedStatement statement = connection.prepareStatement("insert into person values(?, ?)");
+        for(int ii = 0; ii < 1000; ii++)
+        {
+            statement.setInt(1, ii);
+            statement.setString(2, "name" + (ii % 3));
+            statement.addBatch();
+        }
+        int[] updateCounts = statement.executeBatch();
+        assertEquals(1000, updateCounts.length);
+        ParameterSets parameterSets = handler.getParametersForExecutedStatement("insert into person values(?, ?)");
+        assertEquals(1000, parameterSets.getNumberParameterSets());
+        assertTrue(parameterSets.isParameterSetRecorded(999));
+        MockParameterMap parameters = parameterSets.getParameterSet(500);
+        assertEquals(Integer.valueOf(500), parameters.get(1));
+        assertEquals("name2", parameters.get(2));
+        assertEquals(1000, handler.getExecutedStatements().size());
+        assertEquals(0, statement.executeBatch().length);
+    }
+}
@@ -0,0 +1,143 @@
+package com.mockrunner.test.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.jdbc.CallableStatementResultSetHandler;
+import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
+import com.mockrunner.jdbc.StatementResultSetHandler;
+import com.mockrunner.mock.jdbc.EvaluableResultSet;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockParameterMap;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class EvaluableResultSetTest extends TestCase
+{
+    private final AtomicInteger numberEvaluations = new AtomicInteger();
+
+    private EvaluableResultSet createResultSet(int numberRows)
+    {
+        EvaluableResultSet resultSet = new EvaluableResultSet("id");
+        Object[] ids = new Object[numberRows];
+        Object[] names = new Object[numberRows];
+        for(int ii = 0; ii < numberRows; ii++)
+        {
+            ids[ii] = Integer.valueOf(ii);
+            names[ii] = new EvaluableResultSet.Evaluable()
+            {
+                public Object evaluate(String sql, MockParameterMap parameters, String columnName, int row)
+                {
+                    numberEvaluations.incrementAndGet();
+                    return parameters.get(1) + "-" + columnName + "-" + row;
+                }
+            };
+        }
+        resultSet.addColumn("id", ids);
+        resultSet.addColumn("name", names);
+        return resultSet;
+    }
+
+    public void testLazyEvaluation() throws Exception
+    {
+        EvaluableResultSet template = createResultSet(1000);
+        MockParameterMap parameters = new MockParameterMap();
+        parameters.put(1, "a");
+        MockResultSet resultSet = template.evaluate("select", parameters);
+        assertEquals(0, numberEvaluations.get());
+        assertEquals(1000, resultSet.getRowCount());
+        assertEquals(2, resultSet.getColumnCount());
+        assertTrue(resultSet.next());
+        assertEquals(0, resultSet.getInt("id"));
+        assertEquals("a-name-0", resultSet.getString("name"));
+        assertEquals("a-name-0", resultSet.getString(2));
+        assertEquals(1, numberEvaluations.get());
+        MockResultSet copy = (MockResultSet)resultSet.clone();
+        copy.setResultSetConcurrency(ResultSet.CONCUR_UPDATABLE);
+        assertTrue(copy.absolute(500));
+        assertEquals("a-name-499", copy.getString(2));
+        assertTrue(copy.first());
+        assertEquals("a-name-0", copy.getString(2));
+        assertEquals(2, numberEvaluations.get());
+        copy.updateString(2, "x");
+        assertEquals("x", copy.getString(2));
+        assertEquals("a-name-0", resultSet.getString(2));
+        copy.moveToInsertRow();
+        copy.updateInt(1, 1000);
+        copy.updateString(2, "y");
+        copy.insertRow();
+        assertEquals(1001, copy.getRowCount());
+        assertEquals(1000, resultSet.getRowCount());
+        assertEquals(1000, numberEvaluations.get());
+    }
+
+    public void testTemplateModifiedAfterEvaluate() throws Exception
+    {
+        EvaluableResultSet template = createResultSet(2);
+        MockParameterMap parameters = new MockParameterMap();
+        parameters.put(1, "a");
+        MockResultSet resultSet = template.evaluate("select", parameters);
+        template.addRow(new Object[] {Integer.valueOf(2), "c"});
+        template.setResultSetConcurrency(ResultSet.CONCUR_UPDATABLE);
+        assertTrue(template.next());
+        template.updateInt(1, 5);
+        template.updateRow();
+        assertEquals(3, template.getRowCount());
+        assertEquals(2, resultSet.getRowCount());
+        assertTrue(resultSet.next());
+        assertEquals(0, resultSet.getInt(1));
+        parameters.put(1, "b");
+        MockResultSet otherResultSet = template.evaluate("select", parameters);
+        assertTrue(otherResultSet.absolute(3));
+        assertEquals("c", otherResultSet.getString(2));
+        assertTrue(otherResultSet.first());
+        assertEquals(5, otherResultSet.getInt(1));
+        assertEquals("b-name-0", otherResultSet.getString(2));
+    }
+
+    public void testConcurrentExecutions() throws Exception
+    {
+        PreparedStatementResultSetHandler handler = new PreparedStatementResultSetHandler();
+        handler.prepareResultSet("select", createResultSet(10000));
+        final MockConnection connection = new MockConnection(new StatementResultSetHandler(), handler, new CallableStatementResultSetHandler());
+        final AtomicInteger failures = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for(int ii = 0; ii < threads.length; ii++)
+        {
+            final String parameter = "p" + ii;
+            threads[ii] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        for(int jj = 0; jj < 50; jj++)
+                        {
+                            PreparedStatement statement = connection.prepareStatement("select");
+                            statement.setString(1, parameter);
+                            ResultSet resultSet = statement.executeQuery();
+                            if(!resultSet.next() || !(parameter + "-name-0").equals(resultSet.getString(2)))
+                            {
+                                failures.incrementAndGet();
+                            }
+                        }
+                    }
+                    catch(Exception exc)
+                    {
+                        failures.incrementAndGet();
+                    }
+                }
+            };
+            threads[ii].start();
+        }
+        for(Thread thread : threads)
+        {
+            thread.join();
+        }
+        assertEquals(0, failures.get());
+        assertEquals(threads.length * 50, numberEvaluations.get());
+    }
+}
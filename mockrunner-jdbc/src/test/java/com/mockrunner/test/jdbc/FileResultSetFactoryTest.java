@@ -1,9 +1,17 @@
 package com.mockrunner.test.jdbc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
@@ -11,6 +19,7 @@ import java.util.Map;
 import org.junit.Test;
 
 import com.mockrunner.jdbc.FileResultSetFactory;
+import com.mockrunner.mock.jdbc.MockConnection;
 import com.mockrunner.mock.jdbc.MockResultSet;
 
 public class FileResultSetFactoryTest
@@ -186,4 +195,247 @@ public class FileResultSetFactoryTest
             //should throw exception
         }
     }
+
+    @Test
+    public void testStreaming() throws Exception
+    {
+        File file = createFile("Column1;Column2;Column3\r\n 1 ; 3 ;4\n\nEntry1;;$defaultString\r\rTest;x;y;z;\n25.3");
+        FileResultSetFactory factory = new FileResultSetFactory(file);
+        factory.setStreaming(true);
+        factory.setFirstLineContainsColumnNames(true);
+        factory.setUseTemplates(true);
+        MockResultSet resultSet = factory.create("id");
+        assertEquals("id", resultSet.getId());
+        assertEquals(ResultSet.TYPE_FORWARD_ONLY, resultSet.getType());
+        assertEquals(ResultSet.CONCUR_READ_ONLY, resultSet.getConcurrency());
+        assertEquals(3, resultSet.getColumnCount());
+        assertTrue(resultSet.isBeforeFirst());
+        assertEquals(0, resultSet.getRow());
+        assertTrue(resultSet.next());
+        assertTrue(resultSet.isFirst());
+        assertEquals(1, resultSet.getInt("Column1"));
+        assertEquals(3, resultSet.getLong("column2"));
+        assertEquals(4, resultSet.getShort(3));
+        assertEquals("1", resultSet.getString(1));
+        assertTrue(resultSet.next());
+        assertEquals(2, resultSet.getRow());
+        assertEquals("Entry1", resultSet.getObject(1));
+        assertNull(resultSet.getString(2));
+        assertTrue(resultSet.wasNull());
+        assertEquals("", resultSet.getString("Column3"));
+        assertFalse(resultSet.wasNull());
+        assertTrue(resultSet.next());
+        assertEquals(4, resultSet.getColumnCount());
+        assertEquals("Test", resultSet.getString(1));
+        assertEquals("z", resultSet.getString(4));
+        assertTrue(resultSet.next());
+        assertTrue(resultSet.isLast());
+        assertEquals(25.3, resultSet.getDouble(1), 0.01);
+        assertNull(resultSet.getObject(2));
+        assertNull(resultSet.getObject(4));
+        assertFalse(resultSet.next());
+        assertTrue(resultSet.isAfterLast());
+        assertEquals(0, resultSet.getRow());
+        assertFalse(resultSet.next());
+        try
+        {
+            resultSet.getObject(1);
+            fail();
+        }
+        catch(SQLException exc)
+        {
+            //should throw exception
+        }
+    }
+
+    @Test
+    public void testStreamingWithoutColumnNames() throws Exception
+    {
+        File file = createFile("a| b |c\nd||f|g\n");
+        FileResultSetFactory factory = new FileResultSetFactory(file);
+        factory.setStreaming(true);
+        factory.setDelimiter("|");
+        factory.setTrim(false);
+        MockResultSet resultSet = factory.create("");
+        assertTrue(resultSet.next());
+        assertEquals(" b ", resultSet.getString("Column2"));
+        assertNull(resultSet.getString(4));
+        assertTrue(resultSet.next());
+        assertEquals(4, resultSet.getColumnCount());
+        assertNull(resultSet.getString(2));
+        assertEquals("g", resultSet.getString("Column4"));
+        assertFalse(resultSet.next());
+    }
+
+    @Test
+    public void testStreamingForwardOnly() throws Exception
+    {
+        File file = createFile("1\n2\n3");
+        FileResultSetFactory factory = new FileResultSetFactory(file);
+        factory.setStreaming(true);
+        MockResultSet resultSet = factory.create("");
+        assertTrue(resultSet.next());
+        try
+        {
+            resultSet.beforeFirst();
+            fail();
+        }
+        catch(SQLException exc)
+        {
+            //should throw exception
+        }
+        try
+        {
+            resultSet.absolute(1);
+            fail();
+        }
+        catch(SQLException exc)
+        {
+            //should throw exception
+        }
+        try
+        {
+            resultSet.previous();
+            fail();
+        }
+        catch(SQLException exc)
+        {
+            //should throw exception
+        }
+        assertTrue(resultSet.next());
+        MockResultSet copy = (MockResultSet)resultSet.clone();
+        assertNotSame(resultSet, copy);
+        assertTrue(copy.next());
+        assertEquals(1, copy.getInt(1));
+        assertEquals(2, resultSet.getInt(1));
+        copy = resultSet.shallowCopy();
+        int sum = 0;
+        while(copy.next())
+        {
+            sum += copy.getInt(1);
+        }
+        assertEquals(6, sum);
+        resultSet.close();
+        assertFalse(resultSet.next());
+    }
+
+    @Test
+    public void testStreamingScrollableStatement() throws Exception
+    {
+        File file = createFile("1\n2");
+        FileResultSetFactory factory = new FileResultSetFactory(file);
+        factory.setStreaming(true);
+        MockConnection connection = new MockConnection();
+        connection.getStatementResultSetHandler().prepareResultSet("select", factory.create("id"));
+        ResultSet resultSet = connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_UPDATABLE).executeQuery("select");
+        assertEquals(ResultSet.TYPE_FORWARD_ONLY, resultSet.getType());
+        assertEquals(ResultSet.CONCUR_READ_ONLY, resultSet.getConcurrency());
+        assertTrue(resultSet.next());
+        assertEquals(1, resultSet.getInt(1));
+        assertTrue(resultSet.next());
+        assertFalse(resultSet.next());
+    }
+
+    @Test
+    public void testStreamingOpensFileOnFirstRead() throws Exception
+    {
+        File file = createFile("id;name\n1;a");
+        FileResultSetFactory factory = new FileResultSetFactory(file);
+        factory.setStreaming(true);
+        factory.setFirstLineContainsColumnNames(true);
+        MockResultSet resultSet = factory.create("");
+        assertEquals(2, resultSet.getColumnCount());
+        Writer writer = new FileWriter(file);
+        try
+        {
+            writer.write("id;name\n2;b\n3;c");
+        }
+        finally
+        {
+            writer.close();
+        }
+        MockResultSet copy = (MockResultSet)resultSet.clone();
+        assertTrue(resultSet.next());
+        assertEquals(2, resultSet.getInt("id"));
+        assertTrue(copy.next());
+        assertEquals("b", copy.getString("name"));
+        copy.close();
+        assertFalse(copy.next());
+    }
+
+    @Test
+    public void testStreamingEmptyLines() throws Exception
+    {
+        String[] contents = new String[] {"a;b\n\n1;2\r\r\n3\n", "\n\n1;2\n\n", "a\n  \nb"};
+        for(String content : contents)
+        {
+            File file = createFile(content);
+            FileResultSetFactory factory = new FileResultSetFactory(file);
+            factory.setFirstLineContainsColumnNames(true);
+            MockResultSet parsed = factory.create("");
+            factory.setStreaming(true);
+            MockResultSet streamed = factory.create("");
+            while(parsed.next())
+            {
+                assertTrue(streamed.next());
+                for(int ii = 1; ii <= parsed.getColumnCount(); ii++)
+                {
+                    assertEquals(parsed.getObject(ii), streamed.getObject(ii));
+                }
+            }
+            assertFalse(streamed.next());
+            assertEquals(parsed.getColumnCount(), streamed.getColumnCount());
+        }
+    }
+
+    @Test
+    public void testStreamingLargeFile() throws Exception
+    {
+        File file = File.createTempFile("mockrunner", ".csv");
+        file.deleteOnExit();
+        Writer writer = new FileWriter(file);
+        int rows = 600000;
+        try
+        {
+            writer.write("id;name\n");
+            for(int ii = 0; ii < rows; ii++)
+            {
+                writer.write(ii + ";name" + ii + "\r\n");
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+        assertTrue(file.length() > 8 * 1024 * 1024);
+        FileResultSetFactory factory = new FileResultSetFactory(file);
+        factory.setStreaming(true);
+        factory.setFirstLineContainsColumnNames(true);
+        MockResultSet resultSet = factory.create("");
+        int count = 0;
+        while(resultSet.next())
+        {
+            assertEquals(count, resultSet.getInt("id"));
+            assertEquals("name" + count, resultSet.getString(2));
+            count++;
+        }
+        assertEquals(rows, count);
+        resultSet.close();
+    }
+
+    private File createFile(String content) throws IOException
+    {
+        File file = File.createTempFile("mockrunner", ".csv");
+        file.deleteOnExit();
+        Writer writer = new FileWriter(file);
+        try
+        {
+            writer.write(content);
+        }
+        finally
+        {
+            writer.close();
+        }
+        return file;
+    }
 }
@@ -0,0 +1,211 @@
+package com.mockrunner.test.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mockrunner.jdbc.FileResultSetFactory;
+import com.mockrunner.jdbc.FixtureCache;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class FixtureCacheTest
+{
+    private FixtureCache cache;
+    private File file;
+    private File snapshotDirectory;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        cache = FixtureCache.getInstance();
+        cache.clear();
+        file = File.createTempFile("fixture", ".csv");
+        file.deleteOnExit();
+        writeFile("id;name;value\n1;a;\n2;$defaultString;x\n");
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        cache.clear();
+        cache.setSnapshotDirectory(null);
+        cache.setMaxSize(FixtureCache.DEFAULT_MAX_SIZE);
+        file.delete();
+        if(null != snapshotDirectory)
+        {
+            File[] files = snapshotDirectory.listFiles();
+            for(int ii = 0; ii < files.length; ii++)
+            {
+                files[ii].delete();
+            }
+            snapshotDirectory.delete();
+        }
+    }
+
+    @Test
+    public void testCache() throws Exception
+    {
+        FileResultSetFactory factory = new FileResultSetFactory(file);
+        factory.setFirstLineContainsColumnNames(true);
+        factory.setUseCache(true);
+        MockResultSet resultSet1 = factory.create("1");
+        assertEquals(1, cache.size());
+        MockResultSet resultSet2 = factory.create("2");
+        assertEquals(1, cache.size());
+        assertNotSame(resultSet1, resultSet2);
+        assertEquals("2", resultSet2.getId());
+        doTestResultSet(resultSet2, "$defaultString");
+        resultSet2.setResultSetConcurrency(ResultSet.CONCUR_UPDATABLE);
+        resultSet2.updateString(2, "b");
+        resultSet2.updateRow();
+        doTestResultSet(factory.create("3"), "$defaultString");
+        factory.setUseTemplates(true);
+        doTestResultSet(factory.create("4"), "");
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testChangedFile() throws Exception
+    {
+        FileResultSetFactory factory = new FileResultSetFactory(file);
+        factory.setFirstLineContainsColumnNames(true);
+        factory.setUseCache(true);
+        doTestResultSet(factory.create(""), "$defaultString");
+        writeFile("id;name;value\n3;c;y\n");
+        MockResultSet resultSet = factory.create("");
+        assertEquals(1, resultSet.getRowCount());
+        assertEquals(Arrays.asList(new Object[] {"3", "c", "y"}), resultSet.getRow(1));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testSnapshot() throws Exception
+    {
+        snapshotDirectory = new File(file.getParentFile(), file.getName() + ".snapshots");
+        cache.setSnapshotDirectory(snapshotDirectory);
+        FileResultSetFactory factory = new FileResultSetFactory(file);
+        factory.setFirstLineContainsColumnNames(true);
+        factory.setUseCache(true);
+        factory.create("");
+        assertEquals(1, snapshotDirectory.listFiles().length);
+        cache.clear();
+        String key = FixtureCache.createKey(file, "csv|;|true|true");
+        MockResultSet resultSet = cache.get(key, "id");
+        assertEquals("id", resultSet.getId());
+        doTestResultSet(resultSet, "$defaultString");
+        assertEquals(1, cache.size());
+        cache.setSnapshotDirectory(null);
+        cache.clear();
+        assertNull(cache.get(key, "id"));
+    }
+
+    @Test
+    public void testSnapshotWithNonAsciiCharacters() throws Exception
+    {
+        snapshotDirectory = new File(file.getParentFile(), file.getName() + ".snapshots");
+        cache.setSnapshotDirectory(snapshotDirectory);
+        MockResultSet resultSet = new MockResultSet("");
+        resultSet.addColumn("name", new Object[] {"\u00e4\u00f6\u00fc", "\u20ac"});
+        cache.put("key", resultSet);
+        File[] files = snapshotDirectory.listFiles();
+        assertEquals(1, files.length);
+        assertEquals(48, files[0].length());
+        cache.clear();
+        resultSet = cache.get("key", "id");
+        assertEquals(Arrays.asList(new Object[] {"\u00e4\u00f6\u00fc", "\u20ac"}), resultSet.getColumn("name"));
+    }
+
+    @Test
+    public void testInvalidSnapshot() throws Exception
+    {
+        snapshotDirectory = new File(file.getParentFile(), file.getName() + ".snapshots");
+        cache.setSnapshotDirectory(snapshotDirectory);
+        MockResultSet resultSet = new MockResultSet("");
+        resultSet.addColumn("name", new Object[] {"a", "b"});
+        cache.put("key", resultSet);
+        cache.clear();
+        File snapshot = snapshotDirectory.listFiles()[0];
+        RandomAccessFile randomAccessFile = new RandomAccessFile(snapshot, "rw");
+        try
+        {
+            randomAccessFile.seek(randomAccessFile.length() - 5);
+            randomAccessFile.writeInt(Integer.MAX_VALUE);
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+        assertNull(cache.get("key", "id"));
+        randomAccessFile = new RandomAccessFile(snapshot, "rw");
+        try
+        {
+            randomAccessFile.setLength(randomAccessFile.length() - 3);
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+        assertNull(cache.get("key", "id"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testMaxSize() throws Exception
+    {
+        MockResultSet resultSet = new MockResultSet("");
+        resultSet.addColumn("name", new Object[] {"a"});
+        cache.setMaxSize(2);
+        cache.put("key1", resultSet);
+        cache.put("key2", resultSet);
+        assertNotNull(cache.get("key1", "id"));
+        cache.put("key3", resultSet);
+        assertEquals(2, cache.size());
+        assertNull(cache.get("key2", "id"));
+        assertNotNull(cache.get("key1", "id"));
+        assertNotNull(cache.get("key3", "id"));
+        cache.setMaxSize(1);
+        assertEquals(1, cache.size());
+        assertNotNull(cache.get("key3", "id"));
+    }
+
+    private void doTestResultSet(MockResultSet resultSet, String template) throws Exception
+    {
+        assertEquals(3, resultSet.getColumnCount());
+        assertEquals(2, resultSet.getRowCount());
+        assertTrue(resultSet.next());
+        assertEquals(1, resultSet.getInt("id"));
+        assertEquals("a", resultSet.getString("name"));
+        assertNull(resultSet.getString("value"));
+        assertTrue(resultSet.next());
+        assertEquals(2, resultSet.getInt(1));
+        assertEquals(template, resultSet.getString(2));
+        assertEquals("x", resultSet.getString(3));
+    }
+
+    private void writeFile(String content) throws IOException
+    {
+        Writer writer = new FileWriter(file);
+        try
+        {
+            writer.write(content);
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+}
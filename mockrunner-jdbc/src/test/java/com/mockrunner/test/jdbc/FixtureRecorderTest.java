@@ -0,0 +1,203 @@
+package com.mockrunner.test.jdbc;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.base.NestedApplicationException;
+import com.mockrunner.jdbc.FixtureLoader;
+import com.mockrunner.jdbc.FixtureRecorder;
+import com.mockrunner.jdbc.RecordingDriver;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockDriver;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class FixtureRecorderTest extends TestCase
+{
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        file = File.createTempFile("fixture", ".bin");
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        super.tearDown();
+        file.delete();
+    }
+
+    private MockConnection createDatabase()
+    {
+        MockConnection database = new MockConnection();
+        MockResultSet persons = new MockResultSet("persons");
+        persons.addColumn("id", new Object[] {Integer.valueOf(1), Integer.valueOf(2)});
+        persons.addColumn("name", new Object[] {"Alice", null});
+        persons.addColumn("salary", new Object[] {new BigDecimal("10.50"), new BigDecimal("-1")});
+        persons.addColumn("created", new Object[] {new Timestamp(1000), new Timestamp(2000)});
+        persons.addColumn("photo", new Object[] {new byte[] {1, 2, 3}, null});
+        database.getStatementResultSetHandler().prepareResultSet("select * from person", persons);
+        database.getStatementResultSetHandler().prepareUpdateCount("delete from person", 2);
+        MockResultSet person = new MockResultSet("person");
+        person.addColumn("name", new Object[] {"Bob"});
+        database.getPreparedStatementResultSetHandler().setExactMatchParameter(true);
+        database.getPreparedStatementResultSetHandler().prepareResultSet("select name from person where id=?", person, new Object[] {Integer.valueOf(7)});
+        database.getPreparedStatementResultSetHandler().prepareUpdateCount("update person set name=?", 5);
+        database.getPreparedStatementResultSetHandler().prepareThrowsSQLException("insert into person values(?)", new SQLException("duplicate", "23000", 1062));
+        return database;
+    }
+
+    private void execute(Connection connection) throws SQLException
+    {
+        Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery("select * from person");
+        assertTrue(resultSet.next());
+        assertEquals("Alice", resultSet.getString("name"));
+        assertTrue(Arrays.equals(new byte[] {1, 2, 3}, resultSet.getBytes("photo")));
+        assertTrue(resultSet.next());
+        assertNull(resultSet.getString("name"));
+        assertFalse(resultSet.next());
+        assertEquals(2, statement.executeUpdate("delete from person"));
+        PreparedStatement preparedStatement = connection.prepareStatement("select name from person where id=?");
+        preparedStatement.setInt(1, 7);
+        resultSet = preparedStatement.executeQuery();
+        assertTrue(resultSet.next());
+        assertEquals("Bob", resultSet.getString(1));
+        preparedStatement = connection.prepareStatement("update person set name=?");
+        preparedStatement.setString(1, "a");
+        preparedStatement.addBatch();
+        preparedStatement.setString(1, "b");
+        preparedStatement.addBatch();
+        int[] updateCounts = preparedStatement.executeBatch();
+        assertEquals(2, updateCounts.length);
+        assertEquals(5, updateCounts[1]);
+        preparedStatement = connection.prepareStatement("insert into person values(?)");
+        preparedStatement.setInt(1, 1);
+        try
+        {
+            preparedStatement.executeUpdate();
+            fail();
+        }
+        catch(SQLException exc)
+        {
+            assertEquals("duplicate", exc.getMessage());
+            assertEquals("23000", exc.getSQLState());
+            assertEquals(1062, exc.getErrorCode());
+        }
+    }
+
+    public void testRecordAndReplay() throws Exception
+    {
+        FixtureRecorder recorder = new FixtureRecorder();
+        execute(recorder.wrap(createDatabase()));
+        execute(recorder.wrap(createDatabase()));
+        assertEquals(12, recorder.getNumberRecordings());
+        recorder.write(file);
+        MockConnection replay = new MockConnection();
+        replay.getStatementResultSetHandler().setExactMatch(true);
+        replay.getPreparedStatementResultSetHandler().setExactMatch(true);
+        replay.getPreparedStatementResultSetHandler().setExactMatchParameter(true);
+        assertEquals(6, new FixtureLoader(file).load(replay));
+        execute(replay);
+        Statement statement = replay.createStatement();
+        ResultSet resultSet = statement.executeQuery("select * from person");
+        assertTrue(resultSet.next());
+        assertEquals(new BigDecimal("10.50"), resultSet.getBigDecimal("salary"));
+        assertEquals(new Timestamp(1000), resultSet.getTimestamp("created"));
+        assertEquals(1, resultSet.getInt("id"));
+        PreparedStatement preparedStatement = replay.prepareStatement("select name from person where id=?");
+        preparedStatement.setInt(1, 8);
+        assertFalse(preparedStatement.executeQuery().next());
+    }
+
+    public void testRecordingDriver() throws Exception
+    {
+        MockDriver mockDriver = new MockDriver();
+        mockDriver.setupConnection(createDatabase());
+        FixtureRecorder recorder = new FixtureRecorder();
+        RecordingDriver driver = new RecordingDriver(mockDriver, recorder);
+        execute(driver.connect("jdbc:test", null));
+        assertSame(recorder, driver.getRecorder());
+        assertEquals(6, recorder.getNumberRecordings());
+    }
+
+    public void testInvalidFile() throws Exception
+    {
+        try
+        {
+            new FixtureLoader(file).load(new MockConnection());
+            fail();
+        }
+        catch(RuntimeException exc)
+        {
+            //expected exception
+        }
+    }
+
+    public void testCorruptedFile() throws Exception
+    {
+        MockConnection database = new MockConnection();
+        database.getStatementResultSetHandler().prepareUpdateCount("delete from person", 2);
+        FixtureRecorder recorder = new FixtureRecorder();
+        recorder.wrap(database).createStatement().executeUpdate("delete from person");
+        recorder.write(file);
+        //the number of strings
+        doTestCorruptedFile(8, Integer.MAX_VALUE);
+        doTestCorruptedFile(8, -2);
+        //the length of the string
+        doTestCorruptedFile(12, 1000);
+        //the index of the SQL string of the recording
+        doTestCorruptedFile(39, 1);
+        doTestCorruptedFile(39, -2);
+    }
+
+    private void doTestCorruptedFile(long position, int value) throws Exception
+    {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        int oldValue;
+        try
+        {
+            randomAccessFile.seek(position);
+            oldValue = randomAccessFile.readInt();
+            randomAccessFile.seek(position);
+            randomAccessFile.writeInt(value);
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+        try
+        {
+            new FixtureLoader(file).load(new MockConnection());
+            fail();
+        }
+        catch(NestedApplicationException exc)
+        {
+            assertTrue(exc.getRootCause() instanceof IOException);
+        }
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        try
+        {
+            randomAccessFile.seek(position);
+            randomAccessFile.writeInt(oldValue);
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+        assertEquals(1, new FixtureLoader(file).load(new MockConnection()));
+    }
+}
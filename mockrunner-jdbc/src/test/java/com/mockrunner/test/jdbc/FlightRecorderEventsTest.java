@@ -0,0 +1,130 @@
+package com.mockrunner.test.jdbc;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.jdbc.FlightRecorderEvents;
+import com.mockrunner.jdbc.GeneratedResultSet;
+import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class FlightRecorderEventsTest extends TestCase
+{
+    private MockConnection connection;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        connection = new MockConnection();
+        MockResultSet resultSet = new MockResultSet("persons");
+        resultSet.addColumn("name", new Object[] {"Alice", "Bob"});
+        connection.getStatementResultSetHandler().prepareResultSet("select name from person", resultSet);
+        GeneratedResultSet generated = new GeneratedResultSet("generated", new String[] {"id"}, 3, new GeneratedResultSet.RowGenerator()
+        {
+            public boolean generateRow(long rowNumber, Object[] values) throws SQLException
+            {
+                values[0] = Long.valueOf(rowNumber);
+                return true;
+            }
+        });
+        connection.getStatementResultSetHandler().prepareResultSet("select id from generated", generated);
+        PreparedStatementResultSetHandler handler = connection.getPreparedStatementResultSetHandler();
+        handler.setExactMatchParameter(true);
+        handler.prepareUpdateCount("update person", 3, new Object[] {"Alice"});
+    }
+
+    private void execute() throws Exception
+    {
+        Statement statement = connection.createStatement();
+        statement.executeQuery("SELECT name FROM person WHERE id = 1");
+        statement.executeQuery("select id from generated");
+        PreparedStatement preparedStatement = connection.prepareStatement("update person set name=?");
+        preparedStatement.setString(1, "Alice");
+        assertEquals(3, preparedStatement.executeUpdate());
+        connection.commit();
+    }
+
+    public void testNotRecording() throws Exception
+    {
+        assertFalse(FlightRecorderEvents.isRecording());
+        assertNull(FlightRecorderEvents.beginExecution());
+        execute();
+    }
+
+    public void testMatchMode() throws Exception
+    {
+        assertEquals("contains", connection.getStatementResultSetHandler().getMatchMode());
+        assertEquals("contains, exact parameters", connection.getPreparedStatementResultSetHandler().getMatchMode());
+        connection.getStatementResultSetHandler().setExactMatch(true);
+        connection.getStatementResultSetHandler().setCaseSensitive(true);
+        assertEquals("exact, case sensitive", connection.getStatementResultSetHandler().getMatchMode());
+        connection.getCallableStatementResultSetHandler().setUseRegularExpressions(true);
+        assertEquals("regex", connection.getCallableStatementResultSetHandler().getMatchMode());
+    }
+
+    public void testRecording() throws Exception
+    {
+        Class<?> recordingClass;
+        try
+        {
+            recordingClass = Class.forName("jdk.jfr.Recording");
+        }
+        catch(ClassNotFoundException exc)
+        {
+            return;
+        }
+        Object recording = recordingClass.newInstance();
+        recordingClass.getMethod("enable", String.class).invoke(recording, "com.mockrunner.jdbc.Execution");
+        recordingClass.getMethod("enable", String.class).invoke(recording, "com.mockrunner.jdbc.Transaction");
+        recordingClass.getMethod("start").invoke(recording);
+        File file = File.createTempFile("mockrunner", ".jfr");
+        try
+        {
+            assertTrue(FlightRecorderEvents.isRecording());
+            execute();
+            recordingClass.getMethod("stop").invoke(recording);
+            assertFalse(FlightRecorderEvents.isRecording());
+            Class<?> pathClass = Class.forName("java.nio.file.Path");
+            Object path = File.class.getMethod("toPath").invoke(file);
+            recordingClass.getMethod("dump", pathClass).invoke(recording, path);
+            List<?> events = (List<?>)Class.forName("jdk.jfr.consumer.RecordingFile").getMethod("readAllEvents", pathClass).invoke(null, path);
+            List<String> descriptions = new ArrayList<String>();
+            for(Object event : events)
+            {
+                descriptions.add(describe(event));
+            }
+            assertEquals(4, descriptions.size());
+            assertTrue(descriptions.contains("com.mockrunner.jdbc.Execution Statement select name from person where id = ? contains 2 -1"));
+            assertTrue(descriptions.contains("com.mockrunner.jdbc.Execution Statement select id from generated contains -1 -1"));
+            assertTrue(descriptions.contains("com.mockrunner.jdbc.Execution PreparedStatement update person set name = ? contains, exact parameters 0 3"));
+            assertTrue(descriptions.contains("com.mockrunner.jdbc.Transaction commit"));
+        }
+        finally
+        {
+            recordingClass.getMethod("close").invoke(recording);
+            file.delete();
+        }
+    }
+
+    private String describe(Object event) throws Exception
+    {
+        Method getEventType = event.getClass().getMethod("getEventType");
+        Object eventType = getEventType.invoke(event);
+        String name = (String)eventType.getClass().getMethod("getName").invoke(eventType);
+        Method getValue = event.getClass().getMethod("getValue", String.class);
+        if("com.mockrunner.jdbc.Transaction".equals(name))
+        {
+            return name + " " + getValue.invoke(event, "operation");
+        }
+        return name + " " + getValue.invoke(event, "statementType") + " " + getValue.invoke(event, "sql") + " " + getValue.invoke(event, "matchMode") + " " + getValue.invoke(event, "rowsReturned") + " " + getValue.invoke(event, "updateCount");
+    }
+}
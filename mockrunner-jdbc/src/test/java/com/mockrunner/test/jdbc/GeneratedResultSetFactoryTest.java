@@ -0,0 +1,129 @@
+package com.mockrunner.test.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.jdbc.CallableStatementResultSetHandler;
+import com.mockrunner.jdbc.GeneratedResultSet;
+import com.mockrunner.jdbc.GeneratedResultSetFactory;
+import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
+import com.mockrunner.jdbc.StatementResultSetHandler;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class GeneratedResultSetFactoryTest extends TestCase
+{
+    private final List<Long> generatedRows = new ArrayList<Long>();
+
+    private GeneratedResultSet.RowGenerator createGenerator()
+    {
+        return new GeneratedResultSet.RowGenerator()
+        {
+            public boolean generateRow(long rowNumber, Object[] values) throws SQLException
+            {
+                generatedRows.add(rowNumber);
+                values[0] = rowNumber;
+                values[1] = (0 == rowNumber % 2) ? null : "name" + rowNumber;
+                return true;
+            }
+        };
+    }
+
+    public void testCreate() throws Exception
+    {
+        GeneratedResultSetFactory factory = new GeneratedResultSetFactory(new String[] {"id", "name"}, 3, createGenerator());
+        MockResultSet resultSet = factory.create("id");
+        assertEquals("id", resultSet.getId());
+        assertEquals(ResultSet.TYPE_FORWARD_ONLY, resultSet.getType());
+        assertEquals(ResultSet.CONCUR_READ_ONLY, resultSet.getConcurrency());
+        assertEquals(2, resultSet.getColumnCount());
+        assertEquals(0, resultSet.getRow());
+        assertTrue(resultSet.isBeforeFirst());
+        assertTrue(resultSet.next());
+        assertTrue(resultSet.isFirst());
+        assertEquals(1, resultSet.getInt("ID"));
+        assertEquals("name1", resultSet.getString(2));
+        assertFalse(resultSet.wasNull());
+        assertTrue(resultSet.next());
+        assertEquals(2, resultSet.getRow());
+        assertEquals(2, resultSet.getLong(1));
+        assertEquals(2.0, resultSet.getDouble("id"), 0.0);
+        assertNull(resultSet.getString("name"));
+        assertTrue(resultSet.wasNull());
+        assertTrue(resultSet.next());
+        assertTrue(resultSet.isLast());
+        assertFalse(resultSet.next());
+        assertTrue(resultSet.isAfterLast());
+        assertEquals(0, resultSet.getRow());
+        try
+        {
+            resultSet.getObject(1);
+            fail();
+        }
+        catch(SQLException exc)
+        {
+            //expected exception
+        }
+    }
+
+    public void testGeneratorEnd() throws Exception
+    {
+        GeneratedResultSetFactory factory = new GeneratedResultSetFactory(new String[] {"id"}, new GeneratedResultSet.RowGenerator()
+        {
+            public boolean generateRow(long rowNumber, Object[] values)
+            {
+                values[0] = rowNumber;
+                return rowNumber <= 2;
+            }
+        });
+        MockResultSet resultSet = factory.create("id");
+        resultSet.setFetchSize(2);
+        assertTrue(resultSet.next());
+        assertFalse(resultSet.isLast());
+        assertTrue(resultSet.next());
+        assertTrue(resultSet.isLast());
+        assertEquals(2, resultSet.getInt(1));
+        assertFalse(resultSet.next());
+        assertFalse(new GeneratedResultSet("", new String[] {"id"}, 0, createGenerator()).isBeforeFirst());
+    }
+
+    public void testFetchSize() throws Exception
+    {
+        GeneratedResultSetFactory factory = new GeneratedResultSetFactory(new String[] {"id", "name"}, 1000000, createGenerator());
+        PreparedStatementResultSetHandler handler = new PreparedStatementResultSetHandler();
+        handler.prepareResultSet("select id, name from person", handler.createResultSet("person", factory));
+        assertTrue(generatedRows.isEmpty());
+        MockConnection connection = new MockConnection(new StatementResultSetHandler(), handler, new CallableStatementResultSetHandler());
+        PreparedStatement statement = connection.prepareStatement("select id, name from person");
+        statement.setFetchSize(10);
+        ResultSet resultSet = statement.executeQuery();
+        assertEquals(10, resultSet.getFetchSize());
+        assertTrue(resultSet.next());
+        assertEquals(10, generatedRows.size());
+        for(int ii = 2; ii <= 11; ii++)
+        {
+            assertTrue(resultSet.next());
+        }
+        assertEquals(11, resultSet.getInt(1));
+        assertEquals(20, generatedRows.size());
+        long sum = 11;
+        int count = 11;
+        while(resultSet.next())
+        {
+            sum += resultSet.getLong(1);
+            count++;
+        }
+        assertEquals(1000000, count);
+        assertEquals(1000000L * 1000001L / 2 - 55, sum);
+        generatedRows.clear();
+        resultSet = statement.executeQuery();
+        assertTrue(resultSet.next());
+        assertEquals(1, resultSet.getInt(1));
+        assertEquals(10, generatedRows.size());
+    }
+}
@@ -0,0 +1,208 @@
+package com.mockrunner.test.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mockrunner.jdbc.LatencyModel;
+import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
+import com.mockrunner.jdbc.RecordingPolicy;
+import com.mockrunner.jdbc.StatementResultSetHandler;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockPooledDataSource;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class LatencyModelTest
+{
+    private MockConnection connection;
+    private StatementResultSetHandler statementHandler;
+    private PreparedStatementResultSetHandler preparedStatementHandler;
+
+    @Before
+    public void setUp()
+    {
+        connection = new MockConnection();
+        statementHandler = connection.getStatementResultSetHandler();
+        preparedStatementHandler = connection.getPreparedStatementResultSetHandler();
+    }
+
+    private MockResultSet createResultSet(int numberRows)
+    {
+        MockResultSet resultSet = new MockResultSet("person");
+        Object[] names = new Object[numberRows];
+        for(int ii = 0; ii < numberRows; ii++)
+        {
+            names[ii] = "name" + ii;
+        }
+        resultSet.addColumn("name", names);
+        return resultSet;
+    }
+
+    @Test
+    public void testNoLatency() throws Exception
+    {
+        assertEquals(LatencyModel.NONE, statementHandler.getLatencyModel());
+        statementHandler.setLatencyModel(null);
+        assertEquals(LatencyModel.NONE, statementHandler.getLatencyModel());
+        assertEquals(0, statementHandler.getMaxConcurrentExecutions());
+        statementHandler.prepareGlobalResultSet(createResultSet(3));
+        ResultSet resultSet = connection.createStatement().executeQuery("select name from person");
+        assertTrue(resultSet.next());
+    }
+
+    @Test
+    public void testExecutionLatency() throws Exception
+    {
+        statementHandler.setLatencyModel(new LatencyModel.Fixed(50, 0, 0, TimeUnit.MILLISECONDS));
+        statementHandler.setRecordingPolicy(RecordingPolicy.AGGREGATE);
+        long start = System.nanoTime();
+        connection.createStatement().executeUpdate("update person set name = 'a'");
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        long executionTime = statementHandler.getExecutedStatementStatistics().get("update person set name = 'a'").getTotalExecutionTime();
+        assertTrue(executionTime >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    public void testFetchLatency() throws Exception
+    {
+        final List<Integer> fetches = new ArrayList<Integer>();
+        preparedStatementHandler.setLatencyModel(new LatencyModel.Fixed(0, 0, 0, TimeUnit.NANOSECONDS)
+        {
+            @Override
+            public long getFetchLatency(String sql, int numberRows)
+            {
+                assertEquals("select name from person", sql);
+                fetches.add(numberRows);
+                return 0;
+            }
+        });
+        preparedStatementHandler.prepareResultSet("select name from person", createResultSet(10));
+        PreparedStatement statement = connection.prepareStatement("select name from person");
+        statement.setFetchSize(4);
+        ResultSet resultSet = statement.executeQuery();
+        assertEquals(4, resultSet.getFetchSize());
+        int rows = 0;
+        while(resultSet.next()) rows++;
+        assertEquals(10, rows);
+        assertEquals(3, fetches.size());
+        assertEquals(4, fetches.get(0).intValue());
+        assertEquals(4, fetches.get(1).intValue());
+        assertEquals(2, fetches.get(2).intValue());
+        fetches.clear();
+        statement.setFetchSize(0);
+        resultSet = statement.executeQuery();
+        while(resultSet.next()) rows++;
+        assertEquals(1, fetches.size());
+        assertEquals(10, fetches.get(0).intValue());
+    }
+
+    @Test
+    public void testQueryTimeout() throws Exception
+    {
+        statementHandler.setLatencyModel(new LatencyModel.Fixed(5, 0, 0, TimeUnit.SECONDS));
+        Statement statement = connection.createStatement();
+        statement.setQueryTimeout(1);
+        long start = System.nanoTime();
+        try
+        {
+            statement.executeUpdate("update person set name = 'a'");
+            fail();
+        }
+        catch(SQLTimeoutException exc)
+        {
+            //should throw exception
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(900));
+        assertTrue(elapsed < TimeUnit.SECONDS.toNanos(4));
+        assertTrue(statementHandler.getExecutedStatements().isEmpty());
+    }
+
+    @Test
+    public void testMaxConcurrentExecutions() throws Exception
+    {
+        final MockPooledDataSource dataSource = new MockPooledDataSource(4);
+        final StatementResultSetHandler handler = dataSource.getStatementResultSetHandler();
+        handler.setLatencyModel(new LatencyModel.Fixed(50, 0, 0, TimeUnit.MILLISECONDS));
+        handler.setMaxConcurrentExecutions(1);
+        assertEquals(1, handler.getMaxConcurrentExecutions());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        long start = System.nanoTime();
+        try
+        {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for(int ii = 0; ii < 4; ii++)
+            {
+                futures.add(executor.submit(new Callable<Void>()
+                {
+                    public Void call() throws Exception
+                    {
+                        dataSource.getConnection().createStatement().executeUpdate("update person set name = 'a'");
+                        return null;
+                    }
+                }));
+            }
+            for(Future<Void> future : futures)
+            {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+        assertEquals(4, handler.getExecutedStatements().size());
+        assertEquals(0, handler.getNumberWaitingExecutions());
+        handler.setMaxConcurrentExecutions(0);
+        assertEquals(0, handler.getMaxConcurrentExecutions());
+    }
+
+    @Test
+    public void testPerPattern() throws Exception
+    {
+        LatencyModel slow = new LatencyModel.Fixed(100, 10, 1, TimeUnit.MILLISECONDS);
+        LatencyModel.PerPattern model = new LatencyModel.PerPattern(LatencyModel.NONE);
+        model.add("from orders", slow);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), model.getExecutionLatency("SELECT * FROM orders"));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(15), model.getFetchLatency("SELECT * FROM orders", 5));
+        assertEquals(0, model.getExecutionLatency("select * from person"));
+        assertEquals(0, model.getFetchLatency("select * from person", 5));
+    }
+
+    @Test
+    public void testLogNormal() throws Exception
+    {
+        LatencyModel model1 = new LatencyModel.LogNormal(10, 0.5, TimeUnit.MILLISECONDS, 42, LatencyModel.NONE);
+        LatencyModel model2 = new LatencyModel.LogNormal(10, 0.5, TimeUnit.MILLISECONDS, 42, LatencyModel.NONE);
+        int belowMedian = 0;
+        for(int ii = 0; ii < 1000; ii++)
+        {
+            long latency = model1.getExecutionLatency("select");
+            assertEquals(latency, model2.getExecutionLatency("select"));
+            assertTrue(latency > 0);
+            if(latency < TimeUnit.MILLISECONDS.toNanos(10)) belowMedian++;
+        }
+        assertTrue(belowMedian > 400 && belowMedian < 600);
+        assertEquals(0, model1.getFetchLatency("select", 10));
+        LatencyModel constant = new LatencyModel.LogNormal(10, 0, TimeUnit.MILLISECONDS, 1, LatencyModel.NONE);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(10), constant.getExecutionLatency("select"));
+        assertFalse(model1.getExecutionLatency("select") < 0);
+    }
+}
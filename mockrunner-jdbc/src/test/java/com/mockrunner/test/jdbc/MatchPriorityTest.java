@@ -0,0 +1,77 @@
+package com.mockrunner.test.jdbc;
+
+import com.mockrunner.jdbc.MatchPriority;
+import com.mockrunner.jdbc.PatternMatcherIndex;
+import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
+import com.mockrunner.mock.jdbc.MockParameterMap;
+
+import junit.framework.TestCase;
+
+public class MatchPriorityTest extends TestCase
+{
+    private PreparedStatementResultSetHandler handler;
+
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        handler = new PreparedStatementResultSetHandler();
+        handler.prepareUpdateCount("update", 1);
+        handler.prepareUpdateCount("update mytable", 2);
+        handler.prepareUpdateCount("update mytable set x = ?", 3);
+        handler.prepareUpdateCount("mytable", 4);
+    }
+
+    public void testInsertionOrder()
+    {
+        for(int ii = 0; ii < 10; ii++)
+        {
+            assertEquals(1, handler.getUpdateCount("update mytable set x = ? where y = ?").intValue());
+        }
+        assertEquals(4, handler.getUpdateCount("delete from mytable").intValue());
+        handler.removeAllUpdateCount("update");
+        assertEquals(2, handler.getUpdateCount("update mytable set x = ? where y = ?").intValue());
+        handler.prepareUpdateCount("update", 5);
+        assertEquals(2, handler.getUpdateCount("update mytable set x = ? where y = ?").intValue());
+    }
+
+    public void testInsertionOrderSurvivesRecompile()
+    {
+        handler.setCaseSensitive(true);
+        assertEquals(1, handler.getUpdateCount("update mytable set x = ? where y = ?").intValue());
+        handler.setPatternMatcherIndexFactory(PatternMatcherIndex.Scan.FACTORY);
+        assertEquals(1, handler.getUpdateCount("update mytable set x = ? where y = ?").intValue());
+    }
+
+    public void testMostSpecificFirst()
+    {
+        handler.setMatchPriority(MatchPriority.MOST_SPECIFIC_FIRST);
+        assertEquals(3, handler.getUpdateCount("update mytable set x = ? where y = ?").intValue());
+        assertEquals(2, handler.getUpdateCount("update mytable set y = ?").intValue());
+        assertEquals(1, handler.getUpdateCount("update othertable set y = ?").intValue());
+    }
+
+    public void testRanked()
+    {
+        MatchPriority.Ranked priority = new MatchPriority.Ranked(MatchPriority.MOST_SPECIFIC_FIRST);
+        priority.setRank("mytable", 10);
+        priority.setRank("update", -1);
+        handler.setMatchPriority(priority);
+        assertEquals(4, handler.getUpdateCount("update mytable set x = ? where y = ?").intValue());
+        assertEquals(1, handler.getUpdateCount("update othertable set y = ?").intValue());
+        assertEquals(10, priority.getRank("mytable"));
+        assertEquals(0, priority.getRank("update mytable"));
+    }
+
+    public void testFirstMatchingParameters()
+    {
+        handler.prepareUpdateCount("insert", 10, new Object[] {"a"});
+        handler.prepareUpdateCount("insert into", 20, new Object[] {"b"});
+        MockParameterMap parameters = new MockParameterMap();
+        parameters.put(1, "b");
+        assertEquals(20, handler.getUpdateCount("insert into othertable", parameters).intValue());
+        parameters.put(1, "a");
+        assertEquals(10, handler.getUpdateCount("insert into othertable", parameters).intValue());
+        parameters.put(1, "c");
+        assertNull(handler.getUpdateCount("insert into othertable", parameters));
+    }
+}
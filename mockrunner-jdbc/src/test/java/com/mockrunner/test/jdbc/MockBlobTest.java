@@ -109,6 +109,50 @@ public class MockBlobTest extends TestCase
         assertTrue(Arrays.equals(data, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16}));
     }
     
+    public void testTruncateAndGrow() throws Exception
+    {
+        blob.truncate(3);
+        assertEquals(3, blob.length());
+        assertEquals(-1, blob.position(new byte[] {4}, 1));
+        blob.setBytes(6, new byte[] {6});
+        assertTrue(Arrays.equals(blob.getBytes(1, 10), new byte[] {1, 2, 3, 0, 0, 6}));
+        assertEquals(0, blob.getBytes(8, 3).length);
+        blob.truncate(20);
+        assertEquals(6, blob.length());
+        try
+        {
+            blob.truncate(-1);
+            fail();
+        }
+        catch(SQLException exc)
+        {
+            //expected exception
+        }
+        assertEquals(6, blob.length());
+    }
+    
+    public void testLargeBlob() throws Exception
+    {
+        blob = new MockBlob(new byte[0]);
+        OutputStream stream = blob.setBinaryStream(1);
+        byte[] chunk = new byte[4096];
+        for(int ii = 0; ii < chunk.length; ii++)
+        {
+            chunk[ii] = (byte)ii;
+        }
+        for(int ii = 0; ii < 256; ii++)
+        {
+            stream.write(chunk);
+        }
+        assertEquals(256 * 4096, blob.length());
+        InputStream input = blob.getBinaryStream(4096 * 100 + 1, 4096);
+        assertTrue(Arrays.equals(chunk, StreamUtil.getStreamAsByteArray(input)));
+        assertEquals(257, blob.position(new byte[] {0, 1, 2}, 2));
+        MockBlob other = new MockBlob(blob.getBytes(1, (int)blob.length()));
+        assertEquals(blob, other);
+        assertEquals(blob.hashCode(), other.hashCode());
+    }
+    
     public void testFree() throws Exception
     {
         assertFalse(blob.wasFreeCalled());
@@ -4,11 +4,14 @@ import java.io.ByteArrayInputStream;
 import java.io.OutputStream;
 import java.io.StringReader;
 import java.io.Writer;
+import java.sql.NClob;
 import java.sql.SQLException;
 
 import junit.framework.TestCase;
 
 import com.mockrunner.mock.jdbc.MockClob;
+import com.mockrunner.mock.jdbc.MockNClob;
+import com.mockrunner.mock.jdbc.MockResultSet;
 import com.mockrunner.util.common.StreamUtil;
 
 public class MockClobTest extends TestCase
@@ -89,6 +92,70 @@ public class MockClobTest extends TestCase
         assertEquals("This is a Test ClobThis is a Test Clob", clob.getSubString(1, 38));
     }
     
+    public void testTruncate() throws Exception
+    {
+        clob.truncate(4);
+        assertEquals(4, clob.length());
+        assertEquals("This", clob.getSubString(1, 10));
+        try
+        {
+            clob.truncate(-1);
+            fail();
+        }
+        catch(SQLException exc)
+        {
+            //expected exception
+        }
+        assertEquals(4, clob.length());
+        clob.truncate(0);
+        assertEquals(0, clob.length());
+        assertEquals("", clob.getSubString(1, 10));
+    }
+    
+    public void testLargeClob() throws Exception
+    {
+        StringBuffer buffer = new StringBuffer();
+        for(int ii = 0; ii < 20000; ii++)
+        {
+            buffer.append((char)('a' + (ii % 26)));
+        }
+        String data = buffer.toString();
+        clob = new MockClob(data);
+        assertEquals(20000, clob.length());
+        assertEquals(data.substring(8000, 8400), clob.getSubString(8001, 400));
+        assertTrue(StreamUtil.compareReaders(clob.getCharacterStream(), new StringReader(data)));
+        assertTrue(StreamUtil.compareReaders(clob.getCharacterStream(16380, 10), new StringReader(data.substring(16379, 16389))));
+        assertEquals(data.indexOf("xyzab", 8190) + 1, clob.position("xyzab", 8191));
+        MockClob cloneClob = (MockClob)clob.clone();
+        Writer writer = clob.setCharacterStream(8190);
+        writer.write("ABCDEFGHIJ");
+        assertEquals("ABCDEFGHIJ", clob.getSubString(8190, 10));
+        assertEquals(data.substring(8189, 8199), cloneClob.getSubString(8190, 10));
+        clob.truncate(8192);
+        assertEquals(8192, clob.length());
+        clob.setString(8193, "xyz");
+        assertEquals("Cxyz", clob.getSubString(8192, 10));
+        clob.truncate(8198);
+        assertEquals("Cxyz\u0000\u0000\u0000", clob.getSubString(8192, 10));
+    }
+    
+    public void testNClob() throws Exception
+    {
+        MockNClob nClob = new MockNClob(clob);
+        assertEquals("This is a Test Clob", nClob.getSubString(1, 19));
+        nClob.setString(1, "That");
+        clob.setString(6, "IS");
+        assertEquals("That is a Test Clob", nClob.getSubString(1, 19));
+        assertEquals("This IS a Test Clob", clob.getSubString(1, 19));
+        MockResultSet resultSet = new MockResultSet("clobs");
+        resultSet.addColumn("text", new Object[] {clob});
+        resultSet.next();
+        NClob resultNClob = resultSet.getNClob(1);
+        assertEquals("This IS a Test Clob", resultNClob.getSubString(1, 19));
+        resultNClob.setString(1, "That");
+        assertEquals("This IS a Test Clob", clob.getSubString(1, 19));
+    }
+    
     public void testFree() throws Exception
     {
         assertFalse(clob.wasFreeCalled());
@@ -1694,7 +1694,36 @@ public class MockDatabaseMetaDataTest extends TestCase
         assertTrue(resultSets.contains(testResult));
         assertTrue(resultSets.contains(testResult2));
     }
-    
+
+    public void testTablesManyRegistered() throws SQLException
+    {
+        for(int ii = 0; ii < 5000; ii++)
+        {
+            metaData.setTables(null, "schema" + (ii % 10), "table" + ii, null, new MockResultSet("id" + ii));
+            metaData.setColumns(null, "schema" + (ii % 10), "table" + ii, "id", new MockResultSet("columns" + ii));
+        }
+        ResultSet testResult = new MockResultSet("id");
+        metaData.setTables(null, "my.schema", "my_table$1", null, testResult);
+        assertEquals("id1234", ((MockResultSet)metaData.getTables(null, "schema4", "table1234", null)).getId());
+        assertEquals("id1234", ((MockResultSet)metaData.getTables(null, "%", "TABLE1234", null)).getId());
+        assertEquals("columns42", ((MockResultSet)metaData.getColumns(null, "schema2", "table42", "%")).getId());
+        assertNull(metaData.getTables(null, "schema5", "table1234", null));
+        assertEquals(20, ((PolyResultSet)metaData.getTables(null, "schema4", "table1_4%", null)).getUnderlyingResultSetList().size());
+        assertEquals(500, ((PolyResultSet)metaData.getTables(null, "schema3", "%", null)).getUnderlyingResultSetList().size());
+        assertEquals(5001, ((PolyResultSet)metaData.getTables(null, "%", "%", null)).getUnderlyingResultSetList().size());
+        assertSame(testResult, metaData.getTables(null, "my.schema", "my\\_table$1", null));
+        assertSame(testResult, metaData.getTables(null, "my%", "my_table$_", null));
+        assertNull(metaData.getTables(null, "my_schem", "%", null));
+        assertNull(metaData.getTables(null, "%", "my\\_table.1", null));
+        metaData.setCaseSensitive(true);
+        assertNull(metaData.getTables(null, "%", "TABLE1234", null));
+        assertNotNull(metaData.getTables(null, "%", "table1234", null));
+        metaData.setTables(testResult);
+        assertEquals(2, ((PolyResultSet)metaData.getTables(null, "%", "table1234", null)).getUnderlyingResultSetList().size());
+        metaData.clearTables();
+        assertNull(metaData.getTables(null, "%", "%", null));
+    }
+
     public void testTablesCaseSensitive() throws SQLException
     {
         ResultSet testResult = new MockResultSet("id");
@@ -0,0 +1,228 @@
+package com.mockrunner.test.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockPooledDataSource;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class MockPooledDataSourceTest
+{
+    @Test
+    public void testBorrowAndReturn() throws Exception
+    {
+        MockPooledDataSource dataSource = new MockPooledDataSource(2);
+        Connection connection1 = dataSource.getConnection();
+        Connection connection2 = dataSource.getConnection();
+        assertNotSame(connection1, connection2);
+        assertFalse(connection1.isClosed());
+        assertEquals(2, dataSource.getNumberActiveConnections());
+        assertEquals(0, dataSource.getNumberIdleConnections());
+        connection1.commit();
+        connection1.close();
+        connection1.close();
+        assertTrue(connection1.isClosed());
+        assertEquals(1, dataSource.getNumberActiveConnections());
+        assertEquals(1, dataSource.getNumberIdleConnections());
+        Connection connection3 = dataSource.getConnection();
+        assertSame(connection1, connection3);
+        assertFalse(connection3.isClosed());
+        assertEquals(1, ((MockConnection)connection3).getNumberCommits());
+        assertEquals(2, dataSource.getMockConnections().size());
+        assertEquals(3, dataSource.getNumberBorrows());
+        assertEquals(0, dataSource.getNumberWaits());
+        assertSame(connection1, dataSource.getMockConnection());
+        assertSame(dataSource.getPreparedStatementResultSetHandler(), ((MockConnection)connection2).getPreparedStatementResultSetHandler());
+        assertTrue(dataSource.getPreparedStatementResultSetHandler().isThreadSafe());
+    }
+
+    @Test
+    public void testGetMockConnection() throws Exception
+    {
+        MockPooledDataSource dataSource = new MockPooledDataSource(2);
+        MockConnection mockConnection = dataSource.getMockConnection();
+        assertNotNull(mockConnection);
+        assertSame(mockConnection, dataSource.getMockConnection());
+        assertEquals(1, dataSource.getNumberIdleConnections());
+        assertSame(dataSource.getPreparedStatementResultSetHandler(), mockConnection.getPreparedStatementResultSetHandler());
+        assertSame(mockConnection, dataSource.getConnection());
+        assertNotSame(mockConnection, dataSource.getConnection());
+        assertEquals(2, dataSource.getMockConnections().size());
+    }
+
+    @Test
+    public void testSetupConnection() throws Exception
+    {
+        MockPooledDataSource dataSource = new MockPooledDataSource(1);
+        try
+        {
+            dataSource.setupConnection(new MockConnection());
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+        try
+        {
+            dataSource.setupConnection(new MockPooledDataSource(1).new PooledConnection());
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+        MockPooledDataSource.PooledConnection connection = dataSource.new PooledConnection();
+        dataSource.setupConnection(connection);
+        assertSame(connection, dataSource.getMockConnection());
+        assertEquals(1, dataSource.getNumberIdleConnections());
+        try
+        {
+            dataSource.setupConnection(dataSource.new PooledConnection());
+            fail();
+        }
+        catch(IllegalStateException exc)
+        {
+            //should throw exception
+        }
+        assertSame(connection, dataSource.getConnection());
+        assertFalse(connection.isClosed());
+        connection.close();
+        assertEquals(1, dataSource.getNumberIdleConnections());
+    }
+
+    @Test
+    public void testStateIsKeptBetweenBorrows() throws Exception
+    {
+        MockPooledDataSource dataSource = new MockPooledDataSource(1);
+        Connection connection = dataSource.getConnection();
+        connection.setAutoCommit(false);
+        connection.prepareStatement("select name from person");
+        connection.setSavepoint("first");
+        connection.rollback();
+        connection.close();
+        MockConnection mockConnection = (MockConnection)dataSource.getConnection();
+        assertSame(connection, mockConnection);
+        assertFalse(mockConnection.getAutoCommit());
+        assertEquals(1, mockConnection.getNumberRollbacks());
+        assertEquals(1, mockConnection.getSavepointMap().size());
+        assertEquals(1, dataSource.getPreparedStatementResultSetHandler().getPreparedStatements().size());
+        mockConnection.resetNumberRollbacks();
+        mockConnection.resetSavepointMap();
+        dataSource.getPreparedStatementResultSetHandler().clearPreparedStatements();
+        assertEquals(0, mockConnection.getNumberRollbacks());
+        assertEquals(0, mockConnection.getSavepointMap().size());
+        assertEquals(0, dataSource.getPreparedStatementResultSetHandler().getPreparedStatements().size());
+        mockConnection.close();
+    }
+
+    @Test
+    public void testTimeout() throws Exception
+    {
+        MockPooledDataSource dataSource = new MockPooledDataSource(1);
+        dataSource.setMaxWait(50);
+        Connection connection = dataSource.getConnection();
+        try
+        {
+            dataSource.getConnection();
+            fail();
+        }
+        catch(SQLTransientConnectionException exc)
+        {
+            //should throw exception
+        }
+        assertEquals(1, dataSource.getNumberWaits());
+        assertEquals(1, dataSource.getNumberTimeouts());
+        assertEquals(1, dataSource.getNumberBorrows());
+        connection.close();
+        assertSame(connection, dataSource.getConnection());
+    }
+
+    @Test
+    public void testConcurrentBorrows() throws Exception
+    {
+        final int threads = 32;
+        final int iterations = 200;
+        final MockPooledDataSource dataSource = new MockPooledDataSource(8);
+        dataSource.setMaxWait(-1);
+        MockResultSet resultSet = new MockResultSet("person");
+        resultSet.addColumn("name", new Object[] {"a"});
+        dataSource.getPreparedStatementResultSetHandler().prepareResultSet("select name from person", resultSet);
+        final AtomicInteger maximumActive = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for(int ii = 0; ii < threads; ii++)
+            {
+                futures.add(executor.submit(new Callable<Void>()
+                {
+                    public Void call() throws Exception
+                    {
+                        for(int yy = 0; yy < iterations; yy++)
+                        {
+                            Connection connection = dataSource.getConnection();
+                            int active = dataSource.getNumberActiveConnections();
+                            int maximum = maximumActive.get();
+                            while(active > maximum && !maximumActive.compareAndSet(maximum, active))
+                            {
+                                maximum = maximumActive.get();
+                            }
+                            PreparedStatement statement = connection.prepareStatement("select name from person");
+                            ResultSet result = statement.executeQuery();
+                            assertTrue(result.next());
+                            assertEquals("a", result.getString(1));
+                            connection.commit();
+                            connection.close();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for(Future<Void> future : futures)
+            {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        assertTrue(maximumActive.get() <= 8);
+        assertTrue(dataSource.getMockConnections().size() <= 8);
+        assertEquals(0, dataSource.getNumberActiveConnections());
+        assertEquals(dataSource.getMockConnections().size(), dataSource.getNumberIdleConnections());
+        assertEquals(threads * iterations, dataSource.getNumberBorrows());
+        assertEquals(threads * iterations, dataSource.getPreparedStatementResultSetHandler().getExecutedStatements().size());
+        int commits = 0;
+        for(MockConnection connection : dataSource.getMockConnections())
+        {
+            commits += connection.getNumberCommits();
+        }
+        assertEquals(threads * iterations, commits);
+        assertTrue(dataSource.getMaximumBorrowTime() >= dataSource.getAverageBorrowTime());
+        dataSource.resetMetrics();
+        assertEquals(0, dataSource.getNumberBorrows());
+    }
+}
@@ -1115,7 +1115,141 @@ public class MockResultSetTest extends TestCase
         assertTrue(resultSet.isEqual(cloneResult));
         assertNotSame(metaData1, cloneResult.getMetaData());
     }
-    
+
+    public void testCopyOnWriteClone() throws Exception
+    {
+        resultSet.setResultSetConcurrency(ResultSet.CONCUR_UPDATABLE);
+        resultSet.setCopyOnWrite(true);
+        resultSet.addRow(new String[] {"test1", "test2"});
+        resultSet.addRow(new String[] {"test3", "test4"});
+        MockResultSet cloneResult1 = (MockResultSet)resultSet.clone();
+        MockResultSet cloneResult2 = (MockResultSet)resultSet.clone();
+        assertTrue(cloneResult1.isCopyOnWrite());
+        assertTrue(resultSet.isEqual(cloneResult1));
+        cloneResult1.next();
+        cloneResult1.updateString(1, "test");
+        cloneResult1.updateRow();
+        assertEquals("test", cloneResult1.getString(1));
+        assertTrue(cloneResult1.rowUpdated());
+        assertTrue(resultSet.isEqual(cloneResult2));
+        assertFalse(resultSet.isEqual(cloneResult1));
+        cloneResult2.next();
+        assertEquals("test1", cloneResult2.getString(1));
+        assertFalse(cloneResult2.rowUpdated());
+        cloneResult2.moveToInsertRow();
+        cloneResult2.updateString(1, "test5");
+        cloneResult2.insertRow();
+        cloneResult2.moveToCurrentRow();
+        assertEquals(3, cloneResult2.getRowCount());
+        assertEquals(2, resultSet.getRowCount());
+        assertEquals(2, cloneResult1.getRowCount());
+        resultSet.addRow(new String[] {"test6", "test7"});
+        assertEquals(3, resultSet.getRowCount());
+        assertEquals(2, cloneResult1.getRowCount());
+        cloneResult1.setFetchDirection(ResultSet.FETCH_REVERSE);
+        cloneResult1.first();
+        assertEquals("test3", cloneResult1.getString(1));
+        resultSet.first();
+        assertEquals("test1", resultSet.getString(1));
+        assertFalse(resultSet.rowUpdated());
+    }
+
+    public void testPrimitiveColumns() throws Exception
+    {
+        resultSet.setResultSetConcurrency(ResultSet.CONCUR_UPDATABLE);
+        resultSet.addColumn("intColumn", new Object[] {1, null, 3});
+        resultSet.addColumn("longColumn", new Object[] {10000000000L, 2L, null});
+        resultSet.addColumn("doubleColumn", new Object[] {1.5, 2.5, 3.5});
+        resultSet.next();
+        assertEquals(1, resultSet.getInt("intColumn"));
+        assertFalse(resultSet.wasNull());
+        assertEquals(Integer.valueOf(1), resultSet.getObject(1));
+        assertEquals(10000000000L, resultSet.getLong(2));
+        assertEquals((int)10000000000L, resultSet.getInt(2));
+        assertEquals(1.5, resultSet.getDouble(3), 0.0);
+        assertEquals(1, resultSet.getInt(3));
+        assertEquals(1L, resultSet.getLong(3));
+        resultSet.next();
+        assertEquals(0, resultSet.getInt(1));
+        assertTrue(resultSet.wasNull());
+        assertNull(resultSet.getObject(1));
+        assertEquals(2.0, resultSet.getDouble(2), 0.0);
+        assertFalse(resultSet.wasNull());
+        resultSet.updateString(1, "abc");
+        assertEquals("abc", resultSet.getString(1));
+        resultSet.next();
+        assertEquals(3, resultSet.getInt(1));
+        assertEquals(0L, resultSet.getLong(2));
+        assertTrue(resultSet.wasNull());
+        resultSet.moveToInsertRow();
+        resultSet.updateInt(1, 4);
+        resultSet.updateLong(2, 5L);
+        resultSet.updateDouble(3, 6.5);
+        resultSet.insertRow();
+        resultSet.moveToCurrentRow();
+        assertEquals(4, resultSet.getRowCount());
+        assertEquals(Arrays.asList(new Object[] {1, "abc", 4, 3}), resultSet.getColumn("intColumn"));
+        assertEquals(Arrays.asList(new Object[] {10000000000L, 2L, 5L, null}), resultSet.getColumn("longColumn"));
+        assertTrue(resultSet.rowInserted(3));
+        assertFalse(resultSet.rowInserted(4));
+        assertFalse(resultSet.rowInserted(5));
+        resultSet.setFetchDirection(ResultSet.FETCH_REVERSE);
+        resultSet.first();
+        assertEquals(3.5, resultSet.getDouble(3), 0.0);
+        resultSet.next();
+        assertEquals(6.5, resultSet.getDouble(3), 0.0);
+    }
+
+    public void testColumnLookupAfterStructureChange() throws Exception
+    {
+        resultSet.setResultSetConcurrency(ResultSet.CONCUR_UPDATABLE);
+        resultSet.setCopyOnWrite(true);
+        resultSet.addColumn("first", new Object[] {"1", "2"});
+        resultSet.next();
+        assertEquals("1", resultSet.getString(1));
+        assertEquals("1", resultSet.getString("FIRST"));
+        assertEquals(1, resultSet.findColumn("first"));
+        resultSet.addColumn("second", new Object[] {"3", "4"});
+        assertEquals("3", resultSet.getString(2));
+        assertEquals("3", resultSet.getString("Second"));
+        assertEquals(2, resultSet.findColumn("second"));
+        MockResultSet cloneResult = (MockResultSet)resultSet.clone();
+        assertEquals("3", cloneResult.getString(2));
+        cloneResult.updateString("second", "5");
+        assertEquals("5", cloneResult.getString(2));
+        assertEquals("3", resultSet.getString(2));
+        cloneResult.updateRow();
+        cloneResult.setDatabaseView(true);
+        assertEquals("5", cloneResult.getString("second"));
+        resultSet.setDatabaseView(true);
+        assertEquals("3", resultSet.getString("second"));
+        try
+        {
+            resultSet.getString("third");
+            fail();
+        }
+        catch(SQLException exc)
+        {
+            //should throw SQLException
+        }
+    }
+
+    public void testCopyOnWriteCloneDeletedRow() throws Exception
+    {
+        resultSet.setResultSetConcurrency(ResultSet.CONCUR_UPDATABLE);
+        resultSet.setCopyOnWrite(true);
+        resultSet.addColumn("column", new Object[] {"1", "2"});
+        MockResultSet cloneResult = (MockResultSet)resultSet.clone();
+        cloneResult.next();
+        cloneResult.deleteRow();
+        assertTrue(cloneResult.rowDeleted());
+        resultSet.next();
+        assertFalse(resultSet.rowDeleted());
+        assertEquals("1", resultSet.getString("column"));
+        resultSet.setDatabaseView(true);
+        assertEquals("1", resultSet.getString("column"));
+    }
+
     public void testCaseInsensitiveColumns() throws Exception
     {
         resultSet.setResultSetConcurrency(ResultSet.CONCUR_UPDATABLE);
@@ -464,7 +464,33 @@ public class MockSQLXMLTest extends TestCase
         assertNotSame(inputStreamSQLXML, clone);
         assertTrue(inputStreamSQLXML.equals(clone));
     }
-    
+
+    public void testParseOnDemand() throws Exception
+    {
+        final int[] numberBuilders = new int[1];
+        MockSQLXML sqlXML = new MockSQLXML(getFirstTestXMLAsString())
+        {
+            @Override
+            protected SAXBuilder createJDOMSAXBuilder()
+            {
+                numberBuilders[0]++;
+                return super.createJDOMSAXBuilder();
+            }
+        };
+        assertEquals(0, numberBuilders[0]);
+        String xml = sqlXML.getContentAsString();
+        assertXMLEqualsTestXML(xml, getFirstTestXMLAsString());
+        assertEquals(xml, sqlXML.getContentAsString());
+        MockSQLXML clone = (MockSQLXML)sqlXML.clone();
+        assertTrue(sqlXML.equals(clone));
+        assertEquals(sqlXML.hashCode(), clone.hashCode());
+        assertEquals(xml, clone.getContentAsString());
+        assertEquals(1, numberBuilders[0]);
+        sqlXML.setString(getSecondTestXMLAsString());
+        assertXMLEqualsTestXML(sqlXML.getContentAsString(), getSecondTestXMLAsString());
+        assertEquals(2, numberBuilders[0]);
+    }
+
     public void testFree() throws Exception
     {
         prepareTestSQLXMLObjects();
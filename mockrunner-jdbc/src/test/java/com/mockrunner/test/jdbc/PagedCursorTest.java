@@ -0,0 +1,216 @@
+package com.mockrunner.test.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mockrunner.base.VerifyFailedException;
+import com.mockrunner.jdbc.GeneratedResultSet;
+import com.mockrunner.jdbc.JDBCTestModule;
+import com.mockrunner.mock.jdbc.JDBCMockObjectFactory;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class PagedCursorTest
+{
+    private JDBCMockObjectFactory factory;
+    private JDBCTestModule module;
+    private MockConnection connection;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        factory = new JDBCMockObjectFactory();
+        module = new JDBCTestModule(factory);
+        connection = factory.getMockConnection();
+        connection.getStatementResultSetHandler().setPagedCursors(true);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        factory.restoreDrivers();
+    }
+
+    private MockResultSet createResultSet(String id, int numberRows)
+    {
+        MockResultSet resultSet = new MockResultSet(id);
+        Object[] values = new Object[numberRows];
+        for(int ii = 0; ii < numberRows; ii++)
+        {
+            values[ii] = Integer.valueOf(ii);
+        }
+        resultSet.addColumn("id", values);
+        return resultSet;
+    }
+
+    private int readAll(ResultSet resultSet) throws Exception
+    {
+        int numberRows = 0;
+        while(resultSet.next())
+        {
+            assertEquals(numberRows, resultSet.getInt(1));
+            numberRows++;
+        }
+        return numberRows;
+    }
+
+    @Test
+    public void testPartialLastPage() throws Exception
+    {
+        connection.getStatementResultSetHandler().prepareResultSet("select", createResultSet("rs", 25));
+        Statement statement = connection.createStatement();
+        statement.setFetchSize(10);
+        MockResultSet resultSet = (MockResultSet)statement.executeQuery("select");
+        assertTrue(resultSet.isPagedCursor());
+        assertEquals(25, readAll(resultSet));
+        assertEquals(3, resultSet.getNumberPagesFetched());
+        assertEquals(3, resultSet.getNumberRoundTrips());
+        assertEquals(25, resultSet.getNumberRowsFetched());
+        assertEquals(10, resultSet.getPeakRowsResident());
+        assertFalse(resultSet.next());
+        assertEquals(3, resultSet.getNumberRoundTrips());
+        module.verifyResultSetNumberPagesFetched("rs", 3);
+        module.verifyResultSetNumberRoundTrips(resultSet, 3);
+        module.verifyResultSetPeakRowsResident("rs", 10);
+        module.verifyAllResultSetsPeakRowsResident(10);
+    }
+
+    @Test
+    public void testFullLastPage() throws Exception
+    {
+        connection.getStatementResultSetHandler().prepareResultSet("select", createResultSet("rs", 20));
+        Statement statement = connection.createStatement();
+        statement.setFetchSize(10);
+        MockResultSet resultSet = (MockResultSet)statement.executeQuery("select");
+        assertEquals(20, readAll(resultSet));
+        assertEquals(2, resultSet.getNumberPagesFetched());
+        assertEquals(3, resultSet.getNumberRoundTrips());
+        assertEquals(10, resultSet.getPeakRowsResident());
+    }
+
+    @Test
+    public void testNoFetchSize() throws Exception
+    {
+        connection.getStatementResultSetHandler().prepareResultSet("select", createResultSet("rs", 25));
+        Statement statement = connection.createStatement();
+        MockResultSet resultSet = (MockResultSet)statement.executeQuery("select");
+        assertEquals(25, readAll(resultSet));
+        assertEquals(1, resultSet.getNumberPagesFetched());
+        assertEquals(1, resultSet.getNumberRoundTrips());
+        assertEquals(25, resultSet.getPeakRowsResident());
+        try
+        {
+            module.verifyAllResultSetsPeakRowsResident(10);
+            fail();
+        }
+        catch(VerifyFailedException exc)
+        {
+            //expected exception
+        }
+    }
+
+    @Test
+    public void testGeneratedResultSet() throws Exception
+    {
+        GeneratedResultSet prepared = new GeneratedResultSet("generated", new String[] {"id"}, 25, new GeneratedResultSet.RowGenerator()
+        {
+            public boolean generateRow(long rowNumber, Object[] values) throws SQLException
+            {
+                values[0] = Integer.valueOf((int)rowNumber - 1);
+                return true;
+            }
+        });
+        connection.getStatementResultSetHandler().prepareResultSet("select", prepared);
+        Statement statement = connection.createStatement();
+        statement.setFetchSize(10);
+        MockResultSet resultSet = (MockResultSet)statement.executeQuery("select");
+        assertTrue(resultSet.isPagedCursor());
+        assertEquals(25, readAll(resultSet));
+        assertEquals(3, resultSet.getNumberPagesFetched());
+        assertEquals(3, resultSet.getNumberRoundTrips());
+        assertEquals(25, resultSet.getNumberRowsFetched());
+        assertEquals(10, resultSet.getPeakRowsResident());
+        module.verifyResultSetPeakRowsResident("generated", 10);
+        statement.setFetchSize(5);
+        resultSet = (MockResultSet)statement.executeQuery("select");
+        assertEquals(25, readAll(resultSet));
+        assertEquals(5, resultSet.getNumberPagesFetched());
+        assertEquals(6, resultSet.getNumberRoundTrips());
+        assertEquals(5, resultSet.getPeakRowsResident());
+        try
+        {
+            module.verifyAllResultSetsPeakRowsResident(5);
+            fail();
+        }
+        catch(VerifyFailedException exc)
+        {
+            //expected exception
+        }
+    }
+
+    @Test
+    public void testScrolling() throws Exception
+    {
+        MockResultSet prepared = createResultSet("rs", 25);
+        prepared.setResultSetType(ResultSet.TYPE_SCROLL_INSENSITIVE);
+        connection.getStatementResultSetHandler().prepareResultSet("select", prepared);
+        Statement statement = connection.createStatement();
+        statement.setFetchSize(10);
+        MockResultSet resultSet = (MockResultSet)statement.executeQuery("select");
+        assertTrue(resultSet.absolute(15));
+        assertEquals(14, resultSet.getInt(1));
+        assertEquals(1, resultSet.getNumberPagesFetched());
+        assertTrue(resultSet.next());
+        assertEquals(1, resultSet.getNumberPagesFetched());
+        assertTrue(resultSet.absolute(14));
+        assertEquals(2, resultSet.getNumberPagesFetched());
+        assertTrue(resultSet.absolute(5));
+        assertEquals(2, resultSet.getNumberPagesFetched());
+        assertTrue(resultSet.first());
+        assertEquals(3, resultSet.getNumberPagesFetched());
+        assertTrue(resultSet.last());
+        assertEquals(4, resultSet.getNumberPagesFetched());
+        assertEquals(24, resultSet.getInt(1));
+        assertEquals(10, resultSet.getPeakRowsResident());
+    }
+
+    @Test
+    public void testDisabled() throws Exception
+    {
+        connection.getStatementResultSetHandler().setPagedCursors(false);
+        connection.getStatementResultSetHandler().prepareResultSet("select", createResultSet("rs", 5));
+        Statement statement = connection.createStatement();
+        MockResultSet resultSet = (MockResultSet)statement.executeQuery("select");
+        assertFalse(resultSet.isPagedCursor());
+        assertEquals(5, readAll(resultSet));
+        assertEquals(0, resultSet.getNumberRoundTrips());
+        try
+        {
+            module.verifyResultSetNumberRoundTrips("rs", 0);
+            fail();
+        }
+        catch(VerifyFailedException exc)
+        {
+            //expected exception
+        }
+        try
+        {
+            module.verifyResultSetPeakRowsResident("xyz", 10);
+            fail();
+        }
+        catch(VerifyFailedException exc)
+        {
+            //expected exception
+        }
+    }
+}
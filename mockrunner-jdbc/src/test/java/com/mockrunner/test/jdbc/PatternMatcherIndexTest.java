@@ -0,0 +1,128 @@
+package com.mockrunner.test.jdbc;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import com.mockrunner.jdbc.PatternMatcherIndex;
+import com.mockrunner.jdbc.PatternMatcherMap;
+import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
+import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.util.regexp.PatternMatcher;
+import com.mockrunner.util.regexp.SimplePatternMatcher;
+import com.mockrunner.util.regexp.StartsEndsPatternMatcher;
+
+import junit.framework.TestCase;
+
+public class PatternMatcherIndexTest extends TestCase
+{
+    public void testExactMatch()
+    {
+        PatternMatcherIndex index = new PatternMatcherIndex.Default();
+        PatternMatcher.Factory factory = new SimplePatternMatcher.Factory(true, true);
+        index.add(factory.create("select * from x"));
+        index.add(factory.create("select * from y"));
+        Collection<PatternMatcher> candidates = index.getCandidates("select * from x");
+        assertEquals(1, candidates.size());
+        assertEquals("select * from x", candidates.iterator().next().pattern());
+        assertTrue(index.getCandidates("SELECT * FROM X").isEmpty());
+        factory = new SimplePatternMatcher.Factory(false, true);
+        index.add(factory.create("Update Z"));
+        assertEquals(1, index.getCandidates("uPDATE z").size());
+        index.remove(factory.create("Update Z"));
+        assertTrue(index.getCandidates("uPDATE z").isEmpty());
+    }
+
+    public void testContains()
+    {
+        PatternMatcherIndex index = new PatternMatcherIndex.Default();
+        PatternMatcher.Factory factory = new SimplePatternMatcher.Factory(false, false);
+        index.add(factory.create("from x"));
+        index.add(factory.create("select"));
+        index.add(factory.create("delete"));
+        index.add(factory.create("x where"));
+        Collection<PatternMatcher> candidates = index.getCandidates("SELECT * FROM X WHERE a = ?");
+        assertEquals(3, candidates.size());
+        assertTrue(candidates.contains(factory.create("from x")));
+        assertTrue(candidates.contains(factory.create("select")));
+        assertTrue(candidates.contains(factory.create("x where")));
+        index.remove(factory.create("select"));
+        assertEquals(2, index.getCandidates("SELECT * FROM X WHERE a = ?").size());
+        index.add(factory.create(""));
+        assertEquals(1, index.getCandidates("insert").size());
+        index.clear();
+        assertTrue(index.getCandidates("SELECT * FROM X WHERE a = ?").isEmpty());
+    }
+
+    public void testStartsWithAndFallback()
+    {
+        PatternMatcherIndex index = new PatternMatcherIndex.Default();
+        PatternMatcher.Factory factory = new StartsEndsPatternMatcher.Factory();
+        index.add(factory.create("select.*"));
+        index.add(factory.create("select \\* from x.*"));
+        index.add(factory.create("update.*"));
+        index.add(factory.create(".*where"));
+        index.add(factory.create("[su]elect"));
+        Collection<PatternMatcher> candidates = index.getCandidates("select * from x where");
+        assertEquals(4, candidates.size());
+        assertFalse(candidates.contains(factory.create("update.*")));
+    }
+
+    public void testSameResultAsScan()
+    {
+        Random random = new Random(42);
+        String[] words = new String[] {"select", "from", "where", "a", "b", "tab", "=", ":id", "update", "SET"};
+        PatternMatcher.Factory[] factories = new PatternMatcher.Factory[] {
+            new SimplePatternMatcher.Factory(false, false),
+            new SimplePatternMatcher.Factory(true, false),
+            new SimplePatternMatcher.Factory(false, true),
+            new StartsEndsPatternMatcher.Factory()
+        };
+        for(PatternMatcher.Factory factory : factories)
+        {
+            PatternMatcherMap<String> indexed = new PatternMatcherMap<String>(new HashMap<PatternMatcher, String>(), new PatternMatcherIndex.Default());
+            PatternMatcherMap<String> scanned = new PatternMatcherMap<String>(new HashMap<PatternMatcher, String>(), new PatternMatcherIndex.Scan());
+            for(int ii = 0; ii < 200; ii++)
+            {
+                String sql = randomSQL(random, words, 1 + random.nextInt(3));
+                indexed.put(factory.create(sql), sql);
+                scanned.put(factory.create(sql), sql);
+            }
+            for(int ii = 0; ii < 500; ii++)
+            {
+                String sql = randomSQL(random, words, random.nextInt(6));
+                List<String> expected = scanned.getMatchingObjects(sql);
+                assertEquals(expected, indexed.getMatchingObjects(sql));
+            }
+        }
+    }
+
+    public void testHandlerLookup()
+    {
+        PreparedStatementResultSetHandler handler = new PreparedStatementResultSetHandler();
+        MockResultSet resultSet1 = handler.createResultSet("1");
+        MockResultSet resultSet2 = handler.createResultSet("2");
+        handler.prepareResultSet("from table1", resultSet1);
+        handler.prepareResultSet("from table2", resultSet2);
+        assertEquals("1", handler.getResultSet("SELECT * FROM TABLE1").getId());
+        assertEquals("2", handler.getResultSet("SELECT * FROM TABLE2").getId());
+        assertNull(handler.getResultSet("SELECT * FROM TABLE3"));
+        handler.setPatternMatcherIndexFactory(PatternMatcherIndex.Scan.FACTORY);
+        assertEquals("2", handler.getResultSet("SELECT * FROM TABLE2").getId());
+        handler.setExactMatch(true);
+        assertNull(handler.getResultSet("SELECT * FROM TABLE2"));
+        assertEquals("2", handler.getResultSet("FROM TABLE2").getId());
+    }
+
+    private String randomSQL(Random random, String[] words, int length)
+    {
+        StringBuilder builder = new StringBuilder();
+        for(int ii = 0; ii < length; ii++)
+        {
+            if(ii > 0) builder.append(' ');
+            builder.append(words[random.nextInt(words.length)]);
+        }
+        return builder.toString();
+    }
+}
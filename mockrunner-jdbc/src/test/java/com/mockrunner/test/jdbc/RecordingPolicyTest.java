@@ -0,0 +1,191 @@
+package com.mockrunner.test.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mockrunner.base.VerifyFailedException;
+import com.mockrunner.jdbc.JDBCTestModule;
+import com.mockrunner.jdbc.ParameterSets;
+import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
+import com.mockrunner.jdbc.RecordingPolicy;
+import com.mockrunner.jdbc.StatementResultSetHandler;
+import com.mockrunner.jdbc.StatementStatistics;
+import com.mockrunner.mock.jdbc.JDBCMockObjectFactory;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class RecordingPolicyTest
+{
+    private JDBCMockObjectFactory factory;
+    private JDBCTestModule module;
+    private MockConnection connection;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        factory = new JDBCMockObjectFactory();
+        module = new JDBCTestModule(factory);
+        connection = factory.getMockConnection();
+        connection.getStatementResultSetHandler().prepareGlobalResultSet(new MockResultSet("global"));
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        factory.restoreDrivers();
+    }
+
+    @Test
+    public void testFull() throws Exception
+    {
+        StatementResultSetHandler handler = connection.getStatementResultSetHandler();
+        assertTrue(handler.getRecordingPolicy().isFull());
+        executeStatements(5);
+        assertEquals(10, handler.getExecutedStatements().size());
+        assertEquals(5, handler.getReturnedResultSets().size());
+        Map<String, StatementStatistics> statistics = handler.getExecutedStatementStatistics();
+        assertEquals(2, statistics.size());
+        assertEquals(5, statistics.get("select * from test").getNumberExecutions());
+        assertEquals(0, statistics.get("select * from test").getNumberTimedExecutions());
+        module.verifySQLStatementExecuted("update test");
+        module.verifySQLStatementNotExecuted("delete");
+    }
+
+    @Test
+    public void testLastExecutions() throws Exception
+    {
+        StatementResultSetHandler handler = connection.getStatementResultSetHandler();
+        handler.setRecordingPolicy(RecordingPolicy.lastExecutions(3));
+        executeStatements(5);
+        assertEquals(Arrays.asList("update test", "select * from test", "update test"), handler.getExecutedStatements());
+        assertEquals(3, handler.getReturnedResultSets().size());
+        Map<String, StatementStatistics> statistics = handler.getExecutedStatementStatistics();
+        assertEquals(5, statistics.get("select * from test").getNumberExecutions());
+        assertEquals(5, statistics.get("update test").getNumberExecutions());
+        assertEquals(5, statistics.get("update test").getNumberTimedExecutions());
+        module.verifySQLStatementExecuted("select * from test");
+        module.verifySQLStatementNotExecuted("delete");
+    }
+
+    @Test
+    public void testAggregate() throws Exception
+    {
+        StatementResultSetHandler handler = connection.getStatementResultSetHandler();
+        handler.setRecordingPolicy(RecordingPolicy.AGGREGATE);
+        executeStatements(5);
+        assertEquals(0, handler.getExecutedStatements().size());
+        assertEquals(0, handler.getReturnedResultSets().size());
+        StatementStatistics statistics = module.getExecutedSQLStatementStatistics().get("select * from test");
+        assertEquals(5, statistics.getNumberExecutions());
+        assertEquals(5, statistics.getNumberTimedExecutions());
+        long[] histogram = statistics.getExecutionTimeHistogram();
+        long count = 0;
+        for(int ii = 0; ii < histogram.length; ii++)
+        {
+            count += histogram[ii];
+        }
+        assertEquals(5, count);
+        assertTrue(statistics.getExecutionTimePercentile(50) <= statistics.getMaximumExecutionTime());
+        assertEquals(statistics.getMaximumExecutionTime(), statistics.getExecutionTimePercentile(100));
+        module.verifySQLStatementExecuted("update test");
+        module.verifySQLStatementNotExecuted("delete");
+        try
+        {
+            module.verifyAllResultSetsClosed();
+            fail();
+        }
+        catch(VerifyFailedException exc)
+        {
+            assertTrue(exc.getMessage().contains("AGGREGATE"));
+        }
+        try
+        {
+            module.verifyAllResultSetsPeakRowsResident(10);
+            fail();
+        }
+        catch(VerifyFailedException exc)
+        {
+            //expected exception
+        }
+        handler.setRecordingPolicy(RecordingPolicy.FULL);
+        assertEquals(0, handler.getExecutedStatementStatistics().size());
+        module.verifyAllResultSetsClosed();
+    }
+
+    @Test
+    public void testParameterSets() throws Exception
+    {
+        PreparedStatementResultSetHandler handler = connection.getPreparedStatementResultSetHandler();
+        handler.setRecordingPolicy(RecordingPolicy.lastExecutions(2));
+        executePreparedStatements(4);
+        ParameterSets sets = handler.getParametersForExecutedStatement("update test set value = ?");
+        assertEquals(4, sets.getNumberParameterSets());
+        assertFalse(sets.isParameterSetRecorded(1));
+        assertNull(sets.getParameterSet(1));
+        assertTrue(sets.isParameterSetRecorded(2));
+        module.verifySQLStatementParameter("update test set value = ?", 2, 1, 2);
+        module.verifySQLStatementParameter("update test set value = ?", 3, 1, 3);
+        try
+        {
+            module.verifySQLStatementParameter("update test set value = ?", 0, 1, 0);
+            fail();
+        }
+        catch(VerifyFailedException exc)
+        {
+            //should throw exception
+        }
+        assertEquals(4, module.getExecutedSQLStatementStatistics().get("update test set value = ?").getNumberExecutions());
+        handler.setRecordingPolicy(RecordingPolicy.AGGREGATE);
+        executePreparedStatements(3);
+        sets = handler.getParametersForExecutedStatement("update test set value = ?");
+        assertEquals(3, sets.getNumberParameterSets());
+        assertFalse(sets.isParameterSetRecorded(2));
+        module.verifySQLStatementExecuted("update test set value = ?");
+    }
+
+    @Test
+    public void testInvalidCapacity()
+    {
+        try
+        {
+            RecordingPolicy.lastExecutions(0);
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+    }
+
+    private void executeStatements(int number) throws Exception
+    {
+        Statement statement = connection.createStatement();
+        for(int ii = 0; ii < number; ii++)
+        {
+            statement.executeQuery("select * from test");
+            statement.executeUpdate("update test");
+        }
+    }
+
+    private void executePreparedStatements(int number) throws Exception
+    {
+        PreparedStatement statement = connection.prepareStatement("update test set value = ?");
+        for(int ii = 0; ii < number; ii++)
+        {
+            statement.setInt(1, ii);
+            statement.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.mockrunner.test.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Collection;
+
+import com.mockrunner.jdbc.CallableStatementResultSetHandler;
+import com.mockrunner.jdbc.FingerprintPatternMatcher;
+import com.mockrunner.jdbc.PatternMatcherIndex;
+import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
+import com.mockrunner.jdbc.SQLFingerprint;
+import com.mockrunner.jdbc.StatementResultSetHandler;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.util.regexp.PatternMatcher;
+
+import junit.framework.TestCase;
+
+public class SQLFingerprintTest extends TestCase
+{
+    public void testWhitespaceAndComments()
+    {
+        assertEquals("select * from person where id = ?", SQLFingerprint.create("SELECT *\n  FROM person -- all persons\n WHERE id = ?", false));
+        assertEquals("select a , b from t", SQLFingerprint.create("select /* columns */ a,b from t;", false));
+        assertEquals("SELECT a FROM T", SQLFingerprint.create("SELECT a   FROM T", true));
+    }
+
+    public void testLiterals()
+    {
+        assertEquals("select * from t where a = ? and b = ? and c = ?", SQLFingerprint.create("select * from t where a = 'it''s' and b = 12.5e3 and c = -1", false));
+        assertEquals("select * from t where a = ? and b = ?", SQLFingerprint.create("select * from t where a = :name and b = $1", false));
+        assertEquals("select * from t where a = ? and b = ?", SQLFingerprint.create("select * from t where a = N'x' and b = 0xFF", false));
+        assertEquals("select a - ? from t1", SQLFingerprint.create("select a-1 from t1", false));
+        assertEquals("select \"Name\" from [My Table]", SQLFingerprint.create("select \"Name\" from [My Table]", false));
+    }
+
+    public void testInList()
+    {
+        assertEquals("select * from t where id in (?+)", SQLFingerprint.create("select * from t where id in (1, 2, 3)", false));
+        assertEquals("select * from t where id in (?+)", SQLFingerprint.create("select * from t where id IN (?)", false));
+        assertEquals("select * from t where id in ( select id from u )", SQLFingerprint.create("select * from t where id in (select id from u)", false));
+    }
+
+    public void testMatcher()
+    {
+        PatternMatcher.Factory factory = new FingerprintPatternMatcher.Factory(false);
+        PatternMatcher matcher = factory.create("select * from person where id = 1");
+        assertTrue(matcher.matches("SELECT *   FROM person WHERE id = 42"));
+        assertTrue(matcher.matches("select * from person /* generated */ where id = ?"));
+        assertFalse(matcher.matches("select * from person where name = 'x'"));
+        assertEquals(matcher, factory.create("select * from person where id = 1"));
+        matcher = new FingerprintPatternMatcher.Factory(true).create("select * from person");
+        assertFalse(matcher.matches("SELECT * FROM person"));
+    }
+
+    public void testIndex()
+    {
+        PatternMatcherIndex index = new PatternMatcherIndex.Default();
+        PatternMatcher.Factory factory = new FingerprintPatternMatcher.Factory(false);
+        for(int ii = 0; ii < 100; ii++)
+        {
+            index.add(factory.create("select * from table" + ii + " where id = " + ii));
+        }
+        Collection<PatternMatcher> candidates = index.getCandidates("SELECT * FROM table42 WHERE id = ?");
+        assertEquals(1, candidates.size());
+        assertEquals("select * from table42 where id = 42", candidates.iterator().next().pattern());
+        index.remove(factory.create("select * from table42 where id = 42"));
+        assertTrue(index.getCandidates("select * from table42 where id = 1").isEmpty());
+        index.clear();
+        assertTrue(index.getCandidates("select * from table1 where id = 1").isEmpty());
+    }
+
+    public void testHandler() throws Exception
+    {
+        PreparedStatementResultSetHandler handler = new PreparedStatementResultSetHandler();
+        handler.setPatternMatcherFactory(new FingerprintPatternMatcher.Factory(false));
+        MockResultSet resultSet = new MockResultSet("person");
+        resultSet.addColumn("name", new Object[] {"a"});
+        handler.prepareResultSet("select name from person where id = 1", resultSet);
+        MockConnection connection = new MockConnection(new StatementResultSetHandler(), handler, new CallableStatementResultSetHandler());
+        PreparedStatement statement = connection.prepareStatement("SELECT name\n FROM person\n WHERE id = ?");
+        statement.setInt(1, 5);
+        ResultSet result = statement.executeQuery();
+        assertTrue(result.next());
+        assertEquals("a", result.getString(1));
+        statement = connection.prepareStatement("select name from person where id > ?");
+        assertFalse(statement.executeQuery().next());
+    }
+}
@@ -6,6 +6,9 @@ import java.util.List;
 import java.util.Map;
 
 import com.mockrunner.jdbc.SQLStatementMatcher;
+import com.mockrunner.util.regexp.CachingPatternMatcherFactory;
+import com.mockrunner.util.regexp.PatternMatcher;
+import com.mockrunner.util.regexp.SimplePatternMatcher;
 
 import junit.framework.TestCase;
 
@@ -190,4 +193,63 @@ public class SQLStatementMatcherTest extends TestCase
         matcher = new SQLStatementMatcher(true, true, true);
         assertFalse(matcher.doStringsMatch("myTest", "[nmg]ytest"));
     }
+    
+    public void testPatternMatcherCache()
+    {
+        CountingFactory factory = new CountingFactory();
+        SQLStatementMatcher matcher = new SQLStatementMatcher(factory);
+        List<String> statements = new ArrayList<String>();
+        for(int ii = 0; ii < 100; ii++)
+        {
+            statements.add("select * from table" + ii);
+        }
+        assertTrue(matcher.contains(statements, "TABLE99", false));
+        assertEquals(1, factory.count);
+        assertFalse(matcher.contains(statements, "table100", false));
+        assertTrue(matcher.contains(statements, "TABLE99", false));
+        assertEquals(2, factory.count);
+        assertTrue(matcher.contains(statements, "select * from table5 where id = 1", true));
+        assertEquals(8, factory.count);
+        assertTrue(matcher.contains(statements, "select * from table7 where id = 1", true));
+        assertEquals(10, factory.count);
+        Map<String, String> testMap = new HashMap<String, String>();
+        testMap.put("from table1", "1");
+        testMap.put("from table2", "2");
+        assertEquals(1, matcher.getMatchingObjects(testMap, "select * from table2", true).size());
+        assertEquals(1, matcher.getMatchingObjects(testMap, "select * from table1", true).size());
+        assertEquals(12, factory.count);
+    }
+    
+    public void testCachingPatternMatcherFactory()
+    {
+        CountingFactory factory = new CountingFactory();
+        CachingPatternMatcherFactory cachingFactory = new CachingPatternMatcherFactory(factory, 2);
+        assertSame(factory, cachingFactory.getDelegate());
+        PatternMatcher matcher1 = cachingFactory.create("1");
+        PatternMatcher matcher2 = cachingFactory.create("2");
+        assertSame(matcher1, cachingFactory.create("1"));
+        assertEquals(2, factory.count);
+        cachingFactory.create("3");
+        assertEquals(2, cachingFactory.size());
+        assertSame(matcher1, cachingFactory.create("1"));
+        assertNotSame(matcher2, cachingFactory.create("2"));
+        assertEquals(4, factory.count);
+        cachingFactory.clear();
+        assertEquals(0, cachingFactory.size());
+        SQLStatementMatcher matcher = new SQLStatementMatcher(cachingFactory);
+        assertTrue(matcher.doStringsMatch("abc", "B"));
+        assertTrue(new SQLStatementMatcher(cachingFactory).doStringsMatch("xbx", "B"));
+        assertEquals(5, factory.count);
+    }
+    
+    private static class CountingFactory implements PatternMatcher.Factory
+    {
+        private int count;
+        
+        public PatternMatcher create(String pattern)
+        {
+            count++;
+            return new SimplePatternMatcher(pattern, false, false);
+        }
+    }
 }
@@ -0,0 +1,298 @@
+package com.mockrunner.test.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mockrunner.jdbc.ParameterSets;
+import com.mockrunner.jdbc.PatternMatcherIndex;
+import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
+import com.mockrunner.jdbc.RecordingPolicy;
+import com.mockrunner.jdbc.StatementResultSetHandler;
+import com.mockrunner.mock.jdbc.JDBCMockObjectFactory;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class ThreadSafeResultSetHandlerTest
+{
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 500;
+
+    private JDBCMockObjectFactory factory;
+    private MockConnection connection;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        factory = new JDBCMockObjectFactory(true);
+        connection = factory.getMockConnection();
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        executor.shutdownNow();
+        factory.restoreDrivers();
+    }
+
+    @Test
+    public void testDefaultIsNotThreadSafe()
+    {
+        JDBCMockObjectFactory defaultFactory = new JDBCMockObjectFactory();
+        assertFalse(defaultFactory.isThreadSafe());
+        assertFalse(defaultFactory.getMockConnection().getStatementResultSetHandler().isThreadSafe());
+        defaultFactory.restoreDrivers();
+        assertTrue(factory.isThreadSafe());
+        assertTrue(connection.getStatementResultSetHandler().isThreadSafe());
+        assertTrue(connection.getPreparedStatementResultSetHandler().isThreadSafe());
+        assertTrue(connection.getCallableStatementResultSetHandler().isThreadSafe());
+    }
+
+    @Test
+    public void testConcurrentPreparedStatements() throws Exception
+    {
+        final PreparedStatementResultSetHandler handler = connection.getPreparedStatementResultSetHandler();
+        for(int ii = 0; ii < THREADS; ii++)
+        {
+            handler.prepareResultSet("select name from person where thread = ?", createResultSet("person" + ii), new Object[] {ii});
+        }
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for(int ii = 0; ii < THREADS; ii++)
+        {
+            final int thread = ii;
+            futures.add(executor.submit(new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    start.await();
+                    for(int yy = 0; yy < ITERATIONS; yy++)
+                    {
+                        PreparedStatement query = connection.prepareStatement("select name from person where thread = ?");
+                        query.setInt(1, thread);
+                        ResultSet resultSet = query.executeQuery();
+                        assertTrue(resultSet.next());
+                        assertEquals("person" + thread, resultSet.getString(1));
+                        PreparedStatement update = connection.prepareStatement("update person" + thread + " set iteration = ?");
+                        update.setInt(1, yy);
+                        update.executeUpdate();
+                        if(0 == yy % 100)
+                        {
+                            handler.prepareUpdateCount("update other" + thread + yy, 1);
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+        start.countDown();
+        for(Future<Void> future : futures)
+        {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        assertEquals(2 * THREADS * ITERATIONS, handler.getExecutedStatements().size());
+        assertEquals(THREADS * ITERATIONS, handler.getReturnedResultSets().size());
+        assertEquals(2 * THREADS * ITERATIONS, handler.getPreparedStatements().size());
+        assertEquals(THREADS * ITERATIONS, handler.getPreparedStatementMap().get("select name from person where thread = ?").size());
+        assertEquals(THREADS * ITERATIONS, handler.getParametersForExecutedStatement("select name from person where thread = ?").getNumberParameterSets());
+        for(int ii = 0; ii < THREADS; ii++)
+        {
+            ParameterSets sets = handler.getParametersForExecutedStatement("update person" + ii + " set iteration = ?");
+            assertEquals(ITERATIONS, sets.getNumberParameterSets());
+            for(int yy = 0; yy < ITERATIONS; yy++)
+            {
+                assertEquals(yy, sets.getParameterSet(yy).get(1));
+            }
+        }
+        handler.clearPreparedStatements();
+        assertEquals(0, handler.getPreparedStatements().size());
+        assertEquals(0, handler.getPreparedStatementMap().size());
+    }
+
+    @Test
+    public void testConcurrentStatements() throws Exception
+    {
+        final StatementResultSetHandler handler = connection.getStatementResultSetHandler();
+        handler.prepareResultSet("select", createResultSet("all"));
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for(int ii = 0; ii < THREADS; ii++)
+        {
+            final int thread = ii;
+            futures.add(executor.submit(new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    start.await();
+                    for(int yy = 0; yy < ITERATIONS; yy++)
+                    {
+                        Statement statement = connection.createStatement();
+                        ResultSet resultSet = statement.executeQuery("select name from thread" + thread);
+                        assertTrue(resultSet.next());
+                        assertEquals("all", resultSet.getString(1));
+                        assertFalse(resultSet.next());
+                    }
+                    return null;
+                }
+            }));
+        }
+        start.countDown();
+        for(Future<Void> future : futures)
+        {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        assertEquals(THREADS * ITERATIONS, handler.getStatements().size());
+        List<String> executed = handler.getExecutedStatements();
+        assertEquals(THREADS * ITERATIONS, executed.size());
+        int[] counts = new int[THREADS];
+        for(String sql : executed)
+        {
+            counts[Integer.parseInt(sql.substring("select name from thread".length()))]++;
+        }
+        for(int ii = 0; ii < THREADS; ii++)
+        {
+            assertEquals(ITERATIONS, counts[ii]);
+        }
+    }
+
+    @Test
+    public void testReadWhileRecompiling() throws Exception
+    {
+        final StatementResultSetHandler handler = connection.getStatementResultSetHandler();
+        for(int ii = 0; ii < 100; ii++)
+        {
+            handler.prepareResultSet("select name from table" + ii, createResultSet("table" + ii));
+        }
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for(int ii = 0; ii < THREADS; ii++)
+        {
+            final int thread = ii;
+            futures.add(executor.submit(new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    start.await();
+                    for(int yy = 0; yy < ITERATIONS; yy++)
+                    {
+                        Statement statement = connection.createStatement();
+                        ResultSet resultSet = statement.executeQuery("SELECT NAME FROM TABLE" + thread);
+                        assertTrue(resultSet.next());
+                        assertEquals("table" + thread, resultSet.getString(1));
+                    }
+                    return null;
+                }
+            }));
+        }
+        start.countDown();
+        for(int ii = 0; ii < 50; ii++)
+        {
+            handler.setExactMatch(0 == ii % 2);
+            handler.prepareResultSet("update table" + ii, createResultSet("update" + ii));
+        }
+        handler.setExactMatch(false);
+        for(Future<Void> future : futures)
+        {
+            future.get(60, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testBulkPreparation() throws Exception
+    {
+        final StatementResultSetHandler handler = connection.getStatementResultSetHandler();
+        final int[] numberIndexes = new int[1];
+        handler.setPatternMatcherIndexFactory(new PatternMatcherIndex.Factory()
+        {
+            public PatternMatcherIndex create()
+            {
+                numberIndexes[0]++;
+                return new PatternMatcherIndex.Default();
+            }
+        });
+        handler.setExactMatch(true);
+        numberIndexes[0] = 0;
+        handler.beginBulkPreparation();
+        try
+        {
+            for(int ii = 0; ii < 100; ii++)
+            {
+                handler.prepareResultSet("select name from table" + ii, createResultSet("table" + ii));
+            }
+            Future<Boolean> visible = executor.submit(new Callable<Boolean>()
+            {
+                public Boolean call() throws Exception
+                {
+                    return connection.createStatement().executeQuery("select name from table0").next();
+                }
+            });
+            assertFalse(visible.get(60, TimeUnit.SECONDS));
+        }
+        finally
+        {
+            handler.endBulkPreparation();
+        }
+        assertEquals(1, numberIndexes[0]);
+        ResultSet resultSet = connection.createStatement().executeQuery("select name from table99");
+        assertTrue(resultSet.next());
+        assertEquals("table99", resultSet.getString(1));
+    }
+
+    @Test
+    public void testConcurrentLastExecutions() throws Exception
+    {
+        final StatementResultSetHandler handler = connection.getStatementResultSetHandler();
+        handler.setRecordingPolicy(RecordingPolicy.lastExecutions(100));
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for(int ii = 0; ii < THREADS; ii++)
+        {
+            final int thread = ii;
+            futures.add(executor.submit(new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    Statement statement = connection.createStatement();
+                    for(int yy = 0; yy < ITERATIONS; yy++)
+                    {
+                        statement.executeUpdate("update thread" + thread);
+                    }
+                    return null;
+                }
+            }));
+        }
+        for(Future<Void> future : futures)
+        {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        connection.createStatement().executeUpdate("update last");
+        List<String> executed = handler.getExecutedStatements();
+        assertEquals(100, executed.size());
+        assertEquals("update last", executed.get(99));
+        assertEquals(ITERATIONS, handler.getExecutedStatementStatistics().get("update thread0").getNumberExecutions());
+    }
+
+    private MockResultSet createResultSet(String name)
+    {
+        MockResultSet resultSet = new MockResultSet(name);
+        resultSet.addColumn("name", new Object[] {name});
+        return resultSet;
+    }
+}